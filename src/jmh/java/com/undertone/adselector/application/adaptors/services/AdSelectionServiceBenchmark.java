@@ -0,0 +1,57 @@
+package com.undertone.adselector.application.adaptors.services;
+
+import com.undertone.adselector.benchmark.PlanFixtures;
+import com.undertone.adselector.infrastructure.out.FileBackedAdBudgetPlanStore;
+import com.undertone.adselector.model.Population;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end selections, from target population resolution up to spending the selected ad,
+ * against a loaded plan and a distribution store stub which never runs out of quota.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AdSelectionServiceBenchmark {
+
+    private static final int AD_COUNT = 10_000;
+
+    @Param({"15", "100"})
+    private int populationSize;
+
+    private AdSelectionService service;
+
+    private Population population;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final Path planFile = PlanFixtures.generatePlan(AD_COUNT);
+        try {
+            service = new AdSelectionService(
+                    new WeightedRandomSelection(new Stubs.UnboundedDistributionStore()),
+                        FileBackedAdBudgetPlanStore.builder(planFile).build());
+        } finally {
+            PlanFixtures.deletePlan(planFile);
+        }
+
+        final SplittableRandom random = new SplittableRandom(populationSize);
+        final Set<String> aids = new HashSet<>();
+        while (aids.size() < populationSize) {
+            aids.add(PlanFixtures.aid(random.nextInt(AD_COUNT)));
+        }
+        population = Population.of(aids);
+    }
+
+    @Benchmark
+    public Optional<String> selectAd() {
+        return service.selectAd(population).block();
+    }
+
+}
@@ -0,0 +1,69 @@
+package com.undertone.adselector.application.adaptors.services;
+
+import com.undertone.adselector.benchmark.PlanFixtures;
+import com.undertone.adselector.model.AdBudget;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heavy hitter tracking cost added to every selection, recording a requested population and a single selection.
+ * Populations are drawn upfront from a skewed aid distribution, cycling through them to defeat branch prediction.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HeavyHitterTrackerBenchmark {
+
+    private static final int AD_COUNT = 1_000_000;
+    private static final int POPULATIONS = 4_096;
+
+    @Param({"15"})
+    private int populationSize;
+
+    private HeavyHitterTracker tracker;
+
+    private List<List<AdBudget>> populations;
+
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        tracker = new HeavyHitterTracker();
+
+        final SplittableRandom random = new SplittableRandom(populationSize);
+        populations = new ArrayList<>(POPULATIONS);
+        for (int i = 0; i < POPULATIONS; i++) {
+            final List<AdBudget> population = new ArrayList<>(populationSize);
+            for (int j = 0; j < populationSize; j++) {
+                /**
+                 * Squaring a uniform draw skews aids towards the lowest ones
+                 */
+                final double uniform = random.nextDouble();
+                population.add(new Stubs.Distribution(PlanFixtures.aid((int) (uniform * uniform * AD_COUNT)), 0.5d, 1_000, 1_000));
+            }
+            populations.add(population);
+        }
+    }
+
+    @Benchmark
+    public int recordRequested() {
+        final List<AdBudget> population = populations.get(next++ & (POPULATIONS - 1));
+        tracker.recordRequested(population);
+        return population.size();
+    }
+
+    @Benchmark
+    public AdBudget recordSelected() {
+        final AdBudget selected = populations.get(next++ & (POPULATIONS - 1)).get(0);
+        tracker.recordSelected(selected);
+        return selected;
+    }
+
+}
@@ -0,0 +1,61 @@
+package com.undertone.adselector.application.adaptors.services;
+
+import com.undertone.adselector.benchmark.PlanFixtures;
+import com.undertone.adselector.model.AdDistribution;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Selection draws over already fetched distributions, store is never reached.
+ * Multi-slot draws remove selected candidates, hence they draw from a fresh copy of candidates,
+ * copying is measured separately as baseline of its own.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WeightedRandomSelectionBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int candidateCount;
+
+    @Param({"3"})
+    private int slotCount;
+
+    private WeightedRandomSelection selection;
+
+    private List<AdDistribution> candidates;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        selection = new WeightedRandomSelection(new Stubs.UnboundedDistributionStore());
+
+        final SplittableRandom random = new SplittableRandom(candidateCount);
+        candidates = new ArrayList<>(candidateCount);
+        for (int i = 0; i < candidateCount; i++) {
+            candidates.add(new Stubs.Distribution(PlanFixtures.aid(i), 0.01d + random.nextDouble(0.98d), 1_000, 1_000));
+        }
+    }
+
+    @Benchmark
+    public AdDistribution doSelect() {
+        return selection.doSelect(candidates);
+    }
+
+    @Benchmark
+    public List<AdDistribution> doSelectMany() {
+        return selection.doSelect(new ArrayList<>(candidates), slotCount);
+    }
+
+    @Benchmark
+    public List<AdDistribution> copyCandidates() {
+        return new ArrayList<>(candidates);
+    }
+
+}
@@ -0,0 +1,126 @@
+package com.undertone.adselector.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static java.lang.String.format;
+
+/**
+ * Compares JMH JSON results against a baseline produced by a previous run.
+ * Results are matched by benchmark name and parameters. Both primary score and normalized allocation rate
+ * (gc.alloc.rate.norm) are compared, a result regresses if either got worse by more than given threshold.
+ */
+public final class BaselineComparison {
+
+    static final String ALLOCATION_METRIC = "gc.alloc.rate.norm";
+
+    private static final String PACKAGE_PREFIX = "com.undertone.adselector.";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final List<Row> rows;
+
+    private final boolean baselineFound;
+
+    private BaselineComparison(List<Row> rows, boolean baselineFound) {
+        this.rows = rows;
+        this.baselineFound = baselineFound;
+    }
+
+    public static BaselineComparison of(Path baseline, Path results, double threshold) throws IOException {
+        final Map<String, JsonNode> current = index(MAPPER.readTree(results.toFile()));
+        final Map<String, JsonNode> previous = Files.exists(baseline)
+                ? index(MAPPER.readTree(baseline.toFile()))
+                    : Map.of();
+
+        final List<Row> rows = new ArrayList<>(current.size());
+        current.forEach((key, result) -> {
+            final JsonNode reference = previous.get(key);
+            final boolean higherIsBetter = "thrpt".equals(result.path("mode").asText());
+
+            rows.add(new Row(key, result.path("primaryMetric").path("scoreUnit").asText(),
+                    score(result.path("primaryMetric")),
+                        reference == null ? Double.NaN : score(reference.path("primaryMetric")),
+                            allocation(result),
+                                reference == null ? Double.NaN : allocation(reference),
+                                    higherIsBetter, threshold));
+        });
+
+        return new BaselineComparison(List.copyOf(rows), !previous.isEmpty());
+    }
+
+    public boolean hasRegressions() {
+        return rows.stream().anyMatch(Row::regressed);
+    }
+
+    public String report() {
+        final StringBuilder report = new StringBuilder();
+        if (!baselineFound) {
+            report.append("No baseline found, run with -Dbenchmark.updateBaseline=true to record one\n");
+        }
+
+        report.append(format("%-90s %14s %14s %9s %14s %14s %9s%n",
+                "Benchmark", "Score", "Baseline", "Change", "Alloc B/op", "Baseline", "Change"));
+        for (Row row : rows) {
+            report.append(format("%-90s %14.3f %14.3f %8.1f%% %14.1f %14.1f %8.1f%% %s%n",
+                    row.key(), row.score(), row.baselineScore(), row.scoreChange() * 100,
+                        row.allocation(), row.baselineAllocation(), row.allocationChange() * 100,
+                            row.regressed() ? "REGRESSION" : ""));
+        }
+        return report.toString();
+    }
+
+    private static Map<String, JsonNode> index(JsonNode results) {
+        final Map<String, JsonNode> indexed = new TreeMap<>();
+        for (JsonNode result : results) {
+            final StringBuilder key = new StringBuilder(result.path("benchmark").asText().replace(PACKAGE_PREFIX, ""));
+            final JsonNode params = result.path("params");
+            if (params.isObject()) {
+                final StringJoiner joiner = new StringJoiner(",", "(", ")");
+                params.fields().forEachRemaining(param -> joiner.add(param.getKey() + "=" + param.getValue().asText()));
+                key.append(joiner);
+            }
+            indexed.put(key.toString(), result);
+        }
+        return indexed;
+    }
+
+    private static double score(JsonNode metric) {
+        return metric.path("score").asDouble(Double.NaN);
+    }
+
+    private static double allocation(JsonNode result) {
+        return score(result.path("secondaryMetrics").path(ALLOCATION_METRIC));
+    }
+
+    record Row(String key, String unit, double score, double baselineScore,
+               double allocation, double baselineAllocation, boolean higherIsBetter, double threshold) {
+
+        double scoreChange() {
+            return (score - baselineScore) / baselineScore;
+        }
+
+        double allocationChange() {
+            return (allocation - baselineAllocation) / baselineAllocation;
+        }
+
+        /**
+         * Results missing from baseline are never considered regressions. Allocation below a single byte per
+         * operation is profiler noise, hence allocation free baselines regress once a whole byte is allocated.
+         */
+        boolean regressed() {
+            final double scoreChange = scoreChange();
+            final boolean slower = higherIsBetter ? scoreChange < -threshold : scoreChange > threshold;
+            final boolean allocating = baselineAllocation >= 1
+                    ? allocationChange() > threshold
+                        : baselineAllocation >= 0 && allocation >= 1;
+            return slower || allocating;
+        }
+    }
+
+}
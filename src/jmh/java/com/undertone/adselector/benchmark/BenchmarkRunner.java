@@ -0,0 +1,53 @@
+package com.undertone.adselector.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Runs benchmarks matching benchmark.include with GC/allocation profiling enabled,
+ * writes JMH JSON results to benchmark.results and compares them against the stored baseline.
+ * <p>
+ * Baseline is replaced by current results if benchmark.updateBaseline is set, and the run fails
+ * upon regressions if benchmark.failOnRegression is set.
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {}
+
+    public static void main(String[] args) throws Exception {
+        final String include = System.getProperty("benchmark.include", ".*");
+        final Path results = Path.of(System.getProperty("benchmark.results", "target/jmh/results.json"));
+        final Path baseline = Path.of(System.getProperty("benchmark.baseline", "src/jmh/resources/baseline.json"));
+        final double threshold = Double.parseDouble(System.getProperty("benchmark.threshold", "0.10"));
+        final boolean failOnRegression = Boolean.getBoolean("benchmark.failOnRegression");
+        final boolean updateBaseline = Boolean.getBoolean("benchmark.updateBaseline");
+
+        Files.createDirectories(results.toAbsolutePath().getParent());
+
+        new Runner(new OptionsBuilder()
+                .include(include)
+                    .addProfiler(GCProfiler.class)
+                        .resultFormat(ResultFormatType.JSON)
+                            .result(results.toString())
+                                .build())
+                .run();
+
+        final BaselineComparison comparison = BaselineComparison.of(baseline, results, threshold);
+        System.out.println(comparison.report());
+
+        if (updateBaseline) {
+            Files.createDirectories(baseline.toAbsolutePath().getParent());
+            Files.copy(results, baseline, StandardCopyOption.REPLACE_EXISTING);
+            System.out.println("Baseline updated: " + baseline);
+        } else if (failOnRegression && comparison.hasRegressions()) {
+            System.exit(1);
+        }
+    }
+
+}
@@ -0,0 +1,83 @@
+package com.undertone.adselector.benchmark;
+
+import com.github.luben.zstd.ZstdOutputStream;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import static java.lang.String.format;
+
+/**
+ * Generates plan files laid out as production plans, ads are named test0 ... test(n-1).
+ * Generation is seeded, hence plans of the same size are identical between runs.
+ */
+public final class PlanFixtures {
+
+    private static final long SEED = 0x5EED;
+
+    private PlanFixtures() {}
+
+    public static String aid(int index) {
+        return "test" + index;
+    }
+
+    public static Path generatePlan(int adCount) {
+        try {
+            final Path directory = Files.createTempDirectory("ad-selector-benchmark");
+            final Path planFile = directory.resolve("plan.json");
+            final SplittableRandom random = new SplittableRandom(SEED);
+
+            try (BufferedWriter writer = Files.newBufferedWriter(planFile, StandardCharsets.UTF_8)) {
+                writer.write("{\"Ads\":[");
+                for (int i = 0; i < adCount; i++) {
+                    if (i > 0) {
+                        writer.write(',');
+                    }
+                    writer.write(format(Locale.ROOT, "{\"aid\":\"%s\",\"priority\":%.2f,\"quota\":%d}",
+                            aid(i), 0.01d + random.nextDouble(0.98d), 1 + random.nextInt(10_000)));
+                }
+                writer.write("]}");
+            }
+
+            return planFile;
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+    /**
+     * @param compression either gzip or zstd
+     * @return compressed copy of given plan file, next to it
+     */
+    public static Path compressPlan(Path planFile, String compression) {
+        final boolean gzip = "gzip".equalsIgnoreCase(compression);
+        final Path compressedFile = planFile.resolveSibling(planFile.getFileName() + (gzip ? ".gz" : ".zst"));
+        try (OutputStream output = gzip
+                ? new GZIPOutputStream(Files.newOutputStream(compressedFile), 64 * 1024)
+                    : new ZstdOutputStream(Files.newOutputStream(compressedFile))) {
+            Files.copy(planFile, output);
+            return compressedFile;
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+    public static void deletePlan(Path planFile) {
+        try (Stream<Path> paths = Files.walk(planFile.getParent())) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+}
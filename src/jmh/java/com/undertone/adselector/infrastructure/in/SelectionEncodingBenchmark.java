@@ -0,0 +1,160 @@
+package com.undertone.adselector.infrastructure.in;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.undertone.adselector.benchmark.PlanFixtures;
+import com.undertone.adselector.infrastructure.out.FileBackedAdBudgetPlanStore;
+import com.undertone.adselector.model.AdBudget;
+import com.undertone.adselector.model.AdBudgetPlan;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per request cost of decoding selection requests (resolving their populations included) and encoding
+ * selection responses, comparing JSON as bound by Jackson, raw JSON as scanned by {@link RawJsonPopulation},
+ * and the binary encoding listing either aids or plan slots (see {@link BinarySelection}).
+ * Allocation is reported by the GC profiler of the benchmark runner.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SelectionEncodingBenchmark {
+
+    private static final int AD_COUNT = 10_000;
+    private static final int SELECTIONS = 2;
+
+    private static final DefaultDataBufferFactory BUFFER_FACTORY = DefaultDataBufferFactory.sharedInstance;
+    private static final ResolvableType REQUEST_TYPE = ResolvableType.forClass(SelectAdsRequest.class);
+    private static final ResolvableType RESPONSE_TYPE = ResolvableType.forClass(SelectAdsResponse.class);
+
+    @Param({"15"})
+    private int populationSize;
+
+    private AdBudgetPlan plan;
+
+    private Jackson2JsonDecoder jsonDecoder;
+    private Jackson2JsonEncoder jsonEncoder;
+    private BinarySelectionEncoder binaryEncoder;
+
+    private byte[] jsonRequest;
+    private byte[] binaryAidsRequest;
+    private byte[] binarySlotsRequest;
+
+    private SelectAdsResponse response;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final Path planFile = PlanFixtures.generatePlan(AD_COUNT);
+        try {
+            plan = FileBackedAdBudgetPlanStore.builder(planFile).build().currentPlan();
+        } finally {
+            PlanFixtures.deletePlan(planFile);
+        }
+
+        final ObjectMapper objectMapper = new ObjectMapper();
+        jsonDecoder = new Jackson2JsonDecoder(objectMapper);
+        jsonEncoder = new Jackson2JsonEncoder(objectMapper);
+        binaryEncoder = new BinarySelectionEncoder();
+
+        final SplittableRandom random = new SplittableRandom(populationSize);
+        final List<String> aids = new ArrayList<>(populationSize);
+        while (aids.size() < populationSize) {
+            final String aid = PlanFixtures.aid(random.nextInt(AD_COUNT));
+            if (!aids.contains(aid)) {
+                aids.add(aid);
+            }
+        }
+
+        try {
+            jsonRequest = objectMapper.writeValueAsBytes(Map.of("q", aids, "k", SELECTIONS));
+
+            final ByteArrayOutputStream aidsBytes = new ByteArrayOutputStream();
+            final DataOutputStream aidsOut = new DataOutputStream(aidsBytes);
+            aidsOut.writeByte(BinarySelection.AIDS_FORMAT);
+            aidsOut.writeShort(SELECTIONS);
+            aidsOut.writeShort(aids.size());
+            for (String aid : aids) {
+                final byte[] encoded = aid.getBytes(StandardCharsets.UTF_8);
+                aidsOut.writeShort(encoded.length);
+                aidsOut.write(encoded);
+            }
+            binaryAidsRequest = aidsBytes.toByteArray();
+
+            final ByteArrayOutputStream slotsBytes = new ByteArrayOutputStream();
+            final DataOutputStream slotsOut = new DataOutputStream(slotsBytes);
+            slotsOut.writeByte(BinarySelection.SLOTS_FORMAT);
+            slotsOut.writeShort(SELECTIONS);
+            slotsOut.writeLong(plan.generation());
+            slotsOut.writeShort(aids.size());
+            for (String aid : aids) {
+                slotsOut.writeInt(plan.slotOf(aid));
+            }
+            binarySlotsRequest = slotsBytes.toByteArray();
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+
+        response = new SelectAdsResponse(aids.subList(0, SELECTIONS));
+    }
+
+    @Benchmark
+    public List<AdBudget> decodeJson() {
+        final SelectAdsRequest request = (SelectAdsRequest) jsonDecoder.decode(BUFFER_FACTORY.wrap(jsonRequest),
+                REQUEST_TYPE, MediaType.APPLICATION_JSON, null);
+        return request.population().resolve(plan);
+    }
+
+    @Benchmark
+    public List<AdBudget> decodeRawJson() {
+        return new RawJsonPopulation(List.of(BUFFER_FACTORY.wrap(jsonRequest))).resolve(plan);
+    }
+
+    @Benchmark
+    public List<AdBudget> decodeBinaryAids() {
+        return new BinarySelectionRequest(List.of(BUFFER_FACTORY.wrap(binaryAidsRequest))).resolve(plan);
+    }
+
+    @Benchmark
+    public List<AdBudget> decodeBinarySlots() {
+        return new BinarySelectionRequest(List.of(BUFFER_FACTORY.wrap(binarySlotsRequest))).resolve(plan);
+    }
+
+    @Benchmark
+    public int encodeJson() {
+        return released(jsonEncoder.encodeValue(response, BUFFER_FACTORY, RESPONSE_TYPE,
+                MediaType.APPLICATION_JSON, null));
+    }
+
+    @Benchmark
+    public int encodeBinary() {
+        return released(binaryEncoder.encodeValue(response, BUFFER_FACTORY, RESPONSE_TYPE,
+                BinarySelection.MEDIA_TYPE, null));
+    }
+
+    private static int released(DataBuffer buffer) {
+        final int length = buffer.readableByteCount();
+        DataBufferUtils.release(buffer);
+        return length;
+    }
+
+}
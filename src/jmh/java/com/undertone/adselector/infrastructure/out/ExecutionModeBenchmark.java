@@ -0,0 +1,128 @@
+package com.undertone.adselector.infrastructure.out;
+
+import com.undertone.adselector.application.adaptors.services.AdSelectionService;
+import com.undertone.adselector.application.adaptors.services.BlockingAdSelectionService;
+import com.undertone.adselector.application.adaptors.services.BlockingWeightedRandomSelection;
+import com.undertone.adselector.application.adaptors.services.WeightedRandomSelection;
+import com.undertone.adselector.application.ports.out.AdBudgetPlanStore;
+import com.undertone.adselector.benchmark.PlanFixtures;
+import com.undertone.adselector.infrastructure.out.redis.FaultInjection;
+import com.undertone.adselector.infrastructure.out.redis.InProcessRedisServer;
+import com.undertone.adselector.model.Population;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end selections against the in-process Redis stand-in, comparing reactive selection with blocking selection
+ * handed off to a virtual thread of its own, as served in blocking execution mode.
+ * Throughput and sampled latency (p99) are reported, allocation rate by the GC profiler of the benchmark runner.
+ * Spent quota is cleared every iteration, keeping ads from being exhausted.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(64)
+@Fork(1)
+public class ExecutionModeBenchmark {
+
+    private static final int AD_COUNT = 1_000;
+    private static final int POPULATIONS = 64;
+
+    @Param({"0", "500"})
+    private int latencyMicros;
+
+    @Param({"15"})
+    private int populationSize;
+
+    private InProcessRedisServer redis;
+
+    private LettuceConnectionFactory connectionFactory;
+
+    private AdSelectionService reactiveService;
+
+    private BlockingAdSelectionService blockingService;
+
+    private ExecutorService virtualThreads;
+
+    private Population[] populations;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        redis = RedisScriptStandIns.start();
+        redis.injectFaults(FaultInjection.latency(Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(latencyMicros))));
+
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration(redis.host(), redis.port()));
+        connectionFactory.afterPropertiesSet();
+
+        final Path planFile = PlanFixtures.generatePlan(AD_COUNT);
+        final AdBudgetPlanStore planStore;
+        try {
+            planStore = FileBackedAdBudgetPlanStore.builder(planFile).build();
+        } finally {
+            PlanFixtures.deletePlan(planFile);
+        }
+
+        reactiveService = new AdSelectionService(new WeightedRandomSelection(
+                new RedisBackedAdDistributionStore(new ReactiveStringRedisTemplate(connectionFactory))), planStore);
+        blockingService = new BlockingAdSelectionService(new BlockingWeightedRandomSelection(
+                new RedisBackedBlockingAdDistributionStore(new StringRedisTemplate(connectionFactory))), planStore);
+        virtualThreads = Executors.newVirtualThreadPerTaskExecutor();
+
+        final SplittableRandom random = new SplittableRandom(populationSize);
+        populations = new Population[POPULATIONS];
+        for (int i = 0; i < POPULATIONS; i++) {
+            final Set<String> aids = new HashSet<>();
+            while (aids.size() < populationSize) {
+                aids.add(PlanFixtures.aid(random.nextInt(AD_COUNT)));
+            }
+            populations[i] = Population.of(aids);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void clearSpentQuota() {
+        redis.inKeyspace(keyspace -> {
+            keyspace.clear();
+            return null;
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        virtualThreads.close();
+        connectionFactory.destroy();
+        redis.close();
+    }
+
+    @Benchmark
+    public Optional<String> reactive() {
+        return reactiveService.selectAd(nextPopulation()).block();
+    }
+
+    @Benchmark
+    public Optional<String> blockingOnVirtualThread() throws Exception {
+        final Population population = nextPopulation();
+        return virtualThreads.submit(() -> blockingService.selectAd(population)).get();
+    }
+
+    private Population nextPopulation() {
+        return populations[ThreadLocalRandom.current().nextInt(POPULATIONS)];
+    }
+
+}
@@ -0,0 +1,53 @@
+package com.undertone.adselector.infrastructure.out;
+
+import com.undertone.adselector.benchmark.PlanFixtures;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full plan loads, from reading (and decompressing) plan file up to the built plan index.
+ * Every invocation is a single cold load, hence single shot mode.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+public class FileBackedAdBudgetPlanStoreBenchmark {
+
+    @Param({"10000", "100000", "1000000", "10000000"})
+    private int adCount;
+
+    @Param({"false", "true"})
+    private boolean lazyLoading;
+
+    @Param({"none", "gzip", "zstd"})
+    private String compression;
+
+    private Path planFile;
+
+    private FileBackedAdBudgetPlanStore store;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        planFile = PlanFixtures.generatePlan(adCount);
+        if (!"none".equals(compression)) {
+            planFile = PlanFixtures.compressPlan(planFile, compression);
+        }
+        store = new FileBackedAdBudgetPlanStore(planFile, lazyLoading);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        PlanFixtures.deletePlan(planFile);
+    }
+
+    @Benchmark
+    public FileBackedAdBudgetPlanStore loadAdBudgetPlan() {
+        return store.loadAdBudgetPlan();
+    }
+
+}
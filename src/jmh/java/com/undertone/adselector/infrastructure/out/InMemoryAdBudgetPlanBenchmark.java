@@ -0,0 +1,92 @@
+package com.undertone.adselector.infrastructure.out;
+
+import com.undertone.adselector.benchmark.PlanFixtures;
+import com.undertone.adselector.model.AdBudget;
+import com.undertone.adselector.model.AdBudgetPlan;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plan lookups of random aids, 1 in 16 of them absent from the plan.
+ * Lazy plans are fully evaluated during setup, measuring steady state lookups rather than first evaluation.
+ * Amendments upsert a single random aid of the plan, each building a new plan out of the one loaded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class InMemoryAdBudgetPlanBenchmark {
+
+    private static final int LOOKUPS = 1 << 12;
+
+    @Param({"10000", "1000000"})
+    private int adCount;
+
+    @Param({"false", "true"})
+    private boolean lazyLoading;
+
+    private AdBudgetPlan plan;
+
+    private List<List<AdBudget>> upserts;
+
+    private String[] aids;
+
+    private ByteBuffer[] encodedAids;
+
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final Path planFile = PlanFixtures.generatePlan(adCount);
+        try {
+            plan = new FileBackedAdBudgetPlanStore(planFile, lazyLoading).loadAdBudgetPlan().fetchPlan().block();
+        } finally {
+            PlanFixtures.deletePlan(planFile);
+        }
+
+        final SplittableRandom random = new SplittableRandom(LOOKUPS);
+        aids = new String[LOOKUPS];
+        encodedAids = new ByteBuffer[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            aids[i] = i % 16 == 0 ? "absent" + i : PlanFixtures.aid(random.nextInt(adCount));
+            encodedAids[i] = ByteBuffer.wrap(aids[i].getBytes(StandardCharsets.UTF_8));
+        }
+
+        for (int slot = 0; slot < plan.slotCount(); slot++) {
+            plan.fetch(slot);
+        }
+
+        upserts = random.ints(LOOKUPS, 0, adCount)
+                .mapToObj(index -> List.<AdBudget>of(new Upsert(PlanFixtures.aid(index), 0.5, 1000L)))
+                    .toList();
+        amend();
+    }
+
+    private record Upsert(String aid, double priority, long quota) implements AdBudget {}
+
+    @Benchmark
+    public Optional<AdBudget> fetch() {
+        return plan.fetch(aids[next++ & (LOOKUPS - 1)]);
+    }
+
+    @Benchmark
+    public Optional<AdBudget> fetchByEncodedAid() {
+        final ByteBuffer encodedAid = encodedAids[next++ & (LOOKUPS - 1)];
+        return plan.fetch(plan.slotOf(encodedAid, 0, encodedAid.limit()));
+    }
+
+    @Benchmark
+    public AdBudgetPlan amend() {
+        return ((InMemoryAdBudgetPlan) plan).amend(upserts.get(next++ & (LOOKUPS - 1)), List.of(), 2L);
+    }
+
+}
@@ -0,0 +1,91 @@
+package com.undertone.adselector.infrastructure.out;
+
+import com.undertone.adselector.benchmark.PlanFixtures;
+import com.undertone.adselector.infrastructure.out.redis.FaultInjection;
+import com.undertone.adselector.infrastructure.out.redis.InProcessRedisServer;
+import com.undertone.adselector.model.AdBudget;
+import com.undertone.adselector.model.AdDistribution;
+import com.undertone.adselector.model.Status;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Store round trips against the in-process Redis stand-in, optionally delayed by injected latency.
+ * Quotas are never exhausted, every increment succeeds.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+@Fork(1)
+public class RedisBackedAdDistributionStoreBenchmark {
+
+    @Param({"0", "500"})
+    private int latencyMicros;
+
+    @Param({"15"})
+    private int populationSize;
+
+    private InProcessRedisServer redis;
+
+    private LettuceConnectionFactory connectionFactory;
+
+    private RedisBackedAdDistributionStore store;
+
+    private List<AdBudget> population;
+
+    private List<AdDistribution> selected;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        redis = RedisScriptStandIns.start();
+        redis.injectFaults(FaultInjection.latency(Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(latencyMicros))));
+
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration(redis.host(), redis.port()));
+        connectionFactory.afterPropertiesSet();
+        store = new RedisBackedAdDistributionStore(new ReactiveStringRedisTemplate(connectionFactory));
+
+        population = new ArrayList<>(populationSize);
+        for (int i = 0; i < populationSize; i++) {
+            population.add(new Budget(PlanFixtures.aid(i), 0.5d, Long.MAX_VALUE));
+        }
+        selected = List.of(new Distribution(PlanFixtures.aid(0), 0.5d, Long.MAX_VALUE, Long.MAX_VALUE),
+                new Distribution(PlanFixtures.aid(1), 0.5d, Long.MAX_VALUE, Long.MAX_VALUE),
+                    new Distribution(PlanFixtures.aid(2), 0.5d, Long.MAX_VALUE, Long.MAX_VALUE));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        connectionFactory.destroy();
+        redis.close();
+    }
+
+    @Benchmark
+    public List<AdDistribution> fetchDistributions() {
+        return store.fetchDistributions(population).block();
+    }
+
+    @Benchmark
+    public Status incrementDistribution() {
+        return store.incrementDistribution(selected.get(0)).block();
+    }
+
+    @Benchmark
+    public List<Status> incrementDistributions() {
+        return store.incrementDistributions(selected).block();
+    }
+
+    record Budget(String aid, double priority, long quota) implements AdBudget {}
+
+    record Distribution(String aid, double priority, long quota, long remainingQuota) implements AdDistribution {}
+
+}
@@ -0,0 +1,134 @@
+package com.undertone.adselector.loadtest;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Synthetic selection requests drawn from plan contents.
+ * Every request lists a uniformly sized population of distinct aids, drawn either uniformly or by a Zipf distribution
+ * over plan order (population.skew &gt; 0, rank 1 being the first ad in plan). A segments.ratio share of requests
+ * references a single random plan segment instead.
+ */
+final class GeneratedWorkload implements Workload {
+
+    private final LoadOptions options;
+    private final List<String> aids = new ArrayList<>();
+    private final List<String> segmentIds = new ArrayList<>();
+    private final SplittableRandom random;
+    private final double[] cumulativeWeights;
+    private final double meanIntervalNanos;
+
+    private double nextOffsetNanos;
+
+    GeneratedWorkload(LoadOptions options) {
+        this.options = options;
+        this.random = new SplittableRandom(options.seed());
+        this.meanIntervalNanos = 1e9d / options.rate();
+        readPlan(options.plan());
+
+        if (aids.size() < options.populationMax()) {
+            throw new IllegalArgumentException(String.format("Plan: %s holds %d ads, fewer than population.max: %d",
+                    options.plan(), aids.size(), options.populationMax()));
+        }
+        this.cumulativeWeights = options.populationSkew() > 0 ? zipfWeights(aids.size(), options.populationSkew()) : null;
+    }
+
+    @Override
+    public ScheduledRequest next() {
+        final long offsetNanos = (long) nextOffsetNanos;
+        if (offsetNanos > options.duration().toNanos()) {
+            return null;
+        }
+        nextOffsetNanos += options.arrivals() == LoadOptions.Arrivals.POISSON
+                ? -Math.log(1d - random.nextDouble()) * meanIntervalNanos
+                    : meanIntervalNanos;
+
+        final boolean bySegment = !segmentIds.isEmpty() && random.nextDouble() < options.segmentsRatio();
+        return new ScheduledRequest(offsetNanos, SELECT_AD_PATH, bySegment ? segmentBody() : aidsBody());
+    }
+
+    private String aidsBody() {
+        final int size = options.populationMin() + random.nextInt(options.populationMax() - options.populationMin() + 1);
+        final Set<String> population = new LinkedHashSet<>(size * 2);
+
+        /**
+         * Heavily skewed draws rarely reach the tail, remaining population is then filled uniformly
+         */
+        for (int attempts = 0; population.size() < size && attempts < size * 100; attempts++) {
+            population.add(aids.get(nextRank()));
+        }
+        while (population.size() < size) {
+            population.add(aids.get(random.nextInt(aids.size())));
+        }
+        return toBody("q", population);
+    }
+
+    private String segmentBody() {
+        return toBody("s", List.of(segmentIds.get(random.nextInt(segmentIds.size()))));
+    }
+
+    private int nextRank() {
+        if (cumulativeWeights == null) {
+            return random.nextInt(aids.size());
+        }
+        final int index = Arrays.binarySearch(cumulativeWeights, random.nextDouble());
+        return Math.min(index >= 0 ? index : -index - 1, aids.size() - 1);
+    }
+
+    private static String toBody(String field, Collection<String> values) {
+        final StringJoiner body = new StringJoiner("\",\"", "{\"" + field + "\":[\"", "\"]}");
+        values.forEach(body::add);
+        return body.toString();
+    }
+
+    /**
+     * Normalized cumulative weights of ranks 1..n, weight of rank k being 1/k^s
+     */
+    private static double[] zipfWeights(int n, double skew) {
+        final double[] cumulative = new double[n];
+        double sum = 0d;
+        for (int k = 0; k < n; k++) {
+            cumulative[k] = (sum += 1d / Math.pow(k + 1, skew));
+        }
+        for (int k = 0; k < n; k++) {
+            cumulative[k] /= sum;
+        }
+        return cumulative;
+    }
+
+    /**
+     * Streams plan file, collecting only aids of ads and ids of segments
+     */
+    private void readPlan(Path plan) {
+        try (JsonParser parser = new JsonFactory().createParser(plan.toFile())) {
+            String section = null;
+            int depth = 0;
+            for (JsonToken token = parser.nextToken(); token != null; token = parser.nextToken()) {
+                switch (token) {
+                    case START_OBJECT, START_ARRAY -> depth++;
+                    case END_OBJECT, END_ARRAY -> depth--;
+                    case FIELD_NAME -> {
+                        final String field = parser.currentName();
+                        if (depth == 1) {
+                            section = field;
+                        } else if (depth == 3 && "aid".equals(field) && "Ads".equals(section)) {
+                            Optional.ofNullable(parser.nextTextValue()).ifPresent(aids::add);
+                        } else if (depth == 3 && "sid".equals(field) && "Segments".equals(section)) {
+                            Optional.ofNullable(parser.nextTextValue()).ifPresent(segmentIds::add);
+                        }
+                    }
+                    default -> { }
+                }
+            }
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Failed reading plan: " + plan, ioe);
+        }
+    }
+
+}
@@ -0,0 +1,158 @@
+package com.undertone.adselector.loadtest;
+
+import com.undertone.adselector.loadtest.Workload.ScheduledRequest;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import reactor.core.publisher.Mono;
+import reactor.netty.ByteBufFlux;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open loop load generator for the selection endpoints.
+ * <p>
+ * Requests are sent at the times their workload scheduled them, never waiting for previous responses,
+ * hence a stalled service faces a growing backlog just like it would in production. Latencies are measured
+ * from scheduled send times (see {@link LoadReport}). Requests exceeding max.in.flight are skipped and counted,
+ * bounding generator memory if the service stops responding altogether.
+ * <p>
+ * Arguments are key=value pairs, see {@link LoadOptions#DEFAULTS}, e.g.
+ * <pre>
+ * rate=5000 duration=PT60S population.skew=1.1
+ * mode=replay replay.file=capture.ndjson replay.speed=4
+ * transport=stream connections=4
+ * </pre>
+ */
+public final class LoadGenerator {
+
+    private final LoadOptions options;
+    private final LoadReport report = new LoadReport();
+    private final AtomicLong inFlight = new AtomicLong();
+    private final HttpClient httpClient;
+    private final ConnectionProvider connectionProvider;
+    private final SelectionStreams streams;
+
+    LoadGenerator(LoadOptions options) {
+        this.options = options;
+        this.connectionProvider = ConnectionProvider.builder("load-generator")
+                .maxConnections(options.connections())
+                    .pendingAcquireMaxCount(-1)
+                        .pendingAcquireTimeout(options.timeout())
+                            .build();
+        this.httpClient = HttpClient.create(connectionProvider)
+                .baseUrl(options.target())
+                    .responseTimeout(options.timeout())
+                        .headers(headers -> headers.set(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_JSON));
+        this.streams = options.transport() == LoadOptions.Transport.STREAM
+                ? new SelectionStreams(httpClient, options.connections(), report, inFlight)
+                    : null;
+    }
+
+    public static void main(String[] args) throws Exception {
+        final LoadOptions options = LoadOptions.parse(args);
+        new LoadGenerator(options).run();
+    }
+
+    void run() throws Exception {
+        final ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "load-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try (Workload workload = options.mode() == LoadOptions.Mode.REPLAY
+                ? new ReplayWorkload(options)
+                    : new GeneratedWorkload(options)) {
+
+            final long startNanos = System.nanoTime();
+            final long warmupEndNanos = startNanos + options.warmup().toNanos();
+            final long intervalNanos = options.reportInterval().toNanos();
+
+            System.out.printf("Sending %s load to %s over %s transport for %s (first %s is warmup)%n",
+                    options.mode(), options.target(), options.transport(), options.duration(), options.warmup());
+            reporter.scheduleAtFixedRate(() -> {
+                final double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9d;
+                if (System.nanoTime() >= warmupEndNanos) {
+                    report.printInterval(System.out, elapsedSeconds, intervalNanos / 1e9d, inFlight.get());
+                }
+            }, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+
+            boolean warm = options.warmup().isZero();
+            ScheduledRequest request;
+            while ((request = workload.next()) != null) {
+                final long intendedNanos = startNanos + request.offsetNanos();
+                sleepUntil(intendedNanos);
+
+                if (!warm && intendedNanos >= warmupEndNanos) {
+                    warm = true;
+                    report.reset();
+                }
+
+                if (inFlight.get() >= options.maxInFlight()) {
+                    report.recordSkipped();
+                } else if (streams != null) {
+                    streams.send(request, intendedNanos);
+                } else {
+                    send(request, intendedNanos);
+                }
+            }
+
+            awaitInFlight(options.timeout().multipliedBy(2));
+            reporter.shutdownNow();
+
+            final double measuredSeconds = (System.nanoTime() - Math.min(warmupEndNanos, System.nanoTime())) / 1e9d;
+            report.printSummary(System.out, options, Math.max(measuredSeconds, 1e-3));
+            report.writeHistograms(options.output());
+            System.out.println("Histograms written to: " + options.output().toAbsolutePath());
+        } finally {
+            reporter.shutdownNow();
+            if (streams != null) {
+                streams.close();
+            }
+            connectionProvider.disposeLater().block(Duration.ofSeconds(5));
+        }
+    }
+
+    private void send(ScheduledRequest request, long intendedNanos) {
+        inFlight.incrementAndGet();
+        final long sentNanos = System.nanoTime();
+
+        httpClient.post()
+                .uri(request.path())
+                    .send(ByteBufFlux.fromString(Mono.just(request.body())))
+                        .responseSingle((response, body) -> body.then(Mono.just(response.status().code())))
+                .doFinally(ignored -> inFlight.decrementAndGet())
+                    .subscribe(
+                            status -> report.recordResponse(status, intendedNanos, sentNanos, System.nanoTime()),
+                            error -> report.recordFailure(intendedNanos, sentNanos, System.nanoTime()));
+    }
+
+    private void awaitInFlight(Duration timeout) {
+        final long deadline = System.nanoTime() + timeout.toNanos();
+        while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+    }
+
+    /**
+     * Parks until shortly before due time and spins the rest, parking alone overshoots by tens of micros
+     */
+    private static void sleepUntil(long dueNanos) {
+        long remaining;
+        while ((remaining = dueNanos - System.nanoTime()) > 0) {
+            if (remaining > 100_000L) {
+                LockSupport.parkNanos(remaining - 50_000L);
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+}
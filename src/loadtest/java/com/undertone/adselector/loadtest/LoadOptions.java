@@ -0,0 +1,97 @@
+package com.undertone.adselector.loadtest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+
+import static java.lang.String.format;
+
+/**
+ * Load test options, parsed from key=value arguments. Every option has a default, see {@link #DEFAULTS}.
+ */
+record LoadOptions(String target, Mode mode, Transport transport, double rate, Arrivals arrivals, Duration duration, Duration warmup,
+                   Path plan, int populationMin, int populationMax, double populationSkew, double segmentsRatio,
+                   Path replayFile, double replaySpeed, int connections, int maxInFlight, Duration timeout,
+                   Duration reportInterval, Path output, long seed) {
+
+    enum Mode { GENERATE, REPLAY }
+
+    /**
+     * UNARY sends every request on its own, STREAM sends requests as lines of selection streams, one per connection
+     */
+    enum Transport { UNARY, STREAM }
+
+    /**
+     * CONSTANT spaces requests evenly, POISSON draws exponentially distributed gaps averaging the same rate
+     */
+    enum Arrivals { CONSTANT, POISSON }
+
+    static final Map<String, String> DEFAULTS = Map.ofEntries(
+            Map.entry("target", "http://localhost:8080"),
+            Map.entry("mode", "generate"),
+            Map.entry("transport", "unary"),
+            Map.entry("rate", "1000"),
+            Map.entry("arrivals", "constant"),
+            Map.entry("duration", "PT30S"),
+            Map.entry("warmup", "PT5S"),
+            Map.entry("plan", "plan/plan.json"),
+            Map.entry("population.min", "5"),
+            Map.entry("population.max", "20"),
+            Map.entry("population.skew", "0"),
+            Map.entry("segments.ratio", "0"),
+            Map.entry("replay.file", ""),
+            Map.entry("replay.speed", "1"),
+            Map.entry("connections", "256"),
+            Map.entry("max.in.flight", "10000"),
+            Map.entry("timeout", "PT2S"),
+            Map.entry("report.interval", "PT1S"),
+            Map.entry("output", "target/loadtest"),
+            Map.entry("seed", "42"));
+
+    static LoadOptions parse(String... args) {
+        final Map<String, String> values = new HashMap<>(DEFAULTS);
+        for (String arg : args) {
+            final int separator = arg.indexOf('=');
+            final String key = separator < 0 ? arg : arg.substring(0, separator);
+            if (separator < 0 || !DEFAULTS.containsKey(key)) {
+                throw new IllegalArgumentException(format("Unknown argument: %s, expected key=value where key is one of: %s",
+                        arg, new TreeSet<>(DEFAULTS.keySet())));
+            }
+            values.put(key, arg.substring(separator + 1));
+        }
+
+        final LoadOptions options = new LoadOptions(
+                values.get("target"),
+                Mode.valueOf(values.get("mode").toUpperCase(Locale.ROOT)),
+                Transport.valueOf(values.get("transport").toUpperCase(Locale.ROOT)),
+                Double.parseDouble(values.get("rate")),
+                Arrivals.valueOf(values.get("arrivals").toUpperCase(Locale.ROOT)),
+                Duration.parse(values.get("duration")),
+                Duration.parse(values.get("warmup")),
+                Path.of(values.get("plan")),
+                Integer.parseInt(values.get("population.min")),
+                Integer.parseInt(values.get("population.max")),
+                Double.parseDouble(values.get("population.skew")),
+                Double.parseDouble(values.get("segments.ratio")),
+                values.get("replay.file").isEmpty() ? null : Path.of(values.get("replay.file")),
+                Double.parseDouble(values.get("replay.speed")),
+                Integer.parseInt(values.get("connections")),
+                Integer.parseInt(values.get("max.in.flight")),
+                Duration.parse(values.get("timeout")),
+                Duration.parse(values.get("report.interval")),
+                Path.of(values.get("output")),
+                Long.parseLong(values.get("seed")));
+
+        if (options.rate() <= 0 || options.replaySpeed() <= 0) {
+            throw new IllegalArgumentException("Arguments rate and replay.speed must be positive");
+        }
+        if (options.populationMin() < 1 || options.populationMax() < options.populationMin()) {
+            throw new IllegalArgumentException("Arguments population.min/max must satisfy 1 <= min <= max");
+        }
+        if (options.mode() == Mode.REPLAY && options.replayFile() == null) {
+            throw new IllegalArgumentException("Argument replay.file is required in replay mode");
+        }
+        return options;
+    }
+
+}
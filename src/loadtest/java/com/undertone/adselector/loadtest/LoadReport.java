@@ -0,0 +1,150 @@
+package com.undertone.adselector.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.lang.String.format;
+
+/**
+ * Latency and outcome accounting of a load test run.
+ * <p>
+ * Response time is measured from the time a request was <em>scheduled</em> to be sent, so stalls of the service
+ * (or of the generator) are charged to every request they delayed, avoiding coordinated omission.
+ * Service time, measured from the time a request was actually sent, is recorded alongside for comparison.
+ */
+final class LoadReport {
+
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99, 100};
+
+    private final Recorder responseTimeRecorder = new Recorder(HIGHEST_TRACKABLE_NANOS, 3);
+    private final Recorder serviceTimeRecorder = new Recorder(HIGHEST_TRACKABLE_NANOS, 3);
+
+    private final Histogram responseTimes = new Histogram(HIGHEST_TRACKABLE_NANOS, 3);
+    private final Histogram serviceTimes = new Histogram(HIGHEST_TRACKABLE_NANOS, 3);
+
+    private final LongAdder selections = new LongAdder();
+    private final LongAdder noSelections = new LongAdder();
+    private final LongAdder clientErrors = new LongAdder();
+    private final LongAdder serverErrors = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+
+    private Histogram responseTimeInterval;
+    private Histogram serviceTimeInterval;
+
+    void recordResponse(int status, long intendedNanos, long sentNanos, long completedNanos) {
+        switch (status / 100) {
+            case 2 -> (status == 204 ? noSelections : selections).increment();
+            case 4 -> clientErrors.increment();
+            default -> serverErrors.increment();
+        }
+        record(intendedNanos, sentNanos, completedNanos);
+    }
+
+    /**
+     * Timeouts and connection failures, charged with their full response time
+     */
+    void recordFailure(long intendedNanos, long sentNanos, long completedNanos) {
+        failures.increment();
+        record(intendedNanos, sentNanos, completedNanos);
+    }
+
+    /**
+     * Requests never sent since too many were already in flight
+     */
+    void recordSkipped() {
+        skipped.increment();
+    }
+
+    private void record(long intendedNanos, long sentNanos, long completedNanos) {
+        responseTimeRecorder.recordValue(Math.min(completedNanos - intendedNanos, HIGHEST_TRACKABLE_NANOS));
+        serviceTimeRecorder.recordValue(Math.min(completedNanos - sentNanos, HIGHEST_TRACKABLE_NANOS));
+    }
+
+    /**
+     * Prints latencies recorded since previous interval, and folds them into run totals
+     */
+    synchronized void printInterval(PrintStream out, double elapsedSeconds, double intervalSeconds, long inFlight) {
+        foldInterval();
+
+        out.println(format(Locale.ROOT,
+                "%8.1fs  %9.1f req/s  response p50 %8.3f ms  p99 %8.3f ms  max %8.3f ms  service p99 %8.3f ms  in-flight %d",
+                elapsedSeconds, responseTimeInterval.getTotalCount() / intervalSeconds,
+                    millis(responseTimeInterval.getValueAtPercentile(50)),
+                        millis(responseTimeInterval.getValueAtPercentile(99)),
+                            millis(responseTimeInterval.getMaxValue()),
+                                millis(serviceTimeInterval.getValueAtPercentile(99)), inFlight));
+    }
+
+    synchronized void printSummary(PrintStream out, LoadOptions options, double measuredSeconds) {
+        foldInterval();
+        final long completed = selections.sum() + noSelections.sum() + clientErrors.sum() + serverErrors.sum();
+        final long total = completed + failures.sum();
+
+        out.println();
+        out.println(format(Locale.ROOT, "Target: %s, offered rate: %.1f req/s, measured over: %.1f s",
+                options.target(), options.rate(), measuredSeconds));
+        out.println(format(Locale.ROOT, "Throughput: %.1f req/s (%d requests, %d skipped at max.in.flight)",
+                total / measuredSeconds, total, skipped.sum()));
+        out.println(format(Locale.ROOT, "Selections: %d, no selection (204): %d (%.2f%%), 4xx: %d, 5xx: %d, failures: %d (%.2f%%)",
+                selections.sum(), noSelections.sum(), percentage(noSelections.sum(), total),
+                    clientErrors.sum(), serverErrors.sum(), failures.sum(), percentage(failures.sum(), total)));
+
+        out.println(format("%-10s %14s %14s", "Percentile", "Response ms", "Service ms"));
+        for (double percentile : PERCENTILES) {
+            out.println(format(Locale.ROOT, "%-10s %14.3f %14.3f", percentile == 100 ? "max" : percentile,
+                    millis(responseTimes.getValueAtPercentile(percentile)),
+                        millis(serviceTimes.getValueAtPercentile(percentile))));
+        }
+    }
+
+    private void foldInterval() {
+        responseTimeInterval = responseTimeRecorder.getIntervalHistogram(responseTimeInterval);
+        serviceTimeInterval = serviceTimeRecorder.getIntervalHistogram(serviceTimeInterval);
+        responseTimes.add(responseTimeInterval);
+        serviceTimes.add(serviceTimeInterval);
+    }
+
+    /**
+     * Writes HdrHistogram percentile distributions (.hgrm), readable by the HdrHistogram plotter
+     */
+    synchronized void writeHistograms(Path output) throws IOException {
+        Files.createDirectories(output);
+        try (PrintStream response = new PrintStream(Files.newOutputStream(output.resolve("response-time.hgrm")));
+             PrintStream service = new PrintStream(Files.newOutputStream(output.resolve("service-time.hgrm")))) {
+            responseTimes.outputPercentileDistribution(response, 1_000_000d);
+            serviceTimes.outputPercentileDistribution(service, 1_000_000d);
+        }
+    }
+
+    /**
+     * Drops everything recorded so far, used once warmup is over
+     */
+    synchronized void reset() {
+        responseTimeRecorder.reset();
+        serviceTimeRecorder.reset();
+        responseTimes.reset();
+        serviceTimes.reset();
+        for (LongAdder counter : new LongAdder[]{selections, noSelections, clientErrors, serverErrors, failures, skipped}) {
+            counter.reset();
+        }
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6d;
+    }
+
+    private static double percentage(long part, long total) {
+        return total == 0 ? 0d : 100d * part / total;
+    }
+
+}
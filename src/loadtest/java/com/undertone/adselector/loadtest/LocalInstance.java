@@ -0,0 +1,62 @@
+package com.undertone.adselector.loadtest;
+
+import com.undertone.adselector.AdSelectorApplication;
+import com.undertone.adselector.infrastructure.out.RedisScriptStandIns;
+import com.undertone.adselector.infrastructure.out.redis.FaultInjection;
+import com.undertone.adselector.infrastructure.out.redis.InProcessRedisServer;
+import org.springframework.boot.SpringApplication;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs the service against an in-process Redis stand-in, a hermetic load test target needing neither Docker nor Redis.
+ * <p>
+ * Arguments: redis.port=&lt;port, default 6379&gt; plan=&lt;plan file, default plan/plan.json&gt;
+ * redis.latency=&lt;latency injected into every Redis command, e.g. PT0.2S&gt;, any other argument
+ * is passed to Spring as is, e.g. --server.port=8081.
+ */
+public final class LocalInstance {
+
+    public static void main(String[] args) {
+        /**
+         * Devtools restarts would run main again, binding a second stand-in
+         */
+        System.setProperty("spring.devtools.restart.enabled", "false");
+
+        int redisPort = 6379;
+        Path plan = Path.of("plan", "plan.json");
+        Duration redisLatency = Duration.ZERO;
+        final List<String> springArgs = new ArrayList<>();
+
+        for (String arg : args) {
+            if (arg.startsWith("redis.port=")) {
+                redisPort = Integer.parseInt(arg.substring("redis.port=".length()));
+            } else if (arg.startsWith("redis.latency=")) {
+                redisLatency = Duration.parse(arg.substring("redis.latency=".length()));
+            } else if (arg.startsWith("plan=")) {
+                plan = Path.of(arg.substring("plan=".length()));
+            } else {
+                springArgs.add(arg);
+            }
+        }
+
+        final InProcessRedisServer redis = RedisScriptStandIns.registerAll(InProcessRedisServer.builder()
+                .withPort(redisPort))
+                    .start();
+        if (!redisLatency.isZero()) {
+            redis.injectFaults(FaultInjection.latency(redisLatency));
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(redis::close, "redis-stand-in-shutdown"));
+
+        springArgs.addAll(0, List.of(
+                "--spring.data.redis.host=" + redis.host(),
+                "--spring.data.redis.port=" + redis.port(),
+                "--plan.file=" + plan.toAbsolutePath(),
+                "--plan.file.watcher.enabled=false"));
+        SpringApplication.run(AdSelectorApplication.class, springArgs.toArray(String[]::new));
+    }
+
+}
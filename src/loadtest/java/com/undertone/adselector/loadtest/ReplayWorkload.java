@@ -0,0 +1,85 @@
+package com.undertone.adselector.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+
+/**
+ * Replays captured requests, read lazily from an NDJSON capture file, one request per line:
+ * <pre>
+ * {"ts": 1697000000123, "path": "/api/v1/selectAd", "body": {"q": ["test0", "test1"]}}
+ * </pre>
+ * Requests keep their captured spacing compressed by replay.speed, i.e. speed 2 replays an hour long capture
+ * in 30 minutes. Lines lacking "ts" are spaced evenly at given rate, lines lacking "body" are taken as
+ * request bodies as is, and "path" defaults to the single selection endpoint.
+ */
+final class ReplayWorkload implements Workload {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final LoadOptions options;
+    private final BufferedReader reader;
+
+    private long firstTimestampMillis = -1L;
+    private long untimedCount;
+    private int lineNumber;
+
+    ReplayWorkload(LoadOptions options) {
+        this.options = options;
+        try {
+            this.reader = Files.newBufferedReader(options.replayFile());
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Failed opening capture: " + options.replayFile(), ioe);
+        }
+    }
+
+    @Override
+    public ScheduledRequest next() {
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+
+                final JsonNode captured = MAPPER.readTree(line);
+                final JsonNode body = captured.has("body") ? captured.get("body") : captured;
+                final String path = captured.path("path").asText(SELECT_AD_PATH);
+                final long offsetNanos = offsetNanos(captured);
+
+                return offsetNanos > options.duration().toNanos()
+                        ? null
+                            : new ScheduledRequest(offsetNanos, path, MAPPER.writeValueAsString(body));
+            }
+            return null;
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Failed reading capture line: " + lineNumber, ioe);
+        }
+    }
+
+    private long offsetNanos(JsonNode captured) {
+        if (!captured.has("ts")) {
+            return (long) (untimedCount++ * 1e9d / options.rate());
+        }
+        final long timestampMillis = captured.get("ts").asLong();
+        if (firstTimestampMillis < 0) {
+            firstTimestampMillis = timestampMillis;
+        }
+        return (long) (Math.max(0L, timestampMillis - firstTimestampMillis) * 1e6d / options.replaySpeed());
+    }
+
+    @Override
+    public void close() {
+        try {
+            reader.close();
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+}
@@ -0,0 +1,143 @@
+package com.undertone.adselector.loadtest;
+
+import com.undertone.adselector.loadtest.Workload.ScheduledRequest;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import reactor.core.Disposable;
+import reactor.core.publisher.Sinks;
+import reactor.netty.ByteBufFlux;
+import reactor.netty.http.client.HttpClient;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stream transport of the load generator, sending scheduled requests as lines of long-lived selection streams
+ * (one per connection) rather than as unary requests. Requests are spread over streams round robin, and are
+ * correlated with their response lines by id. Response lines are mapped to the statuses unary requests would get:
+ * 200 selected, 204 nothing selected, 400 rejected and 500 failed.
+ * <p>
+ * Requests are sent by the single scheduling thread of the generator, hence sends need no synchronization.
+ */
+final class SelectionStreams implements Closeable {
+
+    static final String SELECTION_STREAM_PATH = "/api/v1/stream/select";
+
+    private static final String NDJSON = "application/x-ndjson";
+
+    private final LoadReport report;
+    private final AtomicLong inFlight;
+    private final Sinks.Many<String>[] sinks;
+    private final Disposable[] streams;
+
+    /**
+     * Pending requests by id: intended send time, actual send time, and stream index
+     */
+    private final Map<Long, long[]> pending = new ConcurrentHashMap<>();
+
+    private long nextId;
+
+    @SuppressWarnings("unchecked")
+    SelectionStreams(HttpClient httpClient, int streamCount, LoadReport report, AtomicLong inFlight) {
+        this.report = report;
+        this.inFlight = inFlight;
+        this.sinks = new Sinks.Many[streamCount];
+        this.streams = new Disposable[streamCount];
+
+        final HttpClient streamClient = httpClient.headers(headers -> headers
+                .set(HttpHeaderNames.CONTENT_TYPE, NDJSON)
+                    .set(HttpHeaderNames.ACCEPT, NDJSON));
+        for (int i = 0; i < streamCount; i++) {
+            final int stream = i;
+            final StringBuilder partialLine = new StringBuilder();
+            sinks[i] = Sinks.many().unicast().onBackpressureBuffer();
+            streams[i] = streamClient.post()
+                    .uri(SELECTION_STREAM_PATH)
+                        .send(ByteBufFlux.fromString(sinks[i].asFlux()))
+                            .responseContent()
+                                .asString()
+                    .subscribe(chunk -> onChunk(partialLine, chunk),
+                            error -> failPending(stream),
+                                () -> failPending(stream));
+        }
+    }
+
+    void send(ScheduledRequest request, long intendedNanos) {
+        final long id = nextId++;
+        final int stream = (int) (id % sinks.length);
+        inFlight.incrementAndGet();
+        pending.put(id, new long[]{intendedNanos, System.nanoTime(), stream});
+
+        /**
+         *  Bodies are JSON objects, the id is prepended as their first field
+         */
+        final String body = request.body();
+        sinks[stream].tryEmitNext("{\"id\":\"" + id + "\"," + body.substring(body.indexOf('{') + 1) + "\n");
+    }
+
+    /**
+     * Response chunks are not aligned with lines, a partial line is kept until its remainder arrives
+     */
+    private void onChunk(StringBuilder partialLine, String chunk) {
+        partialLine.append(chunk);
+        int lineStart = 0;
+        int lineEnd;
+        while ((lineEnd = partialLine.indexOf("\n", lineStart)) >= 0) {
+            onLine(partialLine.substring(lineStart, lineEnd));
+            lineStart = lineEnd + 1;
+        }
+        partialLine.delete(0, lineStart);
+    }
+
+    private void onLine(String line) {
+        final int idStart = line.indexOf("\"id\":\"") + 6;
+        final int idEnd = line.indexOf('"', idStart);
+        if (idStart < 6 || idEnd < 0) {
+            return;
+        }
+
+        final long[] request = pending.remove(Long.parseLong(line.substring(idStart, idEnd)));
+        if (request != null) {
+            inFlight.decrementAndGet();
+            report.recordResponse(statusOf(line), request[0], request[1], System.nanoTime());
+        }
+    }
+
+    private static int statusOf(String line) {
+        if (line.contains("\"e\":\"rejected\"")) {
+            return 400;
+        }
+        if (line.contains("\"e\":")) {
+            return 500;
+        }
+        return line.contains("\"a\":[]") ? 204 : 200;
+    }
+
+    /**
+     * Requests pending on a stream which ended are never answered, and are charged as failures
+     */
+    private void failPending(int stream) {
+        final long now = System.nanoTime();
+        for (Iterator<long[]> requests = pending.values().iterator(); requests.hasNext(); ) {
+            final long[] request = requests.next();
+            if (request[2] == stream) {
+                requests.remove();
+                inFlight.decrementAndGet();
+                report.recordFailure(request[0], request[1], now);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        for (Sinks.Many<String> sink : sinks) {
+            sink.tryEmitComplete();
+        }
+        for (Disposable stream : streams) {
+            stream.dispose();
+        }
+    }
+
+}
@@ -0,0 +1,23 @@
+package com.undertone.adselector.loadtest;
+
+import java.io.Closeable;
+
+/**
+ * Source of requests, each one scheduled at a fixed offset from the start of the run regardless of
+ * how fast previous ones were answered (open loop).
+ */
+interface Workload extends Closeable {
+
+    String SELECT_AD_PATH = "/api/v1/selectAd";
+
+    record ScheduledRequest(long offsetNanos, String path, String body) {}
+
+    /**
+     * @return next request, null once workload is exhausted
+     */
+    ScheduledRequest next();
+
+    @Override
+    default void close() {}
+
+}
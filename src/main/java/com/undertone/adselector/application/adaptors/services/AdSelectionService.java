@@ -4,7 +4,13 @@ import com.undertone.adselector.application.ports.in.AdSelectionStrategy;
 import com.undertone.adselector.application.ports.in.SelectAdUseCase;
 import com.undertone.adselector.application.ports.out.AdBudgetPlanStore;
 import com.undertone.adselector.model.AdBudget;
+import com.undertone.adselector.model.AdBudgetPlan;
+import com.undertone.adselector.model.Population;
 import com.undertone.adselector.model.exceptions.ApplicationException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Flux;
@@ -17,16 +23,15 @@ import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
-import static java.time.Duration.of;
-import static java.time.temporal.ChronoUnit.MILLIS;
 import static java.util.Objects.requireNonNull;
 import static java.util.function.Predicate.not;
-import static reactor.util.retry.Retry.fixedDelay;
 
 @Component
 public class AdSelectionService implements SelectAdUseCase {
@@ -35,31 +40,117 @@ public class AdSelectionService implements SelectAdUseCase {
 
     private final AdBudgetPlanStore planStore;
 
-    @Autowired
+    private final ContentionAdaptiveRetry abortedSelectionRetry;
+
+    private final Timer planLookupTimer;
+    private final Timer selectionTimer;
+    private final DistributionSummary populationSummary;
+
     public AdSelectionService(AdSelectionStrategy selectionStrategy, AdBudgetPlanStore planStore) {
+        this(selectionStrategy, planStore, new SimpleMeterRegistry());
+    }
+
+    @Autowired
+    public AdSelectionService(AdSelectionStrategy selectionStrategy, AdBudgetPlanStore planStore,
+                              MeterRegistry meterRegistry) {
         this.selectionStrategy = requireNonNull(selectionStrategy, "Argument selectionStrategy must not be null");
         this.planStore = requireNonNull(planStore, "Argument planStore must not be null");
+        this.abortedSelectionRetry = new ContentionAdaptiveRetry(meterRegistry);
+
+        this.planLookupTimer = Timer.builder("adselector.selection.stage")
+                .description("Latency of selection pipeline stages")
+                    .tag("stage", "plan.lookup")
+                        .register(meterRegistry);
+        this.selectionTimer = Timer.builder("adselector.selection.stage")
+                .description("Latency of selection pipeline stages")
+                    .tag("stage", "selection")
+                        .register(meterRegistry);
+        this.populationSummary = DistributionSummary.builder("adselector.selection.population")
+                .description("Ads of target population, once segments were expanded and unknown aids dropped")
+                    .register(meterRegistry);
     }
 
     @Override
     public Mono<Optional<String>> selectAd(Set<String> population) throws ApplicationException {
-        return planStore.fetchPlan()
+        return selectAd(Population.of(population));
+    }
+
+    @Override
+    public Mono<Optional<String>> selectAd(Population population) throws ApplicationException {
+        return observed(1, event -> planStore.fetchPlan()
                 .flatMap(plan ->
-                        Flux.fromIterable(population)
+                        collectTargetPopulation(plan, population, event)
                             /**
-                             * Collect target population
-                             */
-                            .map(aid -> plan.fetch(aid).stream())
-                                .reduce(Stream::concat)
-                                    .map(Stream::toList)
-                                        .filter(not(List::isEmpty))
-                            /**
-                             *  Select using selection strategy
+                             *  Select using selection strategy, conflicts are handled by the strategy itself,
+                             *  retrying only if every candidate conflicted
                              */
                             .flatMap(selectionStrategy::select)
-                                .retryWhen(fixedDelay(2, of(10, MILLIS)))
+                                .retryWhen(abortedSelectionRetry.asRetry())
                                     .map(selected -> selected.map(AdBudget::aid))
                 )
-                .switchIfEmpty(Mono.just(Optional.empty()));
+                .switchIfEmpty(Mono.just(Optional.empty()))
+                    .doOnNext(selected -> {
+                        event.selected = selected.isPresent() ? 1 : 0;
+                        event.selectedAid = selected.orElse(null);
+                    }));
+    }
+
+    @Override
+    public Mono<List<String>> selectAds(Population population, int count) throws ApplicationException {
+        return observed(count, event -> planStore.fetchPlan()
+                .flatMap(plan ->
+                        collectTargetPopulation(plan, population, event)
+                            /**
+                             *  Select distinct ads using selection strategy, all spent within a single store operation
+                             */
+                            .flatMap(targetPopulation -> selectionStrategy.select(targetPopulation, count))
+                                .retryWhen(abortedSelectionRetry.asRetry())
+                                    .map(selected -> selected.stream().map(AdBudget::aid).toList())
+                )
+                .switchIfEmpty(Mono.just(List.of()))
+                    .doOnNext(selected -> {
+                        event.selected = selected.size();
+                        event.selectedAid = selected.isEmpty() ? null : selected.get(0);
+                    }));
+    }
+
+    /**
+     * Collect target population, either listed explicitly or by referencing precompiled plan segments
+     */
+    private Mono<List<AdBudget>> collectTargetPopulation(AdBudgetPlan plan, Population population, SelectionEvent event) {
+        return Mono.fromSupplier(() -> {
+                    final long start = System.nanoTime();
+                    final List<AdBudget> targetPopulation = population.resolve(plan);
+
+                    planLookupTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    populationSummary.record(targetPopulation.size());
+                    event.planGeneration = plan.generation();
+                    event.populationSize = targetPopulation.size();
+                    return targetPopulation;
+                })
+                .filter(not(List::isEmpty));
+    }
+
+    /**
+     * Times selection from subscription until it completed, errored or got cancelled,
+     * committing a flight recorder event if it took longer than its configured threshold
+     */
+    private <T> Mono<T> observed(int requested, Function<SelectionEvent, Mono<T>> selection) {
+        return Mono.defer(() -> {
+            final long start = System.nanoTime();
+            final SelectionEvent event = new SelectionEvent();
+            event.requested = requested;
+            event.begin();
+
+            return selection.apply(event)
+                    .doFinally(signal -> {
+                        selectionTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        event.end();
+                        if (event.shouldCommit()) {
+                            event.outcome = signal.toString();
+                            event.commit();
+                        }
+                    });
+        });
     }
 }
@@ -0,0 +1,219 @@
+package com.undertone.adselector.application.adaptors.services;
+
+import com.undertone.adselector.application.ports.in.AdSelectionStrategy;
+import com.undertone.adselector.application.ports.in.BatchSelectAdUseCase;
+import com.undertone.adselector.application.ports.in.UseCaseException.AbortedException;
+import com.undertone.adselector.application.ports.in.UseCaseException.RejectionException;
+import com.undertone.adselector.application.ports.out.AdBudgetPlanStore;
+import com.undertone.adselector.application.ports.out.AdDistributionStore;
+import com.undertone.adselector.model.AdBudget;
+import com.undertone.adselector.model.AdBudgetPlan;
+import com.undertone.adselector.model.AdDistribution;
+import com.undertone.adselector.model.Status;
+import com.undertone.adselector.model.exceptions.ApplicationException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Selects for a batch of requests using a single distributions fetch (MGET of the union of their populations)
+ * and a single increment (increment script) for all ads drawn, instead of two store round trips per request.
+ * <p>
+ * Requests of a batch draw independently from the same fetched distributions, hence several of them may draw
+ * an ad having little remaining quota, all but the ones fitting its quota conflict. Requests left short by conflicts
+ * are redrawn using {@link AdSelectionStrategy}, refetching their own population, as unary selections would.
+ */
+@Component
+public class BatchedAdSelectionService implements BatchSelectAdUseCase {
+
+    private final AdDistributionStore distributionStore;
+
+    private final AdSelectionStrategy selectionStrategy;
+
+    private final AdBudgetPlanStore planStore;
+
+    private final WeightedDraws draws;
+
+    private final Timer batchTimer;
+    private final DistributionSummary batchSummary;
+    private final Counter redrawCounter;
+
+    public BatchedAdSelectionService(AdDistributionStore distributionStore, AdSelectionStrategy selectionStrategy,
+                                     AdBudgetPlanStore planStore) {
+        this(distributionStore, selectionStrategy, planStore, new SimpleMeterRegistry());
+    }
+
+    public BatchedAdSelectionService(AdDistributionStore distributionStore, AdSelectionStrategy selectionStrategy,
+                                     AdBudgetPlanStore planStore, MeterRegistry meterRegistry) {
+        this(distributionStore, selectionStrategy, planStore, meterRegistry, new HeavyHitterTracker());
+    }
+
+    @Autowired
+    public BatchedAdSelectionService(AdDistributionStore distributionStore, AdSelectionStrategy selectionStrategy,
+                                     AdBudgetPlanStore planStore, MeterRegistry meterRegistry,
+                                     HeavyHitterTracker heavyHitters) {
+        this.distributionStore = requireNonNull(distributionStore, "Argument distributionStore must not be null");
+        this.selectionStrategy = requireNonNull(selectionStrategy, "Argument selectionStrategy must not be null");
+        this.planStore = requireNonNull(planStore, "Argument planStore must not be null");
+        this.draws = new WeightedDraws(meterRegistry, heavyHitters);
+
+        this.batchTimer = Timer.builder("adselector.selection.stage")
+                .description("Latency of selection pipeline stages")
+                    .tag("stage", "batch")
+                        .register(meterRegistry);
+        this.batchSummary = DistributionSummary.builder("adselector.selection.batch.size")
+                .description("Requests selected for at once, sharing store operations")
+                    .register(meterRegistry);
+        this.redrawCounter = Counter.builder("adselector.selection.batch.redraws")
+                .description("Batched requests left short by conflicts, redrawn on their own")
+                    .register(meterRegistry);
+    }
+
+    @Override
+    public Mono<List<List<String>>> selectBatch(List<Selection> selections) throws ApplicationException {
+        requireNonNull(selections, "Argument selections must not be null");
+
+        for (Selection selection : selections) {
+            if (selection.count() < 1) {
+                return Mono.error(new RejectionException(
+                        format("Selection count must be positive, but it was: %d", selection.count())));
+            }
+        }
+        if (selections.isEmpty()) {
+            return Mono.just(List.of());
+        }
+
+        return Mono.defer(() -> {
+            final long start = System.nanoTime();
+            batchSummary.record(selections.size());
+
+            return planStore.fetchPlan()
+                    .defaultIfEmpty(AdBudgetPlan.EMPTY)
+                        .flatMap(plan -> selectBatch(plan, selections))
+                            .doFinally(signal -> batchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+        });
+    }
+
+    private Mono<List<List<String>>> selectBatch(AdBudgetPlan plan, List<Selection> selections) {
+        /**
+         * Resolve every population, fetching distributions of their union once
+         */
+        final List<List<AdBudget>> populations = new ArrayList<>(selections.size());
+        final Map<String, AdBudget> union = new LinkedHashMap<>();
+        for (Selection selection : selections) {
+            final List<AdBudget> population = draws.processable(selection.population().resolve(plan));
+            populations.add(population);
+            for (AdBudget adBudget : population) {
+                union.putIfAbsent(adBudget.aid(), adBudget);
+            }
+        }
+
+        if (union.isEmpty()) {
+            return Mono.just(Collections.nCopies(selections.size(), List.of()));
+        }
+
+        return distributionStore.fetchDistributions(new ArrayList<>(union.values()))
+                .flatMap(distributions -> {
+                    final Map<String, AdDistribution> available = new HashMap<>(distributions.size() * 2);
+                    for (AdDistribution distribution : draws.available(distributions)) {
+                        available.put(distribution.aid(), distribution);
+                    }
+
+                    /**
+                     * Draw for every request from its own available candidates, incrementing all drawn at once
+                     */
+                    final List<List<AdDistribution>> drawn = new ArrayList<>(selections.size());
+                    final List<AdDistribution> allDrawn = new ArrayList<>();
+                    for (int i = 0; i < selections.size(); i++) {
+                        final List<AdDistribution> candidates = new ArrayList<>(populations.get(i).size());
+                        for (AdBudget adBudget : populations.get(i)) {
+                            final AdDistribution distribution = available.get(adBudget.aid());
+                            if (distribution != null) {
+                                candidates.add(distribution);
+                            }
+                        }
+                        final List<AdDistribution> requestDrawn = draws.sample(candidates, selections.get(i).count());
+                        drawn.add(requestDrawn);
+                        allDrawn.addAll(requestDrawn);
+                    }
+
+                    if (allDrawn.isEmpty()) {
+                        return Mono.just(Collections.nCopies(selections.size(), List.<String>of()));
+                    }
+
+                    return distributionStore.incrementDistributions(allDrawn)
+                            .flatMap(statuses -> collectSelected(selections, populations, drawn, statuses));
+                });
+    }
+
+    /**
+     * Splits statuses of the single increment back into requests, redrawing requests left short by conflicts
+     */
+    private Mono<List<List<String>>> collectSelected(List<Selection> selections, List<List<AdBudget>> populations,
+                                                     List<List<AdDistribution>> drawn, List<Status> statuses) {
+        final List<List<String>> selected = new ArrayList<>(selections.size());
+        final BitSet shortByConflict = new BitSet(selections.size());
+
+        int statusIndex = 0;
+        for (int i = 0; i < selections.size(); i++) {
+            final List<String> requestSelected = new ArrayList<>(drawn.get(i).size());
+            int conflicts = 0;
+            for (AdDistribution distribution : drawn.get(i)) {
+                final Status status = statusIndex < statuses.size() ? statuses.get(statusIndex) : Status.FAILURE;
+                statusIndex++;
+                draws.recordStatus(distribution, status);
+                switch (status) {
+                    case SUCCESS -> requestSelected.add(distribution.aid());
+                    case CONFLICT -> conflicts++;
+                    case FAILURE -> { }
+                }
+            }
+
+            if (conflicts > 0) {
+                draws.recordConflicts(conflicts);
+                if (requestSelected.size() < selections.get(i).count()) {
+                    shortByConflict.set(i);
+                }
+            }
+            selected.add(requestSelected);
+        }
+
+        if (shortByConflict.isEmpty()) {
+            return Mono.just(selected);
+        }
+
+        return Flux.fromStream(shortByConflict.stream().boxed())
+                .flatMap(i -> redraw(populations.get(i), selected.get(i), selections.get(i).count())
+                        .doOnNext(redrawn -> selected.get(i).addAll(redrawn)))
+                    .then(Mono.fromSupplier(() -> selected));
+    }
+
+    /**
+     * Redraws the missing selections of a single request from its population, excluding already selected ads.
+     * Redraws aborted by conflicts again leave the request with what it already got.
+     */
+    private Mono<List<String>> redraw(List<AdBudget> population, List<String> selected, int count) {
+        redrawCounter.increment();
+        final Set<String> excluded = new HashSet<>(selected);
+        final List<AdBudget> remaining = population.stream()
+                .filter(adBudget -> !excluded.contains(adBudget.aid()))
+                    .toList();
+
+        return selectionStrategy.select(remaining, count - selected.size())
+                .map(redrawn -> redrawn.stream().map(AdBudget::aid).toList())
+                    .onErrorResume(AbortedException.class, ignored -> Mono.just(List.of()));
+    }
+
+}
@@ -0,0 +1,137 @@
+package com.undertone.adselector.application.adaptors.services;
+
+import com.undertone.adselector.application.ports.in.BlockingAdSelectionStrategy;
+import com.undertone.adselector.application.ports.in.BlockingSelectAdUseCase;
+import com.undertone.adselector.application.ports.out.AdBudgetPlanStore;
+import com.undertone.adselector.model.AdBudget;
+import com.undertone.adselector.model.AdBudgetPlan;
+import com.undertone.adselector.model.Population;
+import com.undertone.adselector.model.exceptions.ApplicationException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Synchronous variant of {@link AdSelectionService}, reporting into the same meters and flight recorder events
+ */
+@Component
+public class BlockingAdSelectionService implements BlockingSelectAdUseCase {
+
+    private final BlockingAdSelectionStrategy selectionStrategy;
+
+    private final AdBudgetPlanStore planStore;
+
+    private final ContentionAdaptiveRetry abortedSelectionRetry;
+
+    private final Timer planLookupTimer;
+    private final Timer selectionTimer;
+    private final DistributionSummary populationSummary;
+
+    public BlockingAdSelectionService(BlockingAdSelectionStrategy selectionStrategy, AdBudgetPlanStore planStore) {
+        this(selectionStrategy, planStore, new SimpleMeterRegistry());
+    }
+
+    @Autowired
+    public BlockingAdSelectionService(BlockingAdSelectionStrategy selectionStrategy, AdBudgetPlanStore planStore,
+                                      MeterRegistry meterRegistry) {
+        this.selectionStrategy = requireNonNull(selectionStrategy, "Argument selectionStrategy must not be null");
+        this.planStore = requireNonNull(planStore, "Argument planStore must not be null");
+        this.abortedSelectionRetry = new ContentionAdaptiveRetry(meterRegistry);
+
+        this.planLookupTimer = Timer.builder("adselector.selection.stage")
+                .description("Latency of selection pipeline stages")
+                    .tag("stage", "plan.lookup")
+                        .register(meterRegistry);
+        this.selectionTimer = Timer.builder("adselector.selection.stage")
+                .description("Latency of selection pipeline stages")
+                    .tag("stage", "selection")
+                        .register(meterRegistry);
+        this.populationSummary = DistributionSummary.builder("adselector.selection.population")
+                .description("Ads of target population, once segments were expanded and unknown aids dropped")
+                    .register(meterRegistry);
+    }
+
+    @Override
+    public Optional<String> selectAd(Population population) throws ApplicationException {
+        return observed(1, event -> {
+            final List<AdBudget> targetPopulation = collectTargetPopulation(planStore.currentPlan(), population, event);
+            final Optional<String> selected = targetPopulation.isEmpty() ? Optional.empty() :
+                    /**
+                     *  Conflicts are handled by the strategy itself, retrying only if every candidate conflicted
+                     */
+                    abortedSelectionRetry.retrying(() -> selectionStrategy.select(targetPopulation),
+                            Optional.<AdBudget>empty())
+                                .map(AdBudget::aid);
+
+            event.selected = selected.isPresent() ? 1 : 0;
+            event.selectedAid = selected.orElse(null);
+            return selected;
+        });
+    }
+
+    @Override
+    public List<String> selectAds(Population population, int count) throws ApplicationException {
+        return observed(count, event -> {
+            final List<AdBudget> targetPopulation = collectTargetPopulation(planStore.currentPlan(), population, event);
+            final List<String> selected = targetPopulation.isEmpty() ? List.of() :
+                    abortedSelectionRetry.retrying(() -> selectionStrategy.select(targetPopulation, count),
+                            List.<AdBudget>of())
+                                .stream()
+                                    .map(AdBudget::aid)
+                                        .toList();
+
+            event.selected = selected.size();
+            event.selectedAid = selected.isEmpty() ? null : selected.get(0);
+            return selected;
+        });
+    }
+
+    /**
+     * Collect target population, either listed explicitly or by referencing precompiled plan segments
+     */
+    private List<AdBudget> collectTargetPopulation(AdBudgetPlan plan, Population population, SelectionEvent event) {
+        final long start = System.nanoTime();
+        final List<AdBudget> targetPopulation = population.resolve(plan);
+
+        planLookupTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        populationSummary.record(targetPopulation.size());
+        event.planGeneration = plan.generation();
+        event.populationSize = targetPopulation.size();
+        return targetPopulation;
+    }
+
+    /**
+     * Times selection until it returned or failed,
+     * committing a flight recorder event if it took longer than its configured threshold
+     */
+    private <T> T observed(int requested, Function<SelectionEvent, T> selection) {
+        final long start = System.nanoTime();
+        final SelectionEvent event = new SelectionEvent();
+        event.requested = requested;
+        event.begin();
+
+        String outcome = "onError";
+        try {
+            final T selected = selection.apply(event);
+            outcome = "onComplete";
+            return selected;
+        } finally {
+            selectionTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            event.end();
+            if (event.shouldCommit()) {
+                event.outcome = outcome;
+                event.commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.undertone.adselector.application.adaptors.services;
+
+import com.undertone.adselector.application.ports.in.BlockingAdSelectionStrategy;
+import com.undertone.adselector.application.ports.in.UseCaseException.AbortedException;
+import com.undertone.adselector.application.ports.in.UseCaseException.RejectionException;
+import com.undertone.adselector.application.ports.out.BlockingAdDistributionStore;
+import com.undertone.adselector.model.AdBudget;
+import com.undertone.adselector.model.AdDistribution;
+import com.undertone.adselector.model.Status;
+import com.undertone.adselector.model.exceptions.ApplicationException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Synchronous variant of {@link WeightedRandomSelection}, having the same draws, conflict handling and meters
+ */
+@Component
+public class BlockingWeightedRandomSelection implements BlockingAdSelectionStrategy {
+
+    private final BlockingAdDistributionStore distributionStore;
+    private final WeightedDraws draws;
+
+    public BlockingWeightedRandomSelection(BlockingAdDistributionStore distributionStore) {
+        this(distributionStore, new SimpleMeterRegistry());
+    }
+
+    public BlockingWeightedRandomSelection(BlockingAdDistributionStore distributionStore, MeterRegistry meterRegistry) {
+        this(distributionStore, meterRegistry, new HeavyHitterTracker());
+    }
+
+    public BlockingWeightedRandomSelection(BlockingAdDistributionStore distributionStore, MeterRegistry meterRegistry,
+                                           HeavyHitterTracker heavyHitters) {
+        this(distributionStore, meterRegistry, heavyHitters, WeightedDraws.DEFAULT_MAX_REDRAWS);
+    }
+
+    @Autowired
+    public BlockingWeightedRandomSelection(BlockingAdDistributionStore distributionStore, MeterRegistry meterRegistry,
+                                           HeavyHitterTracker heavyHitters,
+                                           @Value("${selection.redraw.max:" + WeightedDraws.DEFAULT_MAX_REDRAWS + "}") int maxRedraws) {
+        this.distributionStore = requireNonNull(distributionStore, "Argument distributionStore must not be null");
+        this.draws = new WeightedDraws(meterRegistry, heavyHitters, maxRedraws);
+    }
+
+    @Override
+    public Optional<AdBudget> select(List<AdBudget> population) throws ApplicationException {
+        final List<AdDistribution> candidates = fetchCandidates(population);
+        int redraws = 0;
+
+        /**
+         * Conflicted candidate has just been exhausted by a concurrent selection,
+         * hence it is removed and selection is redrawn from the remaining, already fetched, candidates.
+         */
+        while (!candidates.isEmpty()) {
+            final AdDistribution theOne = draws.draw(candidates);
+            final Status status = distributionStore.incrementDistribution(theOne);
+            draws.recordStatus(theOne, status);
+
+            switch (status) {
+                case SUCCESS: return Optional.of(theOne);
+                case FAILURE: return Optional.empty();
+                case CONFLICT:
+                    draws.recordConflicts(1);
+                    candidates.remove(theOne);
+                    if (candidates.isEmpty()) {
+                        throw new AbortedException(format("Unable to increment for: %s", theOne.aid()));
+                    }
+                    if (!draws.mayRedraw(redraws)) {
+                        throw new AbortedException(format("Unable to increment for: %s, after %d redraws",
+                                theOne.aid(), redraws));
+                    }
+                    draws.recordRedraw();
+                    redraws++;
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public List<AdBudget> select(List<AdBudget> population, int count) throws ApplicationException {
+        if (count < 1) {
+            throw new RejectionException(format("Selection count must be positive, but it was: %d", count));
+        }
+
+        final List<AdDistribution> candidates = fetchCandidates(population);
+        final List<AdBudget> selected = new ArrayList<>(Math.min(count, candidates.size()));
+        boolean conflicted = false;
+        int redraws = 0;
+
+        /**
+         * Conflicted selections are replaced by redrawing from candidates which were not drawn yet, up to
+         * selection.redraw.max times, selection is aborted only if nothing could be selected due to conflicts
+         */
+        while (!candidates.isEmpty() && selected.size() < count) {
+            final List<AdDistribution> drawn = draws.sample(candidates, count - selected.size());
+            final List<Status> statuses = distributionStore.incrementDistributions(drawn);
+
+            int conflicts = 0;
+            for (int i = 0; i < drawn.size() && i < statuses.size(); i++) {
+                draws.recordStatus(drawn.get(i), statuses.get(i));
+                switch (statuses.get(i)) {
+                    case SUCCESS -> selected.add(drawn.get(i));
+                    case CONFLICT -> conflicts++;
+                    case FAILURE -> { }
+                }
+            }
+
+            if (conflicts == 0) {
+                break;
+            }
+            draws.recordConflicts(conflicts);
+            conflicted = true;
+            if (selected.size() < count && !candidates.isEmpty()) {
+                if (!draws.mayRedraw(redraws)) {
+                    break;
+                }
+                draws.recordRedraw();
+                redraws++;
+            }
+        }
+
+        if (selected.isEmpty() && conflicted) {
+            throw new AbortedException(format("Unable to increment any of %d candidates", count));
+        }
+        return selected;
+    }
+
+    private List<AdDistribution> fetchCandidates(List<AdBudget> population) {
+        final List<AdBudget> processable = draws.processable(population);
+        if (processable.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return draws.available(distributionStore.fetchDistributions(processable));
+    }
+
+}
@@ -0,0 +1,185 @@
+package com.undertone.adselector.application.adaptors.services;
+
+import com.undertone.adselector.application.ports.in.UseCaseException.AbortedException;
+import com.undertone.adselector.model.Deadline;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Retry policy for selections aborted after every candidate conflicted.
+ * Backoff grows exponentially with attempt number, and is further scaled by recently observed contention,
+ * i.e. number of aborted selections within the last few decay intervals. Delays are jittered to avoid
+ * conflicting requests from retrying in lock step. Any failure other than {@link AbortedException} is not retried.
+ * Selections whose request {@link Deadline} would pass while backing off are given up, answering no fill.
+ */
+final class ContentionAdaptiveRetry {
+
+    static final int DEFAULT_MAX_RETRIES = 2;
+    static final Duration DEFAULT_MIN_BACKOFF = Duration.ofMillis(1);
+    static final Duration DEFAULT_MAX_BACKOFF = Duration.ofMillis(20);
+    static final Duration DEFAULT_DECAY_INTERVAL = Duration.ofSeconds(1);
+
+    /**
+     * Number of recent aborts which doubles the backoff
+     */
+    private static final long CONTENTION_SCALE = 8;
+
+    private static final double JITTER_FACTOR = 0.5d;
+
+    /**
+     * Emitted by retry companion instead of backing off, completing it so retried selection completes empty
+     */
+    private static final long GIVE_UP = -1L;
+
+    private final int maxRetries;
+    private final long minBackoffNanos;
+    private final long maxBackoffNanos;
+    private final long decayIntervalNanos;
+
+    private final AtomicLong recentAborts = new AtomicLong();
+    private volatile long lastDecayNanos = System.nanoTime();
+
+    private final Counter retryCounter;
+    private final Timer retryLatencyTimer;
+
+    ContentionAdaptiveRetry(MeterRegistry meterRegistry) {
+        this(meterRegistry, DEFAULT_MAX_RETRIES, DEFAULT_MIN_BACKOFF, DEFAULT_MAX_BACKOFF, DEFAULT_DECAY_INTERVAL);
+    }
+
+    ContentionAdaptiveRetry(MeterRegistry meterRegistry, int maxRetries,
+                            Duration minBackoff, Duration maxBackoff, Duration decayInterval) {
+        requireNonNull(meterRegistry, "Argument meterRegistry must not be null");
+        this.maxRetries = maxRetries;
+        this.minBackoffNanos = requireNonNull(minBackoff, "Argument minBackoff must not be null").toNanos();
+        this.maxBackoffNanos = requireNonNull(maxBackoff, "Argument maxBackoff must not be null").toNanos();
+        this.decayIntervalNanos = requireNonNull(decayInterval, "Argument decayInterval must not be null").toNanos();
+
+        this.retryCounter = Counter.builder("adselector.selection.retries")
+                .description("Selections retried after all candidates conflicted")
+                    .register(meterRegistry);
+        this.retryLatencyTimer = Timer.builder("adselector.selection.retry.latency")
+                .description("Time from first aborted attempt until retried selection completed")
+                    .register(meterRegistry);
+    }
+
+    /**
+     * Retried selections completing empty once given up, callers answer those by no fill
+     */
+    Retry asRetry() {
+        return Retry.from(signals -> Flux.deferContextual(context -> {
+            final long[] firstAbortNanos = {0L};
+            final Optional<Deadline> deadline = context.getOrEmpty(Deadline.class);
+
+            return signals.concatMap(signal -> {
+                        final Throwable failure = signal.failure();
+                        final long attempt = signal.totalRetries();
+
+                        if (!(failure instanceof AbortedException) || attempt >= maxRetries) {
+                            return Mono.error(failure);
+                        }
+
+                        if (firstAbortNanos[0] == 0L) {
+                            firstAbortNanos[0] = System.nanoTime();
+                        }
+                        final long backoffNanos = nextBackoffNanos(attempt);
+                        if (exceedsDeadline(deadline, backoffNanos)) {
+                            return Mono.just(GIVE_UP);
+                        }
+                        retryCounter.increment();
+                        return Mono.delay(Duration.ofNanos(backoffNanos));
+                    })
+                    .takeWhile(tick -> tick != GIVE_UP)
+                    .doFinally(ignored -> {
+                        if (firstAbortNanos[0] != 0L) {
+                            retryLatencyTimer.record(System.nanoTime() - firstAbortNanos[0], TimeUnit.NANOSECONDS);
+                        }
+                    });
+        }));
+    }
+
+    /**
+     * Blocking variant of {@link #asRetry()}, sleeping the calling (virtual) thread while backing off
+     * @param noFill answered once given up, as deadline of calling thread would pass while backing off
+     */
+    <T> T retrying(Supplier<T> attempt, T noFill) {
+        final Optional<Deadline> deadline = Deadline.current();
+        long firstAbortNanos = 0L;
+        try {
+            for (long retries = 0; ; retries++) {
+                try {
+                    return attempt.get();
+                } catch (AbortedException e) {
+                    if (retries >= maxRetries) {
+                        throw e;
+                    }
+                    if (firstAbortNanos == 0L) {
+                        firstAbortNanos = System.nanoTime();
+                    }
+                    final long backoffNanos = nextBackoffNanos(retries);
+                    if (exceedsDeadline(deadline, backoffNanos)) {
+                        return noFill;
+                    }
+                    retryCounter.increment();
+                    sleep(backoffNanos, e);
+                }
+            }
+        } finally {
+            if (firstAbortNanos != 0L) {
+                retryLatencyTimer.record(System.nanoTime() - firstAbortNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    /**
+     * Retried attempt still needs a store round trip, hence backoff taking up all remaining time is given up as well
+     */
+    private static boolean exceedsDeadline(Optional<Deadline> deadline, long backoffNanos) {
+        return deadline.isPresent() && backoffNanos >= deadline.get().remaining().toNanos();
+    }
+
+    private static void sleep(long nanos, AbortedException aborted) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw aborted;
+        }
+    }
+
+    long nextBackoffNanos(long attempt) {
+        final long contention = recordAbort();
+
+        long backoff = minBackoffNanos << Math.min(attempt, 16);
+        backoff += (backoff * contention) / CONTENTION_SCALE;
+        backoff = Math.min(Math.max(backoff, 0L), maxBackoffNanos);
+
+        final long jitter = (long) (backoff * JITTER_FACTOR * ThreadLocalRandom.current().nextDouble());
+        return backoff - jitter;
+    }
+
+    /**
+     * Racy halving of recent aborts is tolerated, contention level serves as a rough estimate only.
+     */
+    private long recordAbort() {
+        final long now = System.nanoTime();
+        if (now - lastDecayNanos > decayIntervalNanos) {
+            lastDecayNanos = now;
+            recentAborts.updateAndGet(aborts -> aborts >> 1);
+        }
+        return recentAborts.incrementAndGet();
+    }
+
+}
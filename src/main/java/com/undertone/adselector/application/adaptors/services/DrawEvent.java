@@ -0,0 +1,29 @@
+package com.undertone.adselector.application.adaptors.services;
+
+import jdk.jfr.*;
+
+/**
+ * Flight recorder event of a single weighted random draw, disabled unless draws exceed their threshold.
+ */
+@Name("com.undertone.adselector.Draw")
+@Label("Weighted Random Draw")
+@Category({"Ad Selector", "Selection"})
+@Description("Weighted random draw over already fetched candidates")
+@StackTrace(false)
+final class DrawEvent extends Event {
+
+    @Label("Candidates")
+    int candidates;
+
+    @Label("Requested")
+    @Description("Number of distinct candidates requested to be drawn")
+    int requested;
+
+    @Label("Drawn")
+    int drawn;
+
+    @Label("Drawn Aid")
+    @Description("First drawn aid, if any")
+    String drawnAid;
+
+}
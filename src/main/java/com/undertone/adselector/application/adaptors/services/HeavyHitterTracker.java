@@ -0,0 +1,88 @@
+package com.undertone.adselector.application.adaptors.services;
+
+import com.undertone.adselector.application.ports.in.ReportHeavyHittersUseCase;
+import com.undertone.adselector.model.AdBudget;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Tracks aids dominating requested populations and selections, fed by selection strategies through
+ * {@link WeightedDraws}. Both are tracked by {@link HeavyHitters} of their own, sized by {@code heavyhitters.sketch.*},
+ * and halved every {@code heavyhitters.half.life} by whichever request finds decay due.
+ */
+@Component
+public class HeavyHitterTracker implements ReportHeavyHittersUseCase {
+
+    private final boolean enabled;
+    private final long halfLifeNanos;
+
+    private final HeavyHitters requested;
+    private final HeavyHitters selected;
+
+    private final AtomicLong nextDecay;
+
+    public HeavyHitterTracker() {
+        this(true, 8192, 4, 100, Duration.ofMinutes(5));
+    }
+
+    @Autowired
+    public HeavyHitterTracker(@Value("${heavyhitters.enabled:true}") boolean enabled,
+                              @Value("${heavyhitters.sketch.width:8192}") int width,
+                              @Value("${heavyhitters.sketch.depth:4}") int depth,
+                              @Value("${heavyhitters.top:100}") int top,
+                              @Value("${heavyhitters.half.life:PT5M}") Duration halfLife) {
+        this.enabled = enabled;
+        this.halfLifeNanos = requireNonNull(halfLife, "Argument halfLife must not be null").toNanos();
+        this.requested = new HeavyHitters(width, depth, top);
+        this.selected = new HeavyHitters(width, depth, top);
+        this.nextDecay = new AtomicLong(System.nanoTime() + halfLifeNanos);
+    }
+
+    void recordRequested(List<AdBudget> population) {
+        if (enabled) {
+            decayIfDue();
+            for (int i = 0; i < population.size(); i++) {
+                final AdBudget adBudget = population.get(i);
+                if (!adBudget.isEmpty()) {
+                    requested.record(adBudget.aid());
+                }
+            }
+        }
+    }
+
+    void recordSelected(AdBudget adBudget) {
+        if (enabled) {
+            selected.record(adBudget.aid());
+        }
+    }
+
+    @Override
+    public List<HeavyHitter> topRequested(int limit) {
+        return requested.top(limit);
+    }
+
+    @Override
+    public List<HeavyHitter> topSelected(int limit) {
+        return selected.top(limit);
+    }
+
+    /**
+     * Halves both trackers once per half-life, missed half-lives (e.g. while idle) are not caught up with
+     */
+    private void decayIfDue() {
+        final long now = System.nanoTime();
+        final long due = nextDecay.get();
+        if (now - due >= 0 && nextDecay.compareAndSet(due, now + halfLifeNanos)) {
+            requested.decay();
+            selected.decay();
+        }
+    }
+
+}
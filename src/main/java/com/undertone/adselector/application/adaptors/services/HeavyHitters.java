@@ -0,0 +1,153 @@
+package com.undertone.adselector.application.adaptors.services;
+
+import com.undertone.adselector.application.ports.in.ReportHeavyHittersUseCase.HeavyHitter;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Streaming heavy hitters of a single kind of occurrence, using bounded memory regardless of the number of aids:
+ * <ul>
+ *     <li>A count-min sketch of depth rows by width counters estimates occurrences of every aid, by the minimum of
+ *     the counters it hashes into. Estimates never fall below actual counts, and exceed them by at most
+ *     e/width of all occurrences with probability 1 - e^-depth (but see below)</li>
+ *     <li>Aids whose estimate exceeds the admission threshold join the candidates. Once candidates double the
+ *     number of top aids tracked, they are re-estimated and pruned down to the top ones using a min-heap,
+ *     the smallest kept estimate becoming the admission threshold</li>
+ *     <li>Decay halves every counter and the threshold, hence recent occurrences dominate</li>
+ * </ul>
+ * Recording is lock-free: counters are incremented without atomic read-modify-write, candidates already admitted
+ * are only looked up, and pruning is skipped by whoever finds it already in progress. Racing increments of the same
+ * counter may lose some of them (as do frequency sketches of Caffeine), slightly underestimating the hottest aids,
+ * in exchange for more than halving recording cost. Decay racing recording may not halve some of the counters.
+ */
+final class HeavyHitters {
+
+    private final int width;
+    private final int depth;
+    private final int mask;
+    private final int top;
+
+    private final AtomicLongArray counters;
+
+    private final Set<String> candidates;
+    private final AtomicBoolean pruning = new AtomicBoolean();
+    private volatile long admission;
+
+    /**
+     * @param width counters per row, rounded up to a power of two
+     * @param depth number of rows, each hashing aids independently
+     * @param top number of heavy hitters tracked
+     */
+    HeavyHitters(int width, int depth, int top) {
+        if (width < 1 || depth < 1 || top < 1) {
+            throw new IllegalArgumentException(
+                    format("Width, depth and top must be positive, but they were: %d, %d, %d", width, depth, top));
+        }
+        this.width = width == 1 ? 1 : Integer.highestOneBit(width - 1) << 1;
+        this.depth = depth;
+        this.mask = this.width - 1;
+        this.top = top;
+        this.counters = new AtomicLongArray(this.width * depth);
+        this.candidates = ConcurrentHashMap.newKeySet(top * 4);
+    }
+
+    void record(String aid) {
+        final long estimate = increment(aid.hashCode());
+        if (estimate > admission && !candidates.contains(aid) && candidates.add(aid) && candidates.size() > top * 2) {
+            prune();
+        }
+    }
+
+    /**
+     * @return estimated count of given aid, 0 if it was never recorded since decayed away
+     */
+    long estimate(String aid) {
+        final int h1 = spread(aid.hashCode());
+        final int h2 = spread(h1) | 1;
+
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0, offset = 0; row < depth; row++, offset += width) {
+            estimate = Math.min(estimate, counters.getOpaque(offset + ((h1 + row * h2) & mask)));
+        }
+        return estimate;
+    }
+
+    /**
+     * @return up to limit aids having the highest estimates, re-estimated at the time of reporting
+     */
+    List<HeavyHitter> top(int limit) {
+        final List<HeavyHitter> hitters = new ArrayList<>(candidates.size());
+        for (String aid : candidates) {
+            final long estimate = estimate(aid);
+            if (estimate > 0) {
+                hitters.add(new HeavyHitter(aid, estimate));
+            }
+        }
+        hitters.sort(Comparator.comparingLong(HeavyHitter::count).reversed().thenComparing(HeavyHitter::aid));
+        return List.copyOf(hitters.subList(0, Math.min(Math.max(limit, 0), Math.min(top, hitters.size()))));
+    }
+
+    void decay() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.setOpaque(i, counters.getOpaque(i) >>> 1);
+        }
+        candidates.removeIf(aid -> estimate(aid) == 0);
+        admission = admission >>> 1;
+    }
+
+    /**
+     * Double hashing, deriving the counter of every row from two hashes of the aid (Kirsch-Mitzenmacher).
+     * Opaque access keeps counters visible to readers, without the cost of atomic increments.
+     * @return minimum of incremented counters
+     */
+    private long increment(int hash) {
+        final int h1 = spread(hash);
+        final int h2 = spread(h1) | 1;
+
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0, offset = 0; row < depth; row++, offset += width) {
+            final int index = offset + ((h1 + row * h2) & mask);
+            final long count = counters.getOpaque(index) + 1;
+            counters.setOpaque(index, count);
+            estimate = Math.min(estimate, count);
+        }
+        return estimate;
+    }
+
+    private void prune() {
+        if (!pruning.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            final PriorityQueue<HeavyHitter> heap = new PriorityQueue<>(top + 1, Comparator.comparingLong(HeavyHitter::count));
+            for (String aid : candidates) {
+                final long estimate = estimate(aid);
+                if (heap.size() < top) {
+                    heap.add(new HeavyHitter(aid, estimate));
+                } else if (estimate > requireNonNull(heap.peek()).count()) {
+                    heap.poll();
+                    heap.add(new HeavyHitter(aid, estimate));
+                }
+            }
+
+            final Set<String> kept = new HashSet<>(heap.size() * 2);
+            heap.forEach(hitter -> kept.add(hitter.aid()));
+            candidates.retainAll(kept);
+            admission = heap.size() < top ? 0 : requireNonNull(heap.peek()).count();
+        } finally {
+            pruning.set(false);
+        }
+    }
+
+    private static int spread(int hash) {
+        final int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+}
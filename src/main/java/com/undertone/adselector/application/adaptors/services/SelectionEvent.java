@@ -0,0 +1,39 @@
+package com.undertone.adselector.application.adaptors.services;
+
+import jdk.jfr.*;
+
+/**
+ * Flight recorder event spanning a single selection request, from plan fetch until a selection was made
+ * (or not).
+ */
+@Name("com.undertone.adselector.Selection")
+@Label("Ad Selection")
+@Category({"Ad Selector", "Selection"})
+@Description("Selection of ads for a single request")
+@StackTrace(false)
+final class SelectionEvent extends Event {
+
+    @Label("Requested")
+    @Description("Number of distinct ads requested")
+    int requested;
+
+    @Label("Population Size")
+    @Description("Ads of target population, once segments were expanded and unknown aids dropped")
+    int populationSize;
+
+    @Label("Selected")
+    @Description("Number of ads selected")
+    int selected;
+
+    @Label("Selected Aid")
+    @Description("First selected aid, if any")
+    String selectedAid;
+
+    @Label("Plan Generation")
+    long planGeneration;
+
+    @Label("Outcome")
+    @Description("Terminal signal of selection: onComplete, onError or cancel")
+    String outcome;
+
+}
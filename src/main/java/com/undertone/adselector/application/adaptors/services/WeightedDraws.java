@@ -0,0 +1,276 @@
+package com.undertone.adselector.application.adaptors.services;
+
+import com.undertone.adselector.model.AdBudget;
+import com.undertone.adselector.model.AdDistribution;
+import com.undertone.adselector.model.Status;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.function.Predicate.not;
+import static java.util.stream.Collectors.toCollection;
+
+/**
+ * Weighted random draws and selection meters, shared by reactive and blocking selection strategies,
+ * see {@link WeightedRandomSelection} and {@link BlockingWeightedRandomSelection}.
+ * Meters are registered by name, hence both strategies report into the same ones.
+ * Requested and selected aids are fed to the {@link HeavyHitterTracker}.
+ */
+final class WeightedDraws {
+
+    static final int DEFAULT_MAX_REDRAWS = 3;
+
+    private static final int MAXIMUM_PREFIX_SUM_VALUE = 9_900; // assumed for maximum of 100 candidates having priority values in range [0.01, 0.99]
+    private final Iterator<Integer> randomIndexIterator =
+            new Random().ints(0, MAXIMUM_PREFIX_SUM_VALUE).iterator();
+
+    private final Counter conflictCounter;
+    private final Counter redrawCounter;
+    private final Counter exhaustedCounter;
+    private final DistributionSummary candidatesSummary;
+
+    private final HeavyHitterTracker heavyHitters;
+
+    private final int maxRedraws;
+
+    /**
+     * Increment status counters, indexed by {@link Status#ordinal()}
+     */
+    private final Counter[] statusCounters;
+
+    WeightedDraws(MeterRegistry meterRegistry, HeavyHitterTracker heavyHitters) {
+        this(meterRegistry, heavyHitters, DEFAULT_MAX_REDRAWS);
+    }
+
+    /**
+     * @param maxRedraws redraws allowed per selection following conflicts, each one costing a store round trip.
+     *                   Selections still conflicting beyond are aborted, leaving them to the jittered retry of services.
+     */
+    WeightedDraws(MeterRegistry meterRegistry, HeavyHitterTracker heavyHitters, int maxRedraws) {
+        requireNonNull(meterRegistry, "Argument meterRegistry must not be null");
+        this.heavyHitters = requireNonNull(heavyHitters, "Argument heavyHitters must not be null");
+        if (maxRedraws < 0) {
+            throw new IllegalArgumentException("Argument maxRedraws must not be negative, but it was: " + maxRedraws);
+        }
+        this.maxRedraws = maxRedraws;
+        this.conflictCounter = Counter.builder("adselector.selection.conflicts")
+                .description("Increments which conflicted with concurrent spending of the same ad")
+                    .register(meterRegistry);
+        this.redrawCounter = Counter.builder("adselector.selection.redraws")
+                .description("Selections redrawn from already fetched distributions following a conflict")
+                    .register(meterRegistry);
+        this.exhaustedCounter = Counter.builder("adselector.selection.candidates.exhausted")
+                .description("Fetched distributions filtered out for having no remaining quota")
+                    .register(meterRegistry);
+        this.candidatesSummary = DistributionSummary.builder("adselector.selection.candidates")
+                .description("Candidates having remaining quota, selections are drawn from")
+                    .register(meterRegistry);
+        this.statusCounters = Arrays.stream(Status.values())
+                .map(status -> Counter.builder("adselector.selection.increments")
+                        .description("Distribution increments by resulting status")
+                            .tag("status", status.name().toLowerCase(Locale.ROOT))
+                                .register(meterRegistry))
+                .toArray(Counter[]::new);
+    }
+
+    /**
+     * @return mutable list of entries which could be drawn at all
+     */
+    ArrayList<AdBudget> processable(List<AdBudget> population) {
+        heavyHitters.recordRequested(population);
+        return population.stream()
+                .filter(this::isProcessableCandidate)
+                    .collect(toCollection(ArrayList::new));
+    }
+
+    /**
+     * @return mutable list of fetched distributions having remaining quota
+     */
+    ArrayList<AdDistribution> available(List<AdDistribution> distributions) {
+        final ArrayList<AdDistribution> candidates = distributions.stream()
+                .filter(not(AdDistribution::isExhausted))
+                    .collect(toCollection(ArrayList::new));
+
+        exhaustedCounter.increment(distributions.size() - candidates.size());
+        candidatesSummary.record(candidates.size());
+        return candidates;
+    }
+
+    void recordStatus(AdBudget drawn, Status status) {
+        statusCounters[status.ordinal()].increment();
+        if (status == Status.SUCCESS) {
+            heavyHitters.recordSelected(drawn);
+        }
+    }
+
+    void recordConflicts(int conflicts) {
+        conflictCounter.increment(conflicts);
+    }
+
+    void recordRedraw() {
+        redrawCounter.increment();
+    }
+
+    /**
+     * @param redraws redraws made by selection so far
+     */
+    boolean mayRedraw(int redraws) {
+        return redraws < maxRedraws;
+    }
+
+    /**
+     * Avoiding costly floating point calculations resulting from using priority double values.
+     * Instead, it is assumed that all priority values could be converted into plain decimal representation,
+     * meaning, all values are expected to be in range of [0.01, 0.99].
+     * Any non-zero values, smaller than 0.01 are treated as having priority value of 0.01.
+     *
+     * @param priority expected to be in range of [0.01, 0.99]
+     * @return calculation result of (Double.max(priority, 0.01d) * 100d)
+     */
+    private long simplifyPriorityValue(double priority) {
+        long valueSign = (Double.isNaN(priority) || priority <= 0.0) ? 0 : 1;
+        return (long) (Double.max(priority, 0.01d) * 100d) * valueSign;
+    }
+
+    private boolean isProcessableCandidate(AdBudget adBudget) {
+        return !(adBudget.isEmpty() ||
+                    adBudget.quota() <= 0 ||
+                        simplifyPriorityValue(adBudget.priority()) <= 0);
+    }
+
+    AdDistribution draw(final List<AdDistribution> candidates) {
+        requireNonNull(candidates, "Argument candidates must not be null");
+
+        final DrawEvent event = new DrawEvent();
+        event.begin();
+        final AdDistribution drawn = drawWeighted(candidates);
+        event.end();
+
+        if (event.shouldCommit()) {
+            event.candidates = candidates.size();
+            event.requested = 1;
+            event.drawn = drawn.isEmpty() ? 0 : 1;
+            event.drawnAid = drawn.isEmpty() ? null : drawn.aid();
+            event.commit();
+        }
+        return drawn;
+    }
+
+    private AdDistribution drawWeighted(final List<AdDistribution> candidates) {
+        if (!candidates.isEmpty()) {
+            final long[] prefixSums = new long[candidates.size()];
+            final int length = prefixSums.length;
+
+            int index = 0;
+            long totalSum = 0;
+            for (AdDistribution ad : candidates) {
+                prefixSums[index++] = (totalSum += ad.priority(this::simplifyPriorityValue));
+            }
+
+            if(totalSum > 0) {
+                long randomSelection = randomIndexIterator.next() % totalSum;
+
+                /**
+                 * Using binary search to look for suitable index
+                 */
+                int low = 0, high = length - 1, mid = length/2;
+                while (low <= high) {
+                    if (prefixSums[mid] < randomSelection) {
+                        low = mid + 1;
+                    } else {
+                        high = mid - 1;
+                    }
+                    mid = low + ((high - low) / 2);
+                }
+
+                return candidates.get(mid);
+            }
+        }
+
+        return AdDistribution.EMPTY;
+    }
+
+    /**
+     * Weighted random sampling without replacement using exponential keys (Efraimidis-Spirakis),
+     * every candidate is assigned a key of -ln(u)/weight and the ones with the smallest keys are selected.
+     * Selected candidates are removed from given candidates, and returned ordered by their keys.
+     *
+     * @param candidates mutable list of candidates, selected ones are removed from it
+     * @param count maximal number of candidates to select
+     * @return up to count distinct candidates
+     */
+    List<AdDistribution> sample(final List<AdDistribution> candidates, final int count) {
+        requireNonNull(candidates, "Argument candidates must not be null");
+
+        final DrawEvent event = new DrawEvent();
+        final int candidateCount = candidates.size();
+        event.begin();
+        final List<AdDistribution> drawn = sampleWeighted(candidates, count);
+        event.end();
+
+        if (event.shouldCommit()) {
+            event.candidates = candidateCount;
+            event.requested = count;
+            event.drawn = drawn.size();
+            event.drawnAid = drawn.isEmpty() ? null : drawn.get(0).aid();
+            event.commit();
+        }
+        return drawn;
+    }
+
+    private List<AdDistribution> sampleWeighted(final List<AdDistribution> candidates, final int count) {
+        final int k = Math.min(count, candidates.size());
+        if (k <= 0) {
+            return List.of();
+        }
+
+        final double[] keys = new double[k];
+        final int[] indices = new int[k];
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        int size = 0;
+        for (int i = 0; i < candidates.size(); i++) {
+            final long weight = candidates.get(i).priority(this::simplifyPriorityValue);
+            if (weight <= 0) {
+                continue;
+            }
+
+            final double key = -Math.log(1.0d - random.nextDouble()) / weight;
+            if (size < k || key < keys[size - 1]) {
+                /**
+                 * Insertion into sorted keys, k is expected to be small
+                 */
+                int position = Math.min(size, k - 1);
+                while (position > 0 && keys[position - 1] > key) {
+                    keys[position] = keys[position - 1];
+                    indices[position] = indices[position - 1];
+                    position--;
+                }
+                keys[position] = key;
+                indices[position] = i;
+                size = Math.min(size + 1, k);
+            }
+        }
+
+        final List<AdDistribution> selected = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            selected.add(candidates.get(indices[i]));
+        }
+
+        /**
+         * Removing selected by descending index to keep remaining indices intact
+         */
+        final int[] removalOrder = Arrays.copyOf(indices, size);
+        Arrays.sort(removalOrder);
+        for (int i = removalOrder.length - 1; i >= 0; i--) {
+            candidates.remove(removalOrder[i]);
+        }
+
+        return selected;
+    }
+
+}
@@ -3,12 +3,16 @@ package com.undertone.adselector.application.adaptors.services;
 import com.undertone.adselector.application.ports.in.AdSelectionStrategy;
 
 import com.undertone.adselector.application.ports.in.UseCaseException.AbortedException;
+import com.undertone.adselector.application.ports.in.UseCaseException.RejectionException;
 import com.undertone.adselector.application.ports.out.AdDistributionStore;
 
 import com.undertone.adselector.model.AdBudget;
 import com.undertone.adselector.model.AdDistribution;
 import com.undertone.adselector.model.exceptions.ApplicationException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Mono;
 
@@ -17,117 +21,160 @@ import java.util.*;
 import static java.lang.String.format;
 import static java.util.Objects.requireNonNull;
 import static java.util.function.Predicate.not;
-import static java.util.stream.Collectors.toCollection;
-import static java.util.stream.Collectors.toList;
 
 @Component
 public class WeightedRandomSelection implements AdSelectionStrategy {
 
-    private static final int MAXIMUM_PREFIX_SUM_VALUE = 9_900; // assumed for maximum of 100 candidates having priority values in range [0.01, 0.99]
-    private final Iterator<Integer> randomIndexIterator =
-            new Random().ints(0, MAXIMUM_PREFIX_SUM_VALUE).iterator();
     private final AdDistributionStore distributionStore;
+    private final WeightedDraws draws;
 
-    @Autowired
     public WeightedRandomSelection(AdDistributionStore distributionStore) {
+        this(distributionStore, new SimpleMeterRegistry());
+    }
+
+    public WeightedRandomSelection(AdDistributionStore distributionStore, MeterRegistry meterRegistry) {
+        this(distributionStore, meterRegistry, new HeavyHitterTracker());
+    }
+
+    public WeightedRandomSelection(AdDistributionStore distributionStore, MeterRegistry meterRegistry,
+                                   HeavyHitterTracker heavyHitters) {
+        this(distributionStore, meterRegistry, heavyHitters, WeightedDraws.DEFAULT_MAX_REDRAWS);
+    }
+
+    @Autowired
+    public WeightedRandomSelection(AdDistributionStore distributionStore, MeterRegistry meterRegistry,
+                                   HeavyHitterTracker heavyHitters,
+                                   @Value("${selection.redraw.max:" + WeightedDraws.DEFAULT_MAX_REDRAWS + "}") int maxRedraws) {
         this.distributionStore =
                 requireNonNull(distributionStore,
                     "Argument adDistributionStore must not be null");
+        this.draws = new WeightedDraws(meterRegistry, heavyHitters, maxRedraws);
     }
 
     @Override
     public Mono<Optional<AdBudget>> select(List<AdBudget> population) throws ApplicationException {
+        return fetchCandidates(population)
+                /**
+                 * Perform random weighted selection and try to increment distribution count of selected
+                 */
+                .flatMap(candidates -> selectAndIncrement(candidates, 0));
+    }
+
+    @Override
+    public Mono<List<AdBudget>> select(List<AdBudget> population, int count) throws ApplicationException {
+        if (count < 1) {
+            return Mono.error(new RejectionException(format("Selection count must be positive, but it was: %d", count)));
+        }
+
+        return fetchCandidates(population)
+                /**
+                 * Perform random weighted sampling without replacement and try to increment all selected at once
+                 */
+                .flatMap(candidates -> selectAndIncrement(candidates, count,
+                        new ArrayList<>(Math.min(count, candidates.size())), 0, false))
+                .defaultIfEmpty(List.of());
+    }
+
+    private Mono<ArrayList<AdDistribution>> fetchCandidates(List<AdBudget> population) {
         return Mono.just(population)
                 /**
                  * Filter out unprocessable entries
                  */
-                .map(adBudgets -> adBudgets.stream()
-                        .filter(this::isProcessableCandidate)
-                            .collect(toCollection(ArrayList::new)))
+                .map(draws::processable)
                 .filter(not(List::isEmpty))
                 /**
                  * Filter out exhausted distributions
                  */
                 .flatMap(distributionStore::fetchDistributions)
-                .map(distributions ->
-                    distributions.stream().filter(not(AdDistribution::isExhausted))
-                            .collect(toCollection(ArrayList::new)))
-                .filter(not(List::isEmpty))
-                /**
-                 * Perform random weighted selection
-                 */
-                .map(this::doSelect)
-                /**
-                 * Try to increment distribution count of selected
-                 */
-                .flatMap(theOne ->
-                        distributionStore.incrementDistribution(theOne)
-                                .flatMap(status ->
-                                        switch (status) {
-                                            case FAILURE -> Mono.just(Optional.empty());
-                                            case SUCCESS -> Mono.just(Optional.of(theOne));
-                                            case CONFLICT ->
-                                                    Mono.error(new AbortedException
-                                                            (format("Unable to increment for: %s", theOne.aid())));
-                                        }
-                                )
-                );
+                .map(draws::available)
+                .filter(not(List::isEmpty));
     }
 
     /**
-     * Avoiding costly floating point calculations resulting from using priority double values.
-     * Instead, it is assumed that all priority values could be converted into plain decimal representation,
-     * meaning, all values are expected to be in range of [0.01, 0.99].
-     * Any non-zero values, smaller than 0.01 are treated as having priority value of 0.01.
-     *
-     * @param priority expected to be in range of [0.01, 0.99]
-     * @return calculation result of (Double.max(priority, 0.01d) * 100d)
+     * Draws the missing number of selections from remaining candidates and increments them using a single store
+     * operation. Conflicted selections are replaced by redrawing from candidates which were not drawn yet, up to
+     * {@code selection.redraw.max} times. Selection is aborted only if nothing could be selected due to conflicts.
      */
-    private long simplifyPriorityValue(double priority) {
-        long valueSign = (Double.isNaN(priority) || priority <= 0.0) ? 0 : 1;
-        return (long) (Double.max(priority, 0.01d) * 100d) * valueSign;
-    }
-
-    private boolean isProcessableCandidate(AdBudget adBudget) {
-        return !(adBudget.isEmpty() ||
-                    adBudget.quota() <= 0 ||
-                        simplifyPriorityValue(adBudget.priority()) <= 0);
-    }
+    private Mono<List<AdBudget>> selectAndIncrement(final List<AdDistribution> candidates, final int count,
+                                                    final List<AdBudget> selected, final int redraws,
+                                                    final boolean conflicted) {
+
+        final List<AdDistribution> drawn = doSelect(candidates, count - selected.size());
+
+        return distributionStore.incrementDistributions(drawn)
+                .flatMap(statuses -> {
+                    int conflicts = 0;
+                    for (int i = 0; i < drawn.size() && i < statuses.size(); i++) {
+                        draws.recordStatus(drawn.get(i), statuses.get(i));
+                        switch (statuses.get(i)) {
+                            case SUCCESS -> selected.add(drawn.get(i));
+                            case CONFLICT -> conflicts++;
+                            case FAILURE -> { }
+                        }
+                    }
 
-    AdDistribution doSelect(final List<AdDistribution> candidates) {
-        requireNonNull(candidates, "Argument candidates must not be null");
+                    if (conflicts > 0) {
+                        draws.recordConflicts(conflicts);
+                        if (selected.size() < count && !candidates.isEmpty() && draws.mayRedraw(redraws)) {
+                            draws.recordRedraw();
+                            return selectAndIncrement(candidates, count, selected, redraws + 1, true);
+                        }
+                    }
 
-        if (!candidates.isEmpty()) {
-            final long[] prefixSums = new long[candidates.size()];
-            final int length = prefixSums.length;
+                    if (selected.isEmpty() && (conflicted || conflicts > 0)) {
+                        return Mono.error(new AbortedException(
+                                format("Unable to increment any of %d drawn candidates", drawn.size())));
+                    }
 
-            int index = 0;
-            long totalSum = 0;
-            for (AdDistribution ad : candidates) {
-                prefixSums[index++] = (totalSum += ad.priority(this::simplifyPriorityValue));
-            }
+                    return Mono.just(selected);
+                });
+    }
 
-            if(totalSum > 0) {
-                long randomSelection = randomIndexIterator.next() % totalSum;
+    private Mono<Optional<AdBudget>> selectAndIncrement(final List<AdDistribution> candidates, final int redraws) {
+        final AdDistribution theOne = doSelect(candidates);
+
+        return distributionStore.incrementDistribution(theOne)
+                .doOnNext(status -> draws.recordStatus(theOne, status))
+                .flatMap(status ->
+                        switch (status) {
+                            case FAILURE -> Mono.just(Optional.empty());
+                            case SUCCESS -> Mono.just(Optional.of(theOne));
+                            case CONFLICT -> redraw(candidates, theOne, redraws);
+                        }
+                );
+    }
 
-                /**
-                 * Using binary search to look for suitable index
-                 */
-                int low = 0, high = length - 1, mid = length/2;
-                while (low <= high) {
-                    if (prefixSums[mid] < randomSelection) {
-                        low = mid + 1;
-                    } else {
-                        high = mid - 1;
-                    }
-                    mid = low + ((high - low) / 2);
-                }
+    /**
+     * Conflicted candidate has just been exhausted by a concurrent selection,
+     * hence it is removed and selection is redrawn from the remaining, already fetched, candidates.
+     * Selection is aborted once either no candidates remain or {@code selection.redraw.max} redraws were made.
+     */
+    private Mono<Optional<AdBudget>> redraw(final List<AdDistribution> candidates, final AdDistribution conflicted,
+                                            final int redraws) {
+        draws.recordConflicts(1);
+        candidates.remove(conflicted);
 
-                return candidates.get(mid);
-            }
+        if (candidates.isEmpty()) {
+            return Mono.error(new AbortedException(format("Unable to increment for: %s", conflicted.aid())));
+        }
+        if (!draws.mayRedraw(redraws)) {
+            return Mono.error(new AbortedException(format("Unable to increment for: %s, after %d redraws",
+                    conflicted.aid(), redraws)));
         }
 
-        return AdDistribution.EMPTY;
+        draws.recordRedraw();
+        return selectAndIncrement(candidates, redraws + 1);
+    }
+
+    AdDistribution doSelect(final List<AdDistribution> candidates) {
+        return draws.draw(candidates);
+    }
+
+    /**
+     * @see WeightedDraws#sample(List, int)
+     */
+    List<AdDistribution> doSelect(final List<AdDistribution> candidates, final int count) {
+        return draws.sample(candidates, count);
     }
 
 }
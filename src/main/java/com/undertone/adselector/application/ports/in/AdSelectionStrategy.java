@@ -12,4 +12,10 @@ public interface AdSelectionStrategy {
 
     public Mono<Optional<AdBudget>> select(List<AdBudget> population) throws ApplicationException;
 
+    /**
+     * Selects up to count distinct ads from given population.
+     * @return selected ads, ordered by selection, or empty list if none could be selected
+     */
+    public Mono<List<AdBudget>> select(List<AdBudget> population, int count) throws ApplicationException;
+
 }
@@ -0,0 +1,26 @@
+package com.undertone.adselector.application.ports.in;
+
+import com.undertone.adselector.model.Population;
+import com.undertone.adselector.model.exceptions.ApplicationException;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Selects for several independent requests at once, e.g. consecutive requests of a selection stream
+ */
+public interface BatchSelectAdUseCase {
+
+    /**
+     * @param population target population of a single request
+     * @param count number of distinct ads to select for it
+     */
+    public record Selection(Population population, int count) {}
+
+    /**
+     * Distributions of the entire batch are fetched, and selected ones spent, using a single store operation each.
+     * @return aids selected for every given selection, ordered as given, empty lists where none could be selected
+     */
+    public Mono<List<List<String>>> selectBatch(List<Selection> selections) throws ApplicationException;
+
+}
@@ -0,0 +1,22 @@
+package com.undertone.adselector.application.ports.in;
+
+import com.undertone.adselector.model.AdBudget;
+import com.undertone.adselector.model.exceptions.ApplicationException;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Synchronous variant of {@link AdSelectionStrategy}
+ */
+public interface BlockingAdSelectionStrategy {
+
+    public Optional<AdBudget> select(List<AdBudget> population) throws ApplicationException;
+
+    /**
+     * Selects up to count distinct ads from given population.
+     * @return selected ads, ordered by selection, or empty list if none could be selected
+     */
+    public List<AdBudget> select(List<AdBudget> population, int count) throws ApplicationException;
+
+}
@@ -0,0 +1,26 @@
+package com.undertone.adselector.application.ports.in;
+
+import com.undertone.adselector.model.Population;
+import com.undertone.adselector.model.exceptions.ApplicationException;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Synchronous variant of {@link SelectAdUseCase}, blocking the calling thread until a selection was made,
+ * hence expected to be called from virtual threads.
+ */
+public interface BlockingSelectAdUseCase {
+
+    /**
+     * Selects a single ad from given population, which may reference plan segments rather than listing aids.
+     */
+    public Optional<String> selectAd(Population population) throws ApplicationException;
+
+    /**
+     * Selects up to count distinct ads from given population, e.g. for pages having several placements.
+     * @return aids of selected ads, ordered by selection, or empty list if none could be selected
+     */
+    public List<String> selectAds(Population population, int count) throws ApplicationException;
+
+}
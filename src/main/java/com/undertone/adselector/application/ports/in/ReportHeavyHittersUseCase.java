@@ -0,0 +1,28 @@
+package com.undertone.adselector.application.ports.in;
+
+import java.util.List;
+
+/**
+ * Reports aids dominating recent traffic, as estimated by streaming heavy hitter tracking, rather than exact counts
+ */
+public interface ReportHeavyHittersUseCase {
+
+    /**
+     * @param aid ad identifier
+     * @param count estimated number of recent occurrences, time decayed
+     */
+    public record HeavyHitter(String aid, long count) {}
+
+    /**
+     * @param limit maximal number of aids to report, capped by number of aids tracked
+     * @return aids most often requested as part of selection populations, by descending estimated count
+     */
+    public List<HeavyHitter> topRequested(int limit);
+
+    /**
+     * @return aids most often selected (and spent), by descending estimated count
+     * @see #topRequested(int)
+     */
+    public List<HeavyHitter> topSelected(int limit);
+
+}
@@ -1,8 +1,10 @@
 package com.undertone.adselector.application.ports.in;
 
+import com.undertone.adselector.model.Population;
 import com.undertone.adselector.model.exceptions.ApplicationException;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
@@ -10,4 +12,15 @@ public interface SelectAdUseCase {
 
     public Mono<Optional<String>> selectAd(Set<String> population) throws ApplicationException;
 
+    /**
+     * Selects a single ad from given population, which may reference plan segments rather than listing aids.
+     */
+    public Mono<Optional<String>> selectAd(Population population) throws ApplicationException;
+
+    /**
+     * Selects up to count distinct ads from given population, e.g. for pages having several placements.
+     * @return aids of selected ads, ordered by selection, or empty list if none could be selected
+     */
+    public Mono<List<String>> selectAds(Population population, int count) throws ApplicationException;
+
 }
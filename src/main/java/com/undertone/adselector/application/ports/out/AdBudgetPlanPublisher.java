@@ -0,0 +1,19 @@
+package com.undertone.adselector.application.ports.out;
+
+import com.undertone.adselector.application.ports.out.InfrastructureException.StoreException;
+import reactor.core.publisher.Mono;
+
+import java.nio.file.Path;
+
+/**
+ * Publishes ad budget plans to be rolled out by every instance, rather than copying plan files onto each of them
+ */
+public interface AdBudgetPlanPublisher {
+
+    /**
+     * @param planFile plan file to publish, in the format read by file backed plan stores
+     * @return version of published plan, once it became current
+     */
+    public Mono<Long> publish(Path planFile) throws StoreException;
+
+}
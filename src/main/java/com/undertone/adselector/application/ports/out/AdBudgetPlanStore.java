@@ -1,11 +1,36 @@
 package com.undertone.adselector.application.ports.out;
 
 import com.undertone.adselector.application.ports.out.InfrastructureException.StoreException;
+import com.undertone.adselector.application.ports.out.InfrastructureException.StoreException.OperationFailedException;
+import com.undertone.adselector.model.AdBudget;
 import com.undertone.adselector.model.AdBudgetPlan;
 import reactor.core.publisher.Mono;
 
+import java.util.Collection;
+
 public interface AdBudgetPlanStore {
 
     public Mono<AdBudgetPlan> fetchPlan() throws StoreException;
 
+    /**
+     * Synchronous variant of {@link #fetchPlan()}, blocking until plan is available
+     * @return current plan, or {@link AdBudgetPlan#EMPTY} if none
+     */
+    public default AdBudgetPlan currentPlan() throws StoreException {
+        return fetchPlan().blockOptional().orElse(AdBudgetPlan.EMPTY);
+    }
+
+    /**
+     * Upserts and removes individual ads of current plan rather than reloading it as a whole.
+     * The amended plan replaces current one at once, as a new generation.
+     * @param upserts ads to add or replace, applied before removals
+     * @param removals aids of ads to remove, unknown aids are ignored
+     * @return amended plan
+     * @throws OperationFailedException if store does not support amendments, or has no plan to amend
+     */
+    public default Mono<AdBudgetPlan> amend(Collection<? extends AdBudget> upserts, Collection<String> removals)
+            throws StoreException {
+        return Mono.error(new OperationFailedException("Plan store does not support amendments"));
+    }
+
 }
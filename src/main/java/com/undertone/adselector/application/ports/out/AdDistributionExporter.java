@@ -0,0 +1,19 @@
+package com.undertone.adselector.application.ports.out;
+
+import com.undertone.adselector.application.ports.out.InfrastructureException.StoreException;
+import com.undertone.adselector.model.AdBudgetPlan;
+import com.undertone.adselector.model.AdDistribution;
+import reactor.core.publisher.Flux;
+
+/**
+ * Exports every ad of a plan joined with its remaining quota, for dashboards and audits rather than selections
+ */
+public interface AdDistributionExporter {
+
+    /**
+     * @param plan plan to export, every ad of it is exported once
+     * @return distributions in plan slot order, fetched as requested
+     */
+    public Flux<AdDistribution> exportDistributions(AdBudgetPlan plan) throws StoreException;
+
+}
@@ -18,4 +18,10 @@ public interface AdDistributionStore {
 
     public Mono<Status> incrementDistribution(AdDistribution adDistribution) throws StoreException;
 
+    /**
+     * Increments all given distributions using a single store operation.
+     * @return statuses matching given distributions by order
+     */
+    public Mono<List<Status>> incrementDistributions(List<AdDistribution> adDistributions) throws StoreException;
+
 }
@@ -0,0 +1,28 @@
+package com.undertone.adselector.application.ports.out;
+
+import com.undertone.adselector.application.ports.out.InfrastructureException.StoreException;
+import com.undertone.adselector.model.AdBudget;
+import com.undertone.adselector.model.AdDistribution;
+import com.undertone.adselector.model.Status;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Synchronous variant of {@link AdDistributionStore}, issuing the same store operations
+ */
+public interface BlockingAdDistributionStore {
+
+    public Optional<AdDistribution> fetchDistribution(AdBudget adBudget) throws StoreException;
+
+    public List<AdDistribution> fetchDistributions(List<AdBudget> adBudgets) throws StoreException;
+
+    public Status incrementDistribution(AdDistribution adDistribution) throws StoreException;
+
+    /**
+     * Increments all given distributions using a single store operation.
+     * @return statuses matching given distributions by order
+     */
+    public List<Status> incrementDistributions(List<AdDistribution> adDistributions) throws StoreException;
+
+}
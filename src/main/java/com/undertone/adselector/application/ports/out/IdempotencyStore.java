@@ -0,0 +1,24 @@
+package com.undertone.adselector.application.ports.out;
+
+import com.undertone.adselector.application.ports.out.InfrastructureException.StoreException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Shared record of selections made for idempotency keys, letting retries reaching any instance replay them
+ */
+public interface IdempotencyStore {
+
+    /**
+     * @return aids selected for given key, empty Mono if none was recorded
+     */
+    public Mono<List<String>> fetchSelection(String key) throws StoreException;
+
+    /**
+     * Records aids selected for given key unless already recorded, the first recorded selection is kept.
+     */
+    public Mono<Void> storeSelection(String key, List<String> aids, Duration ttl) throws StoreException;
+
+}
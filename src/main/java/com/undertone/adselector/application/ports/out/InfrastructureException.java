@@ -22,5 +22,23 @@ public class InfrastructureException extends ApplicationException {
             public OperationFailedException(String message) { super(message); }
             public OperationFailedException(String message, Throwable cause) { super(message, cause); }
         }
+
+        public static class OperationTimedOutException extends OperationFailedException {
+            public OperationTimedOutException(String message) { super(message); }
+        }
+
+        /**
+         * Request deadline expired before store operation completed, store itself is not necessarily at fault
+         */
+        public static class DeadlineExceededException extends OperationFailedException {
+            public DeadlineExceededException(String message) { super(message); }
+        }
+
+        /**
+         * Store operation was not attempted, store is considered unavailable (e.g. circuit breaker is open)
+         */
+        public static class UnavailableException extends StoreException {
+            public UnavailableException(String message, Throwable cause) { super(message, cause); }
+        }
     }
 }
@@ -1,10 +1,13 @@
 package com.undertone.adselector.infrastructure.in;
 
 
+import com.undertone.adselector.application.ports.in.BlockingSelectAdUseCase;
 import com.undertone.adselector.application.ports.in.SelectAdUseCase;
 import com.undertone.adselector.application.ports.in.UseCaseException;
+import com.undertone.adselector.model.Population;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.HttpStatusCode;
 import org.springframework.http.MediaType;
@@ -16,7 +19,10 @@ import reactor.core.publisher.Mono;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
+import static java.lang.String.format;
 import static java.util.Objects.requireNonNull;
 import static java.util.stream.Collectors.joining;
 
@@ -26,20 +32,127 @@ import static java.util.stream.Collectors.joining;
 @RequestMapping("/api/v1/")
 public class AdSelectorController {
 
+    /**
+     * Name of idempotency key header, resolved from configuration
+     */
+    static final String IDEMPOTENCY_KEY_HEADER = "${idempotency.header:" + IdempotentSelections.DEFAULT_HEADER + "}";
+
     @Autowired
     private SelectAdUseCase selectAdUseCase;
 
+    @Autowired
+    private BlockingSelectAdUseCase blockingSelectAdUseCase;
+
+    @Autowired
+    private SelectionExecution selectionExecution;
+
+    @Autowired
+    private IdempotentSelections idempotentSelections;
+
+    @Value("${selection.max.count:100}")
+    private int maxSelectionCount;
+
+    /**
+     * Requests are either JSON, or binary (see {@link BinarySelection}), responses are negotiated separately
+     */
     @PostMapping(
             path = "selectAd",
-            produces = MediaType.APPLICATION_JSON_VALUE
+            produces = {MediaType.APPLICATION_JSON_VALUE, BinarySelection.MEDIA_TYPE_VALUE}
     )
-    public Mono<ResponseEntity<SelectAdResponse>> selectAd(@RequestBody SelectAdRequest request) {
-        return selectAdUseCase.selectAd(request.q())
+    public Mono<ResponseEntity<SelectAdResponse>> selectAd(@RequestBody Population population,
+                                                           @RequestHeader(name = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        return selection(population, idempotencyKey)
                 .map(opSelection -> opSelection
                         .map(SelectAdResponse::new)
                             .map(ResponseEntity::ok)
-                                .orElseGet(ResponseEntity.noContent()::build));
+                                .orElseGet(ResponseEntity.noContent()::build))
+                .onErrorResume(BinarySelectionRequest.StalePlanException.class,
+                        ex -> Mono.just(ResponseEntity.status(HttpStatus.CONFLICT).build()))
+                .onErrorResume(UseCaseException.RejectionException.class,
+                        ex -> Mono.just(ResponseEntity.badRequest().build()))
+                .doFinally(signal -> {
+                    if (population instanceof RawJsonPopulation rawPopulation) {
+                        rawPopulation.release();
+                    } else if (population instanceof BinarySelectionRequest binaryRequest) {
+                        binaryRequest.release();
+                    }
+                });
+
+    }
+
+    @PostMapping(
+            path = "selectAds",
+            produces = {MediaType.APPLICATION_JSON_VALUE, BinarySelection.MEDIA_TYPE_VALUE}
+    )
+    public Mono<ResponseEntity<SelectAdsResponse>> selectAds(@RequestBody SelectAdsRequest request,
+                                                             @RequestHeader(name = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        return respond(selections(request.population(), request.k(), idempotencyKey));
+
+    }
+
+    /**
+     * Binary requests carry both population and requested count, hence are not bound to {@link SelectAdsRequest}
+     */
+    @PostMapping(
+            path = "selectAds",
+            consumes = BinarySelection.MEDIA_TYPE_VALUE,
+            produces = {MediaType.APPLICATION_JSON_VALUE, BinarySelection.MEDIA_TYPE_VALUE}
+    )
+    public Mono<ResponseEntity<SelectAdsResponse>> selectAdsBinary(@RequestBody BinarySelectionRequest request,
+                                                                   @RequestHeader(name = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        return respond(selections(request, request.count(), idempotencyKey))
+                .doFinally(signal -> request.release());
+
+    }
+
+    private Mono<ResponseEntity<SelectAdsResponse>> respond(Mono<List<String>> selections) {
+        return selections
+                .map(selected -> selected.isEmpty()
+                        ? ResponseEntity.noContent().<SelectAdsResponse>build()
+                            : ResponseEntity.ok(new SelectAdsResponse(selected)))
+                .onErrorResume(BinarySelectionRequest.StalePlanException.class,
+                        ex -> Mono.just(ResponseEntity.status(HttpStatus.CONFLICT).build()))
+                .onErrorResume(UseCaseException.RejectionException.class,
+                        ex -> Mono.just(ResponseEntity.badRequest().build()));
+    }
+
+    /**
+     * Retries stating the idempotency key of a previous request replay its selection (see {@link IdempotentSelections}),
+     * keys are scoped by endpoint
+     */
+    private Mono<Optional<String>> selection(Population population, String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return selection(population);
+        }
+        return idempotentSelections.select("selectAd:" + idempotencyKey, () -> selection(population)
+                        .map(opSelection -> opSelection.map(List::of).orElseGet(List::of)))
+                    .map(selected -> selected.stream().findFirst());
+    }
+
+    private Mono<List<String>> selections(Population population, int count, String idempotencyKey) {
+        if (count > maxSelectionCount) {
+            return Mono.error(new UseCaseException.RejectionException(
+                    format("Selection count must not exceed %d, but it was: %d", maxSelectionCount, count)));
+        }
+        return idempotencyKey == null
+                ? selections(population, count)
+                    : idempotentSelections.select("selectAds:" + count + ":" + idempotencyKey,
+                            () -> selections(population, count));
+    }
+
+    /**
+     * Selects either reactively, or on a virtual thread once blocking execution mode is configured
+     */
+    private Mono<Optional<String>> selection(Population population) {
+        return selectionExecution.isBlocking()
+                ? selectionExecution.execute(() -> blockingSelectAdUseCase.selectAd(population))
+                    : selectAdUseCase.selectAd(population);
+    }
 
+    private Mono<List<String>> selections(Population population, int count) {
+        return selectionExecution.isBlocking()
+                ? selectionExecution.execute(() -> blockingSelectAdUseCase.selectAds(population, count))
+                    : selectAdUseCase.selectAds(population, count);
     }
 
     static class NoSelectionException extends ResponseStatusException {
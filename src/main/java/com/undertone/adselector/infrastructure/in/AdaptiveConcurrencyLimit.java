@@ -0,0 +1,159 @@
+package com.undertone.adselector.infrastructure.in;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Concurrency limit adapting to observed latency using additive increase / multiplicative decrease (AIMD).
+ * <ul>
+ *     <li>Limit grows by one for every request completed within latency threshold, as long as at least half
+ *     of the limit was actually in use, so idle periods do not inflate it</li>
+ *     <li>Limit shrinks by backoff ratio for a request exceeding latency threshold or dropped (cancelled by client),
+ *     at most once per round trip: requests admitted before the last decrease did not see the shrunk limit yet, so
+ *     a burst of slow completions shrinks the limit once rather than once per request</li>
+ * </ul>
+ * Lower priorities are admitted only within a share of the limit, hence they are shed first once in-flight
+ * requests approach the limit, leaving the remainder for higher priorities.
+ */
+final class AdaptiveConcurrencyLimit {
+
+    static final double DEFAULT_BACKOFF_RATIO = 0.9d;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+    private final double backoffRatio;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * Fractional limit, updated under lock, published through {@link #limit}
+     */
+    private double estimatedLimit;
+    private volatile int limit;
+
+    /**
+     * Admission time of requests, as of {@link System#nanoTime()}, from which on limit may shrink again, updated
+     * under lock
+     */
+    private long decreasedNanos;
+    private boolean decreased;
+
+    AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, Duration latencyThreshold) {
+        this(initialLimit, minLimit, maxLimit, latencyThreshold, DEFAULT_BACKOFF_RATIO);
+    }
+
+    AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, Duration latencyThreshold,
+                             double backoffRatio) {
+        if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException(format("Expected 1 <= min: %d <= initial: %d <= max: %d",
+                    minLimit, initialLimit, maxLimit));
+        }
+        if (backoffRatio <= 0d || backoffRatio >= 1d) {
+            throw new IllegalArgumentException("Expected backoff ratio within (0, 1), but it was: " + backoffRatio);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdNanos = requireNonNull(latencyThreshold, "Argument latencyThreshold must not be null")
+                .toNanos();
+        this.backoffRatio = backoffRatio;
+        this.estimatedLimit = initialLimit;
+        this.limit = initialLimit;
+    }
+
+    /**
+     * @return true if request of given priority got admitted, in which case it must be released once complete
+     */
+    boolean tryAcquire(Priority priority) {
+        final int admissible = priority.admissible(limit);
+        for (;;) {
+            final int current = inFlight.get();
+            if (current >= admissible) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @param admittedNanos time request got admitted, as of {@link System#nanoTime()}
+     * @param completedNanos time request completed, as of {@link System#nanoTime()}
+     * @param dropped whether request was abandoned before completing, e.g. cancelled by client
+     */
+    void release(long admittedNanos, long completedNanos, boolean dropped) {
+        final int inFlightBefore = inFlight.getAndDecrement();
+
+        synchronized (this) {
+            if (dropped || completedNanos - admittedNanos > latencyThresholdNanos) {
+                if (decreased && admittedNanos - decreasedNanos < 0) {
+                    return;
+                }
+                estimatedLimit = Math.max(minLimit, estimatedLimit * backoffRatio);
+                decreasedNanos = completedNanos;
+                decreased = true;
+            } else if (inFlightBefore * 2 >= estimatedLimit) {
+                estimatedLimit = Math.min(maxLimit, estimatedLimit + 1d);
+            } else {
+                return;
+            }
+            limit = (int) estimatedLimit;
+        }
+    }
+
+    int limit() {
+        return limit;
+    }
+
+    int inFlight() {
+        return inFlight.get();
+    }
+
+    enum Priority {
+
+        /**
+         * May use the entire limit, e.g. guaranteed placements
+         */
+        CRITICAL(1d),
+
+        /**
+         * Default priority of callers not stating one
+         */
+        NORMAL(0.9d),
+
+        /**
+         * Shed first, e.g. prefetching or remnant inventory
+         */
+        SHEDDABLE(0.5d);
+
+        private final double share;
+
+        Priority(double share) {
+            this.share = share;
+        }
+
+        int admissible(int limit) {
+            return Math.max(1, (int) (limit * share));
+        }
+
+        /**
+         * @return priority named by given header value, case-insensitively, {@link #NORMAL} if absent or unknown
+         */
+        static Priority of(String headerValue) {
+            if (headerValue == null) {
+                return NORMAL;
+            }
+            try {
+                return valueOf(headerValue.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException iae) {
+                return NORMAL;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,136 @@
+package com.undertone.adselector.infrastructure.in;
+
+import com.undertone.adselector.infrastructure.in.AdaptiveConcurrencyLimit.Priority;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Locale;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Admission control of selection API requests, failing fast once in-flight requests reach an adaptive concurrency
+ * limit rather than queueing them up behind slow store operations (see {@link AdaptiveConcurrencyLimit}).
+ * Callers state their priority by a request header, requests lacking one are of normal priority.
+ * Rejections are answered before request body is read, either by 503 (Retry-After: 1) or by 204 no-fill.
+ * Selection streams are long-lived, their latency says nothing about load, hence they are not admitted by the limit.
+ * Disabled by default, every request is then passed through, the filter itself is registered regardless (AOT processed
+ * applications evaluate conditions at build time).
+ */
+@Slf4j
+@Component
+public class AdmissionControlFilter implements WebFilter, Ordered {
+
+    static final String DEFAULT_PRIORITY_HEADER = "X-Selection-Priority";
+
+    private static final String SELECTION_API_PATH = "/api/";
+    private static final String SELECTION_STREAM_PATH = "/api/v1/stream/";
+
+    private final boolean enabled;
+    private final AdaptiveConcurrencyLimit concurrencyLimit;
+    private final String priorityHeader;
+    private final HttpStatus rejectionStatus;
+
+    private final Counter[] rejectionCounters;
+
+    AdmissionControlFilter(AdaptiveConcurrencyLimit concurrencyLimit) {
+        this(true, concurrencyLimit, DEFAULT_PRIORITY_HEADER, HttpStatus.SERVICE_UNAVAILABLE, new SimpleMeterRegistry());
+    }
+
+    @Autowired
+    public AdmissionControlFilter(@Value("${admission.enabled:false}") boolean enabled,
+                                  @Value("${admission.limit.initial:100}") int initialLimit,
+                                  @Value("${admission.limit.min:8}") int minLimit,
+                                  @Value("${admission.limit.max:1000}") int maxLimit,
+                                  @Value("${admission.latency.threshold:PT0.05S}") Duration latencyThreshold,
+                                  @Value("${admission.priority.header:" + DEFAULT_PRIORITY_HEADER + "}") String priorityHeader,
+                                  @Value("${admission.rejection.status:SERVICE_UNAVAILABLE}") HttpStatus rejectionStatus,
+                                  MeterRegistry meterRegistry) {
+        this(enabled, new AdaptiveConcurrencyLimit(initialLimit, minLimit, maxLimit, latencyThreshold),
+                priorityHeader, rejectionStatus, meterRegistry);
+    }
+
+    AdmissionControlFilter(boolean enabled, AdaptiveConcurrencyLimit concurrencyLimit, String priorityHeader,
+                           HttpStatus rejectionStatus, MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.concurrencyLimit = requireNonNull(concurrencyLimit, "Argument concurrencyLimit must not be null");
+        this.priorityHeader = requireNonNull(priorityHeader, "Argument priorityHeader must not be null");
+        this.rejectionStatus = requireNonNull(rejectionStatus, "Argument rejectionStatus must not be null");
+        if (rejectionStatus != HttpStatus.SERVICE_UNAVAILABLE && rejectionStatus != HttpStatus.NO_CONTENT) {
+            throw new IllegalArgumentException("Expected rejection status of either 503 or 204, but it was: "
+                    + rejectionStatus);
+        }
+        requireNonNull(meterRegistry, "Argument meterRegistry must not be null");
+
+        Gauge.builder("adselector.admission.limit", concurrencyLimit, AdaptiveConcurrencyLimit::limit)
+                .description("Current adaptive concurrency limit of selection requests")
+                    .register(meterRegistry);
+        Gauge.builder("adselector.admission.inflight", concurrencyLimit, AdaptiveConcurrencyLimit::inFlight)
+                .description("Selection requests admitted and not yet completed")
+                    .register(meterRegistry);
+        this.rejectionCounters = Arrays.stream(Priority.values())
+                .map(priority -> Counter.builder("adselector.admission.rejections")
+                        .description("Selection requests shed by admission control")
+                            .tag("priority", priority.name().toLowerCase(Locale.ROOT))
+                                .register(meterRegistry))
+                    .toArray(Counter[]::new);
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        final String path = exchange.getRequest().getPath().pathWithinApplication().value();
+        if (!enabled || !path.startsWith(SELECTION_API_PATH) || path.startsWith(SELECTION_STREAM_PATH)) {
+            return chain.filter(exchange);
+        }
+
+        final Priority priority = Priority.of(exchange.getRequest().getHeaders().getFirst(priorityHeader));
+        if (!concurrencyLimit.tryAcquire(priority)) {
+            return reject(exchange.getResponse(), priority);
+        }
+
+        final long start = System.nanoTime();
+        return chain.filter(exchange)
+                /**
+                 *  Failures are sampled as regular completions, mostly being rejected requests answered quickly,
+                 *  only cancellations (client gone or timed out) are considered dropped
+                 */
+                .doFinally(signal -> concurrencyLimit.release(start, System.nanoTime(), signal == SignalType.CANCEL));
+    }
+
+    private Mono<Void> reject(ServerHttpResponse response, Priority priority) {
+        rejectionCounters[priority.ordinal()].increment();
+        log.debug("Shed request of priority: {}, limit: {}", priority, concurrencyLimit.limit());
+
+        response.setStatusCode(rejectionStatus);
+        if (rejectionStatus == HttpStatus.SERVICE_UNAVAILABLE) {
+            response.getHeaders().set(HttpHeaders.RETRY_AFTER, "1");
+        }
+        return response.setComplete();
+    }
+
+    /**
+     * Admission precedes any other filter, shedding requests as cheaply as possible
+     */
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+}
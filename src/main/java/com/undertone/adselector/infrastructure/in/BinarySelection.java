@@ -0,0 +1,33 @@
+package com.undertone.adselector.infrastructure.in;
+
+import org.springframework.http.MediaType;
+
+/**
+ * Compact binary encoding of selection requests and responses, negotiated by content type as an alternative to JSON.
+ * All numbers are big-endian, strings are UTF-8 prefixed by their unsigned 16-bit byte length.
+ * <pre>
+ * request:    u8 format (1 = aids, 2 = slots), u16 k, [i64 slot epoch, slots format only],
+ *             u16 n followed by n aids (strings) or n plan slots (i32),
+ *             optionally u16 m followed by m segment ids (strings)
+ * response:   u16 n followed by n selected aids (strings)
+ * plan slots: i64 slot epoch, i32 n followed by n aids (strings) in slot order
+ * </pre>
+ * Slots are only meaningful for the slot epoch they were synced from (see {@link PlanSlotsController}), i.e. the plan
+ * generation which last assigned slots. Amendments keep the epoch, while loads (and amendments rebuilding the plan)
+ * renew it. Requests referencing any other epoch are answered by {@code 409 Conflict}.
+ */
+final class BinarySelection {
+
+    static final String MEDIA_TYPE_VALUE = "application/vnd.adselector.selection";
+
+    static final MediaType MEDIA_TYPE = MediaType.parseMediaType(MEDIA_TYPE_VALUE);
+
+    static final byte AIDS_FORMAT = 1;
+
+    static final byte SLOTS_FORMAT = 2;
+
+    static final int MAX_STRING_LENGTH = 0xffff;
+
+    private BinarySelection() {}
+
+}
@@ -0,0 +1,76 @@
+package com.undertone.adselector.infrastructure.in;
+
+import com.undertone.adselector.application.ports.in.UseCaseException.RejectionException;
+import com.undertone.adselector.model.Population;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.codec.Decoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+
+import static java.lang.String.format;
+
+/**
+ * Decodes binary selection requests into {@link BinarySelectionRequest}, handing request buffers over as is.
+ * Only the header is read here, see {@link BinarySelectionRequest} for resolution of entries.
+ */
+public class BinarySelectionDecoder implements Decoder<Population> {
+
+    private static final List<MimeType> DECODABLE_MIME_TYPES = List.of(BinarySelection.MEDIA_TYPE);
+
+    private final int maxInMemorySize;
+
+    public BinarySelectionDecoder(int maxInMemorySize) {
+        this.maxInMemorySize = maxInMemorySize;
+    }
+
+    @Override
+    public boolean canDecode(ResolvableType elementType, MimeType mimeType) {
+        final Class<?> type = elementType.toClass();
+        return (Population.class.equals(type) || BinarySelectionRequest.class.equals(type)) &&
+                mimeType != null && BinarySelection.MEDIA_TYPE.isCompatibleWith(mimeType);
+    }
+
+    @Override
+    public Flux<Population> decode(Publisher<DataBuffer> inputStream, ResolvableType elementType,
+                                   MimeType mimeType, Map<String, Object> hints) {
+        return Flux.from(decodeToMono(inputStream, elementType, mimeType, hints));
+    }
+
+    @Override
+    public Mono<Population> decodeToMono(Publisher<DataBuffer> inputStream, ResolvableType elementType,
+                                         MimeType mimeType, Map<String, Object> hints) {
+        return Mono.defer(() -> {
+            final long[] totalBytes = {0L};
+
+            return Flux.from(inputStream)
+                    .<DataBuffer>handle((buffer, sink) -> {
+                        if ((totalBytes[0] += buffer.readableByteCount()) > maxInMemorySize) {
+                            DataBufferUtils.release(buffer);
+                            sink.error(new DataBufferLimitException(
+                                    format("Exceeded limit on max bytes to buffer : %d", maxInMemorySize)));
+                        } else {
+                            sink.next(buffer);
+                        }
+                    })
+                    .collectList()
+                        .doOnDiscard(DataBuffer.class, DataBufferUtils::release)
+                            .<Population>map(BinarySelectionRequest::new)
+                                .onErrorMap(RejectionException.class, re -> new DecodingException(re.getMessage(), re));
+        });
+    }
+
+    @Override
+    public List<MimeType> getDecodableMimeTypes() {
+        return DECODABLE_MIME_TYPES;
+    }
+
+}
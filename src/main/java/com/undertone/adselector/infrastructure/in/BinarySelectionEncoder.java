@@ -0,0 +1,165 @@
+package com.undertone.adselector.infrastructure.in;
+
+import com.undertone.adselector.model.AdBudgetPlan;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.Encoder;
+import org.springframework.core.codec.EncodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.lang.String.format;
+
+/**
+ * Encodes selection responses and plan slots, laid out as described by {@link BinarySelection},
+ * writing aids straight into a single response buffer sized upfront.
+ */
+public class BinarySelectionEncoder implements Encoder<Object> {
+
+    private static final List<MimeType> ENCODABLE_MIME_TYPES = List.of(BinarySelection.MEDIA_TYPE);
+
+    private static final Set<Class<?>> ENCODABLE_TYPES = Set.of(SelectAdResponse.class, SelectAdsResponse.class,
+            PlanSlots.class);
+
+    @Override
+    public boolean canEncode(ResolvableType elementType, MimeType mimeType) {
+        return ENCODABLE_TYPES.contains(elementType.toClass()) &&
+                mimeType != null && BinarySelection.MEDIA_TYPE.isCompatibleWith(mimeType);
+    }
+
+    @Override
+    public Flux<DataBuffer> encode(Publisher<?> inputStream, DataBufferFactory bufferFactory,
+                                   ResolvableType elementType, MimeType mimeType, Map<String, Object> hints) {
+        return Flux.from(inputStream)
+                .map(value -> encodeValue(value, bufferFactory, elementType, mimeType, hints));
+    }
+
+    @Override
+    public DataBuffer encodeValue(Object value, DataBufferFactory bufferFactory, ResolvableType valueType,
+                                  MimeType mimeType, Map<String, Object> hints) {
+        if (value instanceof SelectAdResponse response) {
+            final DataBuffer buffer = bufferFactory.allocateBuffer(4 + utf8Length(response.a()));
+            return writing(buffer, () -> {
+                writeShort(buffer, 1);
+                writeString(buffer, response.a());
+            });
+        }
+
+        if (value instanceof SelectAdsResponse response) {
+            int capacity = 2;
+            for (String aid : response.a()) {
+                capacity += 2 + utf8Length(aid);
+            }
+            final DataBuffer buffer = bufferFactory.allocateBuffer(capacity);
+            return writing(buffer, () -> {
+                writeShort(buffer, response.a().size());
+                for (String aid : response.a()) {
+                    writeString(buffer, aid);
+                }
+            });
+        }
+
+        if (value instanceof PlanSlots planSlots) {
+            final AdBudgetPlan plan = planSlots.plan();
+            final DataBuffer buffer = bufferFactory.allocateBuffer(12 + plan.slotCount() * 16);
+            return writing(buffer, () -> {
+                buffer.write(longBytes(plan.slotEpoch()));
+                buffer.write(intBytes(plan.slotCount()));
+                for (int slot = 0; slot < plan.slotCount(); slot++) {
+                    writeString(buffer, plan.aidOf(slot).orElse(""));
+                }
+            });
+        }
+
+        throw new EncodingException("Unsupported value of type: " + value.getClass().getName());
+    }
+
+    @Override
+    public List<MimeType> getEncodableMimeTypes() {
+        return ENCODABLE_MIME_TYPES;
+    }
+
+    /**
+     * Releases buffer if writing fails
+     */
+    private static DataBuffer writing(DataBuffer buffer, Runnable writes) {
+        try {
+            writes.run();
+            return buffer;
+        } catch (RuntimeException re) {
+            DataBufferUtils.release(buffer);
+            throw re;
+        }
+    }
+
+    private static void writeString(DataBuffer buffer, String value) {
+        final int length = utf8Length(value);
+        if (length > BinarySelection.MAX_STRING_LENGTH) {
+            throw new EncodingException(format("String of %d bytes exceeds max length of %d",
+                    length, BinarySelection.MAX_STRING_LENGTH));
+        }
+        writeShort(buffer, length);
+
+        /**
+         *  Aids are mostly ASCII, written as they are, only others are encoded upfront.
+         *  Equal lengths may also stem from unpaired surrogates, replaced as the UTF-8 encoder would.
+         */
+        if (length == value.length()) {
+            for (int i = 0; i < length; i++) {
+                final char c = value.charAt(i);
+                buffer.write(c < 0x80 ? (byte) c : (byte) '?');
+            }
+        } else {
+            buffer.write(value.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void writeShort(DataBuffer buffer, int value) {
+        buffer.write((byte) (value >>> 8));
+        buffer.write((byte) value);
+    }
+
+    private static byte[] intBytes(int value) {
+        return new byte[]{(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+    }
+
+    private static byte[] longBytes(long value) {
+        final byte[] bytes = new byte[8];
+        for (int i = 7; i >= 0; i--) {
+            bytes[i] = (byte) value;
+            value >>>= 8;
+        }
+        return bytes;
+    }
+
+    /**
+     * @return UTF-8 encoded length, computed without encoding
+     */
+    static int utf8Length(String value) {
+        final int length = value.length();
+        int encoded = length;
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+            if (c >= 0x80) {
+                if (c < 0x800) {
+                    encoded += 1;
+                } else if (!Character.isSurrogate(c)) {
+                    encoded += 2;
+                } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    encoded += 2; // 4 bytes for a pair of chars
+                    i++;
+                } // unpaired surrogates are replaced by a single byte
+            }
+        }
+        return encoded;
+    }
+
+}
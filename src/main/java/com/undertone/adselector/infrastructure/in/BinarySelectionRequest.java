@@ -0,0 +1,213 @@
+package com.undertone.adselector.infrastructure.in;
+
+import com.undertone.adselector.application.ports.in.UseCaseException.RejectionException;
+import com.undertone.adselector.model.AdBudget;
+import com.undertone.adselector.model.AdBudgetPlan;
+import com.undertone.adselector.model.Population;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Population backed by binary request payload, laid out as described by {@link BinarySelection}.
+ * Header (format, requested count and slot epoch) is read upon construction, entries upon resolution:
+ * aids are looked up in the byte keyed plan index straight out of the request buffer, slots are fetched
+ * as they are. Duplicates are dropped using a pooled bitset over plan slots (see {@link SlotSet}).
+ * <p>
+ * A payload held by a single buffer is read in place, payloads split between buffers are copied once.
+ * Instances retain the request buffer until {@link #release()} is called.
+ */
+final class BinarySelectionRequest implements Population {
+
+    private static final int AIDS_HEADER_LENGTH = 3;
+    private static final int SLOTS_HEADER_LENGTH = 11;
+
+    private final DataBuffer retained;
+    private final ByteBuffer payload;
+    private final byte format;
+    private final int count;
+    private final long slotEpoch;
+
+    private boolean released;
+
+    /**
+     * @throws RejectionException if payload header is malformed, in which case chunks are released
+     */
+    BinarySelectionRequest(List<DataBuffer> chunks) throws RejectionException {
+        requireNonNull(chunks, "Argument chunks must not be null");
+
+        final ByteBuffer single = chunks.size() == 1 ? singleByteBufferOf(chunks.get(0)) : null;
+        if (single != null) {
+            this.retained = chunks.get(0);
+            this.payload = single;
+        } else {
+            this.retained = null;
+            this.payload = copyOf(chunks);
+        }
+
+        try {
+            if (payload.remaining() < AIDS_HEADER_LENGTH) {
+                throw malformed();
+            }
+            this.format = payload.get(0);
+            this.count = payload.getShort(1) & 0xffff;
+            if (format == BinarySelection.SLOTS_FORMAT) {
+                if (payload.remaining() < SLOTS_HEADER_LENGTH) {
+                    throw malformed();
+                }
+                this.slotEpoch = payload.getLong(AIDS_HEADER_LENGTH);
+            } else if (format == BinarySelection.AIDS_FORMAT) {
+                this.slotEpoch = 0L;
+            } else {
+                throw new RejectionException(format("Unknown selection request format: %d", format));
+            }
+        } catch (RejectionException re) {
+            release();
+            throw re;
+        }
+    }
+
+    /**
+     * @return number of distinct selections requested
+     */
+    int count() {
+        return count;
+    }
+
+    /**
+     * Synchronized against {@link #release()}, since a cancelled request might release buffers while being resolved
+     * @throws StalePlanException if slots were synced from another slot epoch than the one of given plan
+     */
+    @Override
+    public synchronized List<AdBudget> resolve(AdBudgetPlan plan) {
+        requireNonNull(plan, "Argument plan must not be null");
+        if (released) {
+            return List.of();
+        }
+
+        final boolean slots = format == BinarySelection.SLOTS_FORMAT;
+        if (slots && slotEpoch != plan.slotEpoch()) {
+            throw new StalePlanException(format("Request slots of slot epoch: %d, but current is: %d",
+                    slotEpoch, plan.slotEpoch()));
+        }
+
+        final SlotSet slotSet = SlotSet.acquire(plan.slotCount());
+        try {
+            final int limit = payload.limit();
+            int position = slots ? SLOTS_HEADER_LENGTH : AIDS_HEADER_LENGTH;
+
+            final int entryCount = unsignedShort(position, limit);
+            position += 2;
+            final List<AdBudget> resolved = new ArrayList<>(entryCount);
+            for (int i = 0; i < entryCount; i++) {
+                if (slots) {
+                    require(position + 4, limit);
+                    add(plan, slotSet, resolved, payload.getInt(position));
+                    position += 4;
+                } else {
+                    final int length = unsignedShort(position, limit);
+                    require(position += 2 + length, limit);
+                    add(plan, slotSet, resolved, plan.slotOf(payload, position - length, length));
+                }
+            }
+
+            /**
+             *  Segments are optional, hence payload may end right after entries
+             */
+            if (position < limit) {
+                final int segmentCount = unsignedShort(position, limit);
+                position += 2;
+                for (int i = 0; i < segmentCount; i++) {
+                    final int length = unsignedShort(position, limit);
+                    require(position += 2 + length, limit);
+                    final byte[] segmentId = new byte[length];
+                    payload.get(position - length, segmentId);
+                    for (int slot : plan.fetchSegmentSlots(new String(segmentId, StandardCharsets.UTF_8))) {
+                        add(plan, slotSet, resolved, slot);
+                    }
+                }
+            }
+
+            if (position != limit) {
+                throw malformed();
+            }
+            return resolved;
+        } finally {
+            slotSet.release();
+        }
+    }
+
+    synchronized void release() {
+        if (!released) {
+            released = true;
+            if (retained != null) {
+                DataBufferUtils.release(retained);
+            }
+        }
+    }
+
+    private static void add(AdBudgetPlan plan, SlotSet slotSet, List<AdBudget> resolved, int slot) {
+        if (slot >= 0 && slotSet.add(slot)) {
+            plan.fetch(slot).ifPresent(resolved::add);
+        }
+    }
+
+    private int unsignedShort(int position, int limit) {
+        require(position + 2, limit);
+        return payload.getShort(position) & 0xffff;
+    }
+
+    private static void require(int end, int limit) {
+        if (end > limit) {
+            throw malformed();
+        }
+    }
+
+    /**
+     * @return view of buffer content, or null if buffer is not backed by a single contiguous region
+     */
+    private static ByteBuffer singleByteBufferOf(DataBuffer buffer) {
+        try (DataBuffer.ByteBufferIterator byteBuffers = buffer.readableByteBuffers()) {
+            if (!byteBuffers.hasNext()) {
+                return ByteBuffer.allocate(0);
+            }
+            final ByteBuffer byteBuffer = byteBuffers.next();
+            return byteBuffers.hasNext() ? null : byteBuffer.slice();
+        }
+    }
+
+    private static ByteBuffer copyOf(List<DataBuffer> chunks) {
+        int length = 0;
+        for (DataBuffer chunk : chunks) {
+            length += chunk.readableByteCount();
+        }
+        final byte[] bytes = new byte[length];
+        int offset = 0;
+        for (DataBuffer chunk : chunks) {
+            final int readable = chunk.readableByteCount();
+            chunk.read(bytes, offset, readable);
+            offset += readable;
+            DataBufferUtils.release(chunk);
+        }
+        return ByteBuffer.wrap(bytes);
+    }
+
+    private static RejectionException malformed() {
+        return new RejectionException("Malformed binary selection request payload");
+    }
+
+    /**
+     * Request references slots of another slot epoch than the current one, its caller is to resync slots
+     */
+    static class StalePlanException extends RejectionException {
+        StalePlanException(String message) { super(message); }
+    }
+
+}
@@ -0,0 +1,96 @@
+package com.undertone.adselector.infrastructure.in;
+
+import com.undertone.adselector.model.Deadline;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Puts a {@link Deadline} of selection API requests into their Reactor context, once request arrived.
+ * Callers state their remaining response budget in milliseconds by a request header (relative rather than absolute,
+ * so clocks of callers need not be synchronized), requests lacking one are given the configured default budget,
+ * if any. Budgets exceeding the configured max are capped by it. Selection streams are long-lived, and not given any.
+ */
+@Slf4j
+@Component
+public class DeadlineFilter implements WebFilter, Ordered {
+
+    static final String DEFAULT_DEADLINE_HEADER = "X-Request-Deadline-Ms";
+
+    private static final String SELECTION_API_PATH = "/api/";
+    private static final String SELECTION_STREAM_PATH = "/api/v1/stream/";
+
+    private final String deadlineHeader;
+    private final Duration defaultBudget;
+    private final Duration maxBudget;
+
+    public DeadlineFilter() {
+        this(DEFAULT_DEADLINE_HEADER, Duration.ZERO, Duration.ofSeconds(1));
+    }
+
+    /**
+     * @param defaultBudget budget of requests lacking deadline header, zero for none
+     */
+    @Autowired
+    public DeadlineFilter(@Value("${deadline.header:" + DEFAULT_DEADLINE_HEADER + "}") String deadlineHeader,
+                          @Value("${deadline.default:PT0S}") Duration defaultBudget,
+                          @Value("${deadline.max:PT1S}") Duration maxBudget) {
+        this.deadlineHeader = requireNonNull(deadlineHeader, "Argument deadlineHeader must not be null");
+        this.defaultBudget = requireNonNull(defaultBudget, "Argument defaultBudget must not be null");
+        this.maxBudget = requireNonNull(maxBudget, "Argument maxBudget must not be null");
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        final String path = exchange.getRequest().getPath().pathWithinApplication().value();
+        if (!path.startsWith(SELECTION_API_PATH) || path.startsWith(SELECTION_STREAM_PATH)) {
+            return chain.filter(exchange);
+        }
+
+        final Duration budget = budgetOf(exchange.getRequest().getHeaders().getFirst(deadlineHeader));
+        if (budget == null) {
+            return chain.filter(exchange);
+        }
+
+        final Deadline deadline = Deadline.after(budget);
+        return chain.filter(exchange)
+                .contextWrite(context -> context.put(Deadline.class, deadline));
+    }
+
+    /**
+     * @return budget stated by header, otherwise default budget, null if neither is set
+     */
+    private Duration budgetOf(String headerValue) {
+        if (headerValue != null) {
+            try {
+                return capped(Duration.ofMillis(Math.max(0L, Long.parseLong(headerValue.trim()))));
+            } catch (NumberFormatException nfe) {
+                log.debug("Ignoring malformed deadline header: {}", headerValue);
+            }
+        }
+        return defaultBudget.isZero() ? null : capped(defaultBudget);
+    }
+
+    private Duration capped(Duration budget) {
+        return budget.compareTo(maxBudget) > 0 ? maxBudget : budget;
+    }
+
+    /**
+     * Deadline is set once request got admitted, see {@link AdmissionControlFilter}
+     */
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE + 1;
+    }
+
+}
@@ -0,0 +1,180 @@
+package com.undertone.adselector.infrastructure.in;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Actuator endpoint starting timed flight recordings, so incidents could be captured without restarting.
+ * Recordings combine JDK default settings with ad selector events (see {@code jfr/adselector.jfc}),
+ * and are dumped into the configured directory once their duration elapses. A single recording runs at a time.
+ * Recordings ongoing once the endpoint is destroyed are stopped and dumped.
+ * <pre>
+ * POST   /actuator/jfr {"duration": "PT60S"}
+ * GET    /actuator/jfr
+ * DELETE /actuator/jfr
+ * </pre>
+ */
+@Slf4j
+@Component
+@Endpoint(id = "jfr")
+public class FlightRecordingEndpoint implements DisposableBean {
+
+    static final String SETTINGS_RESOURCE = "/jfr/adselector.jfc";
+
+    private static final int STATUS_CONFLICT = 409;
+
+    private static final Duration DEFAULT_DURATION = Duration.ofSeconds(60);
+
+    private static final DateTimeFormatter RECORDING_NAME_FORMAT =
+            DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss").withZone(ZoneOffset.UTC);
+
+    private final Path dumpDirectory;
+    private final Duration maxDuration;
+    private final Map<String, String> settings;
+    private final FlightRecorderListener dumpListener;
+
+    private final AtomicReference<Recording> ongoing = new AtomicReference<>();
+    private volatile Path lastDump;
+
+    @Autowired
+    public FlightRecordingEndpoint(@Value("${jfr.dump.directory:${java.io.tmpdir}}") Path dumpDirectory,
+                                   @Value("${jfr.recording.max.duration:PT10M}") Duration maxDuration) {
+        this.dumpDirectory = requireNonNull(dumpDirectory, "Argument dumpDirectory must not be null");
+        this.maxDuration = requireNonNull(maxDuration, "Argument maxDuration must not be null");
+        this.settings = loadSettings();
+
+        this.dumpListener = new FlightRecorderListener() {
+            @Override
+            public void recordingStateChanged(Recording recording) {
+                if (recording.getState() == RecordingState.STOPPED && ongoing.compareAndSet(recording, null)) {
+                    lastDump = recording.getDestination();
+                    log.info("Flight recording: {} dumped into: {}", recording.getName(), recording.getDestination());
+                    recording.close();
+                }
+            }
+        };
+        FlightRecorder.addListener(dumpListener);
+    }
+
+    @ReadOperation
+    public Map<String, Object> status() {
+        final Map<String, Object> status = new LinkedHashMap<>();
+        Optional.ofNullable(ongoing.get()).ifPresentOrElse(recording -> {
+            status.put("state", "recording");
+            status.put("name", recording.getName());
+            status.put("destination", String.valueOf(recording.getDestination()));
+            status.put("endsAt", String.valueOf(recording.getStartTime().plus(recording.getDuration())));
+        }, () -> status.put("state", "idle"));
+        Optional.ofNullable(lastDump).ifPresent(dump -> status.put("lastDump", dump.toString()));
+        return status;
+    }
+
+    /**
+     * @param duration recording duration, 60 seconds unless given, must not exceed jfr.recording.max.duration
+     */
+    @WriteOperation
+    public WebEndpointResponse<Map<String, Object>> record(@Nullable Duration duration) {
+        final Duration recordingDuration = Optional.ofNullable(duration).orElse(DEFAULT_DURATION);
+        if (recordingDuration.isNegative() || recordingDuration.isZero() || recordingDuration.compareTo(maxDuration) > 0) {
+            return new WebEndpointResponse<>(Map.of("error",
+                    format("Duration must be positive and at most: %s, but it was: %s", maxDuration, recordingDuration)),
+                        WebEndpointResponse.STATUS_BAD_REQUEST);
+        }
+
+        final Recording recording = new Recording(settings);
+        if (!ongoing.compareAndSet(null, recording)) {
+            recording.close();
+            return new WebEndpointResponse<>(status(), STATUS_CONFLICT);
+        }
+
+        try {
+            Files.createDirectories(dumpDirectory);
+            recording.setName("adselector-" + RECORDING_NAME_FORMAT.format(Instant.now()));
+            recording.setToDisk(true);
+            recording.setDuration(recordingDuration);
+            recording.setDestination(dumpDirectory.resolve(recording.getName() + ".jfr"));
+            recording.start();
+        } catch (IOException | RuntimeException ex) {
+            ongoing.compareAndSet(recording, null);
+            recording.close();
+            log.error("Failed to start flight recording into: {}", dumpDirectory, ex);
+            return new WebEndpointResponse<>(Map.of("error", String.valueOf(ex.getMessage())),
+                    WebEndpointResponse.STATUS_INTERNAL_SERVER_ERROR);
+        }
+
+        log.info("Started flight recording: {} for: {}", recording.getName(), recordingDuration);
+        return new WebEndpointResponse<>(status(), WebEndpointResponse.STATUS_OK);
+    }
+
+    /**
+     * Stops ongoing recording before its duration elapsed, dumping what was recorded so far
+     */
+    @DeleteOperation
+    public Map<String, Object> stop() {
+        Optional.ofNullable(ongoing.get()).ifPresent(recording -> {
+            try {
+                recording.stop();
+            } catch (IllegalStateException ise) {
+                log.debug("Flight recording: {} already stopped", recording.getName());
+            }
+        });
+        return status();
+    }
+
+    @Override
+    public void destroy() {
+        stop();
+        FlightRecorder.removeListener(dumpListener);
+    }
+
+    private static Map<String, String> loadSettings() {
+        try (Reader reader = new InputStreamReader(
+                requireNonNull(FlightRecordingEndpoint.class.getResourceAsStream(SETTINGS_RESOURCE),
+                        "Missing flight recorder settings: " + SETTINGS_RESOURCE), StandardCharsets.UTF_8)) {
+
+            final Map<String, String> settings = new HashMap<>(Configuration.getConfiguration("default").getSettings());
+            settings.putAll(Configuration.create(reader).getSettings());
+            return settings;
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Failed reading flight recorder settings: " + SETTINGS_RESOURCE, ioe);
+        } catch (ParseException pe) {
+            throw new IllegalStateException("Failed parsing flight recorder settings: " + SETTINGS_RESOURCE, pe);
+        }
+    }
+
+}
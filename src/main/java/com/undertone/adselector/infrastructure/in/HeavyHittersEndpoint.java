@@ -0,0 +1,49 @@
+package com.undertone.adselector.infrastructure.in;
+
+import com.undertone.adselector.application.ports.in.ReportHeavyHittersUseCase;
+import com.undertone.adselector.application.ports.in.ReportHeavyHittersUseCase.HeavyHitter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Actuator endpoint reporting aids dominating recent traffic, both requested and selected, as estimated counts
+ * <pre>
+ * GET /actuator/heavyhitters?limit=20
+ * </pre>
+ */
+@Component
+@Endpoint(id = "heavyhitters")
+public class HeavyHittersEndpoint {
+
+    private static final int DEFAULT_LIMIT = 20;
+
+    private final ReportHeavyHittersUseCase heavyHitters;
+
+    @Autowired
+    public HeavyHittersEndpoint(ReportHeavyHittersUseCase heavyHitters) {
+        this.heavyHitters = requireNonNull(heavyHitters, "Argument heavyHitters must not be null");
+    }
+
+    /**
+     * @param limit maximal number of aids reported of either kind, 20 unless given, capped by heavyhitters.top
+     */
+    @ReadOperation
+    public Map<String, List<HeavyHitter>> heavyHitters(@Nullable Integer limit) {
+        final int reportLimit = Optional.ofNullable(limit).orElse(DEFAULT_LIMIT);
+        final Map<String, List<HeavyHitter>> report = new LinkedHashMap<>();
+        report.put("requested", heavyHitters.topRequested(reportLimit));
+        report.put("selected", heavyHitters.topSelected(reportLimit));
+        return report;
+    }
+
+}
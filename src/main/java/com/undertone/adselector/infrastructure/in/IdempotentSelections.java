@@ -0,0 +1,160 @@
+package com.undertone.adselector.infrastructure.in;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.undertone.adselector.application.ports.in.UseCaseException.RejectionException;
+import com.undertone.adselector.application.ports.out.IdempotencyStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Replays selections of requests retried under the same idempotency key, rather than selecting (and spending) again.
+ * <ul>
+ *     <li>Selections are kept by a local cache bounded by {@code idempotency.cache.max.size} entries, each evicted
+ *     {@code idempotency.ttl} after it was made</li>
+ *     <li>Retries arriving while the original selection is still in flight wait for it, the original selection
+ *     completes even if its own caller has gone away meanwhile</li>
+ *     <li>Once {@code idempotency.shared.enabled}, selections are also recorded by the shared {@link IdempotencyStore},
+ *     replaying them for retries reaching other instances. Shared store failures are tolerated by selecting as if
+ *     no selection was recorded</li>
+ *     <li>Failed selections are not kept, their retries select again</li>
+ * </ul>
+ * Every replayed selection saves spending one unit of quota per replayed aid, reported as such.
+ */
+@Slf4j
+@Component
+public class IdempotentSelections {
+
+    static final String DEFAULT_HEADER = "Idempotency-Key";
+
+    static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyStore sharedStore;
+    private final boolean enabled;
+    private final boolean sharedEnabled;
+    private final Duration ttl;
+
+    private final AsyncCache<String, List<String>> selections;
+
+    private final Counter localHitCounter;
+    private final Counter sharedHitCounter;
+    private final Counter missCounter;
+    private final Counter quotaSavedCounter;
+
+    public IdempotentSelections(IdempotencyStore sharedStore) {
+        this(sharedStore, true, 100_000, Duration.ofMinutes(10), false, new SimpleMeterRegistry());
+    }
+
+    @Autowired
+    public IdempotentSelections(IdempotencyStore sharedStore,
+                                @Value("${idempotency.enabled:true}") boolean enabled,
+                                @Value("${idempotency.cache.max.size:100000}") long maxSize,
+                                @Value("${idempotency.ttl:PT10M}") Duration ttl,
+                                @Value("${idempotency.shared.enabled:false}") boolean sharedEnabled,
+                                MeterRegistry meterRegistry) {
+        this.sharedStore = requireNonNull(sharedStore, "Argument sharedStore must not be null");
+        this.ttl = requireNonNull(ttl, "Argument ttl must not be null");
+        this.enabled = enabled;
+        this.sharedEnabled = sharedEnabled;
+
+        this.selections = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                    .expireAfterWrite(ttl)
+                        .buildAsync();
+
+        requireNonNull(meterRegistry, "Argument meterRegistry must not be null");
+        this.localHitCounter = lookupCounter("local", meterRegistry);
+        this.sharedHitCounter = lookupCounter("shared", meterRegistry);
+        this.missCounter = lookupCounter("miss", meterRegistry);
+        this.quotaSavedCounter = Counter.builder("adselector.idempotency.quota.saved")
+                .description("Quota units not spent by replaying selections to retries")
+                    .register(meterRegistry);
+        Gauge.builder("adselector.idempotency.cache.size", selections, cache -> cache.synchronous().estimatedSize())
+                .description("Selections kept by local idempotency cache")
+                    .register(meterRegistry);
+    }
+
+    /**
+     * @param key idempotency key stated by caller, null if none, scoped by caller to the requested operation
+     * @param selection selects for the request, subscribed at most once per key while its result is kept
+     * @return selection replayed for given key, otherwise the selection made
+     * @throws RejectionException if key exceeds max length
+     */
+    public Mono<List<String>> select(String key, Supplier<Mono<List<String>>> selection) throws RejectionException {
+        requireNonNull(selection, "Argument selection must not be null");
+        if (!enabled || key == null) {
+            return selection.get();
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            return Mono.error(new RejectionException(
+                    format("Idempotency key must not exceed %d characters, but it had: %d", MAX_KEY_LENGTH, key.length())));
+        }
+
+        return Mono.deferContextual(context -> {
+            final boolean[] computed = {false};
+            final CompletableFuture<List<String>> selected = selections.get(key, (ignored, executor) -> {
+                computed[0] = true;
+                /**
+                 *  Subscribed apart from its caller, carrying its context (e.g. request deadline) along
+                 */
+                return sharedOrSelect(key, selection).contextWrite(context).toFuture();
+            });
+
+            if (!computed[0]) {
+                localHitCounter.increment();
+                return Mono.fromFuture(selected, true)
+                        .doOnNext(replayed -> quotaSavedCounter.increment(replayed.size()));
+            }
+            return Mono.fromFuture(selected, true);
+        });
+    }
+
+    private Mono<List<String>> sharedOrSelect(String key, Supplier<Mono<List<String>>> selection) {
+        if (!sharedEnabled) {
+            return Mono.defer(selection).doOnSubscribe(ignored -> missCounter.increment());
+        }
+
+        return sharedStore.fetchSelection(key)
+                .onErrorResume(ex -> {
+                    log.debug("Ignoring failure to fetch shared selection of idempotency key: {}", key, ex);
+                    return Mono.empty();
+                })
+                .doOnNext(replayed -> {
+                    sharedHitCounter.increment();
+                    quotaSavedCounter.increment(replayed.size());
+                })
+                .switchIfEmpty(Mono.defer(() -> {
+                    missCounter.increment();
+                    return Mono.defer(selection)
+                            .flatMap(selected -> sharedStore.storeSelection(key, selected, ttl)
+                                    .onErrorResume(ex -> {
+                                        log.debug("Ignoring failure to store shared selection of idempotency key: {}", key, ex);
+                                        return Mono.empty();
+                                    })
+                                    .thenReturn(selected));
+                }));
+    }
+
+    private static Counter lookupCounter(String outcome, MeterRegistry meterRegistry) {
+        return Counter.builder("adselector.idempotency.lookups")
+                .description("Selections requested under idempotency keys, by where their selection was found")
+                    .tag("outcome", outcome)
+                        .register(meterRegistry);
+    }
+
+}
@@ -0,0 +1,79 @@
+package com.undertone.adselector.infrastructure.in;
+
+import com.undertone.adselector.application.ports.in.UseCaseException.RejectionException;
+import com.undertone.adselector.application.ports.out.AdBudgetPlanStore;
+import com.undertone.adselector.application.ports.out.InfrastructureException.StoreException.OperationFailedException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Upserts and removes individual ads of the plan served by this instance, without reloading it as a whole.
+ * Amendments apply to this instance only, and are lost once plan is reloaded unless written back to plan file
+ * (see {@code plan.amendments.persist.enabled}).
+ * <pre>
+ * PUT    /admin/v1/plan/ads/{aid} {"priority": 0.5, "quota": 100}
+ * DELETE /admin/v1/plan/ads/{aid}
+ * POST   /admin/v1/plan/ads       {"upserts": [{"aid": "a1", "priority": 0.5, "quota": 100}], "removals": ["a2"]}
+ * </pre>
+ */
+@Slf4j
+@RestController
+@RequestMapping("/admin/v1/plan/")
+public class PlanAmendmentController {
+
+    private final AdBudgetPlanStore planStore;
+    private final boolean enabled;
+    private final int maxBatchSize;
+
+    @Autowired
+    public PlanAmendmentController(AdBudgetPlanStore planStore,
+                                   @Value("${plan.amendments.enabled:false}") boolean enabled,
+                                   @Value("${plan.amendments.max.batch.size:1000}") int maxBatchSize) {
+        this.planStore = requireNonNull(planStore, "Argument planStore must not be null");
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Expected positive batch size, but it was: " + maxBatchSize);
+        }
+        this.enabled = enabled;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    @PutMapping("ads/{aid}")
+    public Mono<ResponseEntity<PlanAmendmentResponse>> upsert(@PathVariable String aid,
+                                                              @RequestBody PlanAmendmentRequest.Values values) {
+        return amend(Mono.fromCallable(() -> values.upsert(aid)));
+    }
+
+    @DeleteMapping("ads/{aid}")
+    public Mono<ResponseEntity<PlanAmendmentResponse>> remove(@PathVariable String aid) {
+        return amend(Mono.fromCallable(() -> PlanAmendmentRequest.removal(aid)));
+    }
+
+    @PostMapping("ads")
+    public Mono<ResponseEntity<PlanAmendmentResponse>> amend(@RequestBody PlanAmendmentRequest request) {
+        return amend(Mono.just(request));
+    }
+
+    private Mono<ResponseEntity<PlanAmendmentResponse>> amend(Mono<PlanAmendmentRequest> request) {
+        if (!enabled) {
+            return Mono.just(ResponseEntity.status(HttpStatus.FORBIDDEN).build());
+        }
+        return request
+                .map(amendment -> amendment.validate(maxBatchSize))
+                    .flatMap(amendment -> planStore.amend(amendment.upsertedAds(), amendment.removals()))
+                        .map(plan -> ResponseEntity.ok(new PlanAmendmentResponse(plan.generation(), plan.slotCount())))
+                .onErrorResume(RejectionException.class,
+                        ex -> Mono.just(ResponseEntity.badRequest().build()))
+                .onErrorResume(OperationFailedException.class, ex -> {
+                    log.warn("Failed amending ad budget plan: {}", ex.getMessage());
+                    return Mono.just(ResponseEntity.status(HttpStatus.CONFLICT).build());
+                });
+    }
+
+}
@@ -0,0 +1,97 @@
+package com.undertone.adselector.infrastructure.in;
+
+import com.undertone.adselector.application.ports.in.UseCaseException.RejectionException;
+import com.undertone.adselector.model.AdBudget;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static java.lang.String.format;
+
+/**
+ * @param upserts ads to add or replace
+ * @param removals aids of ads to remove
+ */
+public record PlanAmendmentRequest(List<Upsert> upserts, List<String> removals) {
+
+    public PlanAmendmentRequest {
+        upserts = Optional.ofNullable(upserts).orElse(List.of());
+        removals = Optional.ofNullable(removals).orElse(List.of());
+    }
+
+    /**
+     * Fields are boxed, so missing ones are told apart from zeros and rejected rather than bound to 0
+     */
+    public record Upsert(String aid, Double priority, Long quota) {}
+
+    /**
+     * @param priority priority of ad, replacing its former one
+     * @param quota quota of ad, replacing its former one
+     */
+    public record Values(Double priority, Long quota) {
+
+        public PlanAmendmentRequest upsert(String aid) {
+            return new PlanAmendmentRequest(List.of(new Upsert(aid, priority, quota)), List.of());
+        }
+
+    }
+
+    public static PlanAmendmentRequest removal(String aid) {
+        return new PlanAmendmentRequest(List.of(), List.of(aid));
+    }
+
+    /**
+     * @return upserted ads, once validated by {@link #validate(int)}
+     */
+    public List<AdBudget> upsertedAds() {
+        return upserts.stream()
+                .<AdBudget>map(upsert -> new UpsertedAd(upsert.aid(), upsert.priority(), upsert.quota()))
+                    .toList();
+    }
+
+    /**
+     * @throws RejectionException if amendment exceeds given size, has blank aids, missing or invalid values,
+     *                            or an aid both upserted and removed
+     */
+    public PlanAmendmentRequest validate(int maxBatchSize) throws RejectionException {
+        if (upserts.size() + removals.size() > maxBatchSize) {
+            throw new RejectionException(format("Expected at most %d amended ads, but they were: %d",
+                    maxBatchSize, upserts.size() + removals.size()));
+        }
+        if (upserts.isEmpty() && removals.isEmpty()) {
+            throw new RejectionException("Expected at least one amended ad");
+        }
+
+        final Set<String> upserted = new HashSet<>();
+        for (Upsert upsert : upserts) {
+            if (upsert == null || isBlank(upsert.aid())) {
+                throw new RejectionException("Expected upserted ads to have an aid");
+            }
+            if (upsert.priority() == null || upsert.quota() == null) {
+                throw new RejectionException(format("Expected both priority and quota of ad: %s", upsert.aid()));
+            }
+            if (!Double.isFinite(upsert.priority()) || upsert.priority() < 0 || upsert.quota() < 0) {
+                throw new RejectionException(format("Expected non negative priority and quota of ad: %s", upsert.aid()));
+            }
+            upserted.add(upsert.aid());
+        }
+        for (String removal : removals) {
+            if (isBlank(removal)) {
+                throw new RejectionException("Expected removed aids not to be blank");
+            }
+            if (upserted.contains(removal)) {
+                throw new RejectionException(format("Ad: %s is both upserted and removed", removal));
+            }
+        }
+        return this;
+    }
+
+    private static boolean isBlank(String aid) {
+        return aid == null || aid.isBlank();
+    }
+
+    private record UpsertedAd(String aid, double priority, long quota) implements AdBudget {}
+
+}
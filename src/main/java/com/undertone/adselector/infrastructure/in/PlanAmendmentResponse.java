@@ -0,0 +1,7 @@
+package com.undertone.adselector.infrastructure.in;
+
+/**
+ * @param generation generation of amended plan
+ * @param ads slots of amended plan, including those of removed ads until plan is reloaded
+ */
+public record PlanAmendmentResponse(long generation, int ads) {}
@@ -0,0 +1,82 @@
+package com.undertone.adselector.infrastructure.in;
+
+import com.undertone.adselector.application.ports.out.AdBudgetPlanPublisher;
+import com.undertone.adselector.application.ports.out.AdBudgetPlanStore;
+import com.undertone.adselector.model.AdBudgetPlan;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Actuator endpoint reporting the plan served by this instance, and publishing its plan file for every instance
+ * following published plans (see {@code plan.source}) to roll out. Only {@code plan.file} is ever published,
+ * and only once {@code plan.publish.enabled} is set.
+ * <pre>
+ * GET  /actuator/plan
+ * POST /actuator/plan
+ * </pre>
+ */
+@Slf4j
+@Component
+@Endpoint(id = "plan")
+public class PlanEndpoint {
+
+    private final AdBudgetPlanStore adBudgetPlanStore;
+    private final AdBudgetPlanPublisher adBudgetPlanPublisher;
+    private final Path planFile;
+    private final boolean publishEnabled;
+
+    @Autowired
+    public PlanEndpoint(AdBudgetPlanStore adBudgetPlanStore,
+                        AdBudgetPlanPublisher adBudgetPlanPublisher,
+                        @Value("${plan.file}") Path planFile,
+                        @Value("${plan.publish.enabled:false}") boolean publishEnabled) {
+        this.adBudgetPlanStore = requireNonNull(adBudgetPlanStore, "Argument adBudgetPlanStore must not be null");
+        this.adBudgetPlanPublisher = requireNonNull(adBudgetPlanPublisher, "Argument adBudgetPlanPublisher must not be null");
+        this.planFile = requireNonNull(planFile, "Argument planFile must not be null");
+        this.publishEnabled = publishEnabled;
+    }
+
+    @ReadOperation
+    public Map<String, Object> plan() {
+        final AdBudgetPlan plan = adBudgetPlanStore.currentPlan();
+        final Map<String, Object> report = new LinkedHashMap<>();
+        report.put("generation", plan.generation());
+        report.put("ads", plan.slotCount());
+        report.put("segments", plan.segmentIds().size());
+        return report;
+    }
+
+    /**
+     * Publishes plan.file, failures are logged rather than echoed back
+     */
+    @WriteOperation
+    public Mono<WebEndpointResponse<Map<String, Object>>> publish() {
+        if (!publishEnabled) {
+            return Mono.just(new WebEndpointResponse<>(Map.of("error", "Plan publishing is disabled"),
+                    HttpStatus.FORBIDDEN.value()));
+        }
+        return adBudgetPlanPublisher.publish(planFile)
+                .map(version -> new WebEndpointResponse<Map<String, Object>>(
+                        Map.of("file", planFile.toString(), "version", version), WebEndpointResponse.STATUS_OK))
+                    .onErrorResume(ex -> {
+                        log.error("Failed publishing plan file: {}", planFile, ex);
+                        return Mono.just(new WebEndpointResponse<>(Map.of("error", "Failed publishing plan file"),
+                                WebEndpointResponse.STATUS_INTERNAL_SERVER_ERROR));
+                    });
+    }
+
+}
@@ -0,0 +1,169 @@
+package com.undertone.adselector.infrastructure.in;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.undertone.adselector.application.ports.out.AdBudgetPlanStore;
+import com.undertone.adselector.application.ports.out.AdDistributionExporter;
+import com.undertone.adselector.model.AdBudgetPlan;
+import com.undertone.adselector.model.AdDistribution;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Semaphore;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Streams every ad of the plan served by this instance joined with its remaining quota, as NDJSON or CSV.
+ * Rows are encoded and written as the client reads them, hence memory stays flat regardless of plan size.
+ * <pre>
+ * GET /admin/v1/plan/export?format=ndjson
+ * GET /admin/v1/plan/export?format=csv
+ * </pre>
+ * The exported plan generation is returned in the {@value #GENERATION_HEADER} header. Remaining quotas are read
+ * page by page while streaming, and are not a point in time snapshot of spending.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/admin/v1/plan/")
+public class PlanExportController {
+
+    static final String GENERATION_HEADER = "X-Plan-Generation";
+
+    /**
+     * Rows encoded into every written buffer
+     */
+    private static final int ROWS_PER_BUFFER = 256;
+
+    private final AdBudgetPlanStore planStore;
+    private final AdDistributionExporter exporter;
+    private final boolean enabled;
+    private final Semaphore exports;
+
+    @Autowired
+    public PlanExportController(AdBudgetPlanStore planStore,
+                                AdDistributionExporter exporter,
+                                @Value("${plan.export.enabled:false}") boolean enabled,
+                                @Value("${plan.export.max.concurrent:1}") int maxConcurrentExports) {
+        this.planStore = requireNonNull(planStore, "Argument planStore must not be null");
+        this.exporter = requireNonNull(exporter, "Argument exporter must not be null");
+        if (maxConcurrentExports < 1) {
+            throw new IllegalArgumentException("Expected positive concurrent exports, but it was: " + maxConcurrentExports);
+        }
+        this.enabled = enabled;
+        this.exports = new Semaphore(maxConcurrentExports);
+    }
+
+    public enum ExportFormat {
+
+        NDJSON(MediaType.APPLICATION_NDJSON) {
+            @Override
+            void append(StringBuilder rows, AdDistribution distribution) {
+                rows.append("{\"aid\":\"");
+                JsonStringEncoder.getInstance().quoteAsString(distribution.aid(), rows);
+                rows.append("\",\"priority\":").append(distribution.priority())
+                        .append(",\"quota\":").append(distribution.quota())
+                            .append(",\"remainingQuota\":").append(distribution.remainingQuota())
+                                .append("}\n");
+            }
+        },
+
+        CSV(new MediaType("text", "csv", StandardCharsets.UTF_8)) {
+            @Override
+            String header() {
+                return "aid,priority,quota,remainingQuota\n";
+            }
+
+            @Override
+            void append(StringBuilder rows, AdDistribution distribution) {
+                final String aid = distribution.aid();
+                if (aid.indexOf(',') >= 0 || aid.indexOf('"') >= 0 || aid.indexOf('\n') >= 0 || aid.indexOf('\r') >= 0) {
+                    rows.append('"').append(aid.replace("\"", "\"\"")).append('"');
+                } else {
+                    rows.append(aid);
+                }
+                rows.append(',').append(distribution.priority())
+                        .append(',').append(distribution.quota())
+                            .append(',').append(distribution.remainingQuota())
+                                .append('\n');
+            }
+        };
+
+        private final MediaType mediaType;
+
+        ExportFormat(MediaType mediaType) {
+            this.mediaType = mediaType;
+        }
+
+        String header() {
+            return "";
+        }
+
+        abstract void append(StringBuilder rows, AdDistribution distribution);
+
+        static Optional<ExportFormat> of(String format) {
+            return Arrays.stream(values()).filter(value -> value.name().equalsIgnoreCase(format)).findFirst();
+        }
+
+        DataBuffer encode(List<AdDistribution> distributions) {
+            final StringBuilder rows = new StringBuilder(distributions.size() * 64);
+            distributions.forEach(distribution -> append(rows, distribution));
+            return DefaultDataBufferFactory.sharedInstance.wrap(rows.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @GetMapping("export")
+    public Mono<ResponseEntity<Flux<DataBuffer>>> export(@RequestParam(name = "format", defaultValue = "ndjson") String requestedFormat) {
+        if (!enabled) {
+            return Mono.just(ResponseEntity.status(HttpStatus.FORBIDDEN).build());
+        }
+        final Optional<ExportFormat> exportFormat = ExportFormat.of(requestedFormat);
+        if (exportFormat.isEmpty()) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        final ExportFormat format = exportFormat.get();
+        if (exports.availablePermits() == 0) {
+            return Mono.just(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build());
+        }
+
+        final AdBudgetPlan plan = planStore.currentPlan();
+        final Flux<DataBuffer> rows = Flux.using(exports::tryAcquire,
+                        /**
+                         * Acquired by subscribing to the body and released once it completes, fails or the client
+                         * disconnects, hence bodies never written hold no permit. Exports racing for the last permit
+                         * after answering OK fail their body
+                         */
+                        acquired -> acquired
+                                ? Flux.concat(
+                                        Mono.just(format.header()).filter(header -> !header.isEmpty())
+                                                .map(header -> DefaultDataBufferFactory.sharedInstance.wrap(header.getBytes(StandardCharsets.UTF_8))),
+                                        exporter.exportDistributions(plan)
+                                                .buffer(ROWS_PER_BUFFER)
+                                                    .map(format::encode))
+                                : Flux.error(new IllegalStateException("Exceeded concurrent exports")),
+                        acquired -> {
+                            if (acquired) {
+                                exports.release();
+                            }
+                        })
+                .doOnError(ex -> log.error("Failed exporting ad budget plan generation: {}", plan.generation(), ex));
+
+        return Mono.just(ResponseEntity.ok()
+                .contentType(format.mediaType)
+                    .header(GENERATION_HEADER, String.valueOf(plan.generation()))
+                        .body(rows));
+    }
+
+}
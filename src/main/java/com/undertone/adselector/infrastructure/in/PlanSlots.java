@@ -0,0 +1,10 @@
+package com.undertone.adselector.infrastructure.in;
+
+import com.undertone.adselector.model.AdBudgetPlan;
+
+/**
+ * Slot table of a plan generation, encoded as described by {@link BinarySelection}
+ */
+public record PlanSlots(AdBudgetPlan plan) {
+
+}
@@ -0,0 +1,38 @@
+package com.undertone.adselector.infrastructure.in;
+
+import com.undertone.adselector.application.ports.out.AdBudgetPlanStore;
+import com.undertone.adselector.model.AdBudgetPlan;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Serves the slot table of the current plan to callers selecting by plan slots rather than aids
+ * (see {@link BinarySelection}). Slot epochs are counted by every instance on its own, hence slots are to be
+ * synced from the instance they are sent to, and resynced once it answers {@code 409 Conflict}.
+ */
+@RestController
+@CrossOrigin(origins = "*")
+@RequestMapping("/api/v1/plan/")
+public class PlanSlotsController {
+
+    private final AdBudgetPlanStore planStore;
+
+    @Autowired
+    public PlanSlotsController(AdBudgetPlanStore planStore) {
+        this.planStore = requireNonNull(planStore, "Argument planStore must not be null");
+    }
+
+    @GetMapping(
+            path = "slots",
+            produces = BinarySelection.MEDIA_TYPE_VALUE
+    )
+    public Mono<PlanSlots> slots() {
+        return planStore.fetchPlan()
+                .defaultIfEmpty(AdBudgetPlan.EMPTY)
+                    .map(PlanSlots::new);
+    }
+
+}
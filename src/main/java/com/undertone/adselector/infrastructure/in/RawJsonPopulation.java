@@ -0,0 +1,422 @@
+package com.undertone.adselector.infrastructure.in;
+
+import com.undertone.adselector.application.ports.in.UseCaseException.RejectionException;
+import com.undertone.adselector.model.AdBudget;
+import com.undertone.adselector.model.AdBudgetPlan;
+import com.undertone.adselector.model.Population;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Population backed by raw JSON request payload, an object listing aids of target population under {@code q}
+ * and ids of plan segments, expanded to their aids by server, under {@code s}.
+ * Payload is scanned directly out of request buffers upon resolution, every aid is looked up
+ * in the byte keyed plan index without being decoded into a String, and duplicates are dropped using a
+ * pooled bitset over plan slots (see {@link SlotSet}). Aids split between buffers, or containing
+ * escape sequences, are the only ones copied. Keys containing escape sequences are unescaped before being resolved.
+ * Number and boolean elements are coerced to their text as Jackson coerces them into strings, null elements are dropped.
+ * <p>
+ * Instances retain request buffers until {@link #release()} is called.
+ */
+final class RawJsonPopulation implements Population {
+
+    private final List<DataBuffer> chunks;
+
+    private boolean released;
+
+    RawJsonPopulation(List<DataBuffer> chunks) {
+        this.chunks = requireNonNull(chunks, "Argument chunks must not be null");
+    }
+
+    /**
+     * Synchronized against {@link #release()}, since a cancelled request might release buffers while being resolved
+     */
+    @Override
+    public synchronized List<AdBudget> resolve(AdBudgetPlan plan) {
+        requireNonNull(plan, "Argument plan must not be null");
+        if (released) {
+            return List.of();
+        }
+
+        final SlotSet slotSet = SlotSet.acquire(plan.slotCount());
+        try {
+            final Scanner scanner = new Scanner(plan, slotSet);
+            for (DataBuffer chunk : chunks) {
+                try (DataBuffer.ByteBufferIterator byteBuffers = chunk.readableByteBuffers()) {
+                    while (byteBuffers.hasNext()) {
+                        scanner.feed(byteBuffers.next());
+                    }
+                }
+            }
+            return scanner.finish();
+        } finally {
+            slotSet.release();
+        }
+    }
+
+    synchronized void release() {
+        if (!released) {
+            released = true;
+            chunks.forEach(DataBufferUtils::release);
+        }
+    }
+
+    /**
+     * Push scanner over payload bytes, tolerating any unknown fields by skipping their values
+     */
+    private static final class Scanner {
+
+        private enum State { OBJECT_START, KEY_OR_END, KEY, COLON, VALUE, ELEMENTS, STRING, SCALAR, SKIP, DONE }
+
+        private enum Field { AIDS, SEGMENTS, OTHER }
+
+        private final AdBudgetPlan plan;
+        private final SlotSet slotSet;
+        private final List<AdBudget> resolved = new ArrayList<>();
+
+        private State state = State.OBJECT_START;
+        private Field field = Field.OTHER;
+
+        private byte[] scratch = new byte[64];
+        private int scratchLength;
+
+        private int tokenStart;
+        private boolean tokenSplit;
+        private boolean tokenEscaped;
+        private boolean keyEscaped;
+        private boolean skipNext;
+
+        private int skipDepth;
+        private boolean skipInString;
+
+        private Scanner(AdBudgetPlan plan, SlotSet slotSet) {
+            this.plan = plan;
+            this.slotSet = slotSet;
+        }
+
+        private void feed(ByteBuffer buffer) {
+            final int limit = buffer.limit();
+            int i = buffer.position();
+
+            while (i < limit) {
+                final byte b = buffer.get(i);
+                switch (state) {
+                    case OBJECT_START -> {
+                        if (b == '{') {
+                            state = State.KEY_OR_END;
+                        } else if (!isWhitespace(b)) {
+                            throw malformed();
+                        }
+                        i++;
+                    }
+                    case KEY_OR_END -> {
+                        if (b == '"') {
+                            state = State.KEY;
+                            scratchLength = 0;
+                            keyEscaped = false;
+                            skipNext = false;
+                        } else if (b == '}') {
+                            state = State.DONE;
+                        } else if (b != ',' && !isWhitespace(b)) {
+                            throw malformed();
+                        }
+                        i++;
+                    }
+                    case KEY -> {
+                        if (skipNext) {
+                            skipNext = false;
+                            append(b);
+                        } else if (b == '\\') {
+                            keyEscaped = true;
+                            skipNext = true;
+                            append(b);
+                        } else if (b == '"') {
+                            field = resolveField();
+                            state = State.COLON;
+                        } else {
+                            append(b);
+                        }
+                        i++;
+                    }
+                    case COLON -> {
+                        if (b == ':') {
+                            state = State.VALUE;
+                        } else if (!isWhitespace(b)) {
+                            throw malformed();
+                        }
+                        i++;
+                    }
+                    case VALUE -> {
+                        if (isWhitespace(b)) {
+                            i++;
+                        } else if (b == '[' && field != Field.OTHER) {
+                            state = State.ELEMENTS;
+                            i++;
+                        } else {
+                            state = State.SKIP;
+                            skipDepth = 0;
+                            skipInString = false;
+                            skipNext = false;
+                        }
+                    }
+                    case ELEMENTS -> {
+                        if (b == '"') {
+                            state = State.STRING;
+                            tokenStart = i + 1;
+                            tokenSplit = false;
+                            tokenEscaped = false;
+                            skipNext = false;
+                            scratchLength = 0;
+                        } else if (b == ']') {
+                            state = State.KEY_OR_END;
+                        } else if (isScalarStart(b)) {
+                            state = State.SCALAR;
+                            tokenStart = i;
+                            tokenSplit = false;
+                            tokenEscaped = false;
+                            scratchLength = 0;
+                        } else if (b != ',' && !isWhitespace(b)) {
+                            throw malformed();
+                        }
+                        i++;
+                    }
+                    case STRING -> i = scanString(buffer, i, limit);
+                    case SCALAR -> i = scanScalar(buffer, i, limit);
+                    case SKIP -> i = skipValue(buffer, i, limit);
+                    case DONE -> {
+                        if (!isWhitespace(b)) {
+                            throw malformed();
+                        }
+                        i++;
+                    }
+                }
+            }
+
+            /**
+             * Token continues in next buffer, hence remainder is copied
+             */
+            if ((state == State.STRING || state == State.SCALAR) && !tokenSplit) {
+                appendRange(buffer, tokenStart, limit);
+                tokenSplit = true;
+            }
+        }
+
+        private int scanString(ByteBuffer buffer, int from, int limit) {
+            for (int i = from; i < limit; i++) {
+                final byte b = buffer.get(i);
+                if (skipNext) {
+                    skipNext = false;
+                } else if (b == '\\') {
+                    tokenEscaped = true;
+                    skipNext = true;
+                } else if (b == '"') {
+                    if (tokenSplit) {
+                        appendRange(buffer, from, i);
+                        onToken(ByteBuffer.wrap(scratch), 0, scratchLength);
+                    } else {
+                        onToken(buffer, tokenStart, i - tokenStart);
+                    }
+                    state = State.ELEMENTS;
+                    return i + 1;
+                }
+            }
+
+            if (tokenSplit) {
+                appendRange(buffer, from, limit);
+            }
+            return limit;
+        }
+
+        /**
+         * Scalar ends by the delimiter following it, which is left for ELEMENTS to consume
+         */
+        private int scanScalar(ByteBuffer buffer, int from, int limit) {
+            for (int i = from; i < limit; i++) {
+                final byte b = buffer.get(i);
+                if (b == ',' || b == ']' || isWhitespace(b)) {
+                    if (tokenSplit) {
+                        appendRange(buffer, from, i);
+                        onScalar(ByteBuffer.wrap(scratch), 0, scratchLength);
+                    } else {
+                        onScalar(buffer, tokenStart, i - tokenStart);
+                    }
+                    state = State.ELEMENTS;
+                    return i;
+                }
+            }
+
+            if (tokenSplit) {
+                appendRange(buffer, from, limit);
+            }
+            return limit;
+        }
+
+        private int skipValue(ByteBuffer buffer, int from, int limit) {
+            for (int i = from; i < limit; i++) {
+                final byte b = buffer.get(i);
+                if (skipInString) {
+                    if (skipNext) {
+                        skipNext = false;
+                    } else if (b == '\\') {
+                        skipNext = true;
+                    } else if (b == '"') {
+                        skipInString = false;
+                        if (skipDepth == 0) {
+                            state = State.KEY_OR_END;
+                            return i + 1;
+                        }
+                    }
+                } else if (b == '"') {
+                    skipInString = true;
+                } else if (b == '{' || b == '[') {
+                    skipDepth++;
+                } else if (b == '}' || b == ']') {
+                    if (skipDepth == 0) {
+                        state = State.KEY_OR_END; // closing enclosing object, left for KEY_OR_END to consume
+                        return i;
+                    }
+                    if (--skipDepth == 0) {
+                        state = State.KEY_OR_END;
+                        return i + 1;
+                    }
+                } else if (b == ',' && skipDepth == 0) {
+                    state = State.KEY_OR_END;
+                    return i;
+                }
+            }
+            return limit;
+        }
+
+        private void onToken(ByteBuffer source, int offset, int length) {
+            if (field == Field.AIDS) {
+                add(tokenEscaped
+                        ? plan.slotOf(unescape(source, offset, length))
+                            : plan.slotOf(source, offset, length));
+            } else {
+                String segmentId = tokenEscaped
+                        ? unescape(source, offset, length)
+                            : decode(source, offset, length);
+                for (int slot : plan.fetchSegmentSlots(segmentId)) {
+                    add(slot);
+                }
+            }
+        }
+
+        private void onScalar(ByteBuffer source, int offset, int length) {
+            if (length == 4 && source.get(offset) == 'n' && source.get(offset + 1) == 'u'
+                    && source.get(offset + 2) == 'l' && source.get(offset + 3) == 'l') {
+                return;
+            }
+            onToken(source, offset, length);
+        }
+
+        private void add(int slot) {
+            if (slot >= 0 && slotSet.add(slot)) {
+                plan.fetch(slot).ifPresent(resolved::add);
+            }
+        }
+
+        private List<AdBudget> finish() {
+            if (state != State.DONE) {
+                throw malformed();
+            }
+            return resolved;
+        }
+
+        /**
+         * Escaped keys are unescaped first, hence keys spelling {@code q} or {@code s} by escape sequences are
+         * resolved as Jackson resolves them
+         */
+        private Field resolveField() {
+            if (keyEscaped) {
+                return switch (unescape(ByteBuffer.wrap(scratch), 0, scratchLength)) {
+                    case "q" -> Field.AIDS;
+                    case "s" -> Field.SEGMENTS;
+                    default -> Field.OTHER;
+                };
+            }
+            if (scratchLength == 1) {
+                if (scratch[0] == 'q') {
+                    return Field.AIDS;
+                }
+                if (scratch[0] == 's') {
+                    return Field.SEGMENTS;
+                }
+            }
+            return Field.OTHER;
+        }
+
+        private void append(byte b) {
+            if (scratchLength == scratch.length) {
+                scratch = Arrays.copyOf(scratch, scratch.length * 2);
+            }
+            scratch[scratchLength++] = b;
+        }
+
+        private void appendRange(ByteBuffer buffer, int from, int to) {
+            for (int i = from; i < to; i++) {
+                append(buffer.get(i));
+            }
+        }
+
+        private static String decode(ByteBuffer source, int offset, int length) {
+            byte[] bytes = new byte[length];
+            source.get(offset, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private static String unescape(ByteBuffer source, int offset, int length) {
+            final String raw = decode(source, offset, length);
+            final StringBuilder unescaped = new StringBuilder(raw.length());
+            for (int i = 0; i < raw.length(); i++) {
+                char c = raw.charAt(i);
+                if (c != '\\' || i + 1 >= raw.length()) {
+                    unescaped.append(c);
+                    continue;
+                }
+                c = raw.charAt(++i);
+                switch (c) {
+                    case 'b' -> unescaped.append('\b');
+                    case 'f' -> unescaped.append('\f');
+                    case 'n' -> unescaped.append('\n');
+                    case 'r' -> unescaped.append('\r');
+                    case 't' -> unescaped.append('\t');
+                    case 'u' -> {
+                        if (i + 4 >= raw.length()) {
+                            throw malformed();
+                        }
+                        try {
+                            unescaped.append((char) Integer.parseInt(raw, i + 1, i + 5, 16));
+                        } catch (NumberFormatException nfe) {
+                            throw malformed();
+                        }
+                        i += 4;
+                    }
+                    default -> unescaped.append(c);
+                }
+            }
+            return unescaped.toString();
+        }
+
+        private static boolean isScalarStart(byte b) {
+            return b == '-' || (b >= '0' && b <= '9') || b == 't' || b == 'f' || b == 'n';
+        }
+
+        private static boolean isWhitespace(byte b) {
+            return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+        }
+
+        private static RejectionException malformed() {
+            return new RejectionException("Malformed selection request payload");
+        }
+    }
+
+}
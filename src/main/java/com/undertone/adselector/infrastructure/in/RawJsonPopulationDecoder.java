@@ -0,0 +1,73 @@
+package com.undertone.adselector.infrastructure.in;
+
+import com.undertone.adselector.model.Population;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.Decoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.util.MimeType;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+
+import static java.lang.String.format;
+
+/**
+ * Decodes JSON selection requests into {@link RawJsonPopulation}, handing request buffers over as is.
+ * Buffers are neither joined nor parsed here, see {@link RawJsonPopulation} for resolution of their content.
+ */
+public class RawJsonPopulationDecoder implements Decoder<Population> {
+
+    private static final List<MimeType> DECODABLE_MIME_TYPES = List.of(MediaType.APPLICATION_JSON);
+
+    private final int maxInMemorySize;
+
+    public RawJsonPopulationDecoder(int maxInMemorySize) {
+        this.maxInMemorySize = maxInMemorySize;
+    }
+
+    @Override
+    public boolean canDecode(ResolvableType elementType, MimeType mimeType) {
+        return Population.class.equals(elementType.toClass()) &&
+                (mimeType == null || DECODABLE_MIME_TYPES.stream().anyMatch(type -> type.isCompatibleWith(mimeType)));
+    }
+
+    @Override
+    public Flux<Population> decode(Publisher<DataBuffer> inputStream, ResolvableType elementType,
+                                   MimeType mimeType, Map<String, Object> hints) {
+        return Flux.from(decodeToMono(inputStream, elementType, mimeType, hints));
+    }
+
+    @Override
+    public Mono<Population> decodeToMono(Publisher<DataBuffer> inputStream, ResolvableType elementType,
+                                         MimeType mimeType, Map<String, Object> hints) {
+        return Mono.defer(() -> {
+            final long[] totalBytes = {0L};
+
+            return Flux.from(inputStream)
+                    .<DataBuffer>handle((buffer, sink) -> {
+                        if ((totalBytes[0] += buffer.readableByteCount()) > maxInMemorySize) {
+                            DataBufferUtils.release(buffer);
+                            sink.error(new DataBufferLimitException(
+                                    format("Exceeded limit on max bytes to buffer : %d", maxInMemorySize)));
+                        } else {
+                            sink.next(buffer);
+                        }
+                    })
+                    .collectList()
+                        .doOnDiscard(DataBuffer.class, DataBufferUtils::release)
+                            .map(RawJsonPopulation::new);
+        });
+    }
+
+    @Override
+    public List<MimeType> getDecodableMimeTypes() {
+        return DECODABLE_MIME_TYPES;
+    }
+
+}
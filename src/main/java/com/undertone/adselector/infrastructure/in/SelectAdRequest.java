@@ -1,7 +0,0 @@
-package com.undertone.adselector.infrastructure.in;
-
-import java.util.Set;
-
-public record SelectAdRequest(Set<String> q) {
-
-}
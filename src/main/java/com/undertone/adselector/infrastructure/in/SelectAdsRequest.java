@@ -0,0 +1,18 @@
+package com.undertone.adselector.infrastructure.in;
+
+import com.undertone.adselector.model.Population;
+
+import java.util.Set;
+
+/**
+ * @param q aids of target population
+ * @param s ids of plan segments, expanded to their aids by server
+ * @param k number of distinct ads to select
+ */
+public record SelectAdsRequest(Set<String> q, Set<String> s, int k) {
+
+    public Population population() {
+        return Population.of(q, s);
+    }
+
+}
@@ -0,0 +1,7 @@
+package com.undertone.adselector.infrastructure.in;
+
+import java.util.List;
+
+public record SelectAdsResponse(List<String> a) {
+
+}
@@ -0,0 +1,70 @@
+package com.undertone.adselector.infrastructure.in;
+
+import com.undertone.adselector.model.Deadline;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Selection execution mode, see {@code selection.execution.mode}:
+ * <ul>
+ *     <li>{@link Mode#REACTIVE} selections are composed of non-blocking stages, running on event loop threads</li>
+ *     <li>{@link Mode#BLOCKING} every selection runs on a virtual thread of its own, blocking it while waiting for
+ *     Redis. Requests are still accepted and responded by WebFlux, handing selections off to virtual threads.</li>
+ * </ul>
+ * Executor is always created, and is idle unless blocking mode is configured.
+ */
+@Slf4j
+@Component
+public class SelectionExecution implements DisposableBean {
+
+    public enum Mode { REACTIVE, BLOCKING }
+
+    private final Mode mode;
+    private final ExecutorService executor;
+    private final Scheduler scheduler;
+
+    public SelectionExecution(@Value("${selection.execution.mode:REACTIVE}") Mode mode) {
+        this.mode = requireNonNull(mode, "Argument mode must not be null");
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("selection-", 0).factory());
+        this.scheduler = Schedulers.fromExecutorService(executor, "selection");
+        log.info("Selection execution mode: {}", mode);
+    }
+
+    public Mode mode() {
+        return mode;
+    }
+
+    public boolean isBlocking() {
+        return mode == Mode.BLOCKING;
+    }
+
+    /**
+     * Runs given blocking selection on a virtual thread of its own, within request {@link Deadline} if any
+     * @return selection result, empty if selection returned null
+     */
+    public <T> Mono<T> execute(Callable<T> selection) {
+        return Mono.deferContextual(context -> {
+                    final Deadline deadline = context.getOrDefault(Deadline.class, null);
+                    return Mono.fromCallable(() -> Deadline.callWithin(deadline, selection));
+                })
+                .subscribeOn(scheduler);
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.dispose();
+        executor.shutdown();
+    }
+
+}
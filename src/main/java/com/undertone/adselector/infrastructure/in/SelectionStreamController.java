@@ -0,0 +1,134 @@
+package com.undertone.adselector.infrastructure.in;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.undertone.adselector.application.ports.in.BatchSelectAdUseCase;
+import com.undertone.adselector.application.ports.in.BatchSelectAdUseCase.Selection;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Selection stream for high volume callers, a single long-lived request carrying newline delimited JSON requests
+ * (see {@link StreamSelectRequest}), answered by a newline delimited JSON stream of responses correlated by id
+ * (see {@link StreamSelectResponse}), ordered as requested.
+ * <ul>
+ *     <li>Consecutive requests are batched, up to {@code stream.batch.size} requests or as many as arrived within
+ *     {@code stream.batch.max.wait}, and selected for at once (see {@link BatchSelectAdUseCase})</li>
+ *     <li>Up to {@code stream.batch.concurrency} batches of a stream are selected for concurrently, further requests
+ *     are not read until a batch completed, pushing back on the caller by TCP flow control</li>
+ *     <li>Every batch is answered by a single flush</li>
+ * </ul>
+ * Streams are not subject to admission control nor to request deadlines, both of which apply to unary requests.
+ */
+@Slf4j
+@RestController
+@CrossOrigin(origins = "*")
+@RequestMapping("/api/v1/stream/")
+public class SelectionStreamController {
+
+    private final BatchSelectAdUseCase batchSelectAdUseCase;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+    private final Duration batchMaxWait;
+    private final int batchConcurrency;
+    private final int maxSelectionCount;
+
+    @Autowired
+    public SelectionStreamController(BatchSelectAdUseCase batchSelectAdUseCase, ObjectMapper objectMapper,
+                                     @Value("${stream.batch.size:64}") int batchSize,
+                                     @Value("${stream.batch.max.wait:PT0.002S}") Duration batchMaxWait,
+                                     @Value("${stream.batch.concurrency:4}") int batchConcurrency,
+                                     @Value("${selection.max.count:100}") int maxSelectionCount) {
+        this.batchSelectAdUseCase = requireNonNull(batchSelectAdUseCase, "Argument batchSelectAdUseCase must not be null");
+        this.objectMapper = requireNonNull(objectMapper, "Argument objectMapper must not be null");
+        this.batchMaxWait = requireNonNull(batchMaxWait, "Argument batchMaxWait must not be null");
+        if (batchSize < 1 || batchConcurrency < 1) {
+            throw new IllegalArgumentException("Expected positive batch size and concurrency, but they were: "
+                    + batchSize + ", " + batchConcurrency);
+        }
+        this.batchSize = batchSize;
+        this.batchConcurrency = batchConcurrency;
+        this.maxSelectionCount = maxSelectionCount;
+    }
+
+    @PostMapping(
+            path = "select",
+            consumes = MediaType.APPLICATION_NDJSON_VALUE,
+            produces = MediaType.APPLICATION_NDJSON_VALUE
+    )
+    public Flux<String> select(@RequestBody Flux<StreamSelectRequest> requests) {
+        return requests
+                /**
+                 *  Fair backpressure opens a window only once downstream requested one,
+                 *  hence no more than the concurrent batches are read ahead
+                 */
+                .windowTimeout(batchSize, batchMaxWait, true)
+                    .flatMapSequential(window -> window.collectList().flatMap(this::selectBatch), batchConcurrency, 1);
+    }
+
+    /**
+     * @return response lines of the entire batch, requests having non positive counts, or counts exceeding
+     * {@code selection.max.count}, are rejected on their own
+     */
+    private Mono<String> selectBatch(List<StreamSelectRequest> batch) {
+        if (batch.isEmpty()) {
+            return Mono.empty();
+        }
+
+        final List<Selection> selections = new ArrayList<>(batch.size());
+        for (StreamSelectRequest request : batch) {
+            if (isSelectable(request)) {
+                selections.add(new Selection(request.population(), request.count()));
+            }
+        }
+
+        return batchSelectAdUseCase.selectBatch(selections)
+                .map(selected -> {
+                    final List<StreamSelectResponse> responses = new ArrayList<>(batch.size());
+                    int index = 0;
+                    for (StreamSelectRequest request : batch) {
+                        responses.add(isSelectable(request)
+                                ? StreamSelectResponse.selected(request.id(), selected.get(index++))
+                                    : StreamSelectResponse.error(request.id(), StreamSelectResponse.REJECTED));
+                    }
+                    return responses;
+                })
+                .onErrorResume(failure -> {
+                    log.warn("Failed selecting for a batch of: {} streamed requests", batch.size(), failure);
+                    return Mono.just(batch.stream()
+                            .map(request -> StreamSelectResponse.error(request.id(), isSelectable(request)
+                                    ? StreamSelectResponse.FAILED : StreamSelectResponse.REJECTED))
+                                .toList());
+                })
+                .map(this::toLines);
+    }
+
+    private boolean isSelectable(StreamSelectRequest request) {
+        return request.count() >= 1 && request.count() <= maxSelectionCount;
+    }
+
+    private String toLines(List<StreamSelectResponse> responses) {
+        final StringBuilder lines = new StringBuilder(responses.size() * 48);
+        try {
+            for (StreamSelectResponse response : responses) {
+                lines.append(objectMapper.writeValueAsString(response)).append('\n');
+            }
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+        return lines.toString();
+    }
+
+}
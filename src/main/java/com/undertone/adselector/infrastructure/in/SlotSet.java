@@ -0,0 +1,67 @@
+package com.undertone.adselector.infrastructure.in;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Bitset over plan slots, dropping duplicate candidates of populations resolved straight from request payloads.
+ * Sets are pooled rather than thread confined, since in blocking mode every selection runs on a virtual thread of
+ * its own, which would have allocated a set sized after the whole plan per request. Resolution never blocks, hence
+ * sets in use are bounded by carrier and event loop threads, sets released beyond pool capacity are dropped.
+ * Only words touched by previous resolution are cleared.
+ */
+final class SlotSet {
+
+    private static final BlockingQueue<SlotSet> POOL =
+            new ArrayBlockingQueue<>(2 * Runtime.getRuntime().availableProcessors());
+
+    private long[] words = new long[0];
+    private int[] touched = new int[64];
+    private int touchedCount;
+
+    private SlotSet() {}
+
+    /**
+     * @return pooled slot set, to be released once resolution completes
+     */
+    static SlotSet acquire(int slotCount) {
+        final SlotSet pooled = POOL.poll();
+        return (pooled == null ? new SlotSet() : pooled).reset(slotCount);
+    }
+
+    private SlotSet reset(int slotCount) {
+        final int requiredWords = (slotCount + 63) >>> 6;
+        if (words.length < requiredWords) {
+            words = new long[requiredWords];
+        }
+        touchedCount = 0;
+        return this;
+    }
+
+    boolean add(int slot) {
+        final int word = slot >>> 6;
+        final long bit = 1L << slot;
+        if (word >= words.length || (words[word] & bit) != 0) {
+            return false;
+        }
+        words[word] |= bit;
+        if (touchedCount == touched.length) {
+            touched = Arrays.copyOf(touched, touched.length * 2);
+        }
+        touched[touchedCount++] = word;
+        return true;
+    }
+
+    /**
+     * Clears set and returns it to pool, it must not be used afterwards
+     */
+    void release() {
+        for (int i = 0; i < touchedCount; i++) {
+            words[touched[i]] = 0L;
+        }
+        touchedCount = 0;
+        POOL.offer(this);
+    }
+
+}
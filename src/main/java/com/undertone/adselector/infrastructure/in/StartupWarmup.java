@@ -0,0 +1,347 @@
+package com.undertone.adselector.infrastructure.in;
+
+import com.undertone.adselector.application.adaptors.services.AdSelectionService;
+import com.undertone.adselector.application.adaptors.services.BlockingAdSelectionService;
+import com.undertone.adselector.application.adaptors.services.BlockingWeightedRandomSelection;
+import com.undertone.adselector.application.adaptors.services.WeightedRandomSelection;
+import com.undertone.adselector.application.ports.out.AdBudgetPlanStore;
+import com.undertone.adselector.application.ports.out.AdDistributionStore;
+import com.undertone.adselector.application.ports.out.BlockingAdDistributionStore;
+import com.undertone.adselector.infrastructure.in.SelectionExecution.Mode;
+import com.undertone.adselector.model.AdBudget;
+import com.undertone.adselector.model.AdBudgetPlan;
+import com.undertone.adselector.model.AdDistribution;
+import com.undertone.adselector.model.Deadline;
+import com.undertone.adselector.model.Population;
+import com.undertone.adselector.model.Status;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.ReactiveRedisConnection;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Warms up selection once application started, keeping readiness down (see {@code warmup} health indicator,
+ * a member of readiness group) until warmup completed or its time budget expired:
+ * <ul>
+ *     <li>Plan is loaded, and its index is pre-touched by fetching every slot and looking up every aid.
+ *     Lazily loaded entries are evaluated by doing so.</li>
+ *     <li>Redis connection is established and pinged</li>
+ *     <li>Synthetic selections, drawn from populations of plan entries, run through {@link AdSelectionService}
+ *     against a distribution store which never spends, compiling the selection path before serving traffic.
+ *     Once blocking execution mode is configured, {@link BlockingAdSelectionService} is warmed up instead.</li>
+ * </ul>
+ * Failing steps are logged and skipped, an instance is ready by the latest once the budget expired.
+ * Once {@code warmup.exit} is set, the application exits after warming up, serving as a training run
+ * (e.g. of a class data sharing archive, see Dockerfile).
+ */
+@Slf4j
+@Component("warmup")
+public class StartupWarmup implements HealthIndicator {
+
+    static final int REDIS_PINGS = 16;
+
+    private static final int MAX_POPULATION_SIZE = 16;
+    private static final int MAX_SAMPLED_AIDS = 1_024;
+
+    private final AdBudgetPlanStore planStore;
+    private final ReactiveRedisConnectionFactory redisConnectionFactory;
+    private final boolean enabled;
+    private final Duration budget;
+    private final int selections;
+    private final boolean touchPlan;
+    private final boolean exitAfterWarmup;
+    private final Mode executionMode;
+
+    private volatile Report report = Report.WARMING;
+
+    public StartupWarmup(AdBudgetPlanStore planStore, @Nullable ReactiveRedisConnectionFactory redisConnectionFactory,
+                         Duration budget, int selections) {
+        this(planStore, redisConnectionFactory, true, budget, selections, true, false, Mode.REACTIVE);
+    }
+
+    @Autowired
+    public StartupWarmup(AdBudgetPlanStore planStore, ObjectProvider<ReactiveRedisConnectionFactory> redisConnectionFactory,
+                         @Value("${warmup.enabled:true}") boolean enabled,
+                         @Value("${warmup.budget:PT30S}") Duration budget,
+                         @Value("${warmup.selections:20000}") int selections,
+                         @Value("${warmup.plan.touch.enabled:true}") boolean touchPlan,
+                         @Value("${warmup.exit:false}") boolean exitAfterWarmup,
+                         @Value("${selection.execution.mode:REACTIVE}") Mode executionMode) {
+        this(planStore, redisConnectionFactory.getIfAvailable(), enabled, budget, selections, touchPlan, exitAfterWarmup,
+                executionMode);
+    }
+
+    private StartupWarmup(AdBudgetPlanStore planStore, ReactiveRedisConnectionFactory redisConnectionFactory,
+                          boolean enabled, Duration budget, int selections, boolean touchPlan,
+                          boolean exitAfterWarmup, Mode executionMode) {
+        this.planStore = requireNonNull(planStore, "Argument planStore must not be null");
+        this.redisConnectionFactory = redisConnectionFactory;
+        this.enabled = enabled;
+        this.budget = requireNonNull(budget, "Argument budget must not be null");
+        if (selections < 0) {
+            throw new IllegalArgumentException("Expected non negative number of selections, but it was: " + selections);
+        }
+        this.selections = selections;
+        this.touchPlan = touchPlan;
+        this.exitAfterWarmup = exitAfterWarmup;
+        this.executionMode = requireNonNull(executionMode, "Argument executionMode must not be null");
+        if (!enabled) {
+            this.report = new Report(Outcome.DISABLED, 0, 0, 0, Duration.ZERO);
+        }
+    }
+
+    @EventListener
+    public void onApplicationReady(ApplicationReadyEvent event) {
+        if (!enabled && !exitAfterWarmup) {
+            return;
+        }
+
+        Schedulers.boundedElastic().schedule(() -> {
+            if (enabled) {
+                warmup();
+            }
+            if (exitAfterWarmup) {
+                log.info("Exiting once warmed up");
+                System.exit(SpringApplication.exit(event.getApplicationContext()));
+            }
+        });
+    }
+
+    @Override
+    public Health health() {
+        final Report current = report;
+        return (current.outcome() == Outcome.WARMING ? Health.outOfService() : Health.up())
+                .withDetail("outcome", current.outcome().name().toLowerCase(Locale.ROOT))
+                    .withDetail("touchedSlots", current.touchedSlots())
+                        .withDetail("redisPings", current.redisPings())
+                            .withDetail("selections", current.selections())
+                                .withDetail("elapsed", current.elapsed().toString())
+                                    .build();
+    }
+
+    boolean isReady() {
+        return report.outcome() != Outcome.WARMING;
+    }
+
+    Report report() {
+        return report;
+    }
+
+    /**
+     * Runs every warmup step on the calling thread, bounded by warmup budget
+     */
+    void warmup() {
+        final long start = System.nanoTime();
+        final Deadline deadline = Deadline.after(budget);
+        log.info("Warming up within: {}", budget);
+
+        int touchedSlots = 0;
+        int redisPings = 0;
+        int completedSelections = 0;
+        boolean failed = false;
+        try {
+            final AdBudgetPlan plan = planStore.fetchPlan()
+                    .switchIfEmpty(Mono.just(AdBudgetPlan.EMPTY))
+                        .block(deadline.remaining());
+
+            final List<String> sampledAids = new ArrayList<>(Math.min(MAX_SAMPLED_AIDS, plan.slotCount()));
+            touchedSlots = touchPlan ? touch(plan, deadline, sampledAids) : sample(plan, sampledAids);
+
+            redisPings = pingRedis(deadline);
+            completedSelections = select(sampledAids, deadline);
+        } catch (RuntimeException e) {
+            failed = !deadline.isExpired();
+            log.warn("Warmup step failed, proceeding to serve traffic", e);
+        }
+
+        final Outcome outcome = failed ? Outcome.FAILED : deadline.isExpired() ? Outcome.EXPIRED : Outcome.COMPLETED;
+        report = new Report(outcome, touchedSlots, redisPings, completedSelections,
+                Duration.ofNanos(System.nanoTime() - start));
+        log.info("Warmup {}: {}", outcome.name().toLowerCase(Locale.ROOT), report);
+    }
+
+    /**
+     * Fetches every slot and looks up its aid, paging in plan index, sampling aids on the way
+     */
+    private int touch(AdBudgetPlan plan, Deadline deadline, List<String> sampledAids) {
+        final int slotCount = plan.slotCount();
+        final int stride = Math.max(1, slotCount / MAX_SAMPLED_AIDS);
+        int slot = 0;
+        for (; slot < slotCount; slot++) {
+            if ((slot & 1_023) == 0 && deadline.isExpired()) {
+                break;
+            }
+            final AdBudget adBudget = plan.fetch(slot).orElse(null);
+            if (adBudget != null && plan.slotOf(adBudget.aid()) == slot
+                    && slot % stride == 0 && sampledAids.size() < MAX_SAMPLED_AIDS) {
+                sampledAids.add(adBudget.aid());
+            }
+        }
+        return slot;
+    }
+
+    private int sample(AdBudgetPlan plan, List<String> sampledAids) {
+        final int slotCount = plan.slotCount();
+        final int stride = Math.max(1, slotCount / MAX_SAMPLED_AIDS);
+        for (int slot = 0; slot < slotCount && sampledAids.size() < MAX_SAMPLED_AIDS; slot += stride) {
+            plan.fetch(slot).ifPresent(adBudget -> sampledAids.add(adBudget.aid()));
+        }
+        return 0;
+    }
+
+    /**
+     * Establishes the shared Redis connection, which is otherwise established by the first selection
+     */
+    private int pingRedis(Deadline deadline) {
+        if (redisConnectionFactory == null) {
+            return 0;
+        }
+
+        int pings = 0;
+        try (ReactiveRedisConnection connection = redisConnectionFactory.getReactiveConnection()) {
+            for (; pings < REDIS_PINGS && !deadline.isExpired(); pings++) {
+                connection.ping().block(deadline.remaining());
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed pinging Redis while warming up, proceeding", e);
+        }
+        return pings;
+    }
+
+    /**
+     * Selects from random populations of sampled aids, alternating single and multiple ad selections.
+     * Selection service is private to warmup, keeping synthetic selections out of selection metrics.
+     */
+    private int select(List<String> sampledAids, Deadline deadline) {
+        if (sampledAids.isEmpty()) {
+            return 0;
+        }
+
+        final AdSelectionService selectionService =
+                new AdSelectionService(new WeightedRandomSelection(new NoSpendDistributionStore()), planStore);
+        final BlockingAdSelectionService blockingSelectionService = new BlockingAdSelectionService(
+                new BlockingWeightedRandomSelection(new NoSpendBlockingDistributionStore()), planStore);
+        final boolean blocking = executionMode == Mode.BLOCKING;
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        int selection = 0;
+        for (; selection < selections && !deadline.isExpired(); selection++) {
+            final int size = 1 + random.nextInt(Math.min(MAX_POPULATION_SIZE, sampledAids.size()));
+            final Set<String> aids = new HashSet<>(size * 2);
+            for (int i = 0; i < size; i++) {
+                aids.add(sampledAids.get(random.nextInt(sampledAids.size())));
+            }
+
+            final Population population = Population.of(aids);
+            if (blocking) {
+                if ((selection & 1) == 0) {
+                    blockingSelectionService.selectAd(population);
+                } else {
+                    blockingSelectionService.selectAds(population, 2);
+                }
+            } else if ((selection & 1) == 0) {
+                selectionService.selectAd(population).block(deadline.remaining());
+            } else {
+                selectionService.selectAds(population, 2).block(deadline.remaining());
+            }
+        }
+        return selection;
+    }
+
+    enum Outcome { WARMING, COMPLETED, EXPIRED, FAILED, DISABLED }
+
+    record Report(Outcome outcome, int touchedSlots, int redisPings, int selections, Duration elapsed) {
+        static final Report WARMING = new Report(Outcome.WARMING, 0, 0, 0, Duration.ZERO);
+    }
+
+    /**
+     * Never spends any quota, every distribution is fully available and every increment succeeds
+     */
+    private static final class NoSpendDistributionStore implements AdDistributionStore {
+
+        @Override
+        public Mono<AdDistribution> fetchDistribution(AdBudget adBudget) {
+            return Mono.just(distributionOf(adBudget));
+        }
+
+        @Override
+        public Mono<List<AdDistribution>> fetchDistributions(List<AdBudget> adBudgets) {
+            return Mono.just(distributionsOf(adBudgets));
+        }
+
+        @Override
+        public Mono<Status> incrementDistribution(AdDistribution adDistribution) {
+            return Mono.just(Status.SUCCESS);
+        }
+
+        @Override
+        public Mono<List<Status>> incrementDistributions(List<AdDistribution> adDistributions) {
+            return Mono.just(Collections.nCopies(adDistributions.size(), Status.SUCCESS));
+        }
+
+        private static List<AdDistribution> distributionsOf(List<AdBudget> adBudgets) {
+            final List<AdDistribution> distributions = new ArrayList<>(adBudgets.size());
+            for (AdBudget adBudget : adBudgets) {
+                distributions.add(distributionOf(adBudget));
+            }
+            return distributions;
+        }
+
+        private static AdDistribution distributionOf(AdBudget adBudget) {
+            return new Distribution(adBudget.aid(), adBudget.priority(), adBudget.quota(), adBudget.quota());
+        }
+
+        private record Distribution(String aid, double priority, long quota, long remainingQuota)
+                implements AdDistribution {}
+    }
+
+    /**
+     * Blocking variant of {@link NoSpendDistributionStore}
+     */
+    private static final class NoSpendBlockingDistributionStore implements BlockingAdDistributionStore {
+
+        @Override
+        public Optional<AdDistribution> fetchDistribution(AdBudget adBudget) {
+            return Optional.of(NoSpendDistributionStore.distributionOf(adBudget));
+        }
+
+        @Override
+        public List<AdDistribution> fetchDistributions(List<AdBudget> adBudgets) {
+            return NoSpendDistributionStore.distributionsOf(adBudgets);
+        }
+
+        @Override
+        public Status incrementDistribution(AdDistribution adDistribution) {
+            return Status.SUCCESS;
+        }
+
+        @Override
+        public List<Status> incrementDistributions(List<AdDistribution> adDistributions) {
+            return Collections.nCopies(adDistributions.size(), Status.SUCCESS);
+        }
+    }
+
+}
@@ -0,0 +1,25 @@
+package com.undertone.adselector.infrastructure.in;
+
+import com.undertone.adselector.model.Population;
+
+import java.util.Set;
+
+/**
+ * A single line of a selection stream
+ *
+ * @param id correlation id, echoed by the matching response line
+ * @param q aids of target population
+ * @param s ids of plan segments, expanded to their aids by server
+ * @param k number of distinct ads to select, a single one if omitted
+ */
+public record StreamSelectRequest(String id, Set<String> q, Set<String> s, Integer k) {
+
+    public Population population() {
+        return Population.of(q, s);
+    }
+
+    public int count() {
+        return k == null ? 1 : k;
+    }
+
+}
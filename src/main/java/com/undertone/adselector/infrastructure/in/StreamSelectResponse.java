@@ -0,0 +1,28 @@
+package com.undertone.adselector.infrastructure.in;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * A single line of a selection stream response
+ *
+ * @param id correlation id of the request answered
+ * @param a aids of selected ads, empty if none could be selected
+ * @param e error of the request, either {@code rejected} (malformed request) or {@code failed}, absent on success
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record StreamSelectResponse(String id, List<String> a, String e) {
+
+    static final String REJECTED = "rejected";
+    static final String FAILED = "failed";
+
+    static StreamSelectResponse selected(String id, List<String> aids) {
+        return new StreamSelectResponse(id, aids, null);
+    }
+
+    static StreamSelectResponse error(String id, String error) {
+        return new StreamSelectResponse(id, null, error);
+    }
+
+}
@@ -0,0 +1,25 @@
+package com.undertone.adselector.infrastructure.in;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+
+@Configuration
+public class WebConfiguration implements WebFluxConfigurer {
+
+    private final DataSize maxInMemorySize;
+
+    public WebConfiguration(@Value("${spring.codec.max-in-memory-size:256KB}") DataSize maxInMemorySize) {
+        this.maxInMemorySize = maxInMemorySize;
+    }
+
+    @Override
+    public void configureHttpMessageCodecs(ServerCodecConfigurer configurer) {
+        configurer.customCodecs().register(new RawJsonPopulationDecoder((int) maxInMemorySize.toBytes()));
+        configurer.customCodecs().register(new BinarySelectionDecoder((int) maxInMemorySize.toBytes()));
+        configurer.customCodecs().register(new BinarySelectionEncoder());
+    }
+
+}
@@ -1,5 +1,12 @@
 package com.undertone.adselector.infrastructure.out;
 
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.jsoniter.JsonIterator;
 import com.jsoniter.ValueType;
 import com.jsoniter.any.Any;
@@ -7,50 +14,135 @@ import com.undertone.adselector.application.ports.in.UseCaseException.AbortedExc
 import com.undertone.adselector.application.ports.out.AdBudgetPlanStore;
 import com.undertone.adselector.application.ports.out.InfrastructureException.StoreException;
 import com.undertone.adselector.application.ports.out.InfrastructureException.StoreException.InitializationException;
+import com.undertone.adselector.application.ports.out.InfrastructureException.StoreException.OperationFailedException;
 import com.undertone.adselector.model.AdBudget;
 import com.undertone.adselector.model.AdBudgetPlan;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import io.vavr.Lazy;
 import io.vavr.control.Try;
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import static java.lang.String.format;
 import static java.nio.file.StandardWatchEventKinds.*;
 import static java.util.Objects.*;
-import static java.util.function.Predicate.not;
 
 @Slf4j
 public final class FileBackedAdBudgetPlanStore implements AdBudgetPlanStore {
 
+    private static final JsonFactory PLAN_JSON_FACTORY = new JsonFactory();
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
     private final Path planFile;
 
-    private final LoadingStrategy loadingStrategy;
+    private final boolean lazyLoading;
     private volatile AdBudgetPlan adBudgetPlan;
 
+    /**
+     * Generation of last successfully loaded plan
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Compression of last successfully loaded plan file, kept by amendments written back to it
+     */
+    private volatile Compression loadedCompression = Compression.NONE;
+
+    private ScheduledExecutorService persistenceExecutor;
+    private Duration persistenceDelay;
+    private final AtomicBoolean persistencePending = new AtomicBoolean();
+
+    /**
+     * Modification time of plan file as last written back, the watcher skips reloading those writes
+     */
+    private volatile FileTime persistedModifiedTime;
+
+    /**
+     * Modification time of plan file as last loaded or written back, amendments are written back over that file only
+     */
+    private volatile FileTime knownModifiedTime;
+
+    private final Timer loadSuccessTimer;
+    private final Timer loadFailureTimer;
+    private final Counter skippedAdsCounter;
+    private final Counter skippedSegmentsCounter;
+    private final Timer amendmentTimer;
+    private final AtomicLong loadedAds = new AtomicLong();
+    private final AtomicLong loadedSegments = new AtomicLong();
+
     FileBackedAdBudgetPlanStore(Path planFile) {
         this(planFile, false);
     }
 
     FileBackedAdBudgetPlanStore(Path planFile, boolean lazyLoading) {
+        this(planFile, lazyLoading, new SimpleMeterRegistry());
+    }
+
+    FileBackedAdBudgetPlanStore(Path planFile, boolean lazyLoading, MeterRegistry meterRegistry) {
         this.planFile = requireNonNull(planFile, "Argument planFile must not be null");
         this.adBudgetPlan = AdBudgetPlan.EMPTY;
-        this.loadingStrategy = lazyLoading ? this::buildLazyAdBudget : this::buildEagerAdBudget;
+        this.lazyLoading = lazyLoading;
+
+        requireNonNull(meterRegistry, "Argument meterRegistry must not be null");
+        this.loadSuccessTimer = planLoadTimer(meterRegistry, "success");
+        this.loadFailureTimer = planLoadTimer(meterRegistry, "failure");
+        this.skippedAdsCounter = skippedEntriesCounter(meterRegistry, "ads");
+        this.skippedSegmentsCounter = skippedEntriesCounter(meterRegistry, "segments");
+        this.amendmentTimer = Timer.builder("adselector.plan.amendment")
+                .description("Duration of ad budget plan amendments, excluding their persistence")
+                    .register(meterRegistry);
+        Gauge.builder("adselector.plan.entries", loadedAds, AtomicLong::get)
+                .description("Entries of currently loaded ad budget plan")
+                    .tag("type", "ads")
+                        .register(meterRegistry);
+        Gauge.builder("adselector.plan.entries", loadedSegments, AtomicLong::get)
+                .description("Entries of currently loaded ad budget plan")
+                    .tag("type", "segments")
+                        .register(meterRegistry);
     }
 
-    @FunctionalInterface
-    private interface LoadingStrategy {
-        AdBudget build(String aid, Any priority, Any quota);
+    private static Timer planLoadTimer(MeterRegistry meterRegistry, String result) {
+        return Timer.builder("adselector.plan.load")
+                .description("Duration of ad budget plan (re)loads")
+                    .tag("result", result)
+                        .register(meterRegistry);
+    }
+
+    private static Counter skippedEntriesCounter(MeterRegistry meterRegistry, String type) {
+        return Counter.builder("adselector.plan.entries.skipped")
+                .description("Plan entries skipped for failing to parse")
+                    .tag("type", type)
+                        .register(meterRegistry);
     }
 
     @Override
@@ -58,6 +150,174 @@ public final class FileBackedAdBudgetPlanStore implements AdBudgetPlanStore {
         return Mono.just(adBudgetPlan);
     }
 
+    @Override
+    public AdBudgetPlan currentPlan() throws StoreException {
+        return adBudgetPlan;
+    }
+
+    /**
+     * Amends last loaded plan in place of reloading it. Amendments are lost once plan file is reloaded, unless
+     * written back to it (see {@link Builder#withAmendmentPersistence}).
+     */
+    @Override
+    public Mono<AdBudgetPlan> amend(Collection<? extends AdBudget> upserts, Collection<String> removals)
+            throws StoreException {
+        requireNonNull(upserts, "Argument upserts must not be null");
+        requireNonNull(removals, "Argument removals must not be null");
+        /**
+         * Amendments outgrowing the lookup table rebuild the plan as a whole, kept off request threads
+         */
+        return Mono.fromCallable(() -> amendAdBudgetPlan(upserts, removals))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    AdBudgetPlan amendAdBudgetPlan(Collection<? extends AdBudget> upserts, Collection<String> removals)
+            throws OperationFailedException {
+        final long startNanos = System.nanoTime();
+        final InMemoryAdBudgetPlan amended;
+
+        /**
+         * Amendments and loads swap plans one at a time, none builds upon a plan replaced meanwhile
+         */
+        synchronized (this) {
+            if (!(adBudgetPlan instanceof InMemoryAdBudgetPlan current) || current.isEmpty()) {
+                throw new OperationFailedException("No ad budget plan was loaded to amend");
+            }
+            amended = current.amend(upserts, removals, generation.incrementAndGet());
+            this.adBudgetPlan = amended;
+        }
+
+        amendmentTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        log.info("Amended ad budget plan by {} upserts and {} removals into generation: {}",
+                upserts.size(), removals.size(), amended.generation());
+
+        persistLater();
+        return amended;
+    }
+
+    /**
+     * Amendments made while a write is pending are written along with it
+     */
+    private void persistLater() {
+        if (persistenceExecutor != null && persistencePending.compareAndSet(false, true)) {
+            persistenceExecutor.schedule(this::persistAdBudgetPlan, persistenceDelay.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes current plan next to plan file, in the compression it was loaded in, then moves it over plan file
+     */
+    void persistAdBudgetPlan() {
+        if (!persistencePending.compareAndSet(true, false)) {
+            return;
+        }
+        final AdBudgetPlan plan = this.adBudgetPlan;
+        final Path written = planFile.resolveSibling(planFile.getFileName() + ".tmp");
+        try {
+            if (isChangedPlanFile()) {
+                return;
+            }
+            try (OutputStream planOutput = createPlanFile(written, loadedCompression);
+                 JsonGenerator adBudgetPlanJson = PLAN_JSON_FACTORY.createGenerator(planOutput)) {
+                writeAdBudgetPlan(plan, adBudgetPlanJson);
+            }
+            if (isChangedPlanFile()) {
+                Files.deleteIfExists(written);
+                return;
+            }
+            try {
+                Files.move(written, planFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(written, planFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            persistedModifiedTime = knownModifiedTime = Files.getLastModifiedTime(planFile);
+            log.info("Wrote ad budget plan generation: {} back to location: {}", plan.generation(), planFile);
+        } catch (Exception ex) {
+            log.error("Failed to write ad budget plan back to location: {}", planFile, ex);
+        }
+    }
+
+    /**
+     * Plan file changed by others since last loaded or written back is never overwritten, amendments are served
+     * until the watcher reloads it
+     */
+    private boolean isChangedPlanFile() throws IOException {
+        final FileTime modifiedTime = Files.getLastModifiedTime(planFile);
+        if (modifiedTime.equals(knownModifiedTime)) {
+            return false;
+        }
+        log.warn("Ad budget plan file: {} changed since it was loaded (modified at: {}, expected: {}), " +
+                "skipping write back of amendments", planFile, modifiedTime, knownModifiedTime);
+        return true;
+    }
+
+    private static void writeAdBudgetPlan(AdBudgetPlan plan, JsonGenerator adBudgetPlanJson) throws IOException {
+        adBudgetPlanJson.writeStartObject();
+        adBudgetPlanJson.writeArrayFieldStart("Ads");
+        for (int slot = 0; slot < plan.slotCount(); slot++) {
+            final AdBudget adBudget = plan.fetch(slot).orElse(AdBudget.EMPTY);
+            if (adBudget.isEmpty()) {
+                continue;
+            }
+            adBudgetPlanJson.writeStartObject();
+            adBudgetPlanJson.writeStringField("aid", adBudget.aid());
+            adBudgetPlanJson.writeNumberField("priority", adBudget.priority());
+            adBudgetPlanJson.writeNumberField("quota", adBudget.quota());
+            adBudgetPlanJson.writeEndObject();
+        }
+        adBudgetPlanJson.writeEndArray();
+
+        adBudgetPlanJson.writeArrayFieldStart("Segments");
+        for (String segmentId : plan.segmentIds()) {
+            adBudgetPlanJson.writeStartObject();
+            adBudgetPlanJson.writeStringField("sid", segmentId);
+            adBudgetPlanJson.writeArrayFieldStart("aids");
+            for (int slot : plan.fetchSegmentSlots(segmentId)) {
+                final Optional<String> aid = plan.aidOf(slot);
+                if (aid.isPresent()) {
+                    adBudgetPlanJson.writeString(aid.get());
+                }
+            }
+            adBudgetPlanJson.writeEndArray();
+            adBudgetPlanJson.writeEndObject();
+        }
+        adBudgetPlanJson.writeEndArray();
+        adBudgetPlanJson.writeEndObject();
+    }
+
+    private static OutputStream createPlanFile(Path file, Compression compression) throws IOException {
+        final OutputStream planOutput = new BufferedOutputStream(Files.newOutputStream(file), READ_BUFFER_SIZE);
+        try {
+            return switch (compression) {
+                case GZIP -> new GZIPOutputStream(planOutput, READ_BUFFER_SIZE);
+                case ZSTD -> new ZstdOutputStream(planOutput);
+                case NONE -> planOutput;
+            };
+        } catch (IOException | RuntimeException ex) {
+            planOutput.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * @return true if plan file was last modified by writing amendments back to it
+     */
+    boolean isPersistedPlanFile() {
+        return Try.of(() -> Files.getLastModifiedTime(planFile))
+                .map(modifiedTime -> modifiedTime.equals(persistedModifiedTime))
+                    .getOrElse(false);
+    }
+
+    /**
+     * Writes back pending amendments at once
+     */
+    public void close() {
+        if (persistenceExecutor != null) {
+            persistenceExecutor.shutdownNow();
+            persistAdBudgetPlan();
+        }
+    }
+
     public static Builder builder(Path planFile) {
         return new Builder(planFile);
     }
@@ -70,6 +330,8 @@ public final class FileBackedAdBudgetPlanStore implements AdBudgetPlanStore {
         private Consumer<Boolean> loadCompletionCallback;
         private final Path planFile;
         private boolean lazyLoading;
+        private MeterRegistry meterRegistry;
+        private Duration persistenceDelay;
 
         Builder(Path planFile) {
             this.planFile = requireNonNull(planFile, "Argument planFile must not be null");
@@ -106,14 +368,43 @@ public final class FileBackedAdBudgetPlanStore implements AdBudgetPlanStore {
             return this;
         }
 
+        /**
+         * Registers plan load duration, loaded and skipped entries, a private registry is used unless given
+         */
+        public Builder withMeterRegistry(MeterRegistry meterRegistry) {
+            this.meterRegistry = requireNonNull(meterRegistry, "Argument meterRegistry must not be null");
+            return this;
+        }
+
         public Builder withFileWatcherExecutor(ExecutorService executor) {
             this.fileWatcherExecutor = requireNonNull(executor, "Argument executor must not be null");
             return this;
         }
 
+        /**
+         * Writes amended plans back to plan file once given delay elapses since first amendment, in the
+         * compression plan file was loaded in. Writes are not reloaded by the file watcher.
+         */
+        public Builder withAmendmentPersistence(Duration delay) {
+            this.persistenceDelay = requireNonNull(delay, "Argument delay must not be null");
+            return this;
+        }
+
         public FileBackedAdBudgetPlanStore build() throws InitializationException {
 
-            var built = new FileBackedAdBudgetPlanStore(planFile, lazyLoading).loadAdBudgetPlan();
+            var built = new FileBackedAdBudgetPlanStore(planFile, lazyLoading,
+                    Optional.ofNullable(meterRegistry).orElseGet(SimpleMeterRegistry::new))
+                        .loadAdBudgetPlan();
+
+            if (persistenceDelay != null) {
+                built.persistenceDelay = persistenceDelay;
+                built.persistenceExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable);
+                    thread.setName("plan-file-writer");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
 
             if (withFileWatcher) {
                 activatePlanFileWatcher(built);
@@ -142,7 +433,7 @@ public final class FileBackedAdBudgetPlanStore implements AdBudgetPlanStore {
 
                 planFile.getParent().register(
                         (watchService = planFile.getFileSystem().newWatchService()),
-                        ENTRY_MODIFY
+                        ENTRY_MODIFY, ENTRY_CREATE
                 );
 
                 watcherExecutor.submit(() -> {
@@ -156,7 +447,7 @@ public final class FileBackedAdBudgetPlanStore implements AdBudgetPlanStore {
                                                 .thenAcceptAsync(loadCompletionCallback);
 
                             for (WatchEvent<?> event : key.pollEvents()) {
-                                if (isPlanFileModified(event)) {
+                                if (isPlanFileModified(event) && !built.isPersistedPlanFile()) {
                                     executionGuard.get();
                                 }
                             }
@@ -172,8 +463,13 @@ public final class FileBackedAdBudgetPlanStore implements AdBudgetPlanStore {
             }
         }
 
+        /**
+         * Files replaced by moving another one over them (e.g. written back amendments, atomic deploys)
+         * raise creation rather than modification events
+         */
         private boolean isPlanFileModified(WatchEvent<?> event) {
-            if (ENTRY_MODIFY.equals(event.kind()) && (event.context() instanceof Path p)) {
+            if ((ENTRY_MODIFY.equals(event.kind()) || ENTRY_CREATE.equals(event.kind()))
+                    && (event.context() instanceof Path p)) {
                 return planFile.getFileName().equals(p.getFileName());
             }
             return false;
@@ -185,40 +481,259 @@ public final class FileBackedAdBudgetPlanStore implements AdBudgetPlanStore {
         log.info("Attempting to load ad budget plan from location: {}", planFile);
 
         final Instant start = Instant.now();
+        final long startNanos = System.nanoTime();
+        final PlanLoadEvent event = new PlanLoadEvent();
+        event.begin();
 
         AdBudgetPlan builtPlan = AdBudgetPlan.EMPTY;
+        int skippedAds = 0, skippedSegments = 0;
+        /** Read ahead of parsing, so changes made while parsing are not mistaken for the loaded file */
+        final FileTime modifiedTime = Try.of(() -> Files.getLastModifiedTime(planFile)).getOrNull();
+        final AtomicReference<Compression> compression = new AtomicReference<>(Compression.NONE);
         try {
             Map<String, AdBudget> aidToAdBudget = new HashMap<>(10_110, 99f);
-            Any adBudgetPlanJson = JsonIterator.parse(Files.newInputStream(planFile).readAllBytes()).readAny();
+            Map<String, List<String>> segmentToAids = new HashMap<>();
+            boolean adsFound = false;
+
+            /**
+             * Plan files stream through a token parser as read (and decompressed), never held as a whole.
+             * Ads are read off the parser unless lazily loaded, lazy ads and segments are copied out on their own
+             * through a single scratch buffer, and parsed as before.
+             */
+            try (InputStream planInput = openPlanFile(compression);
+                 JsonParser adBudgetPlanJson = PLAN_JSON_FACTORY.createParser(planInput);
+                 EntryCopier entryCopier = new EntryCopier()) {
+
+                if (adBudgetPlanJson.nextToken() != JsonToken.START_OBJECT) {
+                    throw new TypeConversionException("Ad budget plan must be of type Object");
+                }
+                while (adBudgetPlanJson.nextToken() == JsonToken.FIELD_NAME) {
+                    final String field = adBudgetPlanJson.getCurrentName();
+                    final JsonToken value = adBudgetPlanJson.nextToken();
 
-            for (Any adBudgetJson : adBudgetPlanJson.get("Ads").mustBeValid()) {
-                try {
+                    if ("Ads".equals(field)) {
+                        if (value != JsonToken.START_ARRAY) {
+                            throw new TypeConversionException(format("Field Ads must be of type Array, but it was: %s", value));
+                        }
+                        adsFound = true;
+                        while (adBudgetPlanJson.nextToken() != JsonToken.END_ARRAY) {
+                            if (!lazyLoading) {
+                                final JsonLocation entryLocation = adBudgetPlanJson.currentTokenLocation();
+                                try {
+                                    final Map.Entry<String, AdBudget> adBudget = readEagerAdBudget(adBudgetPlanJson);
+                                    aidToAdBudget.put(adBudget.getKey(), adBudget.getValue());
+                                } catch (TypeConversionException ex) {
+                                    skippedAds++;
+                                    log.warn("Failed parsing entry at: {} into AdBudget ({}), skipping.",
+                                            entryLocation.offsetDescription(), ex.getMessage());
+                                }
+                                continue;
+                            }
+                            Any adBudgetJson = entryCopier.copy(adBudgetPlanJson);
+                            try {
 
-                    String aid = tryExtractValidAid(adBudgetJson);
+                                String aid = tryExtractValidAid(adBudgetJson);
 
-                        aidToAdBudget.put(aid,
-                                loadingStrategy.build(aid,
-                                        adBudgetJson.get("priority").mustBeValid(),
-                                            adBudgetJson.get("quota").mustBeValid()));
+                                    aidToAdBudget.put(aid,
+                                            buildLazyAdBudget(aid,
+                                                    adBudgetJson.get("priority").mustBeValid(),
+                                                        adBudgetJson.get("quota").mustBeValid()));
 
-                } catch (Exception ex) {
-                    log.warn("Failed parsing entry: {} into AdBudget, skipping.", adBudgetJson);
+                            } catch (Exception ex) {
+                                skippedAds++;
+                                log.warn("Failed parsing entry: {} into AdBudget, skipping.", adBudgetJson);
+                            }
+                        }
+                    } else if ("Segments".equals(field) && value == JsonToken.START_ARRAY) {
+                        while (adBudgetPlanJson.nextToken() != JsonToken.END_ARRAY) {
+                            Any segmentJson = entryCopier.copy(adBudgetPlanJson);
+                            try {
+
+                                String sid = tryExtractValidSid(segmentJson);
+
+                                    segmentToAids.put(sid, tryExtractValidAids(segmentJson));
+
+                            } catch (Exception ex) {
+                                skippedSegments++;
+                                log.warn("Failed parsing entry: {} into segment, skipping.", segmentJson);
+                            }
+                        }
+                    } else {
+                        adBudgetPlanJson.skipChildren();
+                    }
                 }
             }
 
-            builtPlan = new InMemoryAdBudgetPlan(aidToAdBudget);
+            if (!adsFound) {
+                throw new TypeConversionException("Missing field Ads");
+            }
+
+            builtPlan = new InMemoryAdBudgetPlan(aidToAdBudget, segmentToAids, generation.incrementAndGet());
+
+            loadSuccessTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            skippedAdsCounter.increment(skippedAds);
+            skippedSegmentsCounter.increment(skippedSegments);
+            loadedAds.set(aidToAdBudget.size());
+            loadedSegments.set(segmentToAids.size());
+            loadedCompression = compression.get();
+            knownModifiedTime = modifiedTime;
+            event.succeeded = true;
 
-            log.info("Finished loading ad budget plan in {} ms", Duration.between(start, Instant.now()).toMillis());
+            log.info("Finished loading ad budget plan ({} compression) in {} ms",
+                    compression.get(), Duration.between(start, Instant.now()).toMillis());
         }
         catch (Exception ex) {
+            loadFailureTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            loadedAds.set(0L);
+            loadedSegments.set(0L);
             log.error("Failed to load ad budget plan from location: {}", planFile, ex);
         }
 
-        this.adBudgetPlan = builtPlan;
+        synchronized (this) {
+            this.adBudgetPlan = builtPlan;
+        }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.planFile = planFile.toString();
+            event.compression = compression.get().name();
+            event.lazyLoading = lazyLoading;
+            event.generation = builtPlan.generation();
+            event.ads = builtPlan.slotCount();
+            event.segments = (int) loadedSegments.get();
+            event.skippedAds = skippedAds;
+            event.skippedSegments = skippedSegments;
+            event.commit();
+        }
 
         return this;
     }
 
+    /**
+     * Copies entries out of the plan parser through a single scratch buffer and generator, reused by every entry
+     * of a load. Copies are handed to jsoniter, whose lazy values keep referring to them.
+     */
+    private static final class EntryCopier implements Closeable {
+
+        private final ByteArrayOutputStream scratch = new ByteArrayOutputStream(256);
+        private final JsonGenerator generator;
+
+        private EntryCopier() throws IOException {
+            this.generator = PLAN_JSON_FACTORY.createGenerator(scratch);
+            this.generator.setRootValueSeparator(null);
+        }
+
+        /**
+         * Copies the entry starting at current token, leaving parser at its last token
+         */
+        private Any copy(JsonParser parser) throws IOException {
+            scratch.reset();
+            generator.copyCurrentStructure(parser);
+            generator.flush();
+            return JsonIterator.deserialize(scratch.toByteArray());
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.close();
+        }
+    }
+
+    /**
+     * Reads the ad entry starting at current token straight off the parser, leaving parser at its last token.
+     * Entries lacking a String aid, priority or quota are rejected, entries whose priority or quota is not a Number
+     * are replaced by AdBudget.EMPTY, as lazily loaded ones are once accessed.
+     * @return aid and its AdBudget
+     */
+    private static Map.Entry<String, AdBudget> readEagerAdBudget(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            final JsonToken entryToken = parser.currentToken();
+            parser.skipChildren();
+            throw new TypeConversionException(format("Ad entry must be of type Object, but it was: %s", entryToken));
+        }
+
+        String aid = null;
+        JsonToken aidToken = null, priorityToken = null, quotaToken = null;
+        double priority = 0d;
+        long quota = 0L;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.currentName();
+            final JsonToken value = parser.nextToken();
+            switch (field) {
+                case "aid" -> {
+                    aidToken = value;
+                    aid = value == JsonToken.VALUE_STRING ? parser.getText() : null;
+                }
+                case "priority" -> {
+                    priorityToken = value;
+                    priority = value.isNumeric() ? parser.getDoubleValue() : 0d;
+                }
+                case "quota" -> {
+                    quotaToken = value;
+                    quota = value.isNumeric() ? parser.getNumberValue().longValue() : 0L;
+                }
+                default -> {
+                }
+            }
+            parser.skipChildren();
+        }
+
+        if (aid == null) {
+            throw new TypeConversionException(format("Field aid must be of type String, but it was: %s", aidToken));
+        }
+        if (priorityToken == null || quotaToken == null) {
+            throw new TypeConversionException(format("Missing field %s", priorityToken == null ? "priority" : "quota"));
+        }
+        if (!priorityToken.isNumeric() || !quotaToken.isNumeric()) {
+            log.error("Failed to create AdBudget of aid: {}, priority and quota must be of type Number, but they were: "
+                    + "{}, {}, replacing with EMPTY", aid, priorityToken, quotaToken);
+            return Map.entry(aid, AdBudget.EMPTY);
+        }
+        return Map.entry(aid, AdBudgetImpl.build(aid, priority, quota));
+    }
+
+    /**
+     * Compression of plan files, detected by their leading magic bytes regardless of file name
+     */
+    enum Compression {
+        NONE, GZIP, ZSTD;
+
+        private static final int GZIP_MAGIC = 0x1f8b;
+        private static final int ZSTD_MAGIC = 0x28b52ffd;
+
+        static Compression detect(byte[] header) {
+            if (header.length >= 2 && ((header[0] & 0xff) << 8 | (header[1] & 0xff)) == GZIP_MAGIC) {
+                return GZIP;
+            }
+            if (header.length >= 4 && ByteBuffer.wrap(header).getInt() == ZSTD_MAGIC) {
+                return ZSTD;
+            }
+            return NONE;
+        }
+    }
+
+    /**
+     * @param compression set to detected compression of plan file
+     * @return plan file contents, decompressed as read
+     */
+    private InputStream openPlanFile(AtomicReference<Compression> compression) throws IOException {
+        final InputStream planInput = new BufferedInputStream(Files.newInputStream(planFile), READ_BUFFER_SIZE);
+        try {
+            planInput.mark(4);
+            compression.set(Compression.detect(planInput.readNBytes(4)));
+            planInput.reset();
+
+            return switch (compression.get()) {
+                case GZIP -> new GZIPInputStream(planInput, READ_BUFFER_SIZE);
+                case ZSTD -> new ZstdInputStream(planInput);
+                case NONE -> planInput;
+            };
+        } catch (IOException | RuntimeException ex) {
+            planInput.close();
+            throw ex;
+        }
+    }
+
     /**
      * To potentially improve performance, map could be populated with lazy instances of AdBudget.
      * The latter are created without field level type validation.
@@ -231,15 +746,24 @@ public final class FileBackedAdBudgetPlanStore implements AdBudgetPlanStore {
                     .getOrElse(AdBudget.EMPTY), AdBudget.class);
     }
 
-    /**
-     * Default eager instantiation of map population.
-     * Any runtime deserialization issues will be logged and faulty entries would
-     * be substituted by instances of AdBudget.EMPTY
-     */
-    private AdBudget buildEagerAdBudget(String aid, Any priority, Any quota) {
-        return Try.of(() -> AdBudgetImpl.build(aid, tryExtractValidPriority(priority), tryExtractValidQuota(quota)))
-                .onFailure(ex -> log.error("Failed to create AdBudget from lazy instance, replacing with EMPTY", ex))
-                    .getOrElse(AdBudget.EMPTY);
+    private List<String> tryExtractValidAids(Any segmentJson) throws TypeConversionException {
+        Any aidsAny = segmentJson.get("aids").mustBeValid();
+        if (Objects.equals(ValueType.ARRAY, aidsAny.valueType())) {
+            List<String> aids = new ArrayList<>(aidsAny.size());
+            for (Any aidAny : aidsAny) {
+                aids.add(aidAny.toString());
+            }
+            return aids;
+        }
+        throw new TypeConversionException(format("Field aids must be of type Array, but it was: %s", aidsAny));
+    }
+
+    private String tryExtractValidSid(Any segmentJson) throws TypeConversionException {
+        Any sidAny = segmentJson.get("sid").mustBeValid();
+        if(Objects.equals(ValueType.STRING, sidAny.valueType())){
+            return sidAny.toString();
+        }
+        throw new TypeConversionException(format("Field sid must be of type String, but it was: %s", sidAny));
     }
 
     private long tryExtractValidQuota(Any quotaAny) {
@@ -283,46 +807,4 @@ public final class FileBackedAdBudgetPlanStore implements AdBudgetPlanStore {
 
     }
 
-    static class InMemoryAdBudgetPlan implements AdBudgetPlan {
-
-        private ConcurrentMap<String, AdBudget> aidToAdBudgetMapping;
-
-        InMemoryAdBudgetPlan(Map<String, AdBudget> aidToAdBudgetMapping) {
-            this.aidToAdBudgetMapping =
-                    new ConcurrentHashMap<>(requireNonNull(aidToAdBudgetMapping,
-                            "Argument aidToAdBudgetMapping must not be null"));
-        }
-
-        @Override
-        public Optional<AdBudget> fetch(String aid) {
-            requireNonNull(aid, "Argument aid must not be null");
-
-            if (!aidToAdBudgetMapping.isEmpty()) {
-                return Try.of(() -> aidToAdBudgetMapping.get(aid))
-                        .filterTry(Objects::nonNull)
-                            .peek(lazyBudget -> {
-                                if (lazyBudget.isEmpty()) { // triggers evaluation of lazy AdBudget
-                                    log.warn(new StringBuilder()
-                                            .append("Fetching aid: \"").append(aid).append("\" produced an empty AdBudget.")
-                                                .append(" Entry will be removed from internal mapping to reduce future processing times")
-                                                    .toString());
-
-                                    aidToAdBudgetMapping.remove(aid);
-                                }
-                            })
-                            .filter(not(AdBudget::isEmpty))
-                                .toJavaOptional();
-            }
-
-            log.warn("Attempting to fetch AdBudget from empty AdBudgetPlan");
-            return Optional.empty();
-        }
-
-        @Override
-        public boolean isEmpty() {
-            return this.aidToAdBudgetMapping.isEmpty();
-        }
-
-    }
-
 }
@@ -0,0 +1,557 @@
+package com.undertone.adselector.infrastructure.out;
+
+import com.undertone.adselector.model.AdBudget;
+import com.undertone.adselector.model.AdBudgetPlan;
+import io.vavr.control.Try;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.requireNonNull;
+import static java.util.function.Predicate.not;
+
+/**
+ * Immutable plan index, every entry is assigned a slot upon construction.
+ * Entries are looked up using an open addressing hash table keyed by UTF-8 encoded aids,
+ * allowing lookups straight from request payload bytes, without decoding aids into Strings first.
+ * Segments are precompiled into both candidate lists and slot arrays.
+ * <p>
+ * Entries, keys and table are held in pages of {@value #PAGE_SIZE}, hence plans amended by {@link #amend}
+ * copy only the pages they change, sharing every other page with the plan they amend.
+ */
+@Slf4j
+class InMemoryAdBudgetPlan implements AdBudgetPlan {
+
+    static final int PAGE_SIZE = 1 << 10;
+
+    private static final int PAGE_SHIFT = 10;
+
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private static final int[] NO_SLOTS = new int[0];
+
+    /**
+     * Entries found to be empty (lazy entries failing evaluation) are replaced by null,
+     * racing writes are benign since all of them write the same value. Removed entries are null as well.
+     */
+    private final AdBudget[][] slots;
+
+    private final byte[][][] slotKeys;
+
+    /**
+     * Open addressing table holding slot + 1, zero marks a vacant bucket
+     */
+    private final int[][] table;
+
+    private final int mask;
+
+    private final int slotCount;
+
+    private final Map<String, Segment> segments;
+
+    private final long generation;
+
+    /**
+     * Generation this plan's slot layout was built by, kept by amendments since they never reassign slots
+     */
+    private final long slotEpoch;
+
+    /**
+     * Segments every slot is a member of, built once first amended and shared by amended plans
+     */
+    private volatile String[][] segmentsBySlot;
+
+    /**
+     * @param members slots of segment aids known once plan was loaded, kept as is by amendments
+     * @param slots members which were not removed since
+     * @param candidates entries of slots
+     */
+    private record Segment(int[] members, int[] slots, List<AdBudget> candidates) {}
+
+    InMemoryAdBudgetPlan(Map<String, AdBudget> aidToAdBudgetMapping) {
+        this(aidToAdBudgetMapping, Map.of());
+    }
+
+    InMemoryAdBudgetPlan(Map<String, AdBudget> aidToAdBudgetMapping, Map<String, List<String>> segmentToAidsMapping) {
+        this(aidToAdBudgetMapping, segmentToAidsMapping, 0L);
+    }
+
+    InMemoryAdBudgetPlan(Map<String, AdBudget> aidToAdBudgetMapping, Map<String, List<String>> segmentToAidsMapping,
+                         long generation) {
+        this(aidToAdBudgetMapping, segmentToAidsMapping, generation, generation);
+    }
+
+    /**
+     * Slots are assigned by iteration order of given mapping
+     */
+    private InMemoryAdBudgetPlan(Map<String, AdBudget> aidToAdBudgetMapping,
+                                 Map<String, List<String>> segmentToAidsMapping, long generation, long slotEpoch) {
+        this.generation = generation;
+        this.slotEpoch = slotEpoch;
+        requireNonNull(aidToAdBudgetMapping, "Argument aidToAdBudgetMapping must not be null");
+        requireNonNull(segmentToAidsMapping, "Argument segmentToAidsMapping must not be null");
+
+        final int size = aidToAdBudgetMapping.size();
+        this.slotCount = size;
+        this.slots = new AdBudget[pageCount(size)][];
+        this.slotKeys = new byte[pageCount(size)][][];
+        for (int page = 0; page < slots.length; page++) {
+            final int length = Math.min(PAGE_SIZE, size - (page << PAGE_SHIFT));
+            slots[page] = new AdBudget[length];
+            slotKeys[page] = new byte[length][];
+        }
+        final int capacity = tableCapacity(size);
+        this.table = new int[Math.max(1, capacity >>> PAGE_SHIFT)][Math.min(capacity, PAGE_SIZE)];
+        this.mask = capacity - 1;
+
+        int slot = 0;
+        for (Map.Entry<String, AdBudget> entry : aidToAdBudgetMapping.entrySet()) {
+            final byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            slots[slot >>> PAGE_SHIFT][slot & PAGE_MASK] = entry.getValue();
+            slotKeys[slot >>> PAGE_SHIFT][slot & PAGE_MASK] = key;
+
+            int bucket = hash(key) & mask;
+            while (table[bucket >>> PAGE_SHIFT][bucket & PAGE_MASK] != 0) {
+                bucket = (bucket + 1) & mask;
+            }
+            table[bucket >>> PAGE_SHIFT][bucket & PAGE_MASK] = ++slot;
+        }
+
+        final Map<String, Segment> compiledSegments = new HashMap<>();
+        segmentToAidsMapping.forEach((sid, aids) -> {
+            final int[] segmentSlots = compileSegment(sid, aids);
+            final List<AdBudget> candidates = new ArrayList<>(segmentSlots.length);
+            for (int segmentSlot : segmentSlots) {
+                candidates.add(slots[segmentSlot >>> PAGE_SHIFT][segmentSlot & PAGE_MASK]);
+            }
+            compiledSegments.put(sid, new Segment(segmentSlots, segmentSlots, List.copyOf(candidates)));
+        });
+        this.segments = Map.copyOf(compiledSegments);
+    }
+
+    private InMemoryAdBudgetPlan(InMemoryAdBudgetPlan amended, Amendment amendment, Map<String, Segment> segments,
+                                 long generation) {
+        this.slots = amendment.slots;
+        this.slotKeys = amendment.slotKeys;
+        this.table = amendment.table;
+        this.mask = amended.mask;
+        this.slotCount = amendment.slotCount;
+        this.segments = segments;
+        this.generation = generation;
+        this.slotEpoch = amended.slotEpoch;
+        this.segmentsBySlot = amended.segmentsBySlot;
+    }
+
+    /**
+     * Unknown and duplicate aids are skipped, lazy entries are kept as is without triggering their evaluation.
+     */
+    private int[] compileSegment(String sid, List<String> aids) {
+        final int[] segmentSlots = new int[aids.size()];
+        final BitSet seen = new BitSet(slotCount);
+
+        int length = 0;
+        for (String aid : aids) {
+            final int slot = slotOf(aid);
+            if (slot < 0) {
+                log.warn("Segment: {} references unknown aid: {}, skipping.", sid, aid);
+            } else if (!seen.get(slot)) {
+                seen.set(slot);
+                segmentSlots[length++] = slot;
+            }
+        }
+
+        return Arrays.copyOf(segmentSlots, length);
+    }
+
+    /**
+     * Upserts and removes entries, leaving this plan untouched. Every page the amendment does not change is shared
+     * between both plans, hence its cost depends on the number of amended entries rather than on plan size.
+     * <ul>
+     *     <li>Upserted aids keep their slots, new aids are assigned the next ones</li>
+     *     <li>Slots of removed aids are left vacant, their aids are still resolved to them</li>
+     *     <li>Segments keep their members as loaded: removed aids leave their segments and rejoin them once upserted
+     *     again, new aids join no segment. Only segments having amended members are recompiled</li>
+     *     <li>Once new aids outgrow the lookup table, the plan is rebuilt as a whole, vacant slots are reclaimed</li>
+     * </ul>
+     * Upserts are applied before removals. Amended plan keeps the slot epoch of this one, unless rebuilding it
+     * reclaimed vacant slots.
+     * @return amended plan of given generation
+     */
+    InMemoryAdBudgetPlan amend(Collection<? extends AdBudget> upserts, Collection<String> removals, long generation) {
+        requireNonNull(upserts, "Argument upserts must not be null");
+        requireNonNull(removals, "Argument removals must not be null");
+
+        int added = 0;
+        for (AdBudget upsert : upserts) {
+            if (slotOf(upsert.aid()) < 0) {
+                added++;
+            }
+        }
+        if ((long) (slotCount + added) * 2 > mask + 1) {
+            return rebuild(upserts, removals, generation);
+        }
+
+        final Amendment amendment = new Amendment();
+        for (AdBudget upsert : upserts) {
+            final byte[] key = upsert.aid().getBytes(StandardCharsets.UTF_8);
+            final int slot = amendment.slotOf(key);
+            if (slot < 0) {
+                amendment.append(key, upsert);
+            } else {
+                amendment.set(slot, upsert);
+            }
+        }
+        for (String removal : removals) {
+            final int slot = amendment.slotOf(removal.getBytes(StandardCharsets.UTF_8));
+            if (slot >= 0) {
+                amendment.set(slot, null);
+            }
+        }
+
+        return new InMemoryAdBudgetPlan(this, amendment, amendSegments(amendment), generation);
+    }
+
+    private Map<String, Segment> amendSegments(Amendment amendment) {
+        final String[][] membership = segmentsBySlot();
+        final Set<String> affected = new HashSet<>();
+        for (int i = 0; i < amendment.changedCount; i++) {
+            final int slot = amendment.changed[i];
+            if (slot < membership.length && membership[slot] != null) {
+                affected.addAll(Arrays.asList(membership[slot]));
+            }
+        }
+        if (affected.isEmpty()) {
+            return segments;
+        }
+
+        final Map<String, Segment> amendedSegments = new HashMap<>(segments);
+        for (String sid : affected) {
+            final int[] members = segments.get(sid).members();
+            final int[] segmentSlots = new int[members.length];
+            final List<AdBudget> candidates = new ArrayList<>(members.length);
+            int length = 0;
+            for (int member : members) {
+                final AdBudget adBudget = amendment.slots[member >>> PAGE_SHIFT][member & PAGE_MASK];
+                if (adBudget != null) {
+                    segmentSlots[length++] = member;
+                    candidates.add(adBudget);
+                }
+            }
+            amendedSegments.put(sid, new Segment(members, Arrays.copyOf(segmentSlots, length), List.copyOf(candidates)));
+        }
+        return Collections.unmodifiableMap(amendedSegments);
+    }
+
+    private String[][] segmentsBySlot() {
+        String[][] membership = segmentsBySlot;
+        if (membership == null) {
+            membership = new String[slotCount][];
+            for (Map.Entry<String, Segment> segment : segments.entrySet()) {
+                for (int member : segment.getValue().members()) {
+                    final String[] sids = membership[member];
+                    if (sids == null) {
+                        membership[member] = new String[] {segment.getKey()};
+                    } else {
+                        membership[member] = Arrays.copyOf(sids, sids.length + 1);
+                        membership[member][sids.length] = segment.getKey();
+                    }
+                }
+            }
+            segmentsBySlot = membership;
+        }
+        return membership;
+    }
+
+    private InMemoryAdBudgetPlan rebuild(Collection<? extends AdBudget> upserts, Collection<String> removals,
+                                         long generation) {
+        log.info("Rebuilding ad budget plan of {} slots, amendment outgrew its lookup table", slotCount);
+
+        final Map<String, AdBudget> aidToAdBudget = new LinkedHashMap<>((int) ((slotCount + upserts.size()) / 0.75f) + 1);
+        boolean keepsSlots = true;
+        for (int slot = 0; slot < slotCount; slot++) {
+            final AdBudget adBudget = slots[slot >>> PAGE_SHIFT][slot & PAGE_MASK];
+            if (adBudget != null) {
+                aidToAdBudget.put(new String(slotKeys[slot >>> PAGE_SHIFT][slot & PAGE_MASK], StandardCharsets.UTF_8), adBudget);
+            } else {
+                keepsSlots = false;
+            }
+        }
+        upserts.forEach(upsert -> aidToAdBudget.put(upsert.aid(), upsert));
+        for (String removal : removals) {
+            keepsSlots &= aidToAdBudget.remove(removal) == null;
+        }
+
+        final Map<String, List<String>> segmentToAids = new HashMap<>();
+        segments.forEach((sid, segment) -> {
+            final List<String> aids = new ArrayList<>(segment.members().length);
+            for (int member : segment.members()) {
+                final String aid = new String(slotKeys[member >>> PAGE_SHIFT][member & PAGE_MASK], StandardCharsets.UTF_8);
+                if (aidToAdBudget.containsKey(aid)) {
+                    aids.add(aid);
+                }
+            }
+            segmentToAids.put(sid, aids);
+        });
+        /** Entries keep their order, hence slots are only reassigned once vacant slots are reclaimed */
+        return new InMemoryAdBudgetPlan(aidToAdBudget, segmentToAids, generation, keepsSlots ? slotEpoch : generation);
+    }
+
+    /**
+     * Pages of amended plan, copied once first changed
+     */
+    private final class Amendment {
+
+        private AdBudget[][] slots = InMemoryAdBudgetPlan.this.slots.clone();
+        private byte[][][] slotKeys = InMemoryAdBudgetPlan.this.slotKeys;
+        private int[][] table = InMemoryAdBudgetPlan.this.table;
+        private int slotCount = InMemoryAdBudgetPlan.this.slotCount;
+
+        private final BitSet copiedSlotPages = new BitSet();
+        private final BitSet copiedKeyPages = new BitSet();
+        private final BitSet copiedTablePages = new BitSet();
+
+        private int[] changed = new int[8];
+        private int changedCount;
+
+        int slotOf(byte[] key) {
+            for (int bucket = hash(key) & mask; table[bucket >>> PAGE_SHIFT][bucket & PAGE_MASK] != 0; bucket = (bucket + 1) & mask) {
+                final int slot = table[bucket >>> PAGE_SHIFT][bucket & PAGE_MASK] - 1;
+                if (Arrays.equals(slotKeys[slot >>> PAGE_SHIFT][slot & PAGE_MASK], key)) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+
+        void set(int slot, AdBudget adBudget) {
+            final int page = slot >>> PAGE_SHIFT;
+            if (!copiedSlotPages.get(page)) {
+                slots[page] = slots[page].clone();
+                copiedSlotPages.set(page);
+            }
+            slots[page][slot & PAGE_MASK] = adBudget;
+
+            if (changedCount == changed.length) {
+                changed = Arrays.copyOf(changed, changedCount * 2);
+            }
+            changed[changedCount++] = slot;
+        }
+
+        void append(byte[] key, AdBudget adBudget) {
+            final int slot = slotCount++;
+            final int page = slot >>> PAGE_SHIFT;
+
+            /** Last page of a plan is only as long as its entries, it is grown to a full page once appended to */
+            if (page == slots.length) {
+                slots = Arrays.copyOf(slots, page + 1);
+                slots[page] = new AdBudget[PAGE_SIZE];
+                slotKeys = Arrays.copyOf(slotKeys, page + 1);
+                slotKeys[page] = new byte[PAGE_SIZE][];
+                copiedSlotPages.set(page);
+                copiedKeyPages.set(page);
+            } else {
+                if (slotKeys == InMemoryAdBudgetPlan.this.slotKeys) {
+                    slotKeys = slotKeys.clone();
+                }
+                if (!copiedSlotPages.get(page) || slots[page].length < PAGE_SIZE) {
+                    slots[page] = Arrays.copyOf(slots[page], PAGE_SIZE);
+                    copiedSlotPages.set(page);
+                }
+                if (!copiedKeyPages.get(page) || slotKeys[page].length < PAGE_SIZE) {
+                    slotKeys[page] = Arrays.copyOf(slotKeys[page], PAGE_SIZE);
+                    copiedKeyPages.set(page);
+                }
+            }
+            slotKeys[page][slot & PAGE_MASK] = key;
+            set(slot, adBudget);
+
+            int bucket = hash(key) & mask;
+            while (table[bucket >>> PAGE_SHIFT][bucket & PAGE_MASK] != 0) {
+                bucket = (bucket + 1) & mask;
+            }
+            if (table == InMemoryAdBudgetPlan.this.table) {
+                table = table.clone();
+            }
+            if (!copiedTablePages.get(bucket >>> PAGE_SHIFT)) {
+                table[bucket >>> PAGE_SHIFT] = table[bucket >>> PAGE_SHIFT].clone();
+                copiedTablePages.set(bucket >>> PAGE_SHIFT);
+            }
+            table[bucket >>> PAGE_SHIFT][bucket & PAGE_MASK] = slot + 1;
+        }
+
+    }
+
+    @Override
+    public Optional<AdBudget> fetch(String aid) {
+        requireNonNull(aid, "Argument aid must not be null");
+
+        if (slotCount > 0) {
+            return fetch(slotOf(aid));
+        }
+
+        log.warn("Attempting to fetch AdBudget from empty AdBudgetPlan");
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<AdBudget> fetch(int slot) {
+        if (slot < 0 || slot >= slotCount) {
+            return Optional.empty();
+        }
+
+        final AdBudget[] page = slots[slot >>> PAGE_SHIFT];
+        return Try.of(() -> page[slot & PAGE_MASK])
+                .filterTry(Objects::nonNull)
+                    .peek(lazyBudget -> {
+                        if (lazyBudget.isEmpty()) { // triggers evaluation of lazy AdBudget
+                            log.warn(new StringBuilder()
+                                    .append("Fetching aid: \"").append(aidOf(slot).orElse(""))
+                                        .append("\" produced an empty AdBudget.")
+                                            .append(" Entry will be removed from internal mapping to reduce future processing times")
+                                                .toString());
+
+                            page[slot & PAGE_MASK] = null;
+                        }
+                    })
+                    .filter(not(AdBudget::isEmpty))
+                        .toJavaOptional();
+    }
+
+    @Override
+    public Optional<String> aidOf(int slot) {
+        if (slot < 0 || slot >= slotCount) {
+            return Optional.empty();
+        }
+        return Optional.of(new String(slotKeys[slot >>> PAGE_SHIFT][slot & PAGE_MASK], StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public int slotCount() {
+        return slotCount;
+    }
+
+    @Override
+    public long generation() {
+        return generation;
+    }
+
+    @Override
+    public long slotEpoch() {
+        return slotEpoch;
+    }
+
+    @Override
+    public int slotOf(String aid) {
+        requireNonNull(aid, "Argument aid must not be null");
+
+        final int length = aid.length();
+        int h = 0;
+        for (int i = 0; i < length; i++) {
+            final char c = aid.charAt(i);
+            if (c >= 0x80) {
+                final byte[] encoded = aid.getBytes(StandardCharsets.UTF_8);
+                return slotOf(ByteBuffer.wrap(encoded), 0, encoded.length);
+            }
+            h = 31 * h + c;
+        }
+
+        for (int bucket = mix(h) & mask; table[bucket >>> PAGE_SHIFT][bucket & PAGE_MASK] != 0; bucket = (bucket + 1) & mask) {
+            final int slot = table[bucket >>> PAGE_SHIFT][bucket & PAGE_MASK] - 1;
+            final byte[] key = slotKeys[slot >>> PAGE_SHIFT][slot & PAGE_MASK];
+            if (key.length == length && asciiEquals(key, aid)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int slotOf(ByteBuffer source, int offset, int length) {
+        requireNonNull(source, "Argument source must not be null");
+
+        int h = 0;
+        for (int i = 0; i < length; i++) {
+            h = 31 * h + (source.get(offset + i) & 0xff);
+        }
+
+        for (int bucket = mix(h) & mask; table[bucket >>> PAGE_SHIFT][bucket & PAGE_MASK] != 0; bucket = (bucket + 1) & mask) {
+            final int slot = table[bucket >>> PAGE_SHIFT][bucket & PAGE_MASK] - 1;
+            final byte[] key = slotKeys[slot >>> PAGE_SHIFT][slot & PAGE_MASK];
+            if (key.length == length && bytesEqual(key, source, offset)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public List<AdBudget> fetchSegment(String segmentId) {
+        requireNonNull(segmentId, "Argument segmentId must not be null");
+        final Segment segment = segments.get(segmentId);
+        return isNull(segment) ? List.of() : segment.candidates();
+    }
+
+    @Override
+    public int[] fetchSegmentSlots(String segmentId) {
+        requireNonNull(segmentId, "Argument segmentId must not be null");
+        final Segment segment = segments.get(segmentId);
+        return isNull(segment) ? NO_SLOTS : segment.slots();
+    }
+
+    @Override
+    public Set<String> segmentIds() {
+        return segments.keySet();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return slotCount == 0;
+    }
+
+    private static int pageCount(int size) {
+        return (size + PAGE_MASK) >>> PAGE_SHIFT;
+    }
+
+    private static int tableCapacity(int size) {
+        return Integer.highestOneBit(Math.max(2, size) * 2 - 1) << 1;
+    }
+
+    private static int hash(byte[] key) {
+        int h = 0;
+        for (byte b : key) {
+            h = 31 * h + (b & 0xff);
+        }
+        return mix(h);
+    }
+
+    /**
+     * Spreads higher bits downwards, aids commonly share long prefixes
+     */
+    private static int mix(int h) {
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b;
+        return h ^ (h >>> 13);
+    }
+
+    private static boolean asciiEquals(byte[] key, String aid) {
+        for (int i = 0; i < key.length; i++) {
+            if (key[i] != (byte) aid.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean bytesEqual(byte[] key, ByteBuffer source, int offset) {
+        for (int i = 0; i < key.length; i++) {
+            if (key[i] != source.get(offset + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,312 @@
+package com.undertone.adselector.infrastructure.out;
+
+import com.undertone.adselector.model.AdBudget;
+import com.undertone.adselector.model.AdBudgetPlan;
+import com.undertone.adselector.model.AdDistribution;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.experimental.Delegate;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Conservative local spending of ads while distribution store is unreachable (degraded mode).
+ * <ul>
+ *     <li>Remaining quota of every ad is observed from successful store fetches</li>
+ *     <li>While degraded, an instance spends up to its allowance of an ad, a fraction of the last observed remaining
+ *     quota divided by number of live instances, hence all instances together spend at most that fraction</li>
+ *     <li>Local spending is journaled, and replayed into store (INCRBY) once it is reachable again. Replayed spending
+ *     which exceeded quota, e.g. due to instances still reaching store, is reported as overspend</li>
+ * </ul>
+ * Journal is held in memory, spending journaled by an instance which terminated before replaying it is lost,
+ * overspending by at most the allowance of that instance.
+ * <p>
+ * Allowances of aids leaving the plan are pruned once plan generation changed, unless their spending is still
+ * journaled, hence allowances are bounded by the plan rather than by every aid ever fetched.
+ */
+@Slf4j
+public class LocalSpendAllowance {
+
+    private final double allowanceFraction;
+    private final int instances;
+    private final SpendReplayer replayer;
+    private final Supplier<AdBudgetPlan> currentPlan;
+
+    private final Map<String, Allowance> allowances = new ConcurrentHashMap<>();
+    private final AtomicBoolean replaying = new AtomicBoolean();
+    private volatile boolean pending;
+
+    /**
+     * Plan generation allowances were last pruned by, -1 until pruned
+     */
+    private final AtomicLong prunedGeneration = new AtomicLong(-1L);
+
+    private final Counter grantedCounter;
+    private final Counter deniedCounter;
+    private final Counter replayedCounter;
+    private final Counter overspendCounter;
+
+    public LocalSpendAllowance(double allowanceFraction, int instances, SpendReplayer replayer) {
+        this(allowanceFraction, instances, replayer, new SimpleMeterRegistry());
+    }
+
+    /**
+     * Allowances are never pruned, see {@link #LocalSpendAllowance(double, int, SpendReplayer, Supplier, MeterRegistry)}
+     */
+    public LocalSpendAllowance(double allowanceFraction, int instances, SpendReplayer replayer,
+                               MeterRegistry meterRegistry) {
+        this(allowanceFraction, instances, replayer, () -> null, meterRegistry);
+    }
+
+    /**
+     * @param currentPlan plan allowances are pruned by once its generation changed, none are pruned while it supplies null
+     */
+    public LocalSpendAllowance(double allowanceFraction, int instances, SpendReplayer replayer,
+                               Supplier<AdBudgetPlan> currentPlan, MeterRegistry meterRegistry) {
+        if (allowanceFraction <= 0d || allowanceFraction > 1d) {
+            throw new IllegalArgumentException("Expected allowance fraction within (0, 1], but it was: " + allowanceFraction);
+        }
+        if (instances < 1) {
+            throw new IllegalArgumentException("Expected at least a single instance, but it was: " + instances);
+        }
+        this.allowanceFraction = allowanceFraction;
+        this.instances = instances;
+        this.replayer = requireNonNull(replayer, "Argument replayer must not be null");
+        this.currentPlan = requireNonNull(currentPlan, "Argument currentPlan must not be null");
+        requireNonNull(meterRegistry, "Argument meterRegistry must not be null");
+
+        this.grantedCounter = Counter.builder("adselector.store.degraded.spends")
+                .description("Local spending attempts while distribution store was unreachable")
+                    .tag("result", "granted")
+                        .register(meterRegistry);
+        this.deniedCounter = Counter.builder("adselector.store.degraded.spends")
+                .description("Local spending attempts while distribution store was unreachable")
+                    .tag("result", "denied")
+                        .register(meterRegistry);
+        this.replayedCounter = Counter.builder("adselector.store.degraded.replayed")
+                .description("Locally spent quota replayed into distribution store")
+                    .register(meterRegistry);
+        this.overspendCounter = Counter.builder("adselector.store.degraded.overspend")
+                .description("Replayed quota which exceeded quota of its ad")
+                    .register(meterRegistry);
+        Gauge.builder("adselector.store.degraded.pending", this, LocalSpendAllowance::pendingSpend)
+                .description("Locally spent quota not yet replayed into distribution store")
+                    .register(meterRegistry);
+    }
+
+    /**
+     * Records remaining quota fetched from store. Journaled spending not yet replayed is not reflected by store,
+     * hence it is still accounted for against the allowance.
+     * <p>
+     * Called for every fetched candidate while store is healthy: unchanged remaining quota costs a single lock free
+     * lookup and allocates nothing, changed remaining quota (ads spent since last fetched) replaces the allowance
+     * under a bin lock (see {@code LocalSpendAllowanceBudgetTest}).
+     */
+    void observe(AdDistribution adDistribution) {
+        final long remaining = Math.max(0L, adDistribution.remainingQuota());
+        if (isObserved(allowances.get(adDistribution.aid()), remaining)) {
+            return;
+        }
+
+        allowances.compute(adDistribution.aid(), (aid, current) -> {
+            if (isObserved(current, remaining)) {
+                return current;
+            }
+            final long unreplayed = current == null ? 0L : current.unreplayed();
+            return new Allowance(adDistribution.quota(), remaining, unreplayed, unreplayed);
+        });
+    }
+
+    private static boolean isObserved(Allowance allowance, long remaining) {
+        return allowance != null && allowance.lastKnownRemaining() == remaining
+                && allowance.spent() == allowance.unreplayed();
+    }
+
+    /**
+     * @return distribution of given ad having its locally remaining allowance, null if its remaining quota
+     * was never observed
+     */
+    AdDistribution distributionOf(AdBudget adBudget) {
+        final Allowance allowance = allowances.get(adBudget.aid());
+        return allowance == null ? null : new LocalDistribution(adBudget, allowance.remaining(budgetOf(allowance)));
+    }
+
+    /**
+     * Spends a single unit of given ad from its allowance, journaling it for replay
+     * @return whether allowance of ad was sufficient
+     */
+    boolean trySpend(String aid) {
+        final boolean[] granted = {false};
+        allowances.computeIfPresent(aid, (ignored, allowance) -> {
+            if (allowance.spent() < budgetOf(allowance)) {
+                granted[0] = true;
+                return new Allowance(allowance.quota(), allowance.lastKnownRemaining(),
+                        allowance.spent() + 1, allowance.unreplayed() + 1);
+            }
+            return allowance;
+        });
+
+        if (granted[0]) {
+            pending = true;
+            grantedCounter.increment();
+        } else {
+            deniedCounter.increment();
+        }
+        return granted[0];
+    }
+
+    /**
+     * Replays journaled spending unless there is none, or it is already being replayed.
+     * Prunes allowances beforehand once plan generation changed.
+     */
+    void replayIfPending() {
+        pruneIfPlanChanged();
+        if (pending && replaying.compareAndSet(false, true)) {
+            pending = false;
+            replay()
+                    .doFinally(ignored -> replaying.set(false))
+                        .subscribe(report -> {
+                            if (report.replayed() > 0) {
+                                log.warn("Replayed: {} locally spent quota of: {} ads, overspent: {}",
+                                        report.replayed(), report.ads(), report.overspent());
+                            }
+                        }, failure -> log.error("Failed replaying locally spent quota", failure));
+        }
+    }
+
+    /**
+     * Replays journaled spending of every ad using a single increment, journal entries are restored if replay failed
+     */
+    Mono<ReplayReport> replay() {
+        return Flux.fromIterable(allowances.keySet())
+                .concatMap(aid -> {
+                    final long[] taken = {0L};
+                    final long[] quota = {0L};
+                    allowances.computeIfPresent(aid, (ignored, allowance) -> {
+                        if (allowance.unreplayed() == 0L) {
+                            return allowance;
+                        }
+                        taken[0] = allowance.unreplayed();
+                        quota[0] = allowance.quota();
+                        return new Allowance(allowance.quota(), allowance.lastKnownRemaining(), allowance.spent(), 0L);
+                    });
+                    if (taken[0] == 0L) {
+                        return Mono.empty();
+                    }
+
+                    return replayer.incrementSpentBy(aid, taken[0])
+                            .map(spent -> {
+                                final long overspent = Math.min(taken[0], Math.max(0L, spent - quota[0]));
+                                replayedCounter.increment(taken[0]);
+                                if (overspent > 0) {
+                                    overspendCounter.increment(overspent);
+                                    log.warn("Ad: {} overspent by: {} once local spending was replayed", aid, overspent);
+                                }
+                                return new ReplayReport(1, taken[0], overspent);
+                            })
+                            .onErrorResume(failure -> {
+                                allowances.computeIfPresent(aid, (ignored, allowance) ->
+                                        new Allowance(allowance.quota(), allowance.lastKnownRemaining(),
+                                                allowance.spent(), allowance.unreplayed() + taken[0]));
+                                pending = true;
+                                return Mono.error(failure);
+                            });
+                })
+                .reduce(new ReplayReport(0, 0L, 0L), ReplayReport::plus)
+                /**
+                 * Replayed allowances of aids which left the plan meanwhile are pruned by next check
+                 */
+                .doOnSuccess(ignored -> prunedGeneration.set(-1L));
+    }
+
+    private void pruneIfPlanChanged() {
+        final AdBudgetPlan plan = currentPlan.get();
+        if (plan == null) {
+            return;
+        }
+        final long pruned = prunedGeneration.get();
+        if (pruned != plan.generation() && prunedGeneration.compareAndSet(pruned, plan.generation())) {
+            final int prunedAds = prune(plan);
+            if (prunedAds > 0) {
+                log.debug("Pruned allowances of: {} ads absent from plan generation: {}", prunedAds, plan.generation());
+            }
+        }
+    }
+
+    /**
+     * Removes allowances of aids absent from given plan, unless their spending is yet to be replayed
+     * @return number of allowances removed
+     */
+    int prune(AdBudgetPlan plan) {
+        final int[] pruned = {0};
+        for (String aid : allowances.keySet()) {
+            if (plan.fetch(aid).isEmpty()) {
+                allowances.computeIfPresent(aid, (ignored, allowance) -> {
+                    if (allowance.unreplayed() > 0L) {
+                        return allowance;
+                    }
+                    pruned[0]++;
+                    return null;
+                });
+            }
+        }
+        return pruned[0];
+    }
+
+    int allowanceCount() {
+        return allowances.size();
+    }
+
+    long pendingSpend() {
+        long pendingSpend = 0L;
+        for (Allowance allowance : allowances.values()) {
+            pendingSpend += allowance.unreplayed();
+        }
+        return pendingSpend;
+    }
+
+    private long budgetOf(Allowance allowance) {
+        return (long) Math.floor(allowanceFraction * allowance.lastKnownRemaining() / instances);
+    }
+
+    /**
+     * Increments spent quota of an ad by given amount, e.g. using Redis INCRBY
+     */
+    @FunctionalInterface
+    public interface SpendReplayer {
+        /**
+         * @return spent quota of ad once incremented
+         */
+        Mono<Long> incrementSpentBy(String aid, long amount);
+    }
+
+    /**
+     * @param spent quota spent locally since remaining quota was last observed, journaled or not
+     * @param unreplayed quota spent locally and journaled, yet to be replayed into store
+     */
+    private record Allowance(long quota, long lastKnownRemaining, long spent, long unreplayed) {
+        long remaining(long budget) {
+            return Math.max(0L, budget - spent);
+        }
+    }
+
+    record ReplayReport(int ads, long replayed, long overspent) {
+        ReplayReport plus(ReplayReport other) {
+            return new ReplayReport(ads + other.ads, replayed + other.replayed, overspent + other.overspent);
+        }
+    }
+
+    private record LocalDistribution(@Delegate AdBudget delegate, long remainingQuota) implements AdDistribution { }
+
+}
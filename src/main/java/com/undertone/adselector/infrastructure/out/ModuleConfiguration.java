@@ -2,24 +2,133 @@ package com.undertone.adselector.infrastructure.out;
 
 
 import com.undertone.adselector.application.ports.out.AdBudgetPlanStore;
+import com.undertone.adselector.application.ports.out.BlockingAdDistributionStore;
+import com.undertone.adselector.infrastructure.out.RedisSpendReconciler.OrphanPolicy;
+import com.undertone.adselector.infrastructure.out.ResilientAdDistributionStore.FallbackPolicy;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
 
 import java.nio.file.Path;
+import java.time.Duration;
 
 @Configuration
 public class ModuleConfiguration {
 
+    public enum PlanSource {
+        /** Plan file of every instance, see {@code plan.file} */
+        FILE,
+        /** Plan published into Redis, see {@link RedisBackedAdBudgetPlanPublisher} */
+        REDIS
+    }
+
+    /**
+     * Plan source is chosen at runtime rather than by conditional bean definitions, which AOT processing would freeze
+     */
     @Bean
-    public AdBudgetPlanStore adBudgetPlan(@Value("${plan.file}") Path adBudgetPlanFile,
+    public AdBudgetPlanStore adBudgetPlan(@Value("${plan.source:FILE}") PlanSource planSource,
+                                          @Value("${plan.file}") Path adBudgetPlanFile,
                                           @Value("${plan.file.watcher.enabled:true}") boolean enableFileWatcher,
-                                          @Value("${plan.file.lazy.loading.enabled:false}") boolean enableLazyLoading) {
+                                          @Value("${plan.file.lazy.loading.enabled:false}") boolean enableLazyLoading,
+                                          @Value("${plan.amendments.persist.enabled:false}") boolean persistAmendments,
+                                          @Value("${plan.amendments.persist.delay:PT5S}") Duration persistDelay,
+                                          @Value("${plan.redis.load.concurrency:4}") int loadConcurrency,
+                                          @Value("${plan.redis.poll.interval:PT30S}") Duration pollInterval,
+                                          @Value("${plan.redis.bootstrap.timeout:PT30S}") Duration bootstrapTimeout,
+                                          ReactiveStringRedisTemplate redisTemplate,
+                                          MeterRegistry meterRegistry) {
 
-        return FileBackedAdBudgetPlanStore
+        if (planSource == PlanSource.REDIS) {
+            return RedisBackedAdBudgetPlanStore
+                    .builder(redisTemplate).withLoadConcurrency(loadConcurrency)
+                        .withPollInterval(pollInterval)
+                            .withBootstrapTimeout(bootstrapTimeout)
+                                .withMeterRegistry(meterRegistry)
+                                    .build();
+        }
+        final FileBackedAdBudgetPlanStore.Builder builder = FileBackedAdBudgetPlanStore
                 .builder(adBudgetPlanFile).withFileWatcher(enableFileWatcher)
                     .withLazyLoading(enableLazyLoading)
-                        .build();
+                        .withMeterRegistry(meterRegistry);
+        if (persistAmendments) {
+            builder.withAmendmentPersistence(persistDelay);
+        }
+        return builder.build();
+    }
+
+    @Bean
+    @Primary
+    public ResilientAdDistributionStore resilientDistributionStore(RedisBackedAdDistributionStore redisDistributionStore,
+                                                          @Value("${store.operation.timeout:PT0.1S}") Duration operationTimeout,
+                                                          @Value("${store.circuit.breaker.failure.rate.threshold:50}") float failureRateThreshold,
+                                                          @Value("${store.circuit.breaker.slow.call.duration:PT0.025S}") Duration slowCallDuration,
+                                                          @Value("${store.circuit.breaker.slow.call.rate.threshold:80}") float slowCallRateThreshold,
+                                                          @Value("${store.circuit.breaker.window.size:100}") int windowSize,
+                                                          @Value("${store.circuit.breaker.minimum.calls:50}") int minimumCalls,
+                                                          @Value("${store.circuit.breaker.open.duration:PT5S}") Duration openDuration,
+                                                          @Value("${store.fallback.policy:NO_FILL}") FallbackPolicy fallbackPolicy,
+                                                          @Value("${store.degraded.allowance.fraction:0.1}") double allowanceFraction,
+                                                          @Value("${store.degraded.instances:1}") int instances,
+                                                          AdBudgetPlanStore adBudgetPlanStore,
+                                                          MeterRegistry meterRegistry) {
+
+        final ResilientAdDistributionStore.Builder builder = ResilientAdDistributionStore
+                .builder(redisDistributionStore).withOperationTimeout(operationTimeout)
+                    .withCircuitBreakerConfig(CircuitBreakerConfig.custom()
+                            .failureRateThreshold(failureRateThreshold)
+                                .slowCallDurationThreshold(slowCallDuration)
+                                    .slowCallRateThreshold(slowCallRateThreshold)
+                                        .slidingWindowSize(windowSize)
+                                            .minimumNumberOfCalls(minimumCalls)
+                                                .waitDurationInOpenState(openDuration)
+                                                    .build())
+                        .withFallbackPolicy(fallbackPolicy)
+                            .withMeterRegistry(meterRegistry);
+
+        /** Remaining quota is observed by every fetch, hence allowance is only kept once it could be spent */
+        if (fallbackPolicy == FallbackPolicy.LOCAL_ALLOWANCE) {
+            builder.withLocalAllowance(new LocalSpendAllowance(allowanceFraction, instances,
+                    redisDistributionStore::incrementSpentBy, adBudgetPlanStore::currentPlan, meterRegistry));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Shares circuit breaker, timeouts and fallback policy of {@link #resilientDistributionStore}, only one of both
+     * is used depending on selection execution mode
+     */
+    @Bean
+    @Primary
+    public BlockingAdDistributionStore resilientBlockingDistributionStore(
+            RedisBackedBlockingAdDistributionStore redisBlockingDistributionStore,
+            ResilientAdDistributionStore resilientDistributionStore) {
+        return resilientDistributionStore.blocking(redisBlockingDistributionStore);
+    }
+
+    /**
+     * Registered regardless of being enabled, only started once enabled. Conditions are evaluated once the application
+     * is AOT processed, hence bean definitions must not depend on runtime properties.
+     */
+    @Bean(destroyMethod = "stop")
+    public RedisSpendReconciler spendReconciler(ReactiveStringRedisTemplate redisTemplate,
+                                                AdBudgetPlanStore adBudgetPlanStore,
+                                                @Value("${spend.reconciler.enabled:false}") boolean enabled,
+                                                @Value("${spend.reconciler.interval:PT10M}") Duration passInterval,
+                                                @Value("${spend.reconciler.orphan.policy:EXPIRE}") OrphanPolicy orphanPolicy,
+                                                @Value("${spend.reconciler.orphan.ttl:P1D}") Duration orphanTtl,
+                                                @Value("${spend.reconciler.batch.size:100}") int batchSize,
+                                                @Value("${spend.reconciler.keys.per.second:1000}") int keysPerSecond) {
+
+        final RedisSpendReconciler reconciler = RedisSpendReconciler
+                .builder(redisTemplate, adBudgetPlanStore).withPassInterval(passInterval)
+                    .withOrphanPolicy(orphanPolicy).withOrphanTtl(orphanTtl)
+                        .withRateLimit(batchSize, keysPerSecond)
+                            .build();
+        return enabled ? reconciler.start() : reconciler;
     }
 
 }
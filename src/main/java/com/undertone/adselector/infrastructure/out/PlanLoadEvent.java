@@ -0,0 +1,43 @@
+package com.undertone.adselector.infrastructure.out;
+
+import jdk.jfr.*;
+
+/**
+ * Flight recorder event spanning a single ad budget plan (re)load, correlating reload pauses with GC activity.
+ */
+@Name("com.undertone.adselector.PlanLoad")
+@Label("Ad Budget Plan Load")
+@Category({"Ad Selector", "Plan"})
+@Description("Loading of ad budget plan file into an in-memory plan")
+@StackTrace(false)
+final class PlanLoadEvent extends Event {
+
+    @Label("Plan File")
+    String planFile;
+
+    @Label("Compression")
+    String compression;
+
+    @Label("Lazy Loading")
+    boolean lazyLoading;
+
+    @Label("Generation")
+    @Description("Generation of loaded plan, 0 if loading failed")
+    long generation;
+
+    @Label("Ads")
+    int ads;
+
+    @Label("Segments")
+    int segments;
+
+    @Label("Skipped Ads")
+    int skippedAds;
+
+    @Label("Skipped Segments")
+    int skippedSegments;
+
+    @Label("Succeeded")
+    boolean succeeded;
+
+}
@@ -0,0 +1,195 @@
+package com.undertone.adselector.infrastructure.out;
+
+import com.undertone.adselector.application.ports.out.AdBudgetPlanPublisher;
+import com.undertone.adselector.application.ports.out.InfrastructureException.StoreException;
+import com.undertone.adselector.application.ports.out.InfrastructureException.StoreException.OperationFailedException;
+import com.undertone.adselector.infrastructure.out.RedisPlanLayout.Manifest;
+import com.undertone.adselector.model.AdBudget;
+import com.undertone.adselector.model.AdBudgetPlan;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.undertone.adselector.infrastructure.out.RedisPlanLayout.*;
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Publishes plans in the chunked layout of {@link RedisPlanLayout}:
+ * <ol>
+ *     <li>A new version is allocated, its chunks and then its manifest are written</li>
+ *     <li>The version becomes current by a single atomic switch, unless a later version already did</li>
+ *     <li>The version is announced to every {@link RedisBackedAdBudgetPlanStore} over pub/sub</li>
+ *     <li>Keys of the replaced version expire once {@code plan.redis.retention} elapses</li>
+ * </ol>
+ */
+@Slf4j
+@Component
+public class RedisBackedAdBudgetPlanPublisher implements AdBudgetPlanPublisher {
+
+    /**
+     * Makes given version current unless a later one already is.
+     * Returns the version replaced, 0 if none, or -1 if given version was superseded.
+     */
+    static final RedisScript<Long> SWITCH_CURRENT_SCRIPT = RedisScript.of("""
+            local current = tonumber(redis.call('GET', KEYS[1]) or '0')
+            if tonumber(ARGV[1]) <= current then
+              return -1
+            end
+            redis.call('SET', KEYS[1], ARGV[1])
+            return current
+            """, Long.class);
+
+    private static final int WRITE_CONCURRENCY = 4;
+
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final int chunkSize;
+    private final Duration retention;
+
+    public RedisBackedAdBudgetPlanPublisher(ReactiveStringRedisTemplate redisTemplate) {
+        this(redisTemplate, 10_000, Duration.ofHours(1));
+    }
+
+    @Autowired
+    public RedisBackedAdBudgetPlanPublisher(ReactiveStringRedisTemplate redisTemplate,
+                                            @Value("${plan.redis.chunk.size:10000}") int chunkSize,
+                                            @Value("${plan.redis.retention:PT1H}") Duration retention) {
+        this.redisTemplate = requireNonNull(redisTemplate, "Argument redisTemplate must not be null");
+        this.retention = requireNonNull(retention, "Argument retention must not be null");
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Expected positive chunk size, but it was: " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public Mono<Long> publish(Path planFile) throws StoreException {
+        requireNonNull(planFile, "Argument planFile must not be null");
+
+        return Mono.fromCallable(() -> FileBackedAdBudgetPlanStore.builder(planFile).build().currentPlan())
+                .subscribeOn(Schedulers.boundedElastic())
+                    .flatMap(this::publish);
+    }
+
+    /**
+     * @return version of published plan
+     * @throws OperationFailedException if plan is empty, was superseded by a later version, or Redis failed
+     */
+    Mono<Long> publish(AdBudgetPlan plan) throws OperationFailedException {
+        requireNonNull(plan, "Argument plan must not be null");
+        if (plan.isEmpty()) {
+            return Mono.error(new OperationFailedException("Refusing to publish an empty plan"));
+        }
+
+        return redisTemplate.opsForValue().increment(SEQUENCE_KEY)
+                /**
+                 * Encoding is CPU bound, kept off Redis client threads
+                 */
+                .publishOn(Schedulers.boundedElastic())
+                .flatMap(version -> {
+                    final Map<String, String> chunks = new LinkedHashMap<>();
+                    final Manifest manifest = encode(plan, version, chunks);
+
+                    return Flux.fromIterable(chunks.entrySet())
+                            .flatMap(chunk -> redisTemplate.opsForValue().set(chunk.getKey(), chunk.getValue()),
+                                    WRITE_CONCURRENCY)
+                            .then(redisTemplate.opsForValue().set(manifestKey(version), manifest.encode()))
+                            .then(redisTemplate.execute(SWITCH_CURRENT_SCRIPT, List.of(CURRENT_KEY),
+                                    List.of(String.valueOf(version))).next())
+                            .flatMap(replaced -> replaced < 0
+                                    ? expire(version, manifest).then(Mono.<Long>error(new OperationFailedException(
+                                            format("Plan version: %d was superseded by a later version", version))))
+                                        : redisTemplate.convertAndSend(CHANNEL, String.valueOf(version))
+                                            .then(expire(replaced))
+                                                .doOnSuccess(ignored -> log.info(
+                                                        "Published ad budget plan version: {} of {} ads and {} segments, replacing version: {}",
+                                                            version, manifest.ads(), manifest.segments(), replaced))
+                                                    .thenReturn(version));
+                })
+                .onErrorMap(ex -> !(ex instanceof StoreException),
+                        ex -> new OperationFailedException("Failed publishing ad budget plan", ex));
+    }
+
+    private Manifest encode(AdBudgetPlan plan, long version, Map<String, String> chunks) {
+        int ads = 0, adChunks = 0, skipped = 0;
+        StringBuilder chunk = new StringBuilder();
+        for (int slot = 0; slot < plan.slotCount(); slot++) {
+            final AdBudget adBudget = plan.fetch(slot).orElse(AdBudget.EMPTY);
+            if (adBudget.isEmpty() || !isEncodable(adBudget.aid())) {
+                skipped++;
+                continue;
+            }
+            appendAd(chunk, adBudget);
+            if (++ads % chunkSize == 0) {
+                chunks.put(adsChunkKey(version, adChunks++), chunk.toString());
+                chunk = new StringBuilder();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            chunks.put(adsChunkKey(version, adChunks++), chunk.toString());
+        }
+
+        int segments = 0, segmentChunks = 0;
+        chunk = new StringBuilder();
+        for (String segmentId : plan.segmentIds()) {
+            if (!isEncodable(segmentId)) {
+                skipped++;
+                continue;
+            }
+            final int[] slots = plan.fetchSegmentSlots(segmentId);
+            final List<String> aids = new ArrayList<>(slots.length);
+            for (int slot : slots) {
+                plan.aidOf(slot).filter(RedisPlanLayout::isEncodable).ifPresent(aids::add);
+            }
+            appendSegment(chunk, segmentId, aids);
+            if (++segments % chunkSize == 0) {
+                chunks.put(segmentsChunkKey(version, segmentChunks++), chunk.toString());
+                chunk = new StringBuilder();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            chunks.put(segmentsChunkKey(version, segmentChunks++), chunk.toString());
+        }
+
+        if (skipped > 0) {
+            log.warn("Skipped {} plan entries which could not be published", skipped);
+        }
+        return new Manifest(adChunks, segmentChunks, ads, segments);
+    }
+
+    /**
+     * Replaced versions are kept for a while, instances may still be loading them
+     */
+    private Mono<Void> expire(long version) {
+        if (version <= 0) {
+            return Mono.empty();
+        }
+        return redisTemplate.opsForValue().get(manifestKey(version))
+                .map(Manifest::decode)
+                    .flatMap(manifest -> expire(version, manifest))
+                        .onErrorResume(ex -> {
+                            log.warn("Failed expiring keys of replaced plan version: {}", version, ex);
+                            return Mono.empty();
+                        });
+    }
+
+    private Mono<Void> expire(long version, Manifest manifest) {
+        return Flux.fromIterable(manifest.keys(version))
+                .flatMap(key -> redisTemplate.expire(key, retention), WRITE_CONCURRENCY)
+                    .then();
+    }
+
+}
@@ -0,0 +1,358 @@
+package com.undertone.adselector.infrastructure.out;
+
+import com.undertone.adselector.application.ports.out.AdBudgetPlanStore;
+import com.undertone.adselector.application.ports.out.InfrastructureException.StoreException;
+import com.undertone.adselector.application.ports.out.InfrastructureException.StoreException.OperationFailedException;
+import com.undertone.adselector.infrastructure.out.RedisPlanLayout.Manifest;
+import com.undertone.adselector.model.AdBudget;
+import com.undertone.adselector.model.AdBudgetPlan;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.ReactiveRedisMessageListenerContainer;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.undertone.adselector.infrastructure.out.RedisPlanLayout.*;
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Serves plans published into Redis (see {@link RedisPlanLayout}), rather than read from a local plan file.
+ * <ul>
+ *     <li>Once built, the current version is loaded within the bootstrap timeout, the store starts empty otherwise</li>
+ *     <li>Versions announced over pub/sub are loaded as soon as announced. The current version is also checked once
+ *     (re)subscribed, and polled every poll interval, in case announcements were missed meanwhile</li>
+ *     <li>Chunks are fetched and decoded in parallel, up to load concurrency at a time, and indexed in chunk order.
+ *     Slots, hence binary selection requests, are therefore consistent across instances serving the same version,
+ *     which is also the generation of the loaded plan</li>
+ *     <li>Loaded plans replace the served one at once, and only if later. A load is abandoned once a later version
+ *     is announced, a failed load is retried by the next poll</li>
+ * </ul>
+ */
+@Slf4j
+public final class RedisBackedAdBudgetPlanStore implements AdBudgetPlanStore, AutoCloseable {
+
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final int loadConcurrency;
+    private final Duration pollInterval;
+
+    private volatile AdBudgetPlan adBudgetPlan = AdBudgetPlan.EMPTY;
+
+    /**
+     * Version of served plan, 0 while none
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * Version followed load is in flight for, or last attempted, 0 while none. Only later versions cancel it
+     */
+    private final AtomicLong loadingVersion = new AtomicLong();
+
+    private volatile Disposable following;
+
+    private final Timer loadSuccessTimer;
+    private final Timer loadFailureTimer;
+    private final Counter skippedAdsCounter;
+    private final AtomicLong loadedAds = new AtomicLong();
+    private final AtomicLong loadedSegments = new AtomicLong();
+
+    private RedisBackedAdBudgetPlanStore(Builder builder) {
+        this.redisTemplate = builder.redisTemplate;
+        this.loadConcurrency = builder.loadConcurrency;
+        this.pollInterval = builder.pollInterval;
+
+        final MeterRegistry meterRegistry = builder.meterRegistry;
+        this.loadSuccessTimer = planLoadTimer(meterRegistry, "success");
+        this.loadFailureTimer = planLoadTimer(meterRegistry, "failure");
+        this.skippedAdsCounter = Counter.builder("adselector.plan.entries.skipped")
+                .description("Plan entries skipped for failing to parse")
+                    .tag("type", "ads")
+                        .register(meterRegistry);
+        Gauge.builder("adselector.plan.entries", loadedAds, AtomicLong::get)
+                .description("Entries of currently loaded ad budget plan")
+                    .tag("type", "ads")
+                        .register(meterRegistry);
+        Gauge.builder("adselector.plan.entries", loadedSegments, AtomicLong::get)
+                .description("Entries of currently loaded ad budget plan")
+                    .tag("type", "segments")
+                        .register(meterRegistry);
+        Gauge.builder("adselector.plan.version", version, AtomicLong::get)
+                .description("Published version of currently loaded ad budget plan")
+                    .register(meterRegistry);
+    }
+
+    private static Timer planLoadTimer(MeterRegistry meterRegistry, String result) {
+        return Timer.builder("adselector.plan.load")
+                .description("Duration of ad budget plan (re)loads")
+                    .tag("result", result)
+                        .register(meterRegistry);
+    }
+
+    @Override
+    public Mono<AdBudgetPlan> fetchPlan() throws StoreException {
+        return Mono.just(adBudgetPlan);
+    }
+
+    @Override
+    public AdBudgetPlan currentPlan() throws StoreException {
+        return adBudgetPlan;
+    }
+
+    /**
+     * @return version of served plan, 0 while none
+     */
+    public long version() {
+        return version.get();
+    }
+
+    public static Builder builder(ReactiveStringRedisTemplate redisTemplate) {
+        return new Builder(redisTemplate);
+    }
+
+    public static class Builder {
+
+        private final ReactiveStringRedisTemplate redisTemplate;
+        private int loadConcurrency = 4;
+        private Duration pollInterval = Duration.ofSeconds(30);
+        private Duration bootstrapTimeout = Duration.ofSeconds(30);
+        private MeterRegistry meterRegistry;
+
+        Builder(ReactiveStringRedisTemplate redisTemplate) {
+            this.redisTemplate = requireNonNull(redisTemplate, "Argument redisTemplate must not be null");
+        }
+
+        /**
+         * @param loadConcurrency chunks fetched and decoded at once while loading a version
+         */
+        public Builder withLoadConcurrency(int loadConcurrency) {
+            if (loadConcurrency < 1) {
+                throw new IllegalArgumentException("Expected positive load concurrency, but it was: " + loadConcurrency);
+            }
+            this.loadConcurrency = loadConcurrency;
+            return this;
+        }
+
+        public Builder withPollInterval(Duration pollInterval) {
+            this.pollInterval = requireNonNull(pollInterval, "Argument pollInterval must not be null");
+            return this;
+        }
+
+        public Builder withBootstrapTimeout(Duration bootstrapTimeout) {
+            this.bootstrapTimeout = requireNonNull(bootstrapTimeout, "Argument bootstrapTimeout must not be null");
+            return this;
+        }
+
+        /**
+         * Registers plan load duration, loaded entries and version, a private registry is used unless given
+         */
+        public Builder withMeterRegistry(MeterRegistry meterRegistry) {
+            this.meterRegistry = requireNonNull(meterRegistry, "Argument meterRegistry must not be null");
+            return this;
+        }
+
+        /**
+         * @return store serving the current version, following later ones
+         */
+        public RedisBackedAdBudgetPlanStore build() {
+            if (meterRegistry == null) {
+                meterRegistry = new SimpleMeterRegistry();
+            }
+            final RedisBackedAdBudgetPlanStore built = new RedisBackedAdBudgetPlanStore(this);
+            built.bootstrap(bootstrapTimeout);
+            return built.follow();
+        }
+
+    }
+
+    @Override
+    public void close() {
+        Optional.ofNullable(following).ifPresent(Disposable::dispose);
+    }
+
+    private void bootstrap(Duration timeout) {
+        try {
+            currentVersion().flatMap(this::load).block(timeout);
+        } catch (Exception ex) {
+            log.error("Failed to bootstrap ad budget plan from Redis, starting with empty plan until loaded", ex);
+        }
+        if (version.get() == 0L) {
+            log.warn("No ad budget plan was published yet, starting with empty plan");
+        }
+    }
+
+    private RedisBackedAdBudgetPlanStore follow() {
+        /**
+         * Announcements are only received once subscribed, hence current version is checked whenever (re)subscribed
+         */
+        final Flux<Long> announced = Flux.usingWhen(
+                        Mono.fromSupplier(() -> new ReactiveRedisMessageListenerContainer(redisTemplate.getConnectionFactory())),
+                        container -> container.receiveLater(ChannelTopic.of(CHANNEL))
+                                .flatMapMany(messages -> Flux.merge(
+                                        currentVersion(),
+                                        messages.flatMap(message -> parseVersion(message.getMessage())))),
+                        ReactiveRedisMessageListenerContainer::destroyLater)
+                    .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofSeconds(30))
+                            .doBeforeRetry(signal -> log.warn("Resubscribing to plan announcements following: {}",
+                                    signal.failure().toString())));
+
+        final Flux<Long> polled = Flux.interval(pollInterval, pollInterval)
+                .onBackpressureDrop()
+                    .concatMap(tick -> currentVersion()
+                            .onErrorResume(ex -> {
+                                log.warn("Failed polling current ad budget plan version", ex);
+                                return Mono.empty();
+                            }));
+
+        /**
+         * Versions announced again, by polls or resubscriptions, while being loaded must not restart their load,
+         * otherwise loads outlasting the poll interval would never complete. Failed loads are attempted again once
+         * announced again
+         */
+        following = Flux.merge(announced, polled)
+                .filter(announcedVersion -> announcedVersion > Math.max(version.get(), loadingVersion.get()))
+                .doOnNext(loadingVersion::set)
+                    .switchMap(announcedVersion -> load(announcedVersion)
+                            .onErrorResume(ex -> {
+                                log.error("Failed to load ad budget plan version: {}, keeping version: {}",
+                                        announcedVersion, version.get(), ex);
+                                loadingVersion.compareAndSet(announcedVersion, version.get());
+                                return Mono.empty();
+                            }))
+                    .subscribe();
+        return this;
+    }
+
+    private Mono<Long> currentVersion() {
+        return redisTemplate.opsForValue().get(CURRENT_KEY).flatMap(this::parseVersion);
+    }
+
+    private Mono<Long> parseVersion(String encoded) {
+        try {
+            return Mono.just(Long.parseLong(encoded.trim()));
+        } catch (NumberFormatException nfe) {
+            log.warn("Ignoring malformed ad budget plan version: {}", encoded);
+            return Mono.empty();
+        }
+    }
+
+    /**
+     * Loads given version and serves it, unless a later version is already served meanwhile
+     * @return plan loaded
+     */
+    Mono<AdBudgetPlan> load(long loadedVersion) {
+        return Mono.defer(() -> {
+            log.info("Attempting to load ad budget plan version: {} from Redis", loadedVersion);
+            final long startNanos = System.nanoTime();
+            final PlanLoadEvent event = new PlanLoadEvent();
+            event.begin();
+
+            return redisTemplate.opsForValue().get(manifestKey(loadedVersion))
+                    .switchIfEmpty(Mono.error(() -> new OperationFailedException(
+                            format("Missing manifest of ad budget plan version: %d", loadedVersion))))
+                    .map(Manifest::decode)
+                    .flatMap(manifest -> Mono.zip(
+                            fetchAds(loadedVersion, manifest),
+                            fetchSegments(loadedVersion, manifest)))
+                    /**
+                     * Indexing is CPU bound, kept off Redis client threads
+                     */
+                    .publishOn(Schedulers.boundedElastic())
+                    .map(fetched -> serve(loadedVersion, fetched.getT1(), fetched.getT2(), event))
+                    .doOnSuccess(plan -> loadSuccessTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS))
+                    .doOnError(ex -> {
+                        loadFailureTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+                        event.end();
+                        if (event.shouldCommit()) {
+                            event.planFile = manifestKey(loadedVersion);
+                            event.commit();
+                        }
+                    })
+                    .onErrorMap(ex -> !(ex instanceof StoreException), ex -> new OperationFailedException(
+                            format("Failed loading ad budget plan version: %d", loadedVersion), ex));
+        });
+    }
+
+    /**
+     * Chunks are decoded as fetched, in parallel, while keeping chunk order
+     */
+    private Mono<List<List<AdBudget>>> fetchAds(long loadedVersion, Manifest manifest) {
+        return Flux.range(0, manifest.adChunks())
+                .flatMapSequential(chunk -> fetchChunk(adsChunkKey(loadedVersion, chunk))
+                        .publishOn(Schedulers.parallel())
+                            .map(RedisPlanLayout::decodeAds), loadConcurrency)
+                .collectList();
+    }
+
+    private Mono<Map<String, List<String>>> fetchSegments(long loadedVersion, Manifest manifest) {
+        return Flux.range(0, manifest.segmentChunks())
+                .flatMapSequential(chunk -> fetchChunk(segmentsChunkKey(loadedVersion, chunk))
+                        .publishOn(Schedulers.parallel())
+                            .map(encoded -> {
+                                final Map<String, List<String>> segments = new HashMap<>();
+                                decodeSegments(encoded, segments);
+                                return segments;
+                            }), loadConcurrency)
+                .collect(HashMap::new, Map::putAll);
+    }
+
+    private Mono<String> fetchChunk(String key) {
+        return redisTemplate.opsForValue().get(key)
+                .switchIfEmpty(Mono.error(() -> new OperationFailedException(format("Missing plan chunk: %s", key))));
+    }
+
+    private AdBudgetPlan serve(long loadedVersion, List<List<AdBudget>> adChunks, Map<String, List<String>> segments,
+                               PlanLoadEvent event) {
+        final Map<String, AdBudget> aidToAdBudget = new LinkedHashMap<>(
+                (int) (adChunks.stream().mapToInt(List::size).sum() / 0.75f) + 1);
+        int skippedAds = 0;
+        for (List<AdBudget> chunk : adChunks) {
+            for (AdBudget adBudget : chunk) {
+                if (adBudget.isEmpty()) {
+                    skippedAds++;
+                } else {
+                    aidToAdBudget.put(adBudget.aid(), adBudget);
+                }
+            }
+        }
+
+        final AdBudgetPlan loaded = new InMemoryAdBudgetPlan(aidToAdBudget, segments, loadedVersion);
+        synchronized (this) {
+            if (loadedVersion > version.get()) {
+                adBudgetPlan = loaded;
+                version.set(loadedVersion);
+                loadedAds.set(aidToAdBudget.size());
+                loadedSegments.set(segments.size());
+                log.info("Serving ad budget plan version: {} of {} ads and {} segments",
+                        loadedVersion, aidToAdBudget.size(), segments.size());
+            }
+        }
+        skippedAdsCounter.increment(skippedAds);
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.planFile = manifestKey(loadedVersion);
+            event.generation = loadedVersion;
+            event.ads = loaded.slotCount();
+            event.segments = segments.size();
+            event.skippedAds = skippedAds;
+            event.succeeded = true;
+            event.commit();
+        }
+        return loaded;
+    }
+
+}
@@ -0,0 +1,138 @@
+package com.undertone.adselector.infrastructure.out;
+
+import com.undertone.adselector.application.ports.out.AdDistributionExporter;
+import com.undertone.adselector.application.ports.out.InfrastructureException.StoreException;
+import com.undertone.adselector.application.ports.out.InfrastructureException.StoreException.OperationFailedException;
+import com.undertone.adselector.model.AdBudget;
+import com.undertone.adselector.model.AdBudgetPlan;
+import com.undertone.adselector.model.AdDistribution;
+import lombok.experimental.Delegate;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.lang.String.format;
+import static java.util.Objects.nonNull;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Joins plans with spend counters kept by {@link RedisBackedAdDistributionStore}, a page of plan slots at a time:
+ * <ul>
+ *     <li>Counters of every page are fetched by a single MGET, {@value #PAGES_IN_FLIGHT} pages are pipelined at once</li>
+ *     <li>Pages are fetched only as exported distributions are consumed, hence memory is bounded by pages in flight
+ *     regardless of plan size</li>
+ *     <li>Pages are throttled to a configured number of keys per second, keeping exports from competing with
+ *     foreground selection traffic, as {@link RedisSpendReconciler} passes do</li>
+ * </ul>
+ * Counters are not fetched through the resilient distribution store, exports neither trip its circuit breaker
+ * nor spend its fallback allowance.
+ */
+@Slf4j
+@Component
+public class RedisBackedAdDistributionExporter implements AdDistributionExporter {
+
+    private static final int PAGES_IN_FLIGHT = 2;
+
+    private static final int PAGE_RETRIES = 2;
+
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final int pageSize;
+    private final Duration pageDelay;
+    private final Scheduler scheduler;
+
+    public RedisBackedAdDistributionExporter(ReactiveStringRedisTemplate redisTemplate) {
+        this(redisTemplate, 1_000, 100_000);
+    }
+
+    @Autowired
+    public RedisBackedAdDistributionExporter(ReactiveStringRedisTemplate redisTemplate,
+                                             @Value("${plan.export.page.size:1000}") int pageSize,
+                                             @Value("${plan.export.keys.per.second:100000}") int keysPerSecond) {
+        this.redisTemplate = requireNonNull(redisTemplate, "Argument redisTemplate must not be null");
+        if (pageSize <= 0 || keysPerSecond <= 0) {
+            throw new IllegalArgumentException(format("Expected positive page size and keys per second, but they were: %d, %d",
+                    pageSize, keysPerSecond));
+        }
+        this.pageSize = pageSize;
+        this.pageDelay = Duration.ofNanos(Duration.ofSeconds(1).toNanos() * pageSize / keysPerSecond);
+        this.scheduler = Schedulers.newSingle("distribution-exporter", true);
+    }
+
+    @Override
+    public Flux<AdDistribution> exportDistributions(AdBudgetPlan plan) throws StoreException {
+        requireNonNull(plan, "Argument plan must not be null");
+
+        final int pages = (plan.slotCount() + pageSize - 1) / pageSize;
+        final AtomicLong exported = new AtomicLong();
+        final long start = System.nanoTime();
+
+        return Flux.range(0, pages)
+                /**
+                 * First page is not delayed, every later one is spaced by page delay once requested
+                 */
+                .concatMap(page -> page == 0 ? Mono.just(page) : Mono.delay(pageDelay, scheduler).thenReturn(page), 0)
+                    .flatMapSequential(page -> exportPage(plan, page), PAGES_IN_FLIGHT, pageSize)
+                        .doOnNext(ignored -> exported.incrementAndGet())
+                .doOnComplete(() -> log.info("Exported {} distributions of ad budget plan generation: {} in {} ms",
+                        exported.get(), plan.generation(), Duration.ofNanos(System.nanoTime() - start).toMillis()))
+                .doOnCancel(() -> log.warn("Export of ad budget plan generation: {} cancelled after {} distributions",
+                        plan.generation(), exported.get()))
+                .onErrorMap(ex -> !(ex instanceof StoreException),
+                        ex -> new OperationFailedException("Failed exporting ad budget plan distributions", ex));
+    }
+
+    private Flux<AdDistribution> exportPage(AdBudgetPlan plan, int page) {
+        final List<AdBudget> adBudgets = new ArrayList<>(pageSize);
+        final List<String> aids = new ArrayList<>(pageSize);
+        for (int slot = page * pageSize; slot < Math.min((page + 1) * pageSize, plan.slotCount()); slot++) {
+            final AdBudget adBudget = plan.fetch(slot).orElse(AdBudget.EMPTY);
+            if (!adBudget.isEmpty()) {
+                adBudgets.add(adBudget);
+                aids.add(adBudget.aid());
+            }
+        }
+        if (aids.isEmpty()) {
+            return Flux.empty();
+        }
+
+        return redisTemplate.opsForValue().multiGet(aids)
+                .retryWhen(Retry.backoff(PAGE_RETRIES, Duration.ofMillis(100)))
+                    .flatMapIterable(spentQuotas -> {
+                        final List<AdDistribution> distributions = new ArrayList<>(adBudgets.size());
+                        for (int i = 0; i < adBudgets.size(); i++) {
+                            final AdBudget adBudget = adBudgets.get(i);
+                            final long spentQuota = i < spentQuotas.size() ? parseCounter(spentQuotas.get(i)) : 0L;
+                            distributions.add(new ExportedAdDistribution(adBudget, adBudget.quota() - spentQuota));
+                        }
+                        return distributions;
+                    });
+    }
+
+    /**
+     * Missing and malformed counters count as nothing spent
+     */
+    private static long parseCounter(String value) {
+        if (nonNull(value)) {
+            try {
+                return Long.parseLong(value);
+            } catch (NumberFormatException ignored) { }
+        }
+        return 0L;
+    }
+
+    private record ExportedAdDistribution
+            (@Delegate AdBudget delegate, long remainingQuota) implements AdDistribution { }
+
+}
@@ -7,14 +7,20 @@ import com.undertone.adselector.application.ports.out.InfrastructureException.St
 import com.undertone.adselector.model.AdBudget;
 import com.undertone.adselector.model.AdDistribution;
 import com.undertone.adselector.model.Status;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import lombok.experimental.Delegate;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Mono;
 
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 
 import static com.undertone.adselector.model.Status.*;
 import static java.util.Objects.*;
@@ -24,22 +30,58 @@ import static java.util.stream.Collectors.toUnmodifiableList;
 @Component
 public class RedisBackedAdDistributionStore implements AdDistributionStore {
 
+    /**
+     * Increments all given counters atomically, rolling back each one exceeding its quota.
+     * Returns 1 for every successful increment and 0 for every conflicting one, ordered by keys.
+     */
+    static final RedisScript<List> INCREMENT_DISTRIBUTIONS_SCRIPT = RedisScript.of("""
+            local statuses = {}
+            for i, key in ipairs(KEYS) do
+              local spent = redis.call('INCR', key)
+              if spent > tonumber(ARGV[i]) then
+                redis.call('DECR', key)
+                statuses[i] = 0
+              else
+                statuses[i] = 1
+              end
+            end
+            return statuses
+            """, List.class);
+
     private final ReactiveStringRedisTemplate redisTemplate;
 
-    @Autowired
+    private final Timer fetchTimer;
+    private final Timer incrementTimer;
+
     public RedisBackedAdDistributionStore(ReactiveStringRedisTemplate redisTemplate) {
+        this(redisTemplate, new SimpleMeterRegistry());
+    }
+
+    @Autowired
+    public RedisBackedAdDistributionStore(ReactiveStringRedisTemplate redisTemplate, MeterRegistry meterRegistry) {
         this.redisTemplate = requireNonNull(redisTemplate, "Argument redisTemplate must not be null");
+
+        requireNonNull(meterRegistry, "Argument meterRegistry must not be null");
+        this.fetchTimer = Timer.builder("adselector.selection.stage")
+                .description("Latency of selection pipeline stages")
+                    .tag("stage", "distributions.fetch")
+                        .register(meterRegistry);
+        this.incrementTimer = Timer.builder("adselector.selection.stage")
+                .description("Latency of selection pipeline stages")
+                    .tag("stage", "distributions.increment")
+                        .register(meterRegistry);
     }
 
     @Override
     public Mono<AdDistribution> fetchDistribution(AdBudget adBudget) throws OperationFailedException {
         requireNonNull(adBudget, "Argument adBudget must not be null");
 
-        return redisTemplate.opsForValue().get(adBudget.aid())
+        return observed(redisTemplate.opsForValue().get(adBudget.aid())
                 .switchIfEmpty(Mono.just("0"))
                     .map(strUsedQuota ->
                         new RedisBackedAdDistribution(adBudget,
-                                adBudget.quota() - convertToLongValue(strUsedQuota)));
+                                adBudget.quota() - convertToLongValue(strUsedQuota))),
+                fetchTimer, "fetch", 1, adBudget.aid(), (event, distribution) -> {});
     }
 
     @Override
@@ -48,7 +90,8 @@ public class RedisBackedAdDistributionStore implements AdDistributionStore {
 
         List<String> orderedAids = mapToOrderedAids(adBudgets);
 
-        return redisTemplate.opsForValue().multiGet(orderedAids)
+        return observed(redisTemplate.opsForValue().multiGet(orderedAids),
+                fetchTimer, "fetchMany", orderedAids.size(), firstAid(orderedAids), (event, values) -> {})
                 .map(orderedValues -> {
 
                     var result = new ArrayList<AdDistribution>(adBudgets.size());
@@ -70,7 +113,7 @@ public class RedisBackedAdDistributionStore implements AdDistributionStore {
         requireNonNull(adDistribution, "Argument adDistribution must not be null");
 
         if(adDistribution.remainingQuota() > 0) {
-            return redisTemplate.opsForValue().increment(adDistribution.aid())
+            return observed(redisTemplate.opsForValue().increment(adDistribution.aid())
                     .flatMap(updatedSpent -> {
                         if(updatedSpent > adDistribution.quota()) {
                             log.error("Detected overspending for: {}, rolling back", adDistribution.aid());
@@ -79,7 +122,8 @@ public class RedisBackedAdDistributionStore implements AdDistributionStore {
                                         .thenReturn(CONFLICT);
                         }
                         return Mono.just(SUCCESS);
-                    })
+                    }),
+                    incrementTimer, "increment", 1, adDistribution.aid(), StoreOperationEvent::count)
                     .onErrorReturn(FAILURE);
         }
 
@@ -87,6 +131,111 @@ public class RedisBackedAdDistributionStore implements AdDistributionStore {
         return Mono.just(FAILURE);
     }
 
+    @Override
+    public Mono<List<Status>> incrementDistributions(List<AdDistribution> adDistributions) throws StoreException {
+        requireNonNull(adDistributions, "Argument adDistributions must not be null");
+
+        List<String> keys = new ArrayList<>(adDistributions.size());
+        List<String> quotas = new ArrayList<>(adDistributions.size());
+        for (AdDistribution adDistribution : adDistributions) {
+            if (adDistribution.remainingQuota() > 0) {
+                keys.add(adDistribution.aid());
+                quotas.add(String.valueOf(adDistribution.quota()));
+            } else {
+                log.warn("Attempted to increment exhausted AdDistribution: {}", adDistribution);
+            }
+        }
+
+        if (keys.isEmpty()) {
+            return Mono.just(Collections.nCopies(adDistributions.size(), FAILURE));
+        }
+
+        return observed(redisTemplate.execute(INCREMENT_DISTRIBUTIONS_SCRIPT, keys, quotas).collectList()
+                    .map(results -> {
+                        var scriptStatuses = flatten(results).iterator();
+                        var statuses = new ArrayList<Status>(adDistributions.size());
+
+                        for (AdDistribution adDistribution : adDistributions) {
+                            if (adDistribution.remainingQuota() <= 0 || !scriptStatuses.hasNext()) {
+                                statuses.add(FAILURE);
+                            } else if (convertToLongValue(String.valueOf(scriptStatuses.next())) == 1L) {
+                                statuses.add(SUCCESS);
+                            } else {
+                                log.error("Detected overspending for: {}, rolled back", adDistribution.aid());
+                                statuses.add(CONFLICT);
+                            }
+                        }
+                        return (List<Status>) statuses;
+                    }),
+                    incrementTimer, "incrementMany", keys.size(), firstAid(keys),
+                        (event, statuses) -> statuses.forEach(event::count))
+                    .onErrorReturn(Collections.nCopies(adDistributions.size(), FAILURE));
+    }
+
+    /**
+     * Increments spent quota of given ad by given amount at once (INCRBY), e.g. replaying spending made while
+     * Redis was unreachable, see {@link LocalSpendAllowance}
+     * @return spent quota once incremented
+     */
+    public Mono<Long> incrementSpentBy(String aid, long amount) {
+        requireNonNull(aid, "Argument aid must not be null");
+
+        return observed(redisTemplate.opsForValue().increment(aid, amount),
+                incrementTimer, "incrementBy", 1, aid, (event, spent) -> {});
+    }
+
+    /**
+     * Times operation from subscription until Redis replied, errored or got cancelled,
+     * committing a flight recorder event if it took longer than its configured threshold
+     *
+     * @param onResult populates event from operation result, invoked only while event is enabled
+     */
+    private static <T> Mono<T> observed(Mono<T> operation, Timer timer, String name, int keys, String aid,
+                                        BiConsumer<StoreOperationEvent, T> onResult) {
+        return Mono.defer(() -> {
+            final long start = System.nanoTime();
+            final StoreOperationEvent event = new StoreOperationEvent();
+            event.begin();
+
+            return operation
+                    .doOnNext(result -> {
+                        if (event.isEnabled()) {
+                            onResult.accept(event, result);
+                        }
+                    })
+                    .doFinally(signal -> {
+                        timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        event.end();
+                        if (event.shouldCommit()) {
+                            event.operation = name;
+                            event.keys = keys;
+                            event.aid = aid;
+                            event.outcome = signal.toString();
+                            event.commit();
+                        }
+                    });
+        });
+    }
+
+    private static String firstAid(List<String> aids) {
+        return aids.isEmpty() ? null : aids.get(0);
+    }
+
+    /**
+     * Depending on driver, multi bulk script replies are emitted either element by element or as a single list
+     */
+    private static List<Object> flatten(List<?> results) {
+        var flattened = new ArrayList<Object>(results.size());
+        for (Object result : results) {
+            if (result instanceof Collection<?> nested) {
+                flattened.addAll(nested);
+            } else {
+                flattened.add(result);
+            }
+        }
+        return flattened;
+    }
+
     private static long convertToLongValue(String strLong) {
         if (nonNull(strLong)) {
             try {
@@ -0,0 +1,212 @@
+package com.undertone.adselector.infrastructure.out;
+
+import com.undertone.adselector.application.ports.out.BlockingAdDistributionStore;
+import com.undertone.adselector.application.ports.out.InfrastructureException.StoreException;
+import com.undertone.adselector.application.ports.out.InfrastructureException.StoreException.OperationFailedException;
+import com.undertone.adselector.model.AdBudget;
+import com.undertone.adselector.model.AdDistribution;
+import com.undertone.adselector.model.Status;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.experimental.Delegate;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+import static com.undertone.adselector.infrastructure.out.RedisBackedAdDistributionStore.INCREMENT_DISTRIBUTIONS_SCRIPT;
+import static com.undertone.adselector.model.Status.*;
+import static java.util.Objects.*;
+
+/**
+ * Synchronous variant of {@link RedisBackedAdDistributionStore}, issuing the same Redis commands and script.
+ * Lettuce shares a single native connection among callers, hence commands issued concurrently by many virtual threads
+ * are pipelined over that connection rather than each one holding a connection of its own.
+ */
+@Slf4j
+@Component
+public class RedisBackedBlockingAdDistributionStore implements BlockingAdDistributionStore {
+
+    private final StringRedisTemplate redisTemplate;
+
+    private final Timer fetchTimer;
+    private final Timer incrementTimer;
+
+    public RedisBackedBlockingAdDistributionStore(StringRedisTemplate redisTemplate) {
+        this(redisTemplate, new SimpleMeterRegistry());
+    }
+
+    @Autowired
+    public RedisBackedBlockingAdDistributionStore(StringRedisTemplate redisTemplate, MeterRegistry meterRegistry) {
+        this.redisTemplate = requireNonNull(redisTemplate, "Argument redisTemplate must not be null");
+
+        requireNonNull(meterRegistry, "Argument meterRegistry must not be null");
+        this.fetchTimer = Timer.builder("adselector.selection.stage")
+                .description("Latency of selection pipeline stages")
+                    .tag("stage", "distributions.fetch")
+                        .register(meterRegistry);
+        this.incrementTimer = Timer.builder("adselector.selection.stage")
+                .description("Latency of selection pipeline stages")
+                    .tag("stage", "distributions.increment")
+                        .register(meterRegistry);
+    }
+
+    @Override
+    public Optional<AdDistribution> fetchDistribution(AdBudget adBudget) throws OperationFailedException {
+        requireNonNull(adBudget, "Argument adBudget must not be null");
+
+        final String usedQuota = observed(() -> redisTemplate.opsForValue().get(adBudget.aid()),
+                fetchTimer, "fetch", 1, adBudget.aid(), (event, value) -> {});
+        return Optional.of(new RedisBackedAdDistribution(adBudget, adBudget.quota() - convertToLongValue(usedQuota)));
+    }
+
+    @Override
+    public List<AdDistribution> fetchDistributions(List<AdBudget> adBudgets) throws OperationFailedException {
+        requireNonNull(adBudgets, "Argument adBudgets must not be null");
+
+        final List<String> orderedAids = adBudgets.stream().map(AdBudget::aid).toList();
+        final List<String> orderedValues = observed(() -> redisTemplate.opsForValue().multiGet(orderedAids),
+                fetchTimer, "fetchMany", orderedAids.size(), firstAid(orderedAids), (event, values) -> {});
+
+        final var result = new ArrayList<AdDistribution>(adBudgets.size());
+        if (orderedValues == null) {
+            return result;
+        }
+
+        final var budgetIter = adBudgets.iterator();
+        final var strValuesItr = orderedValues.iterator();
+        while (budgetIter.hasNext() && strValuesItr.hasNext()) {
+            long spentQuota = convertToLongValue(strValuesItr.next());
+            AdBudget adBudget = budgetIter.next();
+            result.add(new RedisBackedAdDistribution(adBudget, adBudget.quota() - spentQuota));
+        }
+        return result;
+    }
+
+    @Override
+    public Status incrementDistribution(AdDistribution adDistribution) throws StoreException {
+        requireNonNull(adDistribution, "Argument adDistribution must not be null");
+
+        if (adDistribution.remainingQuota() <= 0) {
+            log.warn("Attempted to increment exhausted AdDistribution: {}", adDistribution);
+            return FAILURE;
+        }
+
+        try {
+            return observed(() -> {
+                        final Long updatedSpent = redisTemplate.opsForValue().increment(adDistribution.aid());
+                        if (updatedSpent != null && updatedSpent > adDistribution.quota()) {
+                            log.error("Detected overspending for: {}, rolling back", adDistribution.aid());
+                            redisTemplate.opsForValue().decrement(adDistribution.aid());
+                            return CONFLICT;
+                        }
+                        return updatedSpent == null ? FAILURE : SUCCESS;
+                    },
+                    incrementTimer, "increment", 1, adDistribution.aid(), StoreOperationEvent::count);
+        } catch (RuntimeException e) {
+            return FAILURE;
+        }
+    }
+
+    @Override
+    public List<Status> incrementDistributions(List<AdDistribution> adDistributions) throws StoreException {
+        requireNonNull(adDistributions, "Argument adDistributions must not be null");
+
+        final List<String> keys = new ArrayList<>(adDistributions.size());
+        final List<String> quotas = new ArrayList<>(adDistributions.size());
+        for (AdDistribution adDistribution : adDistributions) {
+            if (adDistribution.remainingQuota() > 0) {
+                keys.add(adDistribution.aid());
+                quotas.add(String.valueOf(adDistribution.quota()));
+            } else {
+                log.warn("Attempted to increment exhausted AdDistribution: {}", adDistribution);
+            }
+        }
+
+        if (keys.isEmpty()) {
+            return Collections.nCopies(adDistributions.size(), FAILURE);
+        }
+
+        try {
+            return observed(() -> {
+                        final List<?> results = redisTemplate.execute(INCREMENT_DISTRIBUTIONS_SCRIPT, keys, quotas.toArray());
+                        final var scriptStatuses = (results == null ? List.of() : results).iterator();
+                        final var statuses = new ArrayList<Status>(adDistributions.size());
+
+                        for (AdDistribution adDistribution : adDistributions) {
+                            if (adDistribution.remainingQuota() <= 0 || !scriptStatuses.hasNext()) {
+                                statuses.add(FAILURE);
+                            } else if (convertToLongValue(String.valueOf(scriptStatuses.next())) == 1L) {
+                                statuses.add(SUCCESS);
+                            } else {
+                                log.error("Detected overspending for: {}, rolled back", adDistribution.aid());
+                                statuses.add(CONFLICT);
+                            }
+                        }
+                        return (List<Status>) statuses;
+                    },
+                    incrementTimer, "incrementMany", keys.size(), firstAid(keys),
+                        (event, statuses) -> statuses.forEach(event::count));
+        } catch (RuntimeException e) {
+            return Collections.nCopies(adDistributions.size(), FAILURE);
+        }
+    }
+
+    /**
+     * Times operation until Redis replied or it failed,
+     * committing a flight recorder event if it took longer than its configured threshold
+     *
+     * @param onResult populates event from operation result, invoked only while event is enabled
+     */
+    private static <T> T observed(Supplier<T> operation, Timer timer, String name, int keys, String aid,
+                                  BiConsumer<StoreOperationEvent, T> onResult) {
+        final long start = System.nanoTime();
+        final StoreOperationEvent event = new StoreOperationEvent();
+        event.begin();
+
+        String outcome = "onError";
+        try {
+            final T result = operation.get();
+            if (event.isEnabled() && result != null) {
+                onResult.accept(event, result);
+            }
+            outcome = "onComplete";
+            return result;
+        } finally {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            event.end();
+            if (event.shouldCommit()) {
+                event.operation = name;
+                event.keys = keys;
+                event.aid = aid;
+                event.outcome = outcome;
+                event.commit();
+            }
+        }
+    }
+
+    private static String firstAid(List<String> aids) {
+        return aids.isEmpty() ? null : aids.get(0);
+    }
+
+    private static long convertToLongValue(String strLong) {
+        if (nonNull(strLong)) {
+            try {
+                return Long.parseLong(strLong);
+            } catch (NumberFormatException nfe) {
+                log.error("Failed to parse long from: {} instantiating to 0", strLong, nfe);
+            }
+        }
+        return 0L;
+    }
+
+    private record RedisBackedAdDistribution
+            (@Delegate AdBudget delegate, long remainingQuota) implements AdDistribution { }
+
+}
@@ -0,0 +1,56 @@
+package com.undertone.adselector.infrastructure.out;
+
+import com.undertone.adselector.application.ports.out.IdempotencyStore;
+import com.undertone.adselector.application.ports.out.InfrastructureException.StoreException.OperationFailedException;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Records selections under reserved keys (see {@link RedisSpendReconciler#RESERVED_KEY_PREFIX}), one string per
+ * idempotency key holding selected aids separated by newlines, expiring along with their TTL.
+ * Selections are recorded using SET NX, hence concurrent instances never overwrite the first one.
+ */
+@Component
+public class RedisBackedIdempotencyStore implements IdempotencyStore {
+
+    static final String KEY_PREFIX = RedisSpendReconciler.RESERVED_KEY_PREFIX + "idempotency:";
+
+    private static final String SEPARATOR = "\n";
+
+    private final ReactiveStringRedisTemplate redisTemplate;
+
+    public RedisBackedIdempotencyStore(ReactiveStringRedisTemplate redisTemplate) {
+        this.redisTemplate = requireNonNull(redisTemplate, "Argument redisTemplate must not be null");
+    }
+
+    @Override
+    public Mono<List<String>> fetchSelection(String key) throws OperationFailedException {
+        requireNonNull(key, "Argument key must not be null");
+
+        return redisTemplate.opsForValue().get(KEY_PREFIX + key)
+                .map(value -> value.isEmpty() ? List.<String>of() : Arrays.asList(value.split(SEPARATOR)))
+                    .onErrorMap(ex -> new OperationFailedException(
+                            format("Failed fetching selection of idempotency key: %s", key), ex));
+    }
+
+    @Override
+    public Mono<Void> storeSelection(String key, List<String> aids, Duration ttl) throws OperationFailedException {
+        requireNonNull(key, "Argument key must not be null");
+        requireNonNull(aids, "Argument aids must not be null");
+        requireNonNull(ttl, "Argument ttl must not be null");
+
+        return redisTemplate.opsForValue().setIfAbsent(KEY_PREFIX + key, String.join(SEPARATOR, aids), ttl)
+                .onErrorMap(ex -> new OperationFailedException(
+                        format("Failed storing selection of idempotency key: %s", key), ex))
+                    .then();
+    }
+
+}
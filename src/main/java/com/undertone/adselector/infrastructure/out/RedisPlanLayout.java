@@ -0,0 +1,164 @@
+package com.undertone.adselector.infrastructure.out;
+
+import com.undertone.adselector.application.ports.in.UseCaseException.AbortedException.TypeConversionException;
+import com.undertone.adselector.model.AdBudget;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static java.lang.String.format;
+
+/**
+ * Layout of ad budget plans published into Redis, written by {@link RedisBackedAdBudgetPlanPublisher} and read by
+ * {@link RedisBackedAdBudgetPlanStore}. Every key is reserved (see {@link RedisSpendReconciler#RESERVED_KEY_PREFIX}).
+ * <pre>
+ * ad-selector:plan:sequence                  last version allocated by publishers
+ * ad-selector:plan:current                   version currently published
+ * ad-selector:plan:{version}:manifest        "{adChunks} {segmentChunks} {ads} {segments}"
+ * ad-selector:plan:{version}:ads:{i}         lines of "{aid}\t{priority}\t{quota}"
+ * ad-selector:plan:{version}:segments:{i}    lines of "{sid}\t{aid}\t{aid}..."
+ * ad-selector:plan:published                 channel announcing every version once it became current
+ * </pre>
+ * Chunks of a version are never modified once written. Aids and segment ids must not contain tabs nor line breaks.
+ */
+final class RedisPlanLayout {
+
+    static final String KEY_PREFIX = RedisSpendReconciler.RESERVED_KEY_PREFIX + "plan:";
+
+    static final String SEQUENCE_KEY = KEY_PREFIX + "sequence";
+
+    static final String CURRENT_KEY = KEY_PREFIX + "current";
+
+    static final String CHANNEL = KEY_PREFIX + "published";
+
+    private static final char FIELD_SEPARATOR = '\t';
+
+    private static final char LINE_SEPARATOR = '\n';
+
+    private RedisPlanLayout() {}
+
+    record Manifest(int adChunks, int segmentChunks, int ads, int segments) {
+
+        String encode() {
+            return adChunks + " " + segmentChunks + " " + ads + " " + segments;
+        }
+
+        static Manifest decode(String encoded) throws TypeConversionException {
+            final String[] fields = encoded.split(" ");
+            if (fields.length != 4) {
+                throw new TypeConversionException(format("Malformed plan manifest: %s", encoded));
+            }
+            try {
+                return new Manifest(Integer.parseInt(fields[0]), Integer.parseInt(fields[1]),
+                        Integer.parseInt(fields[2]), Integer.parseInt(fields[3]));
+            } catch (NumberFormatException nfe) {
+                throw new TypeConversionException(format("Malformed plan manifest: %s", encoded), nfe);
+            }
+        }
+
+        /**
+         * @return keys of manifest and every chunk of given version
+         */
+        List<String> keys(long version) {
+            final List<String> keys = new ArrayList<>(1 + adChunks + segmentChunks);
+            keys.add(manifestKey(version));
+            for (int i = 0; i < adChunks; i++) {
+                keys.add(adsChunkKey(version, i));
+            }
+            for (int i = 0; i < segmentChunks; i++) {
+                keys.add(segmentsChunkKey(version, i));
+            }
+            return keys;
+        }
+
+    }
+
+    record PlanEntry(String aid, double priority, long quota) implements AdBudget {}
+
+    static String manifestKey(long version) {
+        return KEY_PREFIX + version + ":manifest";
+    }
+
+    static String adsChunkKey(long version, int chunk) {
+        return KEY_PREFIX + version + ":ads:" + chunk;
+    }
+
+    static String segmentsChunkKey(long version, int chunk) {
+        return KEY_PREFIX + version + ":segments:" + chunk;
+    }
+
+    /**
+     * @return true if given aid or segment id could be encoded
+     */
+    static boolean isEncodable(String id) {
+        return !id.isEmpty() && id.indexOf(FIELD_SEPARATOR) < 0 && id.indexOf(LINE_SEPARATOR) < 0;
+    }
+
+    static void appendAd(StringBuilder chunk, AdBudget adBudget) {
+        chunk.append(adBudget.aid()).append(FIELD_SEPARATOR)
+                .append(adBudget.priority()).append(FIELD_SEPARATOR)
+                    .append(adBudget.quota()).append(LINE_SEPARATOR);
+    }
+
+    static void appendSegment(StringBuilder chunk, String segmentId, List<String> aids) {
+        chunk.append(segmentId);
+        for (String aid : aids) {
+            chunk.append(FIELD_SEPARATOR).append(aid);
+        }
+        chunk.append(LINE_SEPARATOR);
+    }
+
+    /**
+     * Malformed lines are skipped
+     * @return entries of given chunk, in chunk order
+     */
+    static List<AdBudget> decodeAds(String chunk) {
+        final List<AdBudget> entries = new ArrayList<>();
+        int start = 0;
+        while (start < chunk.length()) {
+            int end = chunk.indexOf(LINE_SEPARATOR, start);
+            end = end < 0 ? chunk.length() : end;
+
+            final int priorityStart = chunk.indexOf(FIELD_SEPARATOR, start) + 1;
+            final int quotaStart = priorityStart > 0 ? chunk.indexOf(FIELD_SEPARATOR, priorityStart) + 1 : 0;
+            if (priorityStart > start + 1 && quotaStart > priorityStart && quotaStart <= end) {
+                try {
+                    entries.add(new PlanEntry(chunk.substring(start, priorityStart - 1),
+                            Double.parseDouble(chunk.substring(priorityStart, quotaStart - 1)),
+                                Long.parseLong(chunk.substring(quotaStart, end))));
+                } catch (NumberFormatException ignored) {
+                    entries.add(AdBudget.EMPTY);
+                }
+            } else if (end > start) {
+                entries.add(AdBudget.EMPTY);
+            }
+            start = end + 1;
+        }
+        return entries;
+    }
+
+    /**
+     * @param into segments decoded from given chunk are added to, keyed by segment id
+     */
+    static void decodeSegments(String chunk, Map<String, List<String>> into) {
+        int start = 0;
+        while (start < chunk.length()) {
+            int end = chunk.indexOf(LINE_SEPARATOR, start);
+            end = end < 0 ? chunk.length() : end;
+
+            final List<String> fields = new ArrayList<>();
+            for (int field = start; field <= end; ) {
+                int fieldEnd = chunk.indexOf(FIELD_SEPARATOR, field);
+                fieldEnd = fieldEnd < 0 || fieldEnd > end ? end : fieldEnd;
+                fields.add(chunk.substring(field, fieldEnd));
+                field = fieldEnd + 1;
+            }
+            if (!fields.get(0).isEmpty()) {
+                into.put(fields.get(0), List.copyOf(fields.subList(1, fields.size())));
+            }
+            start = end + 1;
+        }
+    }
+
+}
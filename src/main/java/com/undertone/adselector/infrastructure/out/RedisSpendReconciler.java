@@ -0,0 +1,489 @@
+package com.undertone.adselector.infrastructure.out;
+
+import com.undertone.adselector.application.ports.out.AdBudgetPlanStore;
+import com.undertone.adselector.model.AdBudget;
+import com.undertone.adselector.model.AdBudgetPlan;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.script.RedisScript;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.lang.String.format;
+import static java.util.Objects.nonNull;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Background maintenance of spend counters kept by {@link RedisBackedAdDistributionStore}.
+ * Walks the counter keyspace incrementally using SCAN cursors and:
+ * <ul>
+ *     <li>expires (or archives) counters of aids which are absent from the current {@link AdBudgetPlan}</li>
+ *     <li>persists counters of aids which are present in plan, reverting expiry given while they were absent</li>
+ *     <li>clamps counters which exceed their quota (e.g. drift caused by failed DECR rollbacks)</li>
+ *     <li>publishes a {@link ReconciliationReport} once a pass is complete</li>
+ * </ul>
+ * Each pass is throttled to a configured number of keys per second, keeping its footprint on Redis negligible
+ * compared to foreground selection traffic. Passes run on a single instance at a time, the one holding a lease
+ * key renewed per batch, and only once plan generation has settled, so instances which are still loading a new
+ * plan (or have just loaded one) during a rollout won't act upon a plan the rest of the fleet does not share.
+ */
+@Slf4j
+public final class RedisSpendReconciler {
+
+    /**
+     * Keys under this prefix belong to the service itself (reports, archives etc.) and are never treated as counters.
+     */
+    public static final String RESERVED_KEY_PREFIX = "ad-selector:";
+
+    static final String ARCHIVE_KEY_PREFIX = RESERVED_KEY_PREFIX + "archive:";
+
+    static final String REPORT_CHANNEL = RESERVED_KEY_PREFIX + "reconciliation:reports";
+
+    static final String LEASE_KEY = RESERVED_KEY_PREFIX + "reconciliation:lease";
+
+    /**
+     * Acquires lease unless held by another instance, and renews it if already held by this one.
+     */
+    static final RedisScript<Long> LEASE_SCRIPT = RedisScript.of("""
+            local owner = redis.call('GET', KEYS[1])
+            if owner and owner ~= ARGV[1] then
+              return 0
+            end
+            redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[2])
+            return 1
+            """, Long.class);
+
+    /**
+     * Sets expiry only on orphans which do not have one yet, so consecutive passes won't keep pushing it forward.
+     */
+    static final RedisScript<Long> EXPIRE_ORPHANS_SCRIPT = RedisScript.of("""
+            local expired = 0
+            for _, key in ipairs(KEYS) do
+              if redis.call('TTL', key) == -1 then
+                redis.call('EXPIRE', key, ARGV[1])
+                expired = expired + 1
+              end
+            end
+            return expired
+            """, Long.class);
+
+    /**
+     * Reverts expiry of counters whose aid is back in plan, INCR would otherwise keep it and let the counter of a
+     * live ad vanish once orphan ttl elapses.
+     */
+    static final RedisScript<Long> PERSIST_COUNTERS_SCRIPT = RedisScript.of("""
+            local persisted = 0
+            for _, key in ipairs(KEYS) do
+              persisted = persisted + redis.call('PERSIST', key)
+            end
+            return persisted
+            """, Long.class);
+
+    static final RedisScript<Long> ARCHIVE_ORPHANS_SCRIPT = RedisScript.of("""
+            local archived = 0
+            for _, key in ipairs(KEYS) do
+              if redis.call('EXISTS', key) == 1 then
+                redis.call('RENAME', key, ARGV[1] .. key)
+                archived = archived + 1
+              end
+            end
+            return archived
+            """, Long.class);
+
+    /**
+     * Re-checks every counter atomically before clamping, value might have been rolled back in the meantime.
+     */
+    static final RedisScript<Long> CLAMP_COUNTERS_SCRIPT = RedisScript.of("""
+            local clamped = 0
+            for i, key in ipairs(KEYS) do
+              local spent = tonumber(redis.call('GET', key))
+              local quota = tonumber(ARGV[i])
+              if spent and spent > quota then
+                redis.call('SET', key, ARGV[i])
+                clamped = clamped + 1
+              end
+            end
+            return clamped
+            """, Long.class);
+
+    public enum OrphanPolicy { EXPIRE, ARCHIVE }
+
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final AdBudgetPlanStore planStore;
+    private final OrphanPolicy orphanPolicy;
+    private final Duration orphanTtl;
+    private final Duration clampGracePeriod;
+    private final Duration passInterval;
+    private final int batchSize;
+    private final Duration batchDelay;
+    private final Scheduler scheduler;
+    private final String leaseOwner = UUID.randomUUID().toString();
+
+    private final AtomicLong settledGeneration = new AtomicLong(-1L);
+    private final AtomicReference<ReconciliationReport> lastReport = new AtomicReference<>();
+    private volatile Disposable schedule;
+
+    private RedisSpendReconciler(Builder builder) {
+        this.redisTemplate = builder.redisTemplate;
+        this.planStore = builder.planStore;
+        this.orphanPolicy = builder.orphanPolicy;
+        this.orphanTtl = builder.orphanTtl;
+        this.clampGracePeriod = builder.clampGracePeriod;
+        this.passInterval = builder.passInterval;
+        this.batchSize = builder.batchSize;
+        this.batchDelay = Duration.ofNanos(Duration.ofSeconds(1).toNanos() * builder.batchSize / builder.keysPerSecond);
+        this.scheduler = builder.scheduler;
+    }
+
+    public static Builder builder(ReactiveStringRedisTemplate redisTemplate, AdBudgetPlanStore planStore) {
+        return new Builder(redisTemplate, planStore);
+    }
+
+    public static class Builder {
+
+        private final ReactiveStringRedisTemplate redisTemplate;
+        private final AdBudgetPlanStore planStore;
+        private OrphanPolicy orphanPolicy = OrphanPolicy.EXPIRE;
+        private Duration orphanTtl = Duration.ofDays(1);
+        private Duration clampGracePeriod = Duration.ofSeconds(1);
+        private Duration passInterval = Duration.ofMinutes(10);
+        private int batchSize = 100;
+        private int keysPerSecond = 1_000;
+        private Scheduler scheduler;
+
+        Builder(ReactiveStringRedisTemplate redisTemplate, AdBudgetPlanStore planStore) {
+            this.redisTemplate = requireNonNull(redisTemplate, "Argument redisTemplate must not be null");
+            this.planStore = requireNonNull(planStore, "Argument planStore must not be null");
+        }
+
+        public Builder withOrphanPolicy(OrphanPolicy orphanPolicy) {
+            this.orphanPolicy = requireNonNull(orphanPolicy, "Argument orphanPolicy must not be null");
+            return this;
+        }
+
+        /**
+         * @param orphanTtl time to live given to counters of aids which are absent from plan (EXPIRE policy only)
+         * @return Builder
+         */
+        public Builder withOrphanTtl(Duration orphanTtl) {
+            this.orphanTtl = requirePositive(orphanTtl, "orphanTtl");
+            return this;
+        }
+
+        /**
+         * @param clampGracePeriod time to wait before clamping counters found exceeding quota,
+         *                         allowing in-flight rollbacks of conflicting increments to complete.
+         * @return Builder
+         */
+        public Builder withClampGracePeriod(Duration clampGracePeriod) {
+            this.clampGracePeriod = requireNonNull(clampGracePeriod, "Argument clampGracePeriod must not be null");
+            return this;
+        }
+
+        public Builder withPassInterval(Duration passInterval) {
+            this.passInterval = requirePositive(passInterval, "passInterval");
+            return this;
+        }
+
+        /**
+         * @param batchSize number of keys requested per SCAN iteration and processed per round trip
+         * @param keysPerSecond upper bound on keys processed per second
+         * @return Builder
+         */
+        public Builder withRateLimit(int batchSize, int keysPerSecond) {
+            if (batchSize <= 0 || keysPerSecond <= 0) {
+                throw new IllegalArgumentException("Arguments batchSize and keysPerSecond must be positive");
+            }
+            this.batchSize = batchSize;
+            this.keysPerSecond = keysPerSecond;
+            return this;
+        }
+
+        public Builder withScheduler(Scheduler scheduler) {
+            this.scheduler = requireNonNull(scheduler, "Argument scheduler must not be null");
+            return this;
+        }
+
+        public RedisSpendReconciler build() {
+            if (scheduler == null) {
+                scheduler = Schedulers.newSingle("spend-reconciler", true);
+            }
+            return new RedisSpendReconciler(this);
+        }
+
+        private static Duration requirePositive(Duration duration, String name) {
+            requireNonNull(duration, format("Argument %s must not be null", name));
+            if (duration.isNegative() || duration.isZero()) {
+                throw new IllegalArgumentException(format("Argument %s must be positive", name));
+            }
+            return duration;
+        }
+    }
+
+    /**
+     * Schedules periodic reconciliation passes, a pass which is still running when the next one is due
+     * causes the latter to be skipped. So is a pass which is due while plan generation differs from the one observed
+     * by previous tick, i.e. plan must have stayed the same for a whole interval before acting upon it.
+     */
+    public synchronized RedisSpendReconciler start() {
+        if (schedule == null || schedule.isDisposed()) {
+            schedule = Flux.interval(passInterval, passInterval, scheduler)
+                    .onBackpressureDrop(tick -> log.warn("Reconciliation pass still in progress, skipping"))
+                    .concatMap(tick -> reconcileSettled()
+                            .onErrorResume(ex -> {
+                                log.error("Reconciliation pass failed", ex);
+                                return Mono.empty();
+                            }), 0)
+                    .subscribe();
+        }
+        return this;
+    }
+
+    public synchronized void stop() {
+        if (schedule != null) {
+            schedule.dispose();
+        }
+    }
+
+    public Optional<ReconciliationReport> lastReport() {
+        return Optional.ofNullable(lastReport.get());
+    }
+
+    /**
+     * Performs a single, rate limited, pass over the counter keyspace.
+     * Pass is skipped when plan is empty, otherwise every single counter would have been considered an orphan.
+     * It is also skipped when lease is held by another instance, and aborted (with no report) once either lease
+     * is lost or plan generation changes midway.
+     */
+    public Mono<ReconciliationReport> reconcile() {
+        return planStore.fetchPlan().flatMap(this::reconcile);
+    }
+
+    private Mono<ReconciliationReport> reconcileSettled() {
+        return planStore.fetchPlan()
+                .filter(plan -> {
+                    final long previous = settledGeneration.getAndSet(plan.generation());
+                    if (previous != plan.generation()) {
+                        log.info("Ad budget plan generation: {} has not settled yet, skipping reconciliation pass",
+                                plan.generation());
+                    }
+                    return previous == plan.generation();
+                })
+                .flatMap(this::reconcile);
+    }
+
+    private Mono<ReconciliationReport> reconcile(AdBudgetPlan plan) {
+        if (plan.isEmpty()) {
+            log.warn("Current ad budget plan is empty, skipping reconciliation pass");
+            return Mono.empty();
+        }
+
+        return renewLease()
+                .filter(acquired -> {
+                    if (!acquired) {
+                        log.debug("Reconciliation lease is held by another instance, skipping reconciliation pass");
+                    }
+                    return acquired;
+                })
+                .flatMap(acquired -> {
+                    final Instant start = Instant.now();
+                    final ReconciliationReport.Tally tally = new ReconciliationReport.Tally();
+
+                    return redisTemplate.scan(ScanOptions.scanOptions().count(batchSize).build())
+                            .buffer(batchSize)
+                                .delayElements(batchDelay, scheduler)
+                                    .concatMap(keys -> isCurrent(plan)
+                                            .flatMap(current -> current
+                                                    ? reconcileBatch(plan, keys, tally).thenReturn(true)
+                                                    : Mono.just(false)))
+                            /** stops scanning upon first batch found stale */
+                            .all(current -> current)
+                            .filter(completed -> {
+                                if (!completed) {
+                                    log.warn("Either reconciliation lease was lost or ad budget plan generation " +
+                                            "changed midway, aborting reconciliation pass");
+                                }
+                                return completed;
+                            })
+                            .map(completed -> tally.toReport(start, Instant.now()));
+                })
+                .flatMap(this::publish);
+    }
+
+    /**
+     * @return whether given plan is still current and lease is still held by this instance, renewing it if so
+     */
+    private Mono<Boolean> isCurrent(AdBudgetPlan plan) {
+        return planStore.fetchPlan()
+                .map(current -> current.generation() == plan.generation())
+                    .defaultIfEmpty(false)
+                        .flatMap(current -> current ? renewLease() : Mono.just(false));
+    }
+
+    /**
+     * Lease outlives a whole pass interval, the instance holding it keeps renewing it for as long as it runs passes.
+     */
+    private Mono<Boolean> renewLease() {
+        return redisTemplate.execute(LEASE_SCRIPT, List.of(LEASE_KEY),
+                        List.of(leaseOwner, String.valueOf(passInterval.multipliedBy(2).toMillis())))
+                .next()
+                    .map(acquired -> acquired == 1L)
+                        .defaultIfEmpty(false);
+    }
+
+    private Mono<Void> reconcileBatch(AdBudgetPlan plan, List<String> keys, ReconciliationReport.Tally tally) {
+        tally.scanned += keys.size();
+
+        List<String> candidateKeys = keys.stream().filter(key -> !key.startsWith(RESERVED_KEY_PREFIX)).toList();
+        if (candidateKeys.isEmpty()) {
+            return Mono.empty();
+        }
+
+        return redisTemplate.opsForValue().multiGet(candidateKeys)
+                .flatMap(values -> {
+                    List<String> orphans = new ArrayList<>();
+                    List<String> planned = new ArrayList<>();
+                    List<String> overspent = new ArrayList<>();
+                    List<String> quotas = new ArrayList<>();
+
+                    for (int i = 0; i < candidateKeys.size() && i < values.size(); i++) {
+                        Long spent = parseCounter(values.get(i));
+                        if (spent == null) {
+                            continue; // not a counter, nor ours to touch
+                        }
+                        tally.counters++;
+
+                        String aid = candidateKeys.get(i);
+                        Optional<AdBudget> adBudget = plan.fetch(aid);
+                        if (adBudget.isEmpty()) {
+                            orphans.add(aid);
+                            continue;
+                        }
+                        planned.add(aid);
+                        if (spent > adBudget.get().quota()) {
+                            overspent.add(aid);
+                            quotas.add(String.valueOf(adBudget.get().quota()));
+                        }
+                    }
+
+                    tally.orphaned += orphans.size();
+                    tally.overspent += overspent.size();
+
+                    return Mono.when(handleOrphans(orphans, tally), persist(planned, tally),
+                            clamp(plan, overspent, quotas, tally));
+                });
+    }
+
+    private Mono<Void> handleOrphans(List<String> orphans, ReconciliationReport.Tally tally) {
+        if (orphans.isEmpty()) {
+            return Mono.empty();
+        }
+
+        Flux<Long> handled = switch (orphanPolicy) {
+            case EXPIRE -> redisTemplate.execute(EXPIRE_ORPHANS_SCRIPT, orphans,
+                                List.of(String.valueOf(orphanTtl.toSeconds())));
+            case ARCHIVE -> redisTemplate.execute(ARCHIVE_ORPHANS_SCRIPT, orphans, List.of(ARCHIVE_KEY_PREFIX));
+        };
+
+        return handled.doOnNext(count -> tally.orphansHandled += count).then();
+    }
+
+    private Mono<Void> persist(List<String> planned, ReconciliationReport.Tally tally) {
+        if (planned.isEmpty()) {
+            return Mono.empty();
+        }
+
+        return redisTemplate.execute(PERSIST_COUNTERS_SCRIPT, planned, List.of())
+                .doOnNext(count -> tally.persisted += count)
+                    .then();
+    }
+
+    /**
+     * Plan is re-checked once grace period has elapsed, clamping to quotas of a superseded plan would discard
+     * legitimate spend of ads whose quota was since raised.
+     */
+    private Mono<Void> clamp(AdBudgetPlan plan, List<String> overspent, List<String> quotas,
+                             ReconciliationReport.Tally tally) {
+        if (overspent.isEmpty()) {
+            return Mono.empty();
+        }
+
+        return Mono.delay(clampGracePeriod, scheduler)
+                .then(Mono.defer(() -> isCurrent(plan)))
+                    .filter(current -> current)
+                .flatMapMany(current -> redisTemplate.execute(CLAMP_COUNTERS_SCRIPT, overspent, quotas))
+                    .doOnNext(count -> tally.clamped += count)
+                        .then();
+    }
+
+    private Mono<ReconciliationReport> publish(ReconciliationReport report) {
+        log.info("Finished reconciliation pass: {}", report);
+        lastReport.set(report);
+
+        return redisTemplate.convertAndSend(REPORT_CHANNEL, report.toString())
+                .onErrorResume(ex -> {
+                    log.warn("Failed to publish reconciliation report", ex);
+                    return Mono.empty();
+                })
+                .thenReturn(report);
+    }
+
+    private static Long parseCounter(String value) {
+        if (nonNull(value)) {
+            try {
+                return Long.parseLong(value);
+            } catch (NumberFormatException ignored) { }
+        }
+        return null;
+    }
+
+    public record ReconciliationReport(Instant startedAt, Duration elapsed, long scannedKeys, long counterKeys,
+                                       long orphanedKeys, long orphansHandled, long persistedKeys,
+                                       long overspentKeys, long clampedKeys) {
+
+        @Override
+        public String toString() {
+            return format(
+                    """
+                    {
+                      "startedAt": "%s",
+                      "elapsedMs": %d,
+                      "scannedKeys": %d,
+                      "counterKeys": %d,
+                      "orphanedKeys": %d,
+                      "orphansHandled": %d,
+                      "persistedKeys": %d,
+                      "overspentKeys": %d,
+                      "clampedKeys": %d
+                    }
+                    """, startedAt, elapsed.toMillis(), scannedKeys, counterKeys,
+                    orphanedKeys, orphansHandled, persistedKeys, overspentKeys, clampedKeys);
+        }
+
+        /**
+         * Mutable accumulator, batches of a single pass are processed sequentially.
+         */
+        private static class Tally {
+            private long scanned, counters, orphaned, orphansHandled, persisted, overspent, clamped;
+
+            private ReconciliationReport toReport(Instant start, Instant end) {
+                return new ReconciliationReport(start, Duration.between(start, end),
+                        scanned, counters, orphaned, orphansHandled, persisted, overspent, clamped);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,532 @@
+package com.undertone.adselector.infrastructure.out;
+
+import com.undertone.adselector.application.ports.out.AdDistributionStore;
+import com.undertone.adselector.application.ports.out.BlockingAdDistributionStore;
+import com.undertone.adselector.application.ports.out.InfrastructureException.StoreException;
+import com.undertone.adselector.application.ports.out.InfrastructureException.StoreException.DeadlineExceededException;
+import com.undertone.adselector.application.ports.out.InfrastructureException.StoreException.OperationFailedException;
+import com.undertone.adselector.application.ports.out.InfrastructureException.StoreException.OperationTimedOutException;
+import com.undertone.adselector.application.ports.out.InfrastructureException.StoreException.UnavailableException;
+import com.undertone.adselector.model.AdBudget;
+import com.undertone.adselector.model.AdDistribution;
+import com.undertone.adselector.model.Deadline;
+import com.undertone.adselector.model.Status;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Decorates distribution store operations with timeouts and a circuit breaker, bounding selection latency
+ * by request deadline rather than by store latency.
+ * <ul>
+ *     <li>Every operation is capped by the remaining time of request {@link Deadline} (see Reactor context),
+ *     and by operation timeout regardless of deadline. Operations are not attempted once deadline expired.</li>
+ *     <li>Circuit breaker opens once failure rate (errors, timeouts and failed increments) or slow call rate exceed their
+ *     thresholds, operations are short-circuited while it is open. Expired deadlines are not accounted for,
+ *     as those are bound by callers rather than by store.</li>
+ *     <li>Short-circuited and failed operations are answered according to {@link FallbackPolicy}, either by no fill,
+ *     by failing, or by spending from a {@link LocalSpendAllowance} which is replayed into store once it recovered</li>
+ * </ul>
+ * Increments timing out may still be applied by store, in which case spent quota is overcounted, i.e. under-delivered
+ * rather than overspent.
+ * <p>
+ * Synchronous stores used by blocking selections are decorated by {@link #blocking(BlockingAdDistributionStore)},
+ * sharing circuit breaker, timeouts and fallback policy. Their deadline is the one of current thread, see
+ * {@link Deadline#current()}.
+ */
+@Slf4j
+public class ResilientAdDistributionStore implements AdDistributionStore {
+
+    static final Duration DEFAULT_OPERATION_TIMEOUT = Duration.ofMillis(100);
+
+    private static final String CIRCUIT_BREAKER_NAME = "distributionStore";
+
+    private final AdDistributionStore delegate;
+    private final Duration operationTimeout;
+    private final FallbackPolicy fallbackPolicy;
+    private final CircuitBreaker circuitBreaker;
+    private final LocalSpendAllowance localAllowance;
+
+    private final Counter[] fallbackCounters;
+
+    /**
+     * Runs blocking operations, waiting for them no longer than their timeout
+     */
+    private final ExecutorService blockingExecutor =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("store-", 0).factory());
+
+    ResilientAdDistributionStore(AdDistributionStore delegate, Duration operationTimeout,
+                                 CircuitBreakerConfig circuitBreakerConfig, FallbackPolicy fallbackPolicy,
+                                 LocalSpendAllowance localAllowance, MeterRegistry meterRegistry) {
+        this.delegate = requireNonNull(delegate, "Argument delegate must not be null");
+        this.operationTimeout = requireNonNull(operationTimeout, "Argument operationTimeout must not be null");
+        this.fallbackPolicy = requireNonNull(fallbackPolicy, "Argument fallbackPolicy must not be null");
+        if (fallbackPolicy == FallbackPolicy.LOCAL_ALLOWANCE && localAllowance == null) {
+            throw new IllegalArgumentException("Local allowance is required by fallback policy: " + fallbackPolicy);
+        }
+        this.localAllowance = localAllowance;
+        requireNonNull(circuitBreakerConfig, "Argument circuitBreakerConfig must not be null");
+        requireNonNull(meterRegistry, "Argument meterRegistry must not be null");
+
+        final CircuitBreakerRegistry circuitBreakerRegistry = CircuitBreakerRegistry.of(CircuitBreakerConfig
+                .from(circuitBreakerConfig)
+                    .recordResult(ResilientAdDistributionStore::isFailedIncrement)
+                        .ignoreExceptions(DeadlineExceededException.class)
+                            .build());
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(circuitBreakerRegistry).bindTo(meterRegistry);
+
+        this.circuitBreaker = circuitBreakerRegistry.circuitBreaker(CIRCUIT_BREAKER_NAME);
+        this.circuitBreaker.getEventPublisher().onStateTransition(event ->
+                log.warn("Distribution store circuit breaker transitioned: {}", event.getStateTransition()));
+
+        this.fallbackCounters = Arrays.stream(Reason.values())
+                .map(reason -> Counter.builder("adselector.store.fallbacks")
+                        .description("Distribution store operations answered by fallback policy, by reason")
+                            .tag("reason", reason.name().toLowerCase(Locale.ROOT))
+                                .tag("policy", fallbackPolicy.name().toLowerCase(Locale.ROOT))
+                                    .register(meterRegistry))
+                    .toArray(Counter[]::new);
+    }
+
+    @Override
+    public Mono<AdDistribution> fetchDistribution(AdBudget adBudget) throws StoreException {
+        return guarded("fetch",
+                () -> delegate.fetchDistribution(adBudget).doOnNext(this::observe),
+                    Mono::empty,
+                        () -> Mono.justOrEmpty(localAllowance.distributionOf(adBudget)));
+    }
+
+    @Override
+    public Mono<List<AdDistribution>> fetchDistributions(List<AdBudget> adBudgets) throws StoreException {
+        return guarded("fetchMany",
+                () -> delegate.fetchDistributions(adBudgets).doOnNext(distributions -> distributions.forEach(this::observe)),
+                    () -> Mono.just(List.of()),
+                        () -> Mono.fromSupplier(() -> {
+                            final List<AdDistribution> distributions = new ArrayList<>(adBudgets.size());
+                            for (AdBudget adBudget : adBudgets) {
+                                final AdDistribution distribution = localAllowance.distributionOf(adBudget);
+                                if (distribution != null) {
+                                    distributions.add(distribution);
+                                }
+                            }
+                            return distributions;
+                        }));
+    }
+
+    @Override
+    public Mono<Status> incrementDistribution(AdDistribution adDistribution) throws StoreException {
+        if (isExhausted(List.of(adDistribution))) {
+            return delegate.incrementDistribution(adDistribution);
+        }
+        return guarded("increment",
+                () -> delegate.incrementDistribution(adDistribution),
+                    () -> Mono.just(Status.FAILURE),
+                        () -> Mono.fromSupplier(() -> spendLocally(adDistribution)));
+    }
+
+    @Override
+    public Mono<List<Status>> incrementDistributions(List<AdDistribution> adDistributions) throws StoreException {
+        if (isExhausted(adDistributions)) {
+            return delegate.incrementDistributions(adDistributions);
+        }
+        return guarded("incrementMany",
+                () -> delegate.incrementDistributions(adDistributions),
+                    () -> Mono.just(Collections.nCopies(adDistributions.size(), Status.FAILURE)),
+                        () -> Mono.fromSupplier(() -> {
+                            final List<Status> statuses = new ArrayList<>(adDistributions.size());
+                            for (AdDistribution adDistribution : adDistributions) {
+                                statuses.add(spendLocally(adDistribution));
+                            }
+                            return statuses;
+                        }));
+    }
+
+    /**
+     * @return synchronous store decorated by the circuit breaker, timeouts and fallback policy of this one
+     */
+    public BlockingAdDistributionStore blocking(BlockingAdDistributionStore delegate) {
+        return new Blocking(requireNonNull(delegate, "Argument delegate must not be null"));
+    }
+
+    CircuitBreaker.State circuitBreakerState() {
+        return circuitBreaker.getState();
+    }
+
+    /**
+     * @param noFill answer of operation once it failed or got short-circuited under {@link FallbackPolicy#NO_FILL}
+     * @param local answer of operation once it failed or got short-circuited under {@link FallbackPolicy#LOCAL_ALLOWANCE}
+     */
+    private <T> Mono<T> guarded(String operation, Supplier<Mono<T>> call, Supplier<Mono<T>> noFill,
+                                Supplier<Mono<T>> local) {
+        return Mono.deferContextual(context -> {
+            final Optional<Deadline> deadline = context.getOrEmpty(Deadline.class);
+            if (deadline.isPresent() && deadline.get().isExpired()) {
+                return fallback(operation, new DeadlineExceededException(
+                        format("Deadline expired before store operation: %s was attempted", operation)), noFill, local);
+            }
+
+            final Duration remaining = deadline.map(Deadline::remaining).orElse(operationTimeout);
+            final boolean deadlineBound = remaining.compareTo(operationTimeout) < 0;
+            final Duration timeout = deadlineBound ? remaining : operationTimeout;
+
+            return Mono.defer(call)
+                    .timeout(timeout, Mono.error(() -> deadlineBound
+                            ? new DeadlineExceededException(format("Deadline expired during store operation: %s", operation))
+                                : new OperationTimedOutException(format("Store operation: %s timed out after: %s", operation, timeout))))
+                    .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                    /**
+                     *  Failed increments are answered rather than erroring, spending those locally
+                     *  once store recovered replays spending made while it was unreachable
+                     */
+                    .flatMap(result -> {
+                        if (isFailedIncrement(result)) {
+                            return fallbackPolicy == FallbackPolicy.LOCAL_ALLOWANCE
+                                    ? fallback(operation, new OperationFailedException(
+                                            format("Store operation: %s failed", operation)), noFill, local)
+                                        : Mono.just(result);
+                        }
+                        if (localAllowance != null) {
+                            localAllowance.replayIfPending();
+                        }
+                        return Mono.just(result);
+                    })
+                    .onErrorResume(failure -> fallback(operation, failure, noFill, local));
+        });
+    }
+
+    private <T> Mono<T> fallback(String operation, Throwable failure, Supplier<Mono<T>> noFill,
+                                 Supplier<Mono<T>> local) {
+        final Reason reason = countFallback(operation, failure);
+        return switch (fallbackPolicy) {
+            case NO_FILL -> noFill.get();
+            case LOCAL_ALLOWANCE -> local.get();
+            case FAIL -> Mono.error(failureOf(operation, reason, failure));
+        };
+    }
+
+    private Reason countFallback(String operation, Throwable failure) {
+        final Reason reason = Reason.of(failure);
+        fallbackCounters[reason.ordinal()].increment();
+        log.debug("Store operation: {} fell back due to: {}", operation, reason, failure);
+        return reason;
+    }
+
+    private static StoreException failureOf(String operation, Reason reason, Throwable failure) {
+        return switch (reason) {
+            case CIRCUIT_OPEN -> new UnavailableException(
+                    format("Store operation: %s short-circuited, store is unavailable", operation), failure);
+            case TIMEOUT, DEADLINE -> (StoreException) failure;
+            case FAILURE -> failure instanceof StoreException storeException
+                    ? storeException : new OperationFailedException(format("Store operation: %s failed", operation), failure);
+        };
+    }
+
+    private void observe(AdDistribution adDistribution) {
+        if (localAllowance != null) {
+            localAllowance.observe(adDistribution);
+        }
+    }
+
+    private Status spendLocally(AdDistribution adDistribution) {
+        return localAllowance.trySpend(adDistribution.aid()) ? Status.SUCCESS : Status.CONFLICT;
+    }
+
+    /**
+     * @return whether every given distribution is exhausted, answered by store adaptor without calling store
+     */
+    private static boolean isExhausted(List<AdDistribution> adDistributions) {
+        for (AdDistribution adDistribution : adDistributions) {
+            if (adDistribution.remainingQuota() > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Store adaptor answers failed increments rather than erroring, those are accounted for as store failures.
+     * Increments of exhausted distributions only are answered by failure without calling store, hence they bypass
+     * the circuit breaker and fallback altogether (see {@link #isExhausted(List)}).
+     */
+    private static boolean isFailedIncrement(Object result) {
+        if (result == Status.FAILURE) {
+            return true;
+        }
+        if (result instanceof List<?> statuses && !statuses.isEmpty()) {
+            for (Object status : statuses) {
+                if (status != Status.FAILURE) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Synchronous counterpart of {@link #guarded(String, Supplier, Supplier, Supplier)}, run by blocking selections
+     * on virtual threads. Operation runs on a virtual thread of its own, waited for no longer than its timeout,
+     * and is interrupted once timed out.
+     */
+    private <T> T guardedBlocking(String operation, Callable<T> call, Supplier<T> noFill, Supplier<T> local) {
+        final Optional<Deadline> deadline = Deadline.current();
+        if (deadline.isPresent() && deadline.get().isExpired()) {
+            return fallbackBlocking(operation, new DeadlineExceededException(
+                    format("Deadline expired before store operation: %s was attempted", operation)), noFill, local);
+        }
+
+        final Duration remaining = deadline.map(Deadline::remaining).orElse(operationTimeout);
+        final boolean deadlineBound = remaining.compareTo(operationTimeout) < 0;
+        final Duration timeout = deadlineBound ? remaining : operationTimeout;
+
+        if (!circuitBreaker.tryAcquirePermission()) {
+            return fallbackBlocking(operation,
+                    CallNotPermittedException.createCallNotPermittedException(circuitBreaker), noFill, local);
+        }
+
+        final long start = System.nanoTime();
+        final Future<T> future = blockingExecutor.submit(call);
+        try {
+            final T result = future.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+            circuitBreaker.onResult(System.nanoTime() - start, TimeUnit.NANOSECONDS, result);
+
+            if (isFailedIncrement(result)) {
+                return fallbackPolicy == FallbackPolicy.LOCAL_ALLOWANCE
+                        ? fallbackBlocking(operation, new OperationFailedException(
+                                format("Store operation: %s failed", operation)), noFill, local)
+                            : result;
+            }
+            if (localAllowance != null) {
+                localAllowance.replayIfPending();
+            }
+            return result;
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            circuitBreaker.releasePermission();
+            Thread.currentThread().interrupt();
+            throw new OperationFailedException(format("Interrupted while awaiting store operation: %s", operation), e);
+        } catch (TimeoutException | ExecutionException e) {
+            future.cancel(true);
+            final Throwable failure = e instanceof TimeoutException ? (deadlineBound
+                    ? new DeadlineExceededException(format("Deadline expired during store operation: %s", operation))
+                        : new OperationTimedOutException(format("Store operation: %s timed out after: %s", operation, timeout)))
+                    : e.getCause();
+            circuitBreaker.onError(System.nanoTime() - start, TimeUnit.NANOSECONDS, failure);
+            return fallbackBlocking(operation, failure, noFill, local);
+        }
+    }
+
+    private <T> T fallbackBlocking(String operation, Throwable failure, Supplier<T> noFill, Supplier<T> local) {
+        final Reason reason = countFallback(operation, failure);
+        return switch (fallbackPolicy) {
+            case NO_FILL -> noFill.get();
+            case LOCAL_ALLOWANCE -> local.get();
+            case FAIL -> throw failureOf(operation, reason, failure);
+        };
+    }
+
+    private final class Blocking implements BlockingAdDistributionStore {
+
+        private final BlockingAdDistributionStore delegate;
+
+        private Blocking(BlockingAdDistributionStore delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Optional<AdDistribution> fetchDistribution(AdBudget adBudget) throws StoreException {
+            return guardedBlocking("fetch",
+                    () -> {
+                        final Optional<AdDistribution> distribution = delegate.fetchDistribution(adBudget);
+                        distribution.ifPresent(ResilientAdDistributionStore.this::observe);
+                        return distribution;
+                    },
+                        Optional::empty,
+                            () -> Optional.ofNullable(localAllowance.distributionOf(adBudget)));
+        }
+
+        @Override
+        public List<AdDistribution> fetchDistributions(List<AdBudget> adBudgets) throws StoreException {
+            return guardedBlocking("fetchMany",
+                    () -> {
+                        final List<AdDistribution> distributions = delegate.fetchDistributions(adBudgets);
+                        distributions.forEach(ResilientAdDistributionStore.this::observe);
+                        return distributions;
+                    },
+                        List::of,
+                            () -> {
+                                final List<AdDistribution> distributions = new ArrayList<>(adBudgets.size());
+                                for (AdBudget adBudget : adBudgets) {
+                                    final AdDistribution distribution = localAllowance.distributionOf(adBudget);
+                                    if (distribution != null) {
+                                        distributions.add(distribution);
+                                    }
+                                }
+                                return distributions;
+                            });
+        }
+
+        @Override
+        public Status incrementDistribution(AdDistribution adDistribution) throws StoreException {
+            if (isExhausted(List.of(adDistribution))) {
+                return delegate.incrementDistribution(adDistribution);
+            }
+            return guardedBlocking("increment",
+                    () -> delegate.incrementDistribution(adDistribution),
+                        () -> Status.FAILURE,
+                            () -> spendLocally(adDistribution));
+        }
+
+        @Override
+        public List<Status> incrementDistributions(List<AdDistribution> adDistributions) throws StoreException {
+            if (isExhausted(adDistributions)) {
+                return delegate.incrementDistributions(adDistributions);
+            }
+            return guardedBlocking("incrementMany",
+                    () -> delegate.incrementDistributions(adDistributions),
+                        () -> Collections.nCopies(adDistributions.size(), Status.FAILURE),
+                            () -> {
+                                final List<Status> statuses = new ArrayList<>(adDistributions.size());
+                                for (AdDistribution adDistribution : adDistributions) {
+                                    statuses.add(spendLocally(adDistribution));
+                                }
+                                return statuses;
+                            });
+        }
+    }
+
+    public static Builder builder(AdDistributionStore delegate) {
+        return new Builder(delegate);
+    }
+
+    /**
+     * Answer of store operations which failed, timed out, or got short-circuited
+     */
+    public enum FallbackPolicy {
+
+        /**
+         * Act as if no ad is available, fetches answer no distributions and increments answer failures,
+         * hence selections end with no selection (204)
+         */
+        NO_FILL,
+
+        /**
+         * Propagate failure to caller, e.g. {@link UnavailableException} while circuit breaker is open
+         */
+        FAIL,
+
+        /**
+         * Keep serving by spending from local allowance of last observed remaining quota, see {@link LocalSpendAllowance}.
+         * Fetches answer locally remaining allowance, increments spend from it, answering conflicts once it ran out.
+         */
+        LOCAL_ALLOWANCE
+    }
+
+    private enum Reason {
+
+        CIRCUIT_OPEN, DEADLINE, TIMEOUT, FAILURE;
+
+        static Reason of(Throwable failure) {
+            if (failure instanceof CallNotPermittedException) {
+                return CIRCUIT_OPEN;
+            } else if (failure instanceof DeadlineExceededException) {
+                return DEADLINE;
+            } else if (failure instanceof OperationTimedOutException) {
+                return TIMEOUT;
+            }
+            return FAILURE;
+        }
+    }
+
+    public static class Builder {
+
+        private final AdDistributionStore delegate;
+        private Duration operationTimeout;
+        private CircuitBreakerConfig circuitBreakerConfig;
+        private FallbackPolicy fallbackPolicy;
+        private LocalSpendAllowance localAllowance;
+        private MeterRegistry meterRegistry;
+
+        Builder(AdDistributionStore delegate) {
+            this.delegate = requireNonNull(delegate, "Argument delegate must not be null");
+            this.operationTimeout = DEFAULT_OPERATION_TIMEOUT;
+            this.circuitBreakerConfig = CircuitBreakerConfig.ofDefaults();
+            this.fallbackPolicy = FallbackPolicy.NO_FILL;
+        }
+
+        /**
+         * Caps every store operation, regardless of request deadline
+         */
+        public Builder withOperationTimeout(Duration operationTimeout) {
+            this.operationTimeout = requireNonNull(operationTimeout, "Argument operationTimeout must not be null");
+            if (operationTimeout.isNegative() || operationTimeout.isZero()) {
+                throw new IllegalArgumentException("Operation timeout must be positive, but it was: " + operationTimeout);
+            }
+            return this;
+        }
+
+        /**
+         * Failure rate, slow call and window settings, failed increments and ignored deadlines are set on top
+         */
+        public Builder withCircuitBreakerConfig(CircuitBreakerConfig circuitBreakerConfig) {
+            this.circuitBreakerConfig =
+                    requireNonNull(circuitBreakerConfig, "Argument circuitBreakerConfig must not be null");
+            return this;
+        }
+
+        public Builder withFallbackPolicy(FallbackPolicy fallbackPolicy) {
+            this.fallbackPolicy = requireNonNull(fallbackPolicy, "Argument fallbackPolicy must not be null");
+            return this;
+        }
+
+        /**
+         * Allowance observing remaining quota of fetched distributions, spent from under
+         * {@link FallbackPolicy#LOCAL_ALLOWANCE}, required by that policy
+         */
+        public Builder withLocalAllowance(LocalSpendAllowance localAllowance) {
+            this.localAllowance = requireNonNull(localAllowance, "Argument localAllowance must not be null");
+            return this;
+        }
+
+        /**
+         * Registers circuit breaker state, calls and fallbacks, a private registry is used unless given
+         */
+        public Builder withMeterRegistry(MeterRegistry meterRegistry) {
+            this.meterRegistry = requireNonNull(meterRegistry, "Argument meterRegistry must not be null");
+            return this;
+        }
+
+        public ResilientAdDistributionStore build() {
+            return new ResilientAdDistributionStore(delegate, operationTimeout, circuitBreakerConfig, fallbackPolicy,
+                    localAllowance, Optional.ofNullable(meterRegistry).orElseGet(SimpleMeterRegistry::new));
+        }
+    }
+
+}
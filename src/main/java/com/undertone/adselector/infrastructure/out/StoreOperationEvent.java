@@ -0,0 +1,48 @@
+package com.undertone.adselector.infrastructure.out;
+
+import com.undertone.adselector.model.Status;
+import jdk.jfr.*;
+
+/**
+ * Flight recorder event spanning a single distribution store operation, from subscription until Redis replied.
+ */
+@Name("com.undertone.adselector.StoreOperation")
+@Label("Distribution Store Operation")
+@Category({"Ad Selector", "Store"})
+@Description("Redis round trip fetching or incrementing ad distributions")
+@StackTrace(false)
+final class StoreOperationEvent extends Event {
+
+    @Label("Operation")
+    @Description("fetch, fetchMany, increment or incrementMany")
+    String operation;
+
+    @Label("Keys")
+    int keys;
+
+    @Label("Aid")
+    @Description("First aid operated on")
+    String aid;
+
+    @Label("Successes")
+    int successes;
+
+    @Label("Conflicts")
+    int conflicts;
+
+    @Label("Failures")
+    int failures;
+
+    @Label("Outcome")
+    @Description("Terminal signal of operation: onComplete, onError or cancel")
+    String outcome;
+
+    void count(Status status) {
+        switch (status) {
+            case SUCCESS -> successes++;
+            case CONFLICT -> conflicts++;
+            case FAILURE -> failures++;
+        }
+    }
+
+}
@@ -1,18 +1,90 @@
 package com.undertone.adselector.model;
 
+import java.nio.ByteBuffer;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 
 public interface AdBudgetPlan {
 
     public Optional<AdBudget> fetch(String aid);
 
+    /**
+     * @param slot slot assigned to an entry once plan was built, see {@link #slotOf(String)}
+     */
+    public Optional<AdBudget> fetch(int slot);
+
+    /**
+     * @return aid of entry assigned given slot, without evaluating lazily loaded entries where possible
+     */
+    public default Optional<String> aidOf(int slot) {
+        return fetch(slot).map(AdBudget::aid);
+    }
+
+    /**
+     * @return number of slots, every slot is in range of [0, slotCount)
+     */
+    public int slotCount();
+
+    /**
+     * @return slot of entry matching given aid, or -1 if none
+     */
+    public int slotOf(String aid);
+
+    /**
+     * Looks up entry straight from UTF-8 encoded aid bytes, e.g. a region of request payload.
+     * @param source buffer holding encoded aid, accessed by absolute positions, its state is left untouched
+     * @return slot of entry matching given aid, or -1 if none
+     */
+    public int slotOf(ByteBuffer source, int offset, int length);
+
+    /**
+     * @param segmentId id of a named segment defined by plan
+     * @return candidates of segment, precompiled when plan was loaded, or empty list for unknown segments
+     */
+    public List<AdBudget> fetchSegment(String segmentId);
+
+    /**
+     * @param segmentId id of a named segment defined by plan
+     * @return slots of segment candidates, shared between callers and must not be modified
+     */
+    public int[] fetchSegmentSlots(String segmentId);
+
+    /**
+     * @return ids of every segment defined by plan
+     */
+    public default Set<String> segmentIds() {
+        return Set.of();
+    }
+
+    /**
+     * @return generation of plan, incremented by its store upon every load, 0 for plans which are not versioned
+     */
+    public default long generation() {
+        return 0L;
+    }
+
+    /**
+     * @return epoch of slot layout, i.e. generation which last assigned slots anew. Plans which keep every slot
+     *         assigned to the same aid (e.g. amended ones) keep the epoch of the plan they were derived from.
+     */
+    public default long slotEpoch() {
+        return generation();
+    }
+
     public default boolean isEmpty() {
         return Objects.equals(this, EMPTY);
     }
 
     public static final AdBudgetPlan EMPTY = new AdBudgetPlan() {
         @Override public Optional<AdBudget> fetch(String aid) { return Optional.empty(); }
+        @Override public Optional<AdBudget> fetch(int slot) { return Optional.empty(); }
+        @Override public int slotCount() { return 0; }
+        @Override public int slotOf(String aid) { return -1; }
+        @Override public int slotOf(ByteBuffer source, int offset, int length) { return -1; }
+        @Override public List<AdBudget> fetchSegment(String segmentId) { return List.of(); }
+        @Override public int[] fetchSegmentSlots(String segmentId) { return new int[0]; }
         @Override public boolean isEmpty() { return true; }
     };
 
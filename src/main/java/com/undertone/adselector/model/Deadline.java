@@ -0,0 +1,54 @@
+package com.undertone.adselector.model;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Point in time by which a selection request must be answered, carried by the Reactor context of the request
+ * under {@code Deadline.class}, capping every outgoing store call of the request by its remaining time.
+ * Blocking selections, which have no Reactor context, carry it as deadline of their thread instead, see {@link #current()}.
+ * Based on monotonic clock, hence comparable within a single JVM only.
+ */
+public record Deadline(long expiresAtNanos) {
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    public static Deadline after(Duration budget) {
+        requireNonNull(budget, "Argument budget must not be null");
+        return new Deadline(System.nanoTime() + budget.toNanos());
+    }
+
+    /**
+     * @return deadline of current thread, set while running {@link #callWithin(Deadline, Callable)}
+     */
+    public static Optional<Deadline> current() {
+        return Optional.ofNullable(CURRENT.get());
+    }
+
+    /**
+     * Calls given blocking operation with given deadline set as deadline of current thread
+     * @param deadline deadline of operation, none if null
+     */
+    public static <T> T callWithin(Deadline deadline, Callable<T> operation) throws Exception {
+        requireNonNull(operation, "Argument operation must not be null");
+        final Deadline previous = CURRENT.get();
+        CURRENT.set(deadline);
+        try {
+            return operation.call();
+        } finally {
+            CURRENT.set(previous);
+        }
+    }
+
+    public Duration remaining() {
+        return Duration.ofNanos(Math.max(0L, expiresAtNanos - System.nanoTime()));
+    }
+
+    public boolean isExpired() {
+        return expiresAtNanos - System.nanoTime() <= 0L;
+    }
+
+}
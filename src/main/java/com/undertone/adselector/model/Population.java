@@ -0,0 +1,57 @@
+package com.undertone.adselector.model;
+
+import java.util.*;
+
+import static java.util.Objects.requireNonNullElse;
+
+/**
+ * Target population of a selection request, resolved against the current {@link AdBudgetPlan}.
+ */
+public interface Population {
+
+    public List<AdBudget> resolve(AdBudgetPlan plan);
+
+    public static Population of(Set<String> aids) {
+        return of(aids, Set.of());
+    }
+
+    public static Population of(Set<String> aids, Set<String> segmentIds) {
+        return new Listed(requireNonNullElse(aids, Set.of()), requireNonNullElse(segmentIds, Set.of()));
+    }
+
+    /**
+     * Population listing aids explicitly, and/or referencing plan segments by their ids.
+     * A single referenced segment resolves to its precompiled candidates as is, any other combination
+     * is merged while dropping duplicates. Plan entries are shared between lookups and segments, hence duplicates
+     * are detected by identity, avoiding evaluation of lazily loaded entries.
+     */
+    public record Listed(Set<String> aids, Set<String> segmentIds) implements Population {
+
+        @Override
+        public List<AdBudget> resolve(AdBudgetPlan plan) {
+            if (aids.isEmpty() && segmentIds.size() == 1) {
+                return plan.fetchSegment(segmentIds.iterator().next());
+            }
+
+            final List<AdBudget> resolved = new ArrayList<>(aids.size());
+            for (String aid : aids) {
+                plan.fetch(aid).ifPresent(resolved::add);
+            }
+
+            if (!segmentIds.isEmpty()) {
+                final Set<AdBudget> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+                seen.addAll(resolved);
+                for (String segmentId : segmentIds) {
+                    for (AdBudget adBudget : plan.fetchSegment(segmentId)) {
+                        if (seen.add(adBudget)) {
+                            resolved.add(adBudget);
+                        }
+                    }
+                }
+            }
+
+            return resolved;
+        }
+    }
+
+}
@@ -0,0 +1,100 @@
+package com.undertone.adselector.application.adaptors.services;
+
+import com.undertone.adselector.budget.Budgets;
+import com.undertone.adselector.budget.CostMeter;
+import com.undertone.adselector.budget.CostMeter.Cost;
+import com.undertone.adselector.infrastructure.out.FileBackedAdBudgetPlanStore;
+import com.undertone.adselector.model.AdBudget;
+import com.undertone.adselector.model.Population;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static java.lang.String.format;
+
+/**
+ * Allocation and CPU budgets of warmed up selections, see {@code budgets.properties}.
+ * Selections run against a loaded plan and a distribution store stub, hence they complete on the calling thread
+ * and their cost excludes any I/O.
+ */
+class AdSelectionServiceBudgetTest {
+
+    private static final int AD_COUNT = 1_000;
+    private static final int POPULATION_SIZE = 15;
+
+    private static Budgets budgets;
+    private static AdSelectionService sut;
+    private static Population testPopulation;
+    private static List<AdBudget> testCandidates;
+
+    @BeforeAll
+    @SneakyThrows
+    static void beforeAll(@TempDir Path tempDir) {
+        final Path testPlanFile = Files.writeString(tempDir.resolve("plan.json"), IntStream.range(0, AD_COUNT)
+                .mapToObj(i -> format(Locale.ROOT, "{\"aid\": \"test%d\", \"priority\": %.2f, \"quota\": %d}",
+                        i, 0.01d + (i % 97) / 100d, 1 + i))
+                    .collect(Collectors.joining(",", "{\"Ads\": [", "]}")));
+
+        final FileBackedAdBudgetPlanStore planStore = FileBackedAdBudgetPlanStore.builder(testPlanFile).build();
+        final Set<String> aids = new LinkedHashSet<>();
+        for (int i = 0; i < POPULATION_SIZE; i++) {
+            aids.add("test" + i * (AD_COUNT / POPULATION_SIZE));
+        }
+
+        budgets = Budgets.load();
+        sut = new AdSelectionService(new WeightedRandomSelection(new Stubs.UnboundedDistributionStore()), planStore);
+        testPopulation = Population.of(aids);
+        testCandidates = testPopulation.resolve(planStore.fetchPlan().block());
+    }
+
+    @Test
+    @DisplayName("Given warmed up selection, when selecting single ad, then allocation and CPU time are within budget")
+    void selectAd_givenWarmedUpSelection_whenSelecting_thenCostWithinBudget_positive() {
+
+        // WHEN
+        Cost actualCost = CostMeter.defaults().measure(() -> sut.selectAd(testPopulation).block());
+
+        // THEN
+        budgets.assertWithin("selection.selectAd", actualCost);
+
+    }
+
+    @Test
+    @DisplayName("Given warmed up selection, when selecting several ads, then allocation and CPU time are within budget")
+    void selectAds_givenWarmedUpSelection_whenSelectingSeveral_thenCostWithinBudget_positive() {
+
+        // WHEN
+        Cost actualCost = CostMeter.defaults().measure(() -> sut.selectAds(testPopulation, 3).block());
+
+        // THEN
+        budgets.assertWithin("selection.selectAds", actualCost);
+
+    }
+
+    @Test
+    @DisplayName("Given warmed up strategy, when drawing from resolved candidates, then allocation and CPU time are within budget")
+    void select_givenWarmedUpStrategy_whenDrawing_thenCostWithinBudget_positive() {
+
+        // GIVEN
+        var testStrategy = new WeightedRandomSelection(new Stubs.UnboundedDistributionStore());
+
+        // WHEN
+        Cost actualCost = CostMeter.defaults().measure(() -> testStrategy.select(testCandidates).block());
+
+        // THEN
+        budgets.assertWithin("selection.draw", actualCost);
+
+    }
+
+}
@@ -1,14 +1,20 @@
 package com.undertone.adselector.application.adaptors.services;
 
 import com.undertone.adselector.application.ports.in.AdSelectionStrategy;
+import com.undertone.adselector.application.ports.in.UseCaseException.AbortedException;
 import com.undertone.adselector.application.ports.out.AdBudgetPlanStore;
 import com.undertone.adselector.model.AdBudget;
 import com.undertone.adselector.model.AdBudgetPlan;
+import com.undertone.adselector.model.Deadline;
+import com.undertone.adselector.model.Population;
 import org.junit.jupiter.api.*;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
@@ -16,7 +22,7 @@ import static java.lang.String.format;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.eq;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 
 class AdSelectionServiceTest {
 
@@ -73,6 +79,120 @@ class AdSelectionServiceTest {
     }
 
 
+    @Test
+    @DisplayName("Given every candidate conflicted, when selecting, then retry selection using selectionStrategy")
+    void selectAd_givenAllCandidatesConflicted_whenSelecting_thenRetrySelection_positive() {
+
+        // GIVEN
+        AdBudgetMock adBudgetMock1 = new AdBudgetMock("test1", 0.2, 5);
+
+        Set<String> testAids = Set.of("test1");
+
+        var sut = new AdSelectionService(adSelectionStrategyMock, adBudgetPlanStoreMock);
+
+        // WHEN
+        when(adBudgetPlanStoreMock.fetchPlan()).thenReturn(Mono.just(adBudgetPlanMock));
+        when(adBudgetPlanMock.fetch(eq("test1"))).thenReturn(Optional.of(adBudgetMock1));
+        when(adSelectionStrategyMock.select(anyList()))
+                .thenReturn(Mono.error(new AbortedException("conflict")))
+                    .thenReturn(Mono.just(Optional.of(adBudgetMock1)));
+
+        Mono<Optional<String>> actualMonoResponse = sut.selectAd(testAids);
+
+        // THEN
+        Optional<String> actualAidOp = actualMonoResponse.block();
+        assertNotNull(actualAidOp, "Expected non empty Mono");
+        assertEquals(Optional.of("test1"), actualAidOp);
+        verify(adSelectionStrategyMock, times(2)).select(anyList());
+
+    }
+
+    @Test
+    @DisplayName("Given every candidate conflicted, when backoff would exceed request deadline, then give up with no fill")
+    void selectAd_givenAllCandidatesConflicted_whenBackoffExceedsDeadline_thenNoFill_negative() {
+
+        // GIVEN
+        AdBudgetMock adBudgetMock1 = new AdBudgetMock("test1", 0.2, 5);
+
+        Set<String> testAids = Set.of("test1");
+
+        var sut = new AdSelectionService(adSelectionStrategyMock, adBudgetPlanStoreMock);
+
+        // WHEN
+        when(adBudgetPlanStoreMock.fetchPlan()).thenReturn(Mono.just(adBudgetPlanMock));
+        when(adBudgetPlanMock.fetch(eq("test1"))).thenReturn(Optional.of(adBudgetMock1));
+        when(adSelectionStrategyMock.select(anyList())).thenReturn(Mono.error(new AbortedException("conflict")));
+
+        Optional<String> actualAidOp = sut.selectAd(testAids)
+                .contextWrite(context -> context.put(Deadline.class, Deadline.after(Duration.ZERO)))
+                    .block();
+
+        // THEN
+        assertEquals(Optional.empty(), actualAidOp);
+        verify(adSelectionStrategyMock, times(1)).select(anyList());
+
+    }
+
+    @Test
+    @DisplayName("Given set of aids and count, when selecting several, then pass count to selectionStrategy")
+    void selectAds_givenSetOfAidsAndCount_whenSelecting_thenPassCountToSelectionStrategy_positive() {
+
+        // GIVEN
+        AdBudgetMock adBudgetMock1 = new AdBudgetMock("test1", 0.2, 5);
+        AdBudgetMock adBudgetMock2 = new AdBudgetMock("test2", 0.66, 15);
+
+        Set<String> testAids = Set.of("test1", "test2");
+
+        var sut = new AdSelectionService(adSelectionStrategyMock, adBudgetPlanStoreMock);
+
+        // WHEN
+        when(adBudgetPlanStoreMock.fetchPlan()).thenReturn(Mono.just(adBudgetPlanMock));
+        when(adBudgetPlanMock.fetch(eq("test1"))).thenReturn(Optional.of(adBudgetMock1));
+        when(adBudgetPlanMock.fetch(eq("test2"))).thenReturn(Optional.of(adBudgetMock2));
+        when(adSelectionStrategyMock.select(anyList(), eq(2)))
+                .thenReturn(Mono.just(List.of(adBudgetMock2, adBudgetMock1)));
+
+        List<String> actualAids = sut.selectAds(Population.of(testAids), 2).block();
+
+        // THEN
+        assertNotNull(actualAids, "Expected non empty Mono");
+        assertEquals(List.of("test2", "test1"), actualAids);
+
+    }
+
+    @Test
+    @DisplayName("Given segment ids and aids, when selecting, then pass expanded population without duplicates to selectionStrategy")
+    void selectAd_givenSegmentIdsAndAids_whenSelecting_thenPassExpandedPopulationToSelectionStrategy_positive() {
+
+        // GIVEN
+        AdBudgetMock adBudgetMock1 = new AdBudgetMock("test1", 0.2, 5);
+        AdBudgetMock adBudgetMock2 = new AdBudgetMock("test2", 0.66, 15);
+        AdBudgetMock adBudgetMock3 = new AdBudgetMock("test3", 0.4, 7);
+
+        var sut = new AdSelectionService(adSelectionStrategyMock, adBudgetPlanStoreMock);
+        var populationCaptor = ArgumentCaptor.forClass(List.class);
+
+        // WHEN
+        when(adBudgetPlanStoreMock.fetchPlan()).thenReturn(Mono.just(adBudgetPlanMock));
+        when(adBudgetPlanMock.fetch(eq("test1"))).thenReturn(Optional.of(adBudgetMock1));
+        when(adBudgetPlanMock.fetchSegment(eq("segment1"))).thenReturn(List.of(adBudgetMock1, adBudgetMock2));
+        when(adBudgetPlanMock.fetchSegment(eq("segment2"))).thenReturn(List.of(adBudgetMock2, adBudgetMock3));
+        when(adSelectionStrategyMock.select(anyList())).thenReturn(Mono.just(Optional.of(adBudgetMock3)));
+
+        Optional<String> actualAidOp =
+                sut.selectAd(Population.of(Set.of("test1"), Set.of("segment1", "segment2"))).block();
+
+        // THEN
+        assertNotNull(actualAidOp, "Expected non empty Mono");
+        assertEquals(Optional.of("test3"), actualAidOp);
+
+        verify(adSelectionStrategyMock).select(populationCaptor.capture());
+        List<AdBudget> actualPopulation = populationCaptor.getValue();
+        assertEquals(3, actualPopulation.size(), "Expected duplicate entries to be dropped");
+        assertTrue(actualPopulation.containsAll(List.of(adBudgetMock1, adBudgetMock2, adBudgetMock3)));
+
+    }
+
     record AdBudgetMock(String aid, double priority, long quota) implements AdBudget {
         @Override
         public String toString() {
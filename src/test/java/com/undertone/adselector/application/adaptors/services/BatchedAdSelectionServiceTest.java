@@ -0,0 +1,160 @@
+package com.undertone.adselector.application.adaptors.services;
+
+import com.undertone.adselector.application.ports.in.AdSelectionStrategy;
+import com.undertone.adselector.application.ports.in.BatchSelectAdUseCase.Selection;
+import com.undertone.adselector.application.ports.in.UseCaseException.RejectionException;
+import com.undertone.adselector.application.ports.out.AdBudgetPlanStore;
+import com.undertone.adselector.application.ports.out.AdDistributionStore;
+import com.undertone.adselector.model.AdBudget;
+import com.undertone.adselector.model.AdBudgetPlan;
+import com.undertone.adselector.model.AdDistribution;
+import com.undertone.adselector.model.Population;
+import com.undertone.adselector.model.Status;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.*;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import reactor.core.publisher.Mono;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static java.lang.String.format;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class BatchedAdSelectionServiceTest {
+
+    private AutoCloseable closeable;
+
+    @Mock
+    private AdDistributionStore adDistributionStoreMock;
+
+    @Mock
+    private AdSelectionStrategy adSelectionStrategyMock;
+
+    @Mock
+    private AdBudgetPlanStore adBudgetPlanStoreMock;
+
+    @Mock
+    private AdBudgetPlan adBudgetPlanMock;
+
+    @BeforeEach
+    public void before() {
+        closeable = MockitoAnnotations.openMocks(this);
+    }
+
+    @AfterEach
+    public void after() throws Exception {
+        closeable.close();
+    }
+
+    @Test
+    @DisplayName("Given overlapping populations, when selecting batch, then fetch their union and increment all drawn once")
+    void selectBatch_givenOverlappingPopulations_whenSelecting_thenSingleFetchAndIncrement_positive() {
+
+        // GIVEN
+        var meterRegistry = new SimpleMeterRegistry();
+        var sut = new BatchedAdSelectionService(adDistributionStoreMock, adSelectionStrategyMock,
+                adBudgetPlanStoreMock, meterRegistry);
+
+        var test1Dist = new AdDistributionMock("test1", 0.5d, 3l, 3l);
+        var test2Dist = new AdDistributionMock("test2", 0.5d, 3l, 3l);
+        var test3Dist = new AdDistributionMock("test3", 0.5d, 3l, 3l);
+
+        var testSelections = List.of(
+                new Selection(plan -> List.of(test1Dist, test2Dist), 1),
+                new Selection(plan -> List.of(test2Dist, test3Dist), 2));
+
+        // WHEN
+        when(adBudgetPlanStoreMock.fetchPlan()).thenReturn(Mono.just(adBudgetPlanMock));
+        when(adDistributionStoreMock.fetchDistributions(anyList()))
+                .thenReturn(Mono.just(List.of(test1Dist, test2Dist, test3Dist)));
+        when(adDistributionStoreMock.incrementDistributions(anyList())).thenAnswer(invocation ->
+                Mono.just(Collections.nCopies(invocation.<List<?>>getArgument(0).size(), Status.SUCCESS)));
+
+        List<List<String>> actualSelected = sut.selectBatch(testSelections).block();
+
+        // THEN
+        assertNotNull(actualSelected, "Expected non empty Mono");
+        assertEquals(2, actualSelected.size());
+        assertEquals(1, actualSelected.get(0).size());
+        assertEquals(2, actualSelected.get(1).size());
+        assertTrue(List.of("test2", "test3").containsAll(actualSelected.get(1)));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<AdBudget>> fetchedCaptor = ArgumentCaptor.forClass(List.class);
+        verify(adDistributionStoreMock, times(1)).fetchDistributions(fetchedCaptor.capture());
+        assertEquals(List.of("test1", "test2", "test3"), fetchedCaptor.getValue().stream().map(AdBudget::aid).toList());
+        verify(adDistributionStoreMock, times(1)).incrementDistributions(anyList());
+        verifyNoInteractions(adSelectionStrategyMock);
+        assertEquals(2d, meterRegistry.get("adselector.selection.batch.size").summary().totalAmount());
+
+    }
+
+    @Test
+    @DisplayName("Given drawn ad conflicts, when selecting batch, then redraw the short request on its own")
+    void selectBatch_givenConflict_whenSelecting_thenRedrawShortRequest_positive() {
+
+        // GIVEN
+        var meterRegistry = new SimpleMeterRegistry();
+        var sut = new BatchedAdSelectionService(adDistributionStoreMock, adSelectionStrategyMock,
+                adBudgetPlanStoreMock, meterRegistry);
+
+        var test1Dist = new AdDistributionMock("test1", 0.5d, 3l, 1l);
+        var test2Dist = new AdDistributionMock("test2", 0.5d, 3l, 1l);
+
+        Population testPopulation = plan -> List.of(test1Dist, test2Dist);
+
+        // WHEN
+        when(adBudgetPlanStoreMock.fetchPlan()).thenReturn(Mono.just(adBudgetPlanMock));
+        when(adDistributionStoreMock.fetchDistributions(anyList())).thenReturn(Mono.just(List.of(test1Dist, test2Dist)));
+        when(adDistributionStoreMock.incrementDistributions(anyList())).thenReturn(Mono.just(List.of(Status.CONFLICT)));
+        when(adSelectionStrategyMock.select(anyList(), eq(1))).thenReturn(Mono.just(List.of(test2Dist)));
+
+        List<List<String>> actualSelected = sut.selectBatch(List.of(new Selection(testPopulation, 1))).block();
+
+        // THEN
+        assertEquals(List.of(List.of("test2")), actualSelected);
+        verify(adSelectionStrategyMock, times(1)).select(anyList(), eq(1));
+        assertEquals(1d, meterRegistry.get("adselector.selection.batch.redraws").counter().count());
+
+    }
+
+    @Test
+    @DisplayName("Given non positive count, when selecting batch, then reject the batch")
+    void selectBatch_givenNonPositiveCount_whenSelecting_thenReject_negative() {
+
+        // GIVEN
+        var sut = new BatchedAdSelectionService(adDistributionStoreMock, adSelectionStrategyMock, adBudgetPlanStoreMock);
+
+        var testSelections = List.of(
+                new Selection(Population.of(Set.of("test1")), 1),
+                new Selection(Population.of(Set.of("test1")), 0));
+
+        // WHEN / THEN
+        assertThrows(RejectionException.class, () -> sut.selectBatch(testSelections).block());
+        verifyNoInteractions(adDistributionStoreMock);
+
+    }
+
+    record AdDistributionMock(String aid, double priority, long quota, long remainingQuota) implements AdDistribution {
+        @Override
+        public String toString() {
+            return format(
+                    """
+                    {
+                      "aid": "%s",
+                      "priority": %.2f,
+                      "quota": %d,
+                      "remaining": %d
+                    }
+                    """, aid, priority, quota, remainingQuota);
+        }
+    }
+
+}
@@ -0,0 +1,114 @@
+package com.undertone.adselector.application.adaptors.services;
+
+import com.undertone.adselector.application.ports.in.UseCaseException.AbortedException;
+import com.undertone.adselector.application.ports.in.UseCaseException.RejectionException;
+import com.undertone.adselector.application.ports.out.BlockingAdDistributionStore;
+import com.undertone.adselector.model.AdBudget;
+import com.undertone.adselector.model.AdDistribution;
+import com.undertone.adselector.model.Status;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.*;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static java.lang.String.format;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class BlockingWeightedRandomSelectionTest {
+
+    private AutoCloseable closeable;
+
+    @Mock
+    private BlockingAdDistributionStore adDistributionStoreMock;
+
+    @BeforeEach
+    public void before() {
+        closeable = MockitoAnnotations.openMocks(this);
+    }
+
+    @AfterEach
+    public void after() throws Exception {
+        closeable.close();
+    }
+
+    @Test
+    @DisplayName("Given incrementing distribution, when conflict, then redraw from remaining candidates without refetching")
+    void select_givenIncrementing_whenConflict_thenRedrawFromRemainingCandidates_positive() {
+
+        // GIVEN
+        var meterRegistry = new SimpleMeterRegistry();
+        var sut = new BlockingWeightedRandomSelection(adDistributionStoreMock, meterRegistry);
+
+        var testConflictedDist = new AdDistributionMock("testConflicted", 0.5d, 3l, 1l);
+        var testAvailableDist = new AdDistributionMock("testAvailable", 0.5d, 3l, 1l);
+        var testExhaustedDist = new AdDistributionMock("testExhausted", 0.5d, 3l, 0l);
+
+        var testPopulation = List.<AdBudget>of(testConflictedDist, testAvailableDist, testExhaustedDist);
+
+        // WHEN
+        when(adDistributionStoreMock.fetchDistributions(anyList()))
+                .thenReturn(List.of(testConflictedDist, testAvailableDist, testExhaustedDist));
+        when(adDistributionStoreMock.incrementDistribution(eq(testConflictedDist))).thenReturn(Status.CONFLICT);
+        when(adDistributionStoreMock.incrementDistribution(eq(testAvailableDist))).thenReturn(Status.SUCCESS);
+
+        Optional<AdBudget> actualSelection = sut.select(testPopulation);
+
+        // THEN
+        assertTrue(actualSelection.isPresent(), "Expected selection of non conflicted AdBudget");
+        assertEquals("testAvailable", actualSelection.get().aid());
+
+        verify(adDistributionStoreMock, times(1)).fetchDistributions(anyList());
+        verify(adDistributionStoreMock, never()).incrementDistribution(eq(testExhaustedDist));
+        assertEquals(1d, meterRegistry.get("adselector.selection.candidates.exhausted").counter().count());
+        assertEquals(1d, meterRegistry.get("adselector.selection.increments").tag("status", "success").counter().count());
+
+    }
+
+    @Test
+    @DisplayName("Given every selected conflicts, when selecting several, then throw aborted exception")
+    void selectSeveral_givenEverySelectedConflicts_whenSelecting_thenThrowAbortedException_negative() {
+
+        // GIVEN
+        var sut = new BlockingWeightedRandomSelection(adDistributionStoreMock);
+
+        var testDistributions = List.<AdDistribution>of(
+                new AdDistributionMock("test1", 0.5d, 3l, 2l),
+                new AdDistributionMock("test2", 0.5d, 3l, 2l));
+        var testPopulation = new ArrayList<AdBudget>(testDistributions);
+
+        // WHEN
+        when(adDistributionStoreMock.fetchDistributions(anyList())).thenReturn(testDistributions);
+        when(adDistributionStoreMock.incrementDistributions(anyList()))
+                .thenReturn(List.of(Status.CONFLICT))
+                    .thenReturn(List.of(Status.CONFLICT));
+
+        // THEN
+        assertThrows(AbortedException.class, () -> sut.select(testPopulation, 1));
+        verify(adDistributionStoreMock, times(2)).incrementDistributions(anyList());
+        assertThrows(RejectionException.class, () -> sut.select(testPopulation, 0));
+
+    }
+
+    record AdDistributionMock(String aid, double priority, long quota, long remainingQuota) implements AdDistribution {
+        @Override
+        public String toString() {
+            return format(
+                    """
+                    {
+                      "aid": "%s",
+                      "priority": %.2f,
+                      "quota": %d,
+                      "remaining": %d
+                    }
+                    """, aid, priority, quota, remainingQuota);
+        }
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.undertone.adselector.application.adaptors.services;
+
+import com.undertone.adselector.application.ports.in.ReportHeavyHittersUseCase.HeavyHitter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HeavyHittersTest {
+
+    @Test
+    @DisplayName("Given few heavy aids among many rare ones, when reporting top, then report heavy aids never underestimated")
+    void top_givenFewHeavyAidsAmongManyRareOnes_whenReporting_thenReportHeavyAids_positive() {
+
+        // GIVEN
+        var sut = new HeavyHitters(1024, 4, 10);
+
+        var occurrences = new ArrayList<String>();
+        for (int i = 0; i < 10; i++) {
+            for (int j = 0; j < 500 + i * 100; j++) {
+                occurrences.add("heavy" + i);
+            }
+        }
+        for (int i = 0; i < 20_000; i++) {
+            occurrences.add("rare" + i);
+        }
+        Collections.shuffle(occurrences, new Random(42));
+
+        // WHEN
+        occurrences.forEach(sut::record);
+        List<HeavyHitter> actualTop = sut.top(10);
+
+        // THEN
+        assertEquals(10, actualTop.size());
+        assertEquals("heavy9", actualTop.get(0).aid());
+        long maxOverestimate = (long) (Math.E / 1024 * occurrences.size());
+        for (HeavyHitter hitter : actualTop) {
+            assertTrue(hitter.aid().startsWith("heavy"), "Expected heavy aid, but it was: " + hitter);
+            long actualCount = 500 + Integer.parseInt(hitter.aid().substring(5)) * 100L;
+            assertTrue(hitter.count() >= actualCount && hitter.count() <= actualCount + maxOverestimate,
+                    "Expected estimate within error bound, but it was: " + hitter);
+        }
+        assertEquals(3, sut.top(3).size());
+
+    }
+
+    @Test
+    @DisplayName("Given recorded aids, when decayed, then halve estimates and drop decayed away aids")
+    void decay_givenRecordedAids_whenDecayed_thenHalveEstimates_positive() {
+
+        // GIVEN
+        var sut = new HeavyHitters(1024, 4, 10);
+        for (int i = 0; i < 8; i++) {
+            sut.record("test0");
+        }
+        sut.record("test1");
+
+        // WHEN
+        sut.decay();
+
+        // THEN
+        assertEquals(4L, sut.estimate("test0"));
+        assertEquals(0L, sut.estimate("test1"));
+        assertEquals(List.of(new HeavyHitter("test0", 4L)), sut.top(10));
+
+    }
+
+}
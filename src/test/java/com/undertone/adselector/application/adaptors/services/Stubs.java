@@ -0,0 +1,56 @@
+package com.undertone.adselector.application.adaptors.services;
+
+import com.undertone.adselector.application.ports.out.AdDistributionStore;
+import com.undertone.adselector.model.AdBudget;
+import com.undertone.adselector.model.AdDistribution;
+import com.undertone.adselector.model.Status;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * In-process stand-ins for outgoing ports, keeping benchmarks and budget tests free of any I/O
+ */
+final class Stubs {
+
+    private Stubs() {}
+
+    record Distribution(String aid, double priority, long quota, long remainingQuota) implements AdDistribution {}
+
+    /**
+     * Never spends any quota, every distribution is fully available and every increment succeeds
+     */
+    static final class UnboundedDistributionStore implements AdDistributionStore {
+
+        @Override
+        public Mono<AdDistribution> fetchDistribution(AdBudget adBudget) {
+            return Mono.just(distributionOf(adBudget));
+        }
+
+        @Override
+        public Mono<List<AdDistribution>> fetchDistributions(List<AdBudget> adBudgets) {
+            final List<AdDistribution> distributions = new ArrayList<>(adBudgets.size());
+            for (AdBudget adBudget : adBudgets) {
+                distributions.add(distributionOf(adBudget));
+            }
+            return Mono.just(distributions);
+        }
+
+        @Override
+        public Mono<Status> incrementDistribution(AdDistribution adDistribution) {
+            return Mono.just(Status.SUCCESS);
+        }
+
+        @Override
+        public Mono<List<Status>> incrementDistributions(List<AdDistribution> adDistributions) {
+            return Mono.just(Collections.nCopies(adDistributions.size(), Status.SUCCESS));
+        }
+
+        private static AdDistribution distributionOf(AdBudget adBudget) {
+            return new Distribution(adBudget.aid(), adBudget.priority(), adBudget.quota(), adBudget.quota());
+        }
+    }
+
+}
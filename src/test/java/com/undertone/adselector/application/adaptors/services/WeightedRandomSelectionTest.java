@@ -6,6 +6,7 @@ import com.undertone.adselector.application.ports.out.AdDistributionStore;
 import com.undertone.adselector.model.AdBudget;
 import com.undertone.adselector.model.AdDistribution;
 import com.undertone.adselector.model.Status;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.*;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
@@ -179,6 +180,245 @@ class WeightedRandomSelectionTest {
     }
 
 
+    @Test
+    @DisplayName("Given incrementing distribution, when conflict, then redraw from remaining candidates without refetching")
+    void select_givenIncrementing_whenConflict_thenRedrawFromRemainingCandidates_positive() {
+
+        // GIVEN
+        var sutSpy = spy(new WeightedRandomSelection(adDistributionStoreMock));
+
+        var testConflictedDist = new AdDistributionMock("testConflicted", 0.5d, 3l, 1l);
+        var testAvailableDist = new AdDistributionMock("testAvailable", 0.5d, 3l, 1l);
+
+        var testPopulation = List.of(testConflictedDist.asAdBudget(), testAvailableDist.asAdBudget());
+
+        // WHEN
+        when(adDistributionStoreMock
+                .fetchDistributions(Mockito.anyList()))
+                .thenReturn(Mono.just(List.of(testConflictedDist, testAvailableDist)));
+        when(adDistributionStoreMock.incrementDistribution(eq(testConflictedDist)))
+                .thenReturn(Mono.just(Status.CONFLICT));
+        when(adDistributionStoreMock.incrementDistribution(eq(testAvailableDist)))
+                .thenReturn(Mono.just(Status.SUCCESS));
+
+        Mono<Optional<AdBudget>> actualSelection = sutSpy.select(testPopulation);
+
+        // THEN
+        Optional<AdBudget> adBudgetOp = actualSelection.block();
+        assertNotNull(adBudgetOp, "Expected non empty Mono");
+        assertTrue(adBudgetOp.isPresent(), "Expected selection of non conflicted AdBudget");
+        assertEquals("testAvailable", adBudgetOp.get().aid());
+
+        verify(adDistributionStoreMock, times(1)).fetchDistributions(anyList());
+
+    }
+
+    @Test
+    @DisplayName("Given every candidate conflicting, when redraw limit reached, then abort without exhausting candidates")
+    void select_givenEveryCandidateConflicting_whenRedrawLimitReached_thenThrowAbortedException_negative() {
+
+        // GIVEN
+        var sut = new WeightedRandomSelection(adDistributionStoreMock, new SimpleMeterRegistry(),
+                new HeavyHitterTracker(), 2);
+
+        var testDistributions = new ArrayList<AdDistribution>();
+        for (int i = 0; i < 10; i++) {
+            testDistributions.add(new AdDistributionMock("test" + i, 0.5d, 3l, 1l));
+        }
+        var testPopulation = new ArrayList<AdBudget>(testDistributions);
+
+        // WHEN
+        when(adDistributionStoreMock.fetchDistributions(Mockito.anyList()))
+                .thenReturn(Mono.just(testDistributions));
+        when(adDistributionStoreMock.incrementDistribution(any()))
+                .thenReturn(Mono.just(Status.CONFLICT));
+
+        // THEN
+        assertThrows(AbortedException.class, () -> sut.select(testPopulation).block());
+        verify(adDistributionStoreMock, times(3)).incrementDistribution(any());
+
+    }
+
+    @Test
+    @DisplayName("Given every selected conflicting, when redraw limit reached selecting several, then abort without exhausting candidates")
+    void selectSeveral_givenEverySelectedConflicting_whenRedrawLimitReached_thenThrowAbortedException_negative() {
+
+        // GIVEN
+        var sut = new WeightedRandomSelection(adDistributionStoreMock, new SimpleMeterRegistry(),
+                new HeavyHitterTracker(), 2);
+
+        var testDistributions = new ArrayList<AdDistribution>();
+        for (int i = 0; i < 10; i++) {
+            testDistributions.add(new AdDistributionMock("test" + i, 0.5d, 3l, 1l));
+        }
+        var testPopulation = new ArrayList<AdBudget>(testDistributions);
+
+        // WHEN
+        when(adDistributionStoreMock.fetchDistributions(Mockito.anyList()))
+                .thenReturn(Mono.just(testDistributions));
+        when(adDistributionStoreMock.incrementDistributions(Mockito.anyList()))
+                .thenReturn(Mono.just(List.of(Status.CONFLICT)));
+
+        // THEN
+        assertThrows(AbortedException.class, () -> sut.select(testPopulation, 1).block());
+        verify(adDistributionStoreMock, times(3)).incrementDistributions(anyList());
+
+    }
+
+    @Test
+    @DisplayName("Given population larger than count, when selecting several, then select distinct ads incremented at once")
+    void selectSeveral_givenPopulationLargerThanCount_whenSelecting_thenSelectDistinctIncrementedAtOnce_positive() {
+
+        // GIVEN
+        var sut = new WeightedRandomSelection(adDistributionStoreMock);
+
+        var testDistributions = List.<AdDistribution>of(
+                new AdDistributionMock("test1", 0.5d, 3l, 2l),
+                new AdDistributionMock("test2", 0.2d, 3l, 2l),
+                new AdDistributionMock("test3", 0.9d, 3l, 2l));
+        var testPopulation = new ArrayList<AdBudget>(testDistributions);
+
+        var incrementCaptor = ArgumentCaptor.forClass(List.class);
+
+        // WHEN
+        when(adDistributionStoreMock.fetchDistributions(Mockito.anyList()))
+                .thenReturn(Mono.just(testDistributions));
+        when(adDistributionStoreMock.incrementDistributions(Mockito.anyList()))
+                .thenReturn(Mono.just(List.of(Status.SUCCESS, Status.SUCCESS)));
+
+        List<AdBudget> actualSelection = sut.select(testPopulation, 2).block();
+
+        // THEN
+        assertNotNull(actualSelection, "Expected non empty Mono");
+        assertEquals(2, actualSelection.size(), "Expected exactly two selections");
+        assertNotEquals(actualSelection.get(0).aid(), actualSelection.get(1).aid(), "Expected distinct selections");
+
+        verify(adDistributionStoreMock, times(1)).incrementDistributions(incrementCaptor.capture());
+        assertEquals(2, incrementCaptor.getValue().size(), "Expected both selections to be incremented at once");
+        verify(adDistributionStoreMock, never()).incrementDistribution(any());
+
+    }
+
+    @Test
+    @DisplayName("Given one of selected conflicts, when selecting several, then replace it with remaining candidate")
+    void selectSeveral_givenSelectedConflicts_whenSelecting_thenRedrawFromRemaining_positive() {
+
+        // GIVEN
+        var sut = new WeightedRandomSelection(adDistributionStoreMock);
+
+        var testDistributions = List.<AdDistribution>of(
+                new AdDistributionMock("test1", 0.5d, 3l, 2l),
+                new AdDistributionMock("test2", 0.5d, 3l, 2l));
+        var testPopulation = new ArrayList<AdBudget>(testDistributions);
+
+        // WHEN
+        when(adDistributionStoreMock.fetchDistributions(Mockito.anyList()))
+                .thenReturn(Mono.just(testDistributions));
+        when(adDistributionStoreMock.incrementDistributions(Mockito.anyList()))
+                .thenReturn(Mono.just(List.of(Status.CONFLICT)))
+                    .thenReturn(Mono.just(List.of(Status.SUCCESS)));
+
+        List<AdBudget> actualSelection = sut.select(testPopulation, 1).block();
+
+        // THEN
+        assertNotNull(actualSelection, "Expected non empty Mono");
+        assertEquals(1, actualSelection.size(), "Expected single selection");
+        verify(adDistributionStoreMock, times(2)).incrementDistributions(anyList());
+        verify(adDistributionStoreMock, times(1)).fetchDistributions(anyList());
+
+    }
+
+    @Test
+    @DisplayName("Given partly exhausted population and a conflict, when selecting several, then count statuses, exhausted and candidates")
+    void selectSeveral_givenPartlyExhaustedAndConflict_whenSelecting_thenRecordSelectionMetrics_positive() {
+
+        // GIVEN
+        var meterRegistry = new SimpleMeterRegistry();
+        var sut = new WeightedRandomSelection(adDistributionStoreMock, meterRegistry);
+
+        var testDistributions = List.<AdDistribution>of(
+                new AdDistributionMock("test1", 0.5d, 3l, 1l),
+                new AdDistributionMock("test2", 0.5d, 3l, 1l),
+                new AdDistributionMock("testExhausted", 0.5d, 3l, 0l));
+        var testPopulation = new ArrayList<AdBudget>(testDistributions);
+
+        // WHEN
+        when(adDistributionStoreMock.fetchDistributions(Mockito.anyList()))
+                .thenReturn(Mono.just(testDistributions));
+        when(adDistributionStoreMock.incrementDistributions(Mockito.anyList()))
+                .thenReturn(Mono.just(List.of(Status.CONFLICT)))
+                    .thenReturn(Mono.just(List.of(Status.SUCCESS)));
+
+        List<AdBudget> actualSelection = sut.select(testPopulation, 1).block();
+
+        // THEN
+        assertNotNull(actualSelection, "Expected non empty Mono");
+        assertEquals(1, actualSelection.size(), "Expected single selection");
+
+        assertEquals(1d, meterRegistry.get("adselector.selection.increments").tag("status", "success").counter().count());
+        assertEquals(1d, meterRegistry.get("adselector.selection.increments").tag("status", "conflict").counter().count());
+        assertEquals(0d, meterRegistry.get("adselector.selection.increments").tag("status", "failure").counter().count());
+        assertEquals(1d, meterRegistry.get("adselector.selection.candidates.exhausted").counter().count());
+
+        var candidatesSummary = meterRegistry.get("adselector.selection.candidates").summary();
+        assertEquals(1L, candidatesSummary.count());
+        assertEquals(2d, candidatesSummary.totalAmount());
+
+    }
+
+    @Test
+    @DisplayName("Given population selected from, when selecting several, then track requested and selected aids")
+    void selectSeveral_givenPopulation_whenSelecting_thenTrackRequestedAndSelectedAids_positive() {
+
+        // GIVEN
+        var heavyHitters = new HeavyHitterTracker();
+        var sut = new WeightedRandomSelection(adDistributionStoreMock, new SimpleMeterRegistry(), heavyHitters);
+
+        var testDistributions = List.<AdDistribution>of(
+                new AdDistributionMock("test1", 0.5d, 3l, 1l),
+                new AdDistributionMock("testExhausted", 0.5d, 3l, 0l));
+        var testPopulation = new ArrayList<AdBudget>(testDistributions);
+
+        // WHEN
+        when(adDistributionStoreMock.fetchDistributions(Mockito.anyList()))
+                .thenReturn(Mono.just(testDistributions));
+        when(adDistributionStoreMock.incrementDistributions(Mockito.anyList()))
+                .thenReturn(Mono.just(List.of(Status.SUCCESS)));
+
+        sut.select(testPopulation, 1).block();
+        sut.select(testPopulation, 1).block();
+
+        // THEN
+        assertEquals(List.of("test1", "testExhausted"),
+                heavyHitters.topRequested(10).stream().map(hitter -> hitter.aid()).toList());
+        assertEquals(2L, heavyHitters.topRequested(10).get(0).count());
+        assertEquals(List.of("test1"),
+                heavyHitters.topSelected(10).stream().map(hitter -> hitter.aid()).toList());
+
+    }
+
+    @Test
+    @DisplayName("Given count exceeding candidates, when sampling without replacement, then return every candidate once")
+    void doSelectSeveral_givenCountExceedingCandidates_whenSampling_thenReturnEveryCandidateOnce_positive() {
+
+        // GIVEN
+        var sut = new WeightedRandomSelection(adDistributionStoreMock);
+
+        var testCandidates = new ArrayList<AdDistribution>(List.of(
+                new AdDistributionMock("test1", 0.5d, 3l, 2l),
+                new AdDistributionMock("test2", 0.01d, 3l, 2l),
+                new AdDistributionMock("test3", 0.99d, 3l, 2l)));
+
+        // WHEN
+        List<AdDistribution> actualSelection = sut.doSelect(testCandidates, 5);
+
+        // THEN
+        assertEquals(3, actualSelection.size(), "Expected every candidate to be selected");
+        assertEquals(3, actualSelection.stream().map(AdDistribution::aid).distinct().count(), "Expected distinct selections");
+        assertTrue(testCandidates.isEmpty(), "Expected selected candidates to be removed");
+
+    }
+
     record AdDistributionMock(String aid, double priority, long quota, long remainingQuota) implements AdDistribution {
         @Override
         public String toString() {
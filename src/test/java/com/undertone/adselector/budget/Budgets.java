@@ -0,0 +1,83 @@
+package com.undertone.adselector.budget;
+
+import com.undertone.adselector.budget.CostMeter.Cost;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Properties;
+
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Per operation allocation and CPU budgets, defined by {@code budgets.properties} as
+ * {@code budget.<operation>.bytes} and {@code budget.<operation>.cpu.nanos}.
+ * <ul>
+ *     <li>Every budget could be overridden by a system property of the same name</li>
+ *     <li>CPU budgets are multiplied by {@code budget.cpu.scale} (1.0 by default), accounting for slower machines</li>
+ *     <li>CPU budgets are only enforced if {@code budget.cpu.enabled=true} (see {@code cpu-budgets} profile), as they
+ *     depend on the machine running tests, allocation budgets are always enforced</li>
+ * </ul>
+ */
+@Slf4j
+public final class Budgets {
+
+    private static final String BUDGETS_RESOURCE = "/budgets.properties";
+
+    private final Properties budgets;
+
+    private Budgets(Properties budgets) {
+        this.budgets = budgets;
+    }
+
+    public static Budgets load() {
+        try (InputStream in = requireNonNull(Budgets.class.getResourceAsStream(BUDGETS_RESOURCE),
+                "Missing budgets: " + BUDGETS_RESOURCE)) {
+            final Properties budgets = new Properties();
+            budgets.load(in);
+            return new Budgets(budgets);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Failed reading budgets: " + BUDGETS_RESOURCE, ioe);
+        }
+    }
+
+    /**
+     * Fails if measured cost of given operation exceeds either of its budgets
+     */
+    public void assertWithin(String operation, Cost cost) {
+        final long bytesBudget = budget(operation + ".bytes");
+        final boolean cpuEnabled = Boolean.parseBoolean(setting("budget.cpu.enabled", "false"));
+        final long cpuBudget = Math.round(budget(operation + ".cpu.nanos")
+                * Double.parseDouble(setting("budget.cpu.scale", "1.0")));
+
+        log.info("Operation: {} allocated: {} bytes (budget: {}), consumed: {} CPU ns (budget: {}{}) per operation",
+                operation, cost.bytesPerOperation(), bytesBudget, cost.cpuNanosPerOperation(), cpuBudget,
+                    cpuEnabled ? "" : ", not enforced");
+
+        if (cost.bytesPerOperation() > bytesBudget) {
+            fail(format("Operation: %s allocated: %d bytes per operation, exceeding its budget of: %d bytes",
+                    operation, cost.bytesPerOperation(), bytesBudget));
+        }
+        if (cpuEnabled && cost.cpuNanosPerOperation() > cpuBudget) {
+            fail(format("Operation: %s consumed: %d CPU ns per operation, exceeding its budget of: %d ns",
+                    operation, cost.cpuNanosPerOperation(), cpuBudget));
+        }
+    }
+
+    private long budget(String name) {
+        final String key = "budget." + name;
+        final String value = setting(key, budgets.getProperty(key));
+        if (value == null) {
+            throw new IllegalArgumentException("Undefined budget: " + key);
+        }
+        return Long.parseLong(value.trim());
+    }
+
+    private static String setting(String key, String defaultValue) {
+        return System.getProperty(key, defaultValue);
+    }
+
+}
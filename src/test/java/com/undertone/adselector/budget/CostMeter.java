@@ -0,0 +1,98 @@
+package com.undertone.adselector.budget;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Measures bytes allocated and CPU time consumed per operation by the calling thread, once operation got warmed up.
+ * Warmup lasts for a minimal number of operations and a minimal duration, so cheap operations are also given enough
+ * time for background JIT compilation to complete.
+ * Operations are expected to complete synchronously on the calling thread, e.g. reactive pipelines backed by stubs
+ * and blocked upon, otherwise work done by other threads goes unaccounted for.
+ * Each round measures a batch of operations, medians over rounds are reported so outlier rounds (GC, preemption)
+ * are ignored.
+ */
+public final class CostMeter {
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static final int DEFAULT_WARMUP_OPERATIONS = 50_000;
+    private static final Duration DEFAULT_WARMUP_DURATION = Duration.ofSeconds(1);
+    private static final int DEFAULT_ROUNDS = 9;
+    private static final int DEFAULT_OPERATIONS_PER_ROUND = 5_000;
+
+    /**
+     * Keeps results reachable, so computing them could not be optimized away
+     */
+    private static volatile Object sink;
+
+    private final int warmupOperations;
+    private final long warmupNanos;
+    private final int rounds;
+    private final int operationsPerRound;
+
+    private CostMeter(int warmupOperations, Duration warmupDuration, int rounds, int operationsPerRound) {
+        this.warmupOperations = warmupOperations;
+        this.warmupNanos = warmupDuration.toNanos();
+        this.rounds = rounds;
+        this.operationsPerRound = operationsPerRound;
+    }
+
+    public static CostMeter defaults() {
+        return new CostMeter(DEFAULT_WARMUP_OPERATIONS, DEFAULT_WARMUP_DURATION, DEFAULT_ROUNDS,
+                DEFAULT_OPERATIONS_PER_ROUND);
+    }
+
+    public static CostMeter of(int warmupOperations, Duration warmupDuration, int rounds, int operationsPerRound) {
+        requireNonNull(warmupDuration, "Argument warmupDuration must not be null");
+        if (warmupOperations < 0 || warmupDuration.isNegative() || rounds < 1 || operationsPerRound < 1) {
+            throw new IllegalArgumentException("Expected non negative warmup and positive rounds and operations per round");
+        }
+        return new CostMeter(warmupOperations, warmupDuration, rounds, operationsPerRound);
+    }
+
+    public Cost measure(Supplier<?> operation) {
+        requireNonNull(operation, "Argument operation must not be null");
+        if (!THREADS.isThreadAllocatedMemorySupported() || !THREADS.isCurrentThreadCpuTimeSupported()) {
+            throw new IllegalStateException("Thread allocation and CPU time counters are not supported by this JVM");
+        }
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+        THREADS.setThreadCpuTimeEnabled(true);
+
+        final long warmupStart = System.nanoTime();
+        for (long i = 0; i < warmupOperations || System.nanoTime() - warmupStart < warmupNanos; i++) {
+            sink = operation.get();
+        }
+
+        final long[] bytes = new long[rounds];
+        final long[] cpuNanos = new long[rounds];
+        for (int round = 0; round < rounds; round++) {
+            final long startBytes = THREADS.getCurrentThreadAllocatedBytes();
+            final long startCpu = THREADS.getCurrentThreadCpuTime();
+            for (int i = 0; i < operationsPerRound; i++) {
+                sink = operation.get();
+            }
+            cpuNanos[round] = THREADS.getCurrentThreadCpuTime() - startCpu;
+            bytes[round] = THREADS.getCurrentThreadAllocatedBytes() - startBytes;
+        }
+
+        return new Cost(median(bytes) / operationsPerRound, median(cpuNanos) / operationsPerRound);
+    }
+
+    private static long median(long[] values) {
+        final long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    /**
+     * Median bytes allocated and CPU nanoseconds consumed per operation
+     */
+    public record Cost(long bytesPerOperation, long cpuNanosPerOperation) {}
+
+}
@@ -0,0 +1,172 @@
+package com.undertone.adselector.infrastructure.in;
+
+import com.undertone.adselector.application.ports.in.BlockingSelectAdUseCase;
+import com.undertone.adselector.application.ports.in.SelectAdUseCase;
+import com.undertone.adselector.application.ports.in.UseCaseException.RejectionException;
+import com.undertone.adselector.application.ports.out.IdempotencyStore;
+import com.undertone.adselector.model.AdBudgetPlan;
+import com.undertone.adselector.model.Population;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@WebFluxTest(AdSelectorController.class)
+@Import({SimpleMeterRegistry.class, SelectionExecution.class, IdempotentSelections.class})
+class AdSelectorControllerTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @MockBean
+    private SelectAdUseCase selectAdUseCaseMock;
+
+    @MockBean
+    private BlockingSelectAdUseCase blockingSelectAdUseCaseMock;
+
+    @MockBean
+    private IdempotencyStore idempotencyStoreMock;
+
+    @Test
+    @DisplayName("Given JSON selection request, when posted, then decode it into raw population and respond with selection")
+    void selectAd_givenJsonRequest_whenPosted_thenDecodeRawPopulationAndRespond_positive() {
+
+        // GIVEN
+        when(selectAdUseCaseMock.selectAd(any(Population.class))).thenAnswer(invocation ->
+                Mono.just(Optional.of(invocation.getArgument(0) instanceof RawJsonPopulation ? "raw" : "other")));
+
+        // WHEN / THEN
+        webTestClient.post().uri("/api/v1/selectAd")
+                .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue("{ \"q\": [\"test0\", \"test1\"] }")
+                .exchange()
+                    .expectStatus().isOk()
+                        .expectBody().jsonPath("$.a").isEqualTo("raw");
+
+    }
+
+    @Test
+    @DisplayName("Given malformed selection request, when posted, then respond with bad request")
+    void selectAd_givenMalformedRequest_whenPosted_thenRespondBadRequest_negative() {
+
+        // GIVEN
+        when(selectAdUseCaseMock.selectAd(any(Population.class))).thenAnswer(invocation ->
+                Mono.fromSupplier(() -> invocation.<Population>getArgument(0).resolve(AdBudgetPlan.EMPTY))
+                        .map(ignored -> Optional.<String>empty()));
+
+        // WHEN / THEN
+        webTestClient.post().uri("/api/v1/selectAd")
+                .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue("{ \"q\": [\"test0\"")
+                .exchange()
+                    .expectStatus().isBadRequest();
+
+    }
+
+    @Test
+    @DisplayName("Given binary selection request, when posted accepting binary, then respond with binary selections")
+    void selectAds_givenBinaryRequest_whenPostedAcceptingBinary_thenRespondBinary_positive() {
+
+        // GIVEN
+        when(selectAdUseCaseMock.selectAds(any(Population.class), eq(2))).thenAnswer(invocation ->
+                Mono.just(invocation.getArgument(0) instanceof BinarySelectionRequest
+                        ? List.of("test1", "tést3") : List.<String>of()));
+
+        // WHEN / THEN
+        webTestClient.post().uri("/api/v1/selectAds")
+                .contentType(BinarySelection.MEDIA_TYPE)
+                    .accept(BinarySelection.MEDIA_TYPE)
+                        .bodyValue(BinarySelectionRequestTest.aidsPayload(2, List.of("test1", "tést3"), List.of()))
+                .exchange()
+                    .expectStatus().isOk()
+                        .expectHeader().contentType(BinarySelection.MEDIA_TYPE)
+                            .expectBody(byte[].class).isEqualTo(new byte[]{
+                                    0, 2, 0, 5, 't', 'e', 's', 't', '1', 0, 6, 't', (byte) 0xc3, (byte) 0xa9, 's', 't', '3'});
+
+    }
+
+    @Test
+    @DisplayName("Given binary selection request of stale plan slots, when posted, then respond with conflict")
+    void selectAd_givenStalePlanSlots_whenPosted_thenRespondConflict_negative() {
+
+        // GIVEN
+        when(selectAdUseCaseMock.selectAd(any(Population.class))).thenAnswer(invocation ->
+                Mono.fromSupplier(() -> invocation.<Population>getArgument(0).resolve(AdBudgetPlan.EMPTY))
+                        .map(ignored -> Optional.<String>empty()));
+
+        // WHEN / THEN
+        webTestClient.post().uri("/api/v1/selectAd")
+                .contentType(BinarySelection.MEDIA_TYPE)
+                    .bodyValue(BinarySelectionRequestTest.slotsPayload(1, 7L, new int[]{0}))
+                .exchange()
+                    .expectStatus().isEqualTo(HttpStatus.CONFLICT);
+
+    }
+
+    @Test
+    @DisplayName("Given request retried under same idempotency key, when posted, then replay selection without selecting again")
+    void selectAds_givenRetryUnderSameIdempotencyKey_whenPosted_thenReplaySelection_positive() {
+
+        // GIVEN
+        var selections = new AtomicInteger();
+        when(selectAdUseCaseMock.selectAds(any(Population.class), eq(2))).thenAnswer(invocation ->
+                Mono.fromSupplier(() -> List.of("test" + selections.getAndIncrement(), "test9")));
+
+        // WHEN / THEN
+        for (int attempt = 0; attempt < 2; attempt++) {
+            webTestClient.post().uri("/api/v1/selectAds")
+                    .contentType(MediaType.APPLICATION_JSON)
+                        .header("Idempotency-Key", "testKey")
+                            .bodyValue("{ \"q\": [\"test0\", \"test9\"], \"k\": 2 }")
+                    .exchange()
+                        .expectStatus().isOk()
+                            .expectBody().jsonPath("$.a[0]").isEqualTo("test0");
+        }
+        assertEquals(1, selections.get());
+
+        // A different key selects again
+        webTestClient.post().uri("/api/v1/selectAds")
+                .contentType(MediaType.APPLICATION_JSON)
+                    .header("Idempotency-Key", "otherKey")
+                        .bodyValue("{ \"q\": [\"test0\", \"test9\"], \"k\": 2 }")
+                .exchange()
+                    .expectStatus().isOk()
+                        .expectBody().jsonPath("$.a[0]").isEqualTo("test1");
+
+    }
+
+    @Test
+    @DisplayName("Given count exceeding maximum, when posted, then respond with bad request without selecting")
+    void selectAds_givenCountExceedingMaximum_whenPosted_thenRespondBadRequest_negative() {
+
+        // WHEN / THEN
+        webTestClient.post().uri("/api/v1/selectAds")
+                .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue("{ \"q\": [\"test0\"], \"k\": 2147483647 }")
+                .exchange()
+                    .expectStatus().isBadRequest();
+
+        verify(selectAdUseCaseMock, never()).selectAds(any(Population.class), anyInt());
+
+    }
+
+}
@@ -0,0 +1,166 @@
+package com.undertone.adselector.infrastructure.in;
+
+import com.undertone.adselector.infrastructure.in.AdaptiveConcurrencyLimit.Priority;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionControlFilterTest {
+
+    private static final WebFilterChain NEVER_COMPLETING_CHAIN = exchange -> Mono.never();
+
+    @Test
+    @DisplayName("Given in-flight requests at sheddable share of limit, when requests arrive, then shed sheddable ones only")
+    void filter_givenInFlightAtSheddableShare_whenRequestsArrive_thenShedSheddableOnly_positive() {
+
+        // GIVEN
+        var testLimit = new AdaptiveConcurrencyLimit(10, 1, 100, Duration.ofMillis(50));
+        var testMeterRegistry = new SimpleMeterRegistry();
+        var sut = new AdmissionControlFilter(true, testLimit, AdmissionControlFilter.DEFAULT_PRIORITY_HEADER,
+                HttpStatus.SERVICE_UNAVAILABLE, testMeterRegistry);
+
+        List<Disposable> inFlight = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            inFlight.add(sut.filter(selectionExchange(null), NEVER_COMPLETING_CHAIN).subscribe());
+        }
+
+        // WHEN
+        MockServerWebExchange actualSheddable = selectionExchange("sheddable");
+        sut.filter(actualSheddable, NEVER_COMPLETING_CHAIN).block();
+
+        MockServerWebExchange actualCritical = selectionExchange("CRITICAL");
+        inFlight.add(sut.filter(actualCritical, NEVER_COMPLETING_CHAIN).subscribe());
+
+        // THEN
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, actualSheddable.getResponse().getStatusCode());
+        assertEquals("1", actualSheddable.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        assertNull(actualCritical.getResponse().getStatusCode(), "Expected critical request to be admitted");
+        assertEquals(6, testLimit.inFlight());
+
+        assertEquals(1d, testMeterRegistry.get("adselector.admission.rejections")
+                .tag("priority", "sheddable").counter().count());
+        assertEquals(0d, testMeterRegistry.get("adselector.admission.rejections")
+                .tag("priority", "critical").counter().count());
+        assertEquals(6d, testMeterRegistry.get("adselector.admission.inflight").gauge().value());
+
+        inFlight.forEach(Disposable::dispose);
+        assertEquals(0, testLimit.inFlight(), "Expected cancelled requests to be released");
+
+    }
+
+    @Test
+    @DisplayName("Given admitted requests, when completed within or beyond latency threshold, then increase or decrease limit")
+    void release_givenAdmittedRequests_whenCompleted_thenAdaptLimit_positive() {
+
+        // GIVEN
+        var sut = new AdaptiveConcurrencyLimit(10, 4, 12, Duration.ofMillis(50));
+        long fastNanos = Duration.ofMillis(5).toNanos();
+        long slowNanos = Duration.ofMillis(500).toNanos();
+        long testNanos = 0L;
+
+        // WHEN / THEN
+        assertTrue(sut.tryAcquire(Priority.NORMAL));
+        sut.release(testNanos, testNanos += fastNanos, false);
+        assertEquals(10, sut.limit(), "Expected limit to hold while mostly unused");
+
+        for (int i = 0; i < 9; i++) {
+            assertTrue(sut.tryAcquire(Priority.NORMAL));
+        }
+        assertFalse(sut.tryAcquire(Priority.NORMAL), "Expected normal priority to be limited to its share");
+        for (int i = 0; i < 9; i++) {
+            sut.release(testNanos, testNanos += fastNanos, false);
+        }
+        assertEquals(12, sut.limit(), "Expected limit to grow up to its max while utilized");
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(sut.tryAcquire(Priority.NORMAL));
+            sut.release(testNanos, testNanos += slowNanos, false);
+        }
+        assertEquals(8, sut.limit(), "Expected multiplicative decrease for slow completions");
+
+        for (int i = 0; i < 20; i++) {
+            assertTrue(sut.tryAcquire(Priority.CRITICAL));
+            sut.release(testNanos, testNanos += fastNanos, true);
+        }
+        assertEquals(4, sut.limit(), "Expected limit to shrink down to its min for dropped requests");
+
+    }
+
+    @Test
+    @DisplayName("Given requests admitted together, when all complete beyond latency threshold, then decrease limit once")
+    void release_givenRequestsAdmittedTogether_whenAllSlow_thenDecreaseLimitOnce_negative() {
+
+        // GIVEN
+        var sut = new AdaptiveConcurrencyLimit(100, 4, 100, Duration.ofMillis(50));
+        long slowNanos = Duration.ofMillis(500).toNanos();
+        long testAdmittedNanos = 1_000L;
+        for (int i = 0; i < 50; i++) {
+            assertTrue(sut.tryAcquire(Priority.NORMAL));
+        }
+
+        // WHEN
+        for (int i = 0; i < 50; i++) {
+            sut.release(testAdmittedNanos, testAdmittedNanos + slowNanos + i, false);
+        }
+
+        // THEN
+        assertEquals(90, sut.limit(), "Expected a single decrease per round trip");
+        assertTrue(sut.tryAcquire(Priority.NORMAL));
+        sut.release(testAdmittedNanos + slowNanos + 50, testAdmittedNanos + 2 * slowNanos, true);
+        assertEquals(81, sut.limit(), "Expected requests admitted after decrease to decrease limit again");
+
+    }
+
+    @Test
+    @DisplayName("Given exhausted limit, when non API or no-fill configured requests arrive, then pass through or answer 204")
+    void filter_givenExhaustedLimit_whenRequestsArrive_thenPassThroughNonApiAndAnswerNoFill_negative() {
+
+        // GIVEN
+        var testLimit = new AdaptiveConcurrencyLimit(1, 1, 1, Duration.ofMillis(50));
+        var sut = new AdmissionControlFilter(true, testLimit, AdmissionControlFilter.DEFAULT_PRIORITY_HEADER,
+                HttpStatus.NO_CONTENT, new SimpleMeterRegistry());
+        Disposable inFlight = sut.filter(selectionExchange(null), NEVER_COMPLETING_CHAIN).subscribe();
+
+        AtomicInteger actualPassedThrough = new AtomicInteger();
+        WebFilterChain countingChain = exchange -> Mono.fromRunnable(actualPassedThrough::incrementAndGet);
+
+        // WHEN
+        MockServerWebExchange actualHealth = MockServerWebExchange.from(MockServerHttpRequest.get("/actuator/health"));
+        sut.filter(actualHealth, countingChain).block();
+
+        MockServerWebExchange actualSelection = selectionExchange("critical");
+        sut.filter(actualSelection, countingChain).block();
+
+        // THEN
+        assertEquals(1, actualPassedThrough.get(), "Expected only non API request to pass through");
+        assertNull(actualHealth.getResponse().getStatusCode());
+        assertEquals(HttpStatus.NO_CONTENT, actualSelection.getResponse().getStatusCode());
+        assertNull(actualSelection.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+
+        inFlight.dispose();
+
+    }
+
+    private static MockServerWebExchange selectionExchange(String priority) {
+        MockServerHttpRequest.BodyBuilder request = MockServerHttpRequest.post("/api/v1/selectAd");
+        if (priority != null) {
+            request.header(AdmissionControlFilter.DEFAULT_PRIORITY_HEADER, priority);
+        }
+        return MockServerWebExchange.from(request);
+    }
+
+}
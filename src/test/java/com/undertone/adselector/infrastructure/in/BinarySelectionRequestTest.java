@@ -0,0 +1,151 @@
+package com.undertone.adselector.infrastructure.in;
+
+import com.undertone.adselector.application.ports.in.UseCaseException.RejectionException;
+import com.undertone.adselector.infrastructure.in.RawJsonPopulationTest.AdBudgetMock;
+import com.undertone.adselector.infrastructure.in.RawJsonPopulationTest.AdBudgetPlanMock;
+import com.undertone.adselector.model.AdBudget;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinarySelectionRequestTest {
+
+    private static final DefaultDataBufferFactory BUFFER_FACTORY = DefaultDataBufferFactory.sharedInstance;
+
+    private final AdBudgetPlanMock plan = new AdBudgetPlanMock(
+            List.of(new AdBudgetMock("test0", 0.2, 10),
+                    new AdBudgetMock("test1", 0.4, 10),
+                    new AdBudgetMock("test2", 0.6, 10),
+                    new AdBudgetMock("tést3", 0.8, 10)),
+            Map.of("segment1", new int[]{1, 2}));
+
+    @Test
+    @DisplayName("Given payload listing aids and segments, when resolved, then return matching entries without duplicates")
+    void resolve_givenPayloadListingAidsAndSegments_whenResolved_thenReturnMatchingEntries_positive() {
+
+        // GIVEN
+        var sut = new BinarySelectionRequest(chunksOf(aidsPayload(2,
+                List.of("test0", "unknown", "tést3", "test0", "test1"), List.of("segment1"))));
+
+        // WHEN
+        List<AdBudget> actualPopulation = sut.resolve(plan);
+
+        // THEN
+        assertEquals(2, sut.count());
+        assertEquals(List.of("test0", "tést3", "test1", "test2"), aidsOf(actualPopulation));
+
+    }
+
+    @Test
+    @DisplayName("Given payload split between buffers, when resolved, then return same entries")
+    void resolve_givenPayloadSplitBetweenBuffers_whenResolved_thenReturnSameEntries_positive() {
+
+        // GIVEN
+        byte[] payload = slotsPayload(1, 0L, new int[]{2, 0, 42, -1});
+        var sut = new BinarySelectionRequest(List.of(
+                BUFFER_FACTORY.wrap(Arrays.copyOfRange(payload, 0, 5)),
+                BUFFER_FACTORY.wrap(Arrays.copyOfRange(payload, 5, payload.length))));
+
+        // WHEN
+        List<AdBudget> actualPopulation = sut.resolve(plan);
+
+        // THEN
+        assertEquals(List.of("test2", "test0"), aidsOf(actualPopulation));
+
+    }
+
+    @Test
+    @DisplayName("Given slots of another slot epoch, when resolved, then reject as stale")
+    void resolve_givenSlotsOfAnotherSlotEpoch_whenResolved_thenRejectAsStale_negative() {
+
+        // GIVEN
+        var sut = new BinarySelectionRequest(chunksOf(slotsPayload(1, 7L, new int[]{0})));
+
+        // WHEN / THEN
+        assertThrows(BinarySelectionRequest.StalePlanException.class, () -> sut.resolve(plan));
+
+    }
+
+    @Test
+    @DisplayName("Given malformed payload, when constructed or resolved, then reject")
+    void resolve_givenMalformedPayload_whenResolved_thenReject_negative() {
+
+        // GIVEN
+        byte[] payload = aidsPayload(1, List.of("test0", "test1"), List.of());
+        var truncated = new BinarySelectionRequest(chunksOf(Arrays.copyOf(payload, payload.length - 1)));
+
+        // WHEN / THEN
+        assertThrows(RejectionException.class, () -> truncated.resolve(plan));
+        assertThrows(RejectionException.class, () -> new BinarySelectionRequest(chunksOf(new byte[]{9, 0, 1})));
+        assertThrows(RejectionException.class, () -> new BinarySelectionRequest(chunksOf(new byte[]{2, 0, 1, 0})));
+
+    }
+
+    static byte[] aidsPayload(int count, List<String> aids, List<String> segmentIds) {
+        return payload(out -> {
+            out.writeByte(BinarySelection.AIDS_FORMAT);
+            out.writeShort(count);
+            out.writeShort(aids.size());
+            for (String aid : aids) {
+                writeString(out, aid);
+            }
+            out.writeShort(segmentIds.size());
+            for (String segmentId : segmentIds) {
+                writeString(out, segmentId);
+            }
+        });
+    }
+
+    static byte[] slotsPayload(int count, long slotEpoch, int[] slots) {
+        return payload(out -> {
+            out.writeByte(BinarySelection.SLOTS_FORMAT);
+            out.writeShort(count);
+            out.writeLong(slotEpoch);
+            out.writeShort(slots.length);
+            for (int slot : slots) {
+                out.writeInt(slot);
+            }
+        });
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] payload(PayloadWriter writer) {
+        try {
+            var bytes = new ByteArrayOutputStream();
+            writer.write(new DataOutputStream(bytes));
+            return bytes.toByteArray();
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+    private static List<DataBuffer> chunksOf(byte[] payload) {
+        return List.of(BUFFER_FACTORY.wrap(payload));
+    }
+
+    private static List<String> aidsOf(List<AdBudget> population) {
+        return population.stream().map(AdBudget::aid).toList();
+    }
+
+    interface PayloadWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+}
@@ -0,0 +1,82 @@
+package com.undertone.adselector.infrastructure.in;
+
+import com.undertone.adselector.model.Deadline;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeadlineFilterTest {
+
+    @Test
+    @DisplayName("Given deadline header, when filtering selection request, then put capped deadline into context")
+    void filter_givenDeadlineHeader_whenFiltering_thenPutCappedDeadlineIntoContext_positive() {
+
+        // GIVEN
+        var sut = new DeadlineFilter(DeadlineFilter.DEFAULT_DEADLINE_HEADER, Duration.ZERO, Duration.ofMillis(100));
+        AtomicReference<Optional<Deadline>> actualDeadline = new AtomicReference<>();
+
+        // WHEN
+        sut.filter(selectionExchange("40"), capturing(actualDeadline)).block();
+        Duration actualRemaining = actualDeadline.get().orElseThrow().remaining();
+
+        sut.filter(selectionExchange("60000"), capturing(actualDeadline)).block();
+        Duration actualCappedRemaining = actualDeadline.get().orElseThrow().remaining();
+
+        // THEN
+        assertTrue(actualRemaining.compareTo(Duration.ofMillis(40)) <= 0 && !actualRemaining.isZero(),
+                "Expected remaining time within stated budget, but it was: " + actualRemaining);
+        assertTrue(actualCappedRemaining.compareTo(Duration.ofMillis(100)) <= 0,
+                "Expected budget to be capped by max, but it was: " + actualCappedRemaining);
+
+    }
+
+    @Test
+    @DisplayName("Given missing or malformed deadline header, when filtering, then fall back to default budget if any")
+    void filter_givenMissingOrMalformedHeader_whenFiltering_thenUseDefaultBudget_negative() {
+
+        // GIVEN
+        var sutWithoutDefault = new DeadlineFilter();
+        var sutWithDefault = new DeadlineFilter(DeadlineFilter.DEFAULT_DEADLINE_HEADER,
+                Duration.ofMillis(30), Duration.ofSeconds(1));
+        AtomicReference<Optional<Deadline>> actualWithoutDefault = new AtomicReference<>();
+        AtomicReference<Optional<Deadline>> actualWithDefault = new AtomicReference<>();
+        AtomicReference<Optional<Deadline>> actualNonApi = new AtomicReference<>();
+
+        // WHEN
+        sutWithoutDefault.filter(selectionExchange(null), capturing(actualWithoutDefault)).block();
+        sutWithDefault.filter(selectionExchange("soon"), capturing(actualWithDefault)).block();
+        sutWithDefault.filter(MockServerWebExchange.from(MockServerHttpRequest.get("/actuator/health")),
+                capturing(actualNonApi)).block();
+
+        // THEN
+        assertTrue(actualWithoutDefault.get().isEmpty(), "Expected no deadline without header nor default");
+        assertTrue(actualWithDefault.get().orElseThrow().remaining().compareTo(Duration.ofMillis(30)) <= 0);
+        assertTrue(actualNonApi.get().isEmpty(), "Expected no deadline for non API requests");
+
+    }
+
+    private static WebFilterChain capturing(AtomicReference<Optional<Deadline>> captured) {
+        return exchange -> Mono.deferContextual(context -> {
+            captured.set(context.getOrEmpty(Deadline.class));
+            return Mono.empty();
+        });
+    }
+
+    private static MockServerWebExchange selectionExchange(String deadlineMillis) {
+        MockServerHttpRequest.BodyBuilder request = MockServerHttpRequest.post("/api/v1/selectAd");
+        if (deadlineMillis != null) {
+            request.header(DeadlineFilter.DEFAULT_DEADLINE_HEADER, deadlineMillis);
+        }
+        return MockServerWebExchange.from(request);
+    }
+
+}
@@ -0,0 +1,104 @@
+package com.undertone.adselector.infrastructure.in;
+
+import com.undertone.adselector.infrastructure.out.FileBackedAdBudgetPlanStore;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlightRecordingEndpointTest {
+
+    @Test
+    @SneakyThrows
+    @DisplayName("Given recording, when plan is loaded while recording, then dump contains plan load event")
+    void record_givenRecording_whenPlanLoaded_thenDumpContainsPlanLoadEvent_positive(@TempDir Path tempDir) {
+
+        // GIVEN
+        Path testPlanFile = Files.writeString(tempDir.resolve("plan.json"), """
+                {
+                  "Ads": [
+                    {"aid": "test1", "priority": 0.2, "quota": 100},
+                    {"aid": 12, "priority": 0.2, "quota": 100}
+                  ]
+                }
+                """);
+        var sut = new FlightRecordingEndpoint(tempDir.resolve("dumps"), Duration.ofMinutes(1));
+
+        // WHEN
+        WebEndpointResponse<Map<String, Object>> actualResponse = sut.record(Duration.ofSeconds(30));
+        FileBackedAdBudgetPlanStore.builder(testPlanFile).build();
+        Map<String, Object> actualStatus = sut.stop();
+
+        // THEN
+        assertEquals(WebEndpointResponse.STATUS_OK, actualResponse.getStatus());
+        assertEquals("recording", actualResponse.getBody().get("state"));
+        assertEquals("idle", actualStatus.get("state"), "Expected recording to be stopped");
+
+        Path actualDump = Path.of((String) actualStatus.get("lastDump"));
+        List<RecordedEvent> actualPlanLoads = RecordingFile.readAllEvents(actualDump).stream()
+                .filter(event -> event.getEventType().getName().equals("com.undertone.adselector.PlanLoad"))
+                    .toList();
+
+        assertEquals(1, actualPlanLoads.size(), "Expected single plan load event");
+        RecordedEvent actualPlanLoad = actualPlanLoads.get(0);
+        assertTrue(actualPlanLoad.getBoolean("succeeded"));
+        assertEquals(1L, actualPlanLoad.getLong("generation"));
+        assertEquals(1, actualPlanLoad.getInt("ads"));
+        assertEquals(1, actualPlanLoad.getInt("skippedAds"));
+
+    }
+
+    @Test
+    @DisplayName("Given ongoing recording or invalid duration, when recording, then reject without starting another")
+    void record_givenOngoingRecordingOrInvalidDuration_whenRecording_thenReject_negative(@TempDir Path tempDir) {
+
+        // GIVEN
+        var sut = new FlightRecordingEndpoint(tempDir, Duration.ofMinutes(1));
+
+        // WHEN
+        WebEndpointResponse<Map<String, Object>> actualTooLong = sut.record(Duration.ofMinutes(2));
+        WebEndpointResponse<Map<String, Object>> actualFirst = sut.record(Duration.ofSeconds(30));
+        WebEndpointResponse<Map<String, Object>> actualSecond = sut.record(Duration.ofSeconds(30));
+
+        // THEN
+        assertEquals(WebEndpointResponse.STATUS_BAD_REQUEST, actualTooLong.getStatus());
+        assertEquals(WebEndpointResponse.STATUS_OK, actualFirst.getStatus());
+        assertEquals(409, actualSecond.getStatus());
+        assertEquals(actualFirst.getBody().get("name"), actualSecond.getBody().get("name"),
+                "Expected ongoing recording to be reported");
+
+        sut.destroy();
+
+    }
+
+    @Test
+    @SneakyThrows
+    @DisplayName("Given ongoing recording, when endpoint is destroyed, then stop and dump recording")
+    void destroy_givenOngoingRecording_whenDestroyed_thenDumpRecording_positive(@TempDir Path tempDir) {
+
+        // GIVEN
+        var sut = new FlightRecordingEndpoint(tempDir, Duration.ofMinutes(1));
+        sut.record(Duration.ofSeconds(30));
+
+        // WHEN
+        sut.destroy();
+
+        // THEN
+        Map<String, Object> actualStatus = sut.status();
+        assertEquals("idle", actualStatus.get("state"));
+        assertTrue(Files.exists(Path.of((String) actualStatus.get("lastDump"))), "Expected recording to be dumped");
+
+    }
+
+}
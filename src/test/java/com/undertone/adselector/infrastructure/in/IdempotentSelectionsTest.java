@@ -0,0 +1,115 @@
+package com.undertone.adselector.infrastructure.in;
+
+import com.undertone.adselector.application.ports.in.UseCaseException.RejectionException;
+import com.undertone.adselector.application.ports.out.IdempotencyStore;
+import com.undertone.adselector.application.ports.out.InfrastructureException.StoreException.OperationFailedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.*;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class IdempotentSelectionsTest {
+
+    private AutoCloseable closeable;
+
+    @Mock
+    private IdempotencyStore idempotencyStoreMock;
+
+    @BeforeEach
+    public void before() {
+        closeable = MockitoAnnotations.openMocks(this);
+    }
+
+    @AfterEach
+    public void after() throws Exception {
+        closeable.close();
+    }
+
+    @Test
+    @DisplayName("Given retry while original selection is in flight, when original completes, then both get the same selection")
+    void select_givenRetryWhileInFlight_whenOriginalCompletes_thenShareSelection_positive() {
+
+        // GIVEN
+        var meterRegistry = new SimpleMeterRegistry();
+        var sut = new IdempotentSelections(idempotencyStoreMock, true, 100, Duration.ofMinutes(1), false, meterRegistry);
+
+        var selections = new AtomicInteger();
+        Sinks.One<List<String>> pendingSelection = Sinks.one();
+
+        // WHEN
+        var original = sut.select("testKey", () -> {
+            selections.incrementAndGet();
+            return pendingSelection.asMono();
+        }).toFuture();
+        var retry = sut.select("testKey", () -> {
+            selections.incrementAndGet();
+            return Mono.just(List.of("other"));
+        }).toFuture();
+
+        pendingSelection.tryEmitValue(List.of("test0", "test1"));
+
+        // THEN
+        assertEquals(List.of("test0", "test1"), original.join());
+        assertEquals(List.of("test0", "test1"), retry.join());
+        assertEquals(1, selections.get());
+        assertEquals(1d, meterRegistry.get("adselector.idempotency.lookups").tag("outcome", "local").counter().count());
+        assertEquals(2d, meterRegistry.get("adselector.idempotency.quota.saved").counter().count());
+        verifyNoInteractions(idempotencyStoreMock);
+
+    }
+
+    @Test
+    @DisplayName("Given selection recorded by shared store, when selecting, then replay it without selecting")
+    void select_givenSelectionRecordedBySharedStore_whenSelecting_thenReplay_positive() {
+
+        // GIVEN
+        var meterRegistry = new SimpleMeterRegistry();
+        var sut = new IdempotentSelections(idempotencyStoreMock, true, 100, Duration.ofMinutes(1), true, meterRegistry);
+
+        // WHEN
+        when(idempotencyStoreMock.fetchSelection(eq("sharedKey"))).thenReturn(Mono.just(List.of("test3")));
+        when(idempotencyStoreMock.fetchSelection(eq("newKey"))).thenReturn(Mono.error(new OperationFailedException("test")));
+        when(idempotencyStoreMock.storeSelection(anyString(), anyList(), any())).thenReturn(Mono.empty());
+
+        List<String> actualShared = sut.select("sharedKey", () -> Mono.error(new IllegalStateException("test"))).block();
+        List<String> actualNew = sut.select("newKey", () -> Mono.just(List.of("test4"))).block();
+
+        // THEN
+        assertEquals(List.of("test3"), actualShared);
+        assertEquals(List.of("test4"), actualNew);
+        verify(idempotencyStoreMock, times(1)).storeSelection(eq("newKey"), eq(List.of("test4")), eq(Duration.ofMinutes(1)));
+        assertEquals(1d, meterRegistry.get("adselector.idempotency.lookups").tag("outcome", "shared").counter().count());
+        assertEquals(1d, meterRegistry.get("adselector.idempotency.lookups").tag("outcome", "miss").counter().count());
+
+    }
+
+    @Test
+    @DisplayName("Given failed selection or oversized key, when selecting, then do not keep failure and reject key")
+    void select_givenFailedSelectionOrOversizedKey_whenSelecting_thenSelectAgainOrReject_negative() {
+
+        // GIVEN
+        var sut = new IdempotentSelections(idempotencyStoreMock);
+
+        // WHEN
+        assertThrows(IllegalStateException.class, () ->
+                sut.select("testKey", () -> Mono.error(new IllegalStateException("test"))).block());
+        List<String> actualRetry = sut.select("testKey", () -> Mono.just(List.of("test0"))).block();
+
+        // THEN
+        assertEquals(List.of("test0"), actualRetry);
+        assertThrows(RejectionException.class, () ->
+                sut.select("k".repeat(IdempotentSelections.MAX_KEY_LENGTH + 1), () -> Mono.just(List.of())).block());
+
+    }
+
+}
@@ -0,0 +1,122 @@
+package com.undertone.adselector.infrastructure.in;
+
+import com.undertone.adselector.application.ports.out.AdBudgetPlanStore;
+import com.undertone.adselector.application.ports.out.InfrastructureException.StoreException.OperationFailedException;
+import com.undertone.adselector.model.AdBudget;
+import com.undertone.adselector.model.AdBudgetPlan;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@WebFluxTest(PlanAmendmentController.class)
+@Import(SimpleMeterRegistry.class)
+@TestPropertySource(properties = {"plan.amendments.enabled=true", "plan.amendments.max.batch.size=2"})
+class PlanAmendmentControllerTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @MockBean
+    private AdBudgetPlanStore planStoreMock;
+
+    @Test
+    @DisplayName("Given single ad upsert, when put, then amend plan by it and respond with amended generation")
+    void upsert_givenSingleAd_whenPut_thenAmendPlanAndRespondGeneration_positive() {
+
+        // GIVEN
+        AdBudgetPlan amendedPlan = mock(AdBudgetPlan.class);
+        when(amendedPlan.generation()).thenReturn(7L);
+        when(amendedPlan.slotCount()).thenReturn(3);
+        when(planStoreMock.amend(anyCollection(), anyCollection())).thenReturn(Mono.just(amendedPlan));
+
+        // WHEN / THEN
+        webTestClient.put().uri("/admin/v1/plan/ads/test1")
+                .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue("{ \"priority\": 0.5, \"quota\": 100 }")
+                .exchange()
+                    .expectStatus().isOk()
+                        .expectBody()
+                            .jsonPath("$.generation").isEqualTo(7)
+                            .jsonPath("$.ads").isEqualTo(3);
+
+        verify(planStoreMock).amend(argThat((Collection<? extends AdBudget> upserts) -> upserts.size() == 1
+                && upserts.iterator().next().aid().equals("test1")
+                    && upserts.iterator().next().quota() == 100), eq(List.of()));
+
+    }
+
+    @Test
+    @DisplayName("Given aid both upserted and removed, or batch exceeding its maximum size, when posted, then respond with bad request")
+    void amend_givenInvalidBatch_whenPosted_thenRespondBadRequest_negative() {
+
+        // WHEN / THEN
+        webTestClient.post().uri("/admin/v1/plan/ads")
+                .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue("{ \"upserts\": [{\"aid\": \"test1\", \"priority\": 0.5, \"quota\": 100}], \"removals\": [\"test1\"] }")
+                .exchange()
+                    .expectStatus().isBadRequest();
+
+        webTestClient.post().uri("/admin/v1/plan/ads")
+                .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue("{ \"removals\": [\"test1\", \"test2\", \"test3\"] }")
+                .exchange()
+                    .expectStatus().isBadRequest();
+
+        verify(planStoreMock, never()).amend(any(), any());
+
+    }
+
+    @Test
+    @DisplayName("Given upsert missing priority or quota, when put or posted, then respond with bad request rather than bind zeros")
+    void upsert_givenMissingValues_whenPutOrPosted_thenRespondBadRequest_negative() {
+
+        // WHEN / THEN
+        webTestClient.put().uri("/admin/v1/plan/ads/test1")
+                .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue("{ \"priority\": 0.5 }")
+                .exchange()
+                    .expectStatus().isBadRequest();
+
+        webTestClient.post().uri("/admin/v1/plan/ads")
+                .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue("{ \"upserts\": [{\"aid\": \"test1\", \"quota\": 100}] }")
+                .exchange()
+                    .expectStatus().isBadRequest();
+
+        verify(planStoreMock, never()).amend(any(), any());
+
+    }
+
+    @Test
+    @DisplayName("Given store unable to amend, when ad is deleted, then respond with conflict")
+    void remove_givenStoreUnableToAmend_whenDeleted_thenRespondConflict_negative() {
+
+        // GIVEN
+        when(planStoreMock.amend(anyCollection(), anyCollection()))
+                .thenReturn(Mono.error(new OperationFailedException("Plan store does not support amendments")));
+
+        // WHEN / THEN
+        webTestClient.delete().uri("/admin/v1/plan/ads/test1")
+                .exchange()
+                    .expectStatus().isEqualTo(409);
+
+    }
+
+}
@@ -0,0 +1,76 @@
+package com.undertone.adselector.infrastructure.in;
+
+import com.undertone.adselector.application.ports.out.AdBudgetPlanPublisher;
+import com.undertone.adselector.application.ports.out.AdBudgetPlanStore;
+import com.undertone.adselector.application.ports.out.InfrastructureException.StoreException.OperationFailedException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import reactor.core.publisher.Mono;
+
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class PlanEndpointTest {
+
+    private static final Path PLAN_FILE = Path.of("/plan/plan.json");
+
+    @Test
+    @DisplayName("Given publishing enabled, when published, then publish configured plan file")
+    void publish_givenPublishingEnabled_whenPublished_thenPublishConfiguredPlanFile_positive() {
+
+        // GIVEN
+        var publisherMock = mock(AdBudgetPlanPublisher.class);
+        when(publisherMock.publish(PLAN_FILE)).thenReturn(Mono.just(3L));
+        var sut = new PlanEndpoint(mock(AdBudgetPlanStore.class), publisherMock, PLAN_FILE, true);
+
+        // WHEN
+        WebEndpointResponse<Map<String, Object>> actual = sut.publish().block();
+
+        // THEN
+        assertEquals(WebEndpointResponse.STATUS_OK, actual.getStatus());
+        assertEquals(3L, actual.getBody().get("version"));
+        verify(publisherMock).publish(PLAN_FILE);
+
+    }
+
+    @Test
+    @DisplayName("Given publishing disabled, when published, then respond forbidden without publishing")
+    void publish_givenPublishingDisabled_whenPublished_thenRespondForbidden_negative() {
+
+        // GIVEN
+        var publisherMock = mock(AdBudgetPlanPublisher.class);
+        var sut = new PlanEndpoint(mock(AdBudgetPlanStore.class), publisherMock, PLAN_FILE, false);
+
+        // WHEN
+        WebEndpointResponse<Map<String, Object>> actual = sut.publish().block();
+
+        // THEN
+        assertEquals(403, actual.getStatus());
+        verify(publisherMock, never()).publish(any(Path.class));
+
+    }
+
+    @Test
+    @DisplayName("Given failing publisher, when published, then respond with error not echoing its cause")
+    void publish_givenFailingPublisher_whenPublished_thenRespondWithoutCause_negative() {
+
+        // GIVEN
+        var publisherMock = mock(AdBudgetPlanPublisher.class);
+        when(publisherMock.publish(PLAN_FILE)).thenReturn(Mono.error(new OperationFailedException("secret: line 1")));
+        var sut = new PlanEndpoint(mock(AdBudgetPlanStore.class), publisherMock, PLAN_FILE, true);
+
+        // WHEN
+        WebEndpointResponse<Map<String, Object>> actual = sut.publish().block();
+
+        // THEN
+        assertEquals(WebEndpointResponse.STATUS_INTERNAL_SERVER_ERROR, actual.getStatus());
+        assertFalse(actual.getBody().get("error").toString().contains("secret"));
+
+    }
+
+}
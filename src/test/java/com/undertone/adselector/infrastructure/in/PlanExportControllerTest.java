@@ -0,0 +1,148 @@
+package com.undertone.adselector.infrastructure.in;
+
+import com.undertone.adselector.application.ports.out.AdBudgetPlanStore;
+import com.undertone.adselector.application.ports.out.AdDistributionExporter;
+import com.undertone.adselector.model.AdBudgetPlan;
+import com.undertone.adselector.model.AdDistribution;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@WebFluxTest(PlanExportController.class)
+@Import(SimpleMeterRegistry.class)
+@TestPropertySource(properties = {"plan.export.enabled=true", "plan.export.max.concurrent=1"})
+class PlanExportControllerTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @MockBean
+    private AdBudgetPlanStore planStoreMock;
+
+    @MockBean
+    private AdDistributionExporter exporterMock;
+
+    @Test
+    @DisplayName("Given exported distributions, when exported as NDJSON, then stream a JSON line per ad with plan generation header")
+    void export_givenDistributions_whenExportedAsNdjson_thenStreamJsonLines_positive() {
+
+        // GIVEN
+        givenPlanOfGeneration(3L);
+        when(exporterMock.exportDistributions(any())).thenReturn(Flux.just(
+                new AdDistributionMock("test1", 0.2, 100, 40),
+                new AdDistributionMock("te\"st2", 0.5, 10, -1)));
+
+        // WHEN
+        String actual = webTestClient.get().uri("/admin/v1/plan/export?format=ndjson")
+                .exchange()
+                    .expectStatus().isOk()
+                    .expectHeader().contentType(MediaType.APPLICATION_NDJSON)
+                    .expectHeader().valueEquals(PlanExportController.GENERATION_HEADER, "3")
+                .expectBody(String.class).returnResult().getResponseBody();
+
+        // THEN
+        assertEquals("""
+                {"aid":"test1","priority":0.2,"quota":100,"remainingQuota":40}
+                {"aid":"te\\"st2","priority":0.5,"quota":10,"remainingQuota":-1}
+                """, actual);
+
+    }
+
+    @Test
+    @DisplayName("Given exported distributions, when exported as CSV, then stream header and a quoted as needed row per ad")
+    void export_givenDistributions_whenExportedAsCsv_thenStreamRows_positive() {
+
+        // GIVEN
+        givenPlanOfGeneration(1L);
+        when(exporterMock.exportDistributions(any())).thenReturn(Flux.just(
+                new AdDistributionMock("test1", 0.2, 100, 40),
+                new AdDistributionMock("te,st2", 0.5, 10, 10)));
+
+        // WHEN
+        String actual = webTestClient.get().uri("/admin/v1/plan/export?format=csv")
+                .exchange()
+                    .expectStatus().isOk()
+                .expectBody(String.class).returnResult().getResponseBody();
+
+        // THEN
+        assertEquals("""
+                aid,priority,quota,remainingQuota
+                test1,0.2,100,40
+                "te,st2",0.5,10,10
+                """, actual);
+
+    }
+
+    @Test
+    @DisplayName("Given an export in progress, when another one is requested, then respond with too many requests")
+    void export_givenExportInProgress_whenRequested_thenRespondTooManyRequests_negative() {
+
+        // GIVEN
+        givenPlanOfGeneration(1L);
+        Sinks.Empty<AdDistribution> remaining = Sinks.empty();
+        when(exporterMock.exportDistributions(any())).thenReturn(Flux.range(0, 256)
+                .<AdDistribution>map(i -> new AdDistributionMock("test" + i, 0.2, 100, 40))
+                    .concatWith(remaining.asMono()));
+        Flux<String> inProgress = webTestClient.get().uri("/admin/v1/plan/export")
+                .exchange()
+                    .returnResult(String.class).getResponseBody();
+
+        // WHEN / THEN
+        webTestClient.get().uri("/admin/v1/plan/export")
+                .exchange()
+                    .expectStatus().isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+
+        remaining.tryEmitEmpty();
+        inProgress.blockLast(Duration.ofSeconds(5));
+
+    }
+
+    @Test
+    @DisplayName("Given current plan failing, when exported, then respond with error and leave export permit available")
+    void export_givenCurrentPlanFailing_whenExported_thenKeepPermitAvailable_negative() {
+
+        // GIVEN
+        AdBudgetPlan plan = mock(AdBudgetPlan.class);
+        when(plan.generation()).thenReturn(2L);
+        when(planStoreMock.currentPlan()).thenThrow(new IllegalStateException("No plan loaded")).thenReturn(plan);
+        when(exporterMock.exportDistributions(any())).thenReturn(Flux.just(
+                new AdDistributionMock("test1", 0.2, 100, 40)));
+
+        // WHEN / THEN
+        webTestClient.get().uri("/admin/v1/plan/export")
+                .exchange()
+                    .expectStatus().is5xxServerError();
+        webTestClient.get().uri("/admin/v1/plan/export")
+                .exchange()
+                    .expectStatus().isOk()
+                    .expectHeader().valueEquals(PlanExportController.GENERATION_HEADER, "2");
+
+    }
+
+    private void givenPlanOfGeneration(long generation) {
+        AdBudgetPlan plan = mock(AdBudgetPlan.class);
+        when(plan.generation()).thenReturn(generation);
+        when(planStoreMock.currentPlan()).thenReturn(plan);
+    }
+
+    private record AdDistributionMock(String aid, double priority, long quota, long remainingQuota)
+            implements AdDistribution {}
+
+}
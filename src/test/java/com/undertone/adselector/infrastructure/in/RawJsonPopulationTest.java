@@ -0,0 +1,217 @@
+package com.undertone.adselector.infrastructure.in;
+
+import com.undertone.adselector.application.ports.in.UseCaseException.RejectionException;
+import com.undertone.adselector.model.AdBudget;
+import com.undertone.adselector.model.AdBudgetPlan;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static java.lang.String.format;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RawJsonPopulationTest {
+
+    private static final DefaultDataBufferFactory BUFFER_FACTORY = DefaultDataBufferFactory.sharedInstance;
+
+    private final AdBudgetPlanMock plan = new AdBudgetPlanMock(
+            List.of(new AdBudgetMock("test0", 0.2, 10),
+                    new AdBudgetMock("test1", 0.4, 10),
+                    new AdBudgetMock("test2", 0.6, 10),
+                    new AdBudgetMock("tést3", 0.8, 10)),
+            Map.of("segment1", new int[]{1, 2}));
+
+    @Test
+    @DisplayName("Given payload listing aids, when resolved, then return matching plan entries only")
+    void resolve_givenPayloadListingAids_whenResolved_thenReturnMatchingEntries_positive() {
+
+        // GIVEN
+        var sut = new RawJsonPopulation(chunksOf("""
+                { "q": ["test0", "test2", "unknown", "tést3"] }
+                """));
+
+        // WHEN
+        List<AdBudget> actualPopulation = sut.resolve(plan);
+
+        // THEN
+        assertEquals(List.of("test0", "test2", "tést3"), aidsOf(actualPopulation));
+
+    }
+
+    @Test
+    @DisplayName("Given payload split at every possible position, when resolved, then return same entries")
+    void resolve_givenPayloadSplitAtEveryPosition_whenResolved_thenReturnSameEntries_positive() {
+
+        // GIVEN
+        byte[] payload = """
+                {"k": {"nested": ["a", "b\\""]}, "q": ["test0", "te\\u0073t1"], "s": ["segment1"], "x": null}
+                """.getBytes(StandardCharsets.UTF_8);
+
+        for (int split = 0; split <= payload.length; split++) {
+            var sut = new RawJsonPopulation(List.of(
+                    BUFFER_FACTORY.wrap(Arrays.copyOfRange(payload, 0, split)),
+                    BUFFER_FACTORY.wrap(Arrays.copyOfRange(payload, split, payload.length))));
+
+            // WHEN
+            List<AdBudget> actualPopulation = sut.resolve(plan);
+
+            // THEN
+            assertEquals(List.of("test0", "test1", "test2"), aidsOf(actualPopulation),
+                    format("Unexpected population when split at: %d", split));
+        }
+
+    }
+
+    @Test
+    @DisplayName("Given payload listing aids and segments overlapping, when resolved, then drop duplicates")
+    void resolve_givenOverlappingAidsAndSegments_whenResolved_thenDropDuplicates_positive() {
+
+        // GIVEN
+        var sut = new RawJsonPopulation(chunksOf("""
+                { "s": ["segment1", "segment1"], "q": ["test1", "test1", "test0"] }
+                """));
+
+        // WHEN
+        List<AdBudget> actualPopulation = sut.resolve(plan);
+
+        // THEN
+        assertEquals(List.of("test1", "test2", "test0"), aidsOf(actualPopulation));
+
+        // Resolving again on same thread starts from a clear slot set
+        assertEquals(List.of("test1", "test2", "test0"), aidsOf(sut.resolve(plan)));
+
+    }
+
+    @Test
+    @DisplayName("Given payload with escaped keys, when resolved, then resolve fields by unescaped keys")
+    void resolve_givenPayloadWithEscapedKeys_whenResolved_thenResolveUnescapedFields_positive() {
+
+        // GIVEN
+        var sut = new RawJsonPopulation(chunksOf("""
+                { "o\\"q": ["test1"], "\\u0071": ["test0"], "\\\\": ["test2"], "\\u0073": ["segment1"] }
+                """));
+
+        // WHEN
+        List<AdBudget> actualPopulation = sut.resolve(plan);
+
+        // THEN
+        assertEquals(List.of("test0", "test1", "test2"), aidsOf(actualPopulation));
+
+    }
+
+    @Test
+    @DisplayName("Given payload listing scalar aids, when resolved, then coerce them to text and drop nulls")
+    void resolve_givenPayloadListingScalarAids_whenResolved_thenCoerceToText_positive() {
+
+        // GIVEN
+        var testPlan = new AdBudgetPlanMock(
+                List.of(new AdBudgetMock("123", 0.2, 10),
+                        new AdBudgetMock("-1.50", 0.4, 10),
+                        new AdBudgetMock("true", 0.6, 10)),
+                Map.of());
+        byte[] payload = """
+                {"q": [123,null, -1.50 ,true]}
+                """.getBytes(StandardCharsets.UTF_8);
+
+        for (int split = 0; split <= payload.length; split++) {
+            var sut = new RawJsonPopulation(List.of(
+                    BUFFER_FACTORY.wrap(Arrays.copyOfRange(payload, 0, split)),
+                    BUFFER_FACTORY.wrap(Arrays.copyOfRange(payload, split, payload.length))));
+
+            // WHEN
+            List<AdBudget> actualPopulation = sut.resolve(testPlan);
+
+            // THEN
+            assertEquals(List.of("123", "-1.50", "true"), aidsOf(actualPopulation),
+                    format("Unexpected population when split at: %d", split));
+        }
+
+    }
+
+    @Test
+    @DisplayName("Given malformed payload, when resolved, then reject")
+    void resolve_givenMalformedPayload_whenResolved_thenReject_negative() {
+
+        // GIVEN
+        var truncated = new RawJsonPopulation(chunksOf("{ \"q\": [\"test0\""));
+        var notAnObject = new RawJsonPopulation(chunksOf("[\"test0\"]"));
+        var nestedElement = new RawJsonPopulation(chunksOf("{ \"q\": [{\"aid\": \"test0\"}] }"));
+
+        // WHEN / THEN
+        assertThrows(RejectionException.class, () -> truncated.resolve(plan));
+        assertThrows(RejectionException.class, () -> notAnObject.resolve(plan));
+        assertThrows(RejectionException.class, () -> nestedElement.resolve(plan));
+
+    }
+
+    @Test
+    @DisplayName("Given released population, when resolved, then return empty population")
+    void resolve_givenReleasedPopulation_whenResolved_thenReturnEmpty_negative() {
+
+        // GIVEN
+        var sut = new RawJsonPopulation(chunksOf("{ \"q\": [\"test0\"] }"));
+        sut.release();
+
+        // WHEN
+        List<AdBudget> actualPopulation = sut.resolve(plan);
+
+        // THEN
+        assertTrue(actualPopulation.isEmpty());
+
+    }
+
+    private static List<DataBuffer> chunksOf(String payload) {
+        return List.of(BUFFER_FACTORY.wrap(payload.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static List<String> aidsOf(List<AdBudget> population) {
+        return population.stream().map(AdBudget::aid).toList();
+    }
+
+    record AdBudgetPlanMock(List<AdBudget> entries, Map<String, int[]> segments) implements AdBudgetPlan {
+
+        @Override public Optional<AdBudget> fetch(String aid) { return fetch(slotOf(aid)); }
+        @Override public Optional<AdBudget> fetch(int slot) {
+            return slot < 0 || slot >= entries.size() ? Optional.empty() : Optional.of(entries.get(slot));
+        }
+        @Override public int slotCount() { return entries.size(); }
+        @Override public int slotOf(String aid) {
+            for (int slot = 0; slot < entries.size(); slot++) {
+                if (entries.get(slot).aid().equals(aid)) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+        @Override public int slotOf(ByteBuffer source, int offset, int length) {
+            byte[] bytes = new byte[length];
+            source.get(offset, bytes);
+            return slotOf(new String(bytes, StandardCharsets.UTF_8));
+        }
+        @Override public List<AdBudget> fetchSegment(String segmentId) {
+            return Arrays.stream(fetchSegmentSlots(segmentId)).mapToObj(entries::get).toList();
+        }
+        @Override public int[] fetchSegmentSlots(String segmentId) { return segments.getOrDefault(segmentId, new int[0]); }
+        @Override public boolean isEmpty() { return entries.isEmpty(); }
+    }
+
+    record AdBudgetMock(String aid, double priority, long quota) implements AdBudget {
+        @Override
+        public String toString() {
+            return format(
+                    """
+                    {
+                      "aid": "%s",
+                      "priority": %.2f,
+                      "quota": %d
+                    }
+                    """, aid, priority, quota);
+        }
+    }
+
+}
@@ -0,0 +1,93 @@
+package com.undertone.adselector.infrastructure.in;
+
+import com.undertone.adselector.application.ports.in.BatchSelectAdUseCase;
+import com.undertone.adselector.application.ports.in.BatchSelectAdUseCase.Selection;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.when;
+
+@WebFluxTest(SelectionStreamController.class)
+@Import(SimpleMeterRegistry.class)
+class SelectionStreamControllerTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @MockBean
+    private BatchSelectAdUseCase batchSelectAdUseCaseMock;
+
+    @Test
+    @DisplayName("Given streamed selection requests, when posted, then respond with a line per request correlated by id")
+    void select_givenStreamedRequests_whenPosted_thenRespondLinePerRequest_positive() {
+
+        // GIVEN
+        when(batchSelectAdUseCaseMock.selectBatch(anyList())).thenAnswer(invocation -> Mono.just(invocation
+                .<List<Selection>>getArgument(0).stream()
+                    .map(selection -> Collections.nCopies(selection.count(), "test0"))
+                        .toList()));
+
+        // WHEN
+        List<String> actualLines = webTestClient.post().uri("/api/v1/stream/select")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                    .accept(MediaType.APPLICATION_NDJSON)
+                        .bodyValue("""
+                                {"id":"1","q":["test0"]}
+                                {"id":"2","q":["test0"],"k":0}
+                                {"id":"3","s":["test"],"k":2}
+                                {"id":"4","q":["test0"],"k":2147483647}
+                                """)
+                .exchange()
+                    .expectStatus().isOk()
+                        .returnResult(String.class)
+                            .getResponseBody()
+                                .collectList()
+                                    .block();
+
+        // THEN
+        assertEquals(List.of(
+                "{\"id\":\"1\",\"a\":[\"test0\"]}",
+                "{\"id\":\"2\",\"e\":\"rejected\"}",
+                "{\"id\":\"3\",\"a\":[\"test0\",\"test0\"]}",
+                "{\"id\":\"4\",\"e\":\"rejected\"}"), actualLines);
+
+    }
+
+    @Test
+    @DisplayName("Given failing batch, when posted, then respond with failure lines rather than failing the stream")
+    void select_givenFailingBatch_whenPosted_thenRespondFailureLines_negative() {
+
+        // GIVEN
+        when(batchSelectAdUseCaseMock.selectBatch(anyList())).thenReturn(Mono.error(new IllegalStateException("test")));
+
+        // WHEN
+        List<String> actualLines = webTestClient.post().uri("/api/v1/stream/select")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                    .accept(MediaType.APPLICATION_NDJSON)
+                        .bodyValue("{\"id\":\"1\",\"q\":[\"test0\"]}\n")
+                .exchange()
+                    .expectStatus().isOk()
+                        .returnResult(String.class)
+                            .getResponseBody()
+                                .collectList()
+                                    .block();
+
+        // THEN
+        assertEquals(List.of("{\"id\":\"1\",\"e\":\"failed\"}"), actualLines);
+
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.undertone.adselector.infrastructure.in;
+
+import com.undertone.adselector.infrastructure.out.FileBackedAdBudgetPlanStore;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.actuate.health.Status;
+import reactor.core.publisher.Mono;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static java.lang.String.format;
+import static org.junit.jupiter.api.Assertions.*;
+
+class StartupWarmupTest {
+
+    @Test
+    @DisplayName("Given loaded plan, when warming up, then touch every slot, run selections and become ready")
+    @SneakyThrows
+    void warmup_givenLoadedPlan_whenWarmingUp_thenTouchPlanRunSelectionsAndBecomeReady_positive(@TempDir Path tempDir) {
+
+        // GIVEN
+        final Path testPlanFile = Files.writeString(tempDir.resolve("plan.json"), IntStream.range(0, 100)
+                .mapToObj(i -> format(Locale.ROOT, "{\"aid\": \"test%d\", \"priority\": %.2f, \"quota\": %d}",
+                        i, 0.01d + i / 100d, 1 + i))
+                    .collect(Collectors.joining(",", "{\"Ads\": [", "]}")));
+        var sut = new StartupWarmup(FileBackedAdBudgetPlanStore.builder(testPlanFile).build(), null,
+                Duration.ofSeconds(10), 200);
+
+        // WHEN
+        Status actualStatusBefore = sut.health().getStatus();
+        sut.warmup();
+        StartupWarmup.Report actualReport = sut.report();
+
+        // THEN
+        assertEquals(Status.OUT_OF_SERVICE, actualStatusBefore, "Expected readiness to be down while warming up");
+        assertEquals(Status.UP, sut.health().getStatus());
+        assertTrue(sut.isReady());
+        assertEquals(StartupWarmup.Outcome.COMPLETED, actualReport.outcome());
+        assertEquals(100, actualReport.touchedSlots());
+        assertEquals(200, actualReport.selections());
+        assertEquals(0, actualReport.redisPings());
+
+    }
+
+    @Test
+    @DisplayName("Given plan store never answering, when warmup budget expires, then become ready regardless")
+    void warmup_givenPlanStoreNeverAnswering_whenBudgetExpires_thenBecomeReady_negative() {
+
+        // GIVEN
+        var sut = new StartupWarmup(Mono::never, null, Duration.ofMillis(100), 200);
+
+        // WHEN
+        long start = System.nanoTime();
+        sut.warmup();
+        Duration actualElapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        // THEN
+        assertEquals(Status.UP, sut.health().getStatus());
+        assertEquals(StartupWarmup.Outcome.EXPIRED, sut.report().outcome());
+        assertEquals(0, sut.report().selections());
+        assertTrue(actualElapsed.compareTo(Duration.ofSeconds(2)) < 0,
+                "Expected warmup to be bound by its budget, but took: " + actualElapsed);
+
+    }
+
+}
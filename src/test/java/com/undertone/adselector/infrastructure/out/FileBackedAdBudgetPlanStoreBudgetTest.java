@@ -0,0 +1,87 @@
+package com.undertone.adselector.infrastructure.out;
+
+import com.undertone.adselector.budget.Budgets;
+import com.undertone.adselector.budget.CostMeter;
+import com.undertone.adselector.budget.CostMeter.Cost;
+import com.undertone.adselector.model.AdBudgetPlan;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static java.lang.String.format;
+
+/**
+ * Allocation and CPU budgets of warmed up plan fetches, each fetching current plan and looking up a single aid,
+ * see {@code budgets.properties}. Lazy plans are fully evaluated upfront, measuring steady state lookups.
+ */
+class FileBackedAdBudgetPlanStoreBudgetTest {
+
+    private static final int AD_COUNT = 1_000;
+    private static final int LOOKUPS = 64;
+
+    private static Budgets budgets;
+    private static Path testPlanFile;
+    private static String[] testAids;
+
+    @BeforeAll
+    @SneakyThrows
+    static void beforeAll(@TempDir Path tempDir) {
+        testPlanFile = Files.writeString(tempDir.resolve("plan.json"), IntStream.range(0, AD_COUNT)
+                .mapToObj(i -> format(Locale.ROOT, "{\"aid\": \"test%d\", \"priority\": %.2f, \"quota\": %d}",
+                        i, 0.01d + (i % 97) / 100d, 1 + i))
+                    .collect(Collectors.joining(",", "{\"Ads\": [", "]}")));
+
+        budgets = Budgets.load();
+        testAids = IntStream.range(0, LOOKUPS)
+                .mapToObj(i -> i % 16 == 0 ? "absent" + i : "test" + i * (AD_COUNT / LOOKUPS))
+                    .toArray(String[]::new);
+    }
+
+    @Test
+    @DisplayName("Given eagerly loaded plan, when fetching plan and looking up aid, then allocation and CPU time are within budget")
+    void fetchPlan_givenEagerPlan_whenLookingUpAid_thenCostWithinBudget_positive() {
+
+        // GIVEN
+        var sut = FileBackedAdBudgetPlanStore.builder(testPlanFile).build();
+
+        // WHEN
+        Cost actualCost = measureLookups(sut);
+
+        // THEN
+        budgets.assertWithin("plan.fetch.eager", actualCost);
+
+    }
+
+    @Test
+    @DisplayName("Given lazily loaded plan, when fetching plan and looking up aid, then allocation and CPU time are within budget")
+    void fetchPlan_givenLazyPlan_whenLookingUpAid_thenCostWithinBudget_positive() {
+
+        // GIVEN
+        var sut = FileBackedAdBudgetPlanStore.builder(testPlanFile).withLazyLoading(true).build();
+        AdBudgetPlan testPlan = sut.fetchPlan().block();
+        for (int slot = 0; slot < testPlan.slotCount(); slot++) {
+            testPlan.fetch(slot);
+        }
+
+        // WHEN
+        Cost actualCost = measureLookups(sut);
+
+        // THEN
+        budgets.assertWithin("plan.fetch.lazy", actualCost);
+
+    }
+
+    private static Cost measureLookups(FileBackedAdBudgetPlanStore store) {
+        final int[] next = {0};
+        return CostMeter.defaults().measure(() -> store.fetchPlan().block().fetch(testAids[next[0]++ & (LOOKUPS - 1)]));
+    }
+
+}
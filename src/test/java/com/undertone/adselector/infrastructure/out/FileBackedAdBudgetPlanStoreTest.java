@@ -1,10 +1,13 @@
 package com.undertone.adselector.infrastructure.out;
 
+import com.github.luben.zstd.ZstdOutputStream;
 import com.google.common.jimfs.Configuration;
 import com.google.common.jimfs.Jimfs;
 import com.google.common.jimfs.WatchServiceConfiguration;
+import com.undertone.adselector.application.ports.out.InfrastructureException.StoreException.OperationFailedException;
 import com.undertone.adselector.model.AdBudget;
 import com.undertone.adselector.model.AdBudgetPlan;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import lombok.NoArgsConstructor;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
@@ -13,14 +16,19 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.function.Executable;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.FileSystem;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import java.time.Duration;
+import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
 
 import static java.lang.String.format;
 import static java.util.Objects.isNull;
@@ -173,6 +181,121 @@ class FileBackedAdBudgetPlanStoreTest {
 
     }
 
+    @Test
+    @SneakyThrows
+    @DisplayName("Given a plan file with segments, when it is loaded, then segments resolve to their known entries")
+    void loadPlanContent_givenPlanFileWithSegments_thenSegmentsResolveToKnownEntries_positive() {
+
+        // GIVEN
+        Path testPlanFile = createTestPlanFilePath();
+        Files.writeString(testPlanFile, """
+                {
+                  "Ads": [
+                    {"aid": "test1", "priority": 0.2, "quota": 100},
+                    {"aid": "test2", "priority": 0.78, "quota": 20}
+                  ],
+                  "Segments": [
+                    {"sid": "segment1", "aids": ["test1", "test2", "unknown", "test1"]},
+                    {"sid": "segment2", "aids": ["test2"]},
+                    {"sid": 12, "aids": ["test2"]}
+                  ]
+                }
+                """);
+
+        FileBackedAdBudgetPlanStore sut = new FileBackedAdBudgetPlanStore(testPlanFile);
+
+        // WHEN
+        sut.loadAdBudgetPlan();
+
+        // THEN
+        AdBudgetPlan adBudgetPlan = sut.fetchPlan().block();
+
+        List<AdBudget> actualFirstSegment = adBudgetPlan.fetchSegment("segment1");
+        assertEquals(List.of("test1", "test2"), actualFirstSegment.stream().map(AdBudget::aid).toList());
+
+        List<AdBudget> actualSecondSegment = adBudgetPlan.fetchSegment("segment2");
+        assertEquals(List.of("test2"), actualSecondSegment.stream().map(AdBudget::aid).toList());
+
+        assertTrue(adBudgetPlan.fetchSegment("12").isEmpty());
+        assertTrue(adBudgetPlan.fetchSegment("missing").isEmpty());
+
+    }
+
+    @Test
+    @SneakyThrows
+    @DisplayName("Given plan file with invalid entries, when it is loaded, then record load duration, loaded and skipped entries")
+    void loadPlanContent_givenPlanFileWithInvalidEntries_thenRecordLoadMetrics_positive() {
+
+        // GIVEN
+        Path testPlanFile = createTestPlanFilePath();
+        Files.writeString(testPlanFile, """
+                {
+                  "Ads": [
+                    {"aid": "test1", "priority": 0.2, "quota": 100},
+                    {"aid": "test2", "priority": 0.78, "quota": 20},
+                    {"aid": 12, "priority": 0.78, "quota": 20}
+                  ],
+                  "Segments": [
+                    {"sid": "segment1", "aids": ["test1"]},
+                    {"sid": 12, "aids": ["test2"]},
+                    {"sid": "segment3", "aids": "test2"}
+                  ]
+                }
+                """);
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        FileBackedAdBudgetPlanStore sut = new FileBackedAdBudgetPlanStore(testPlanFile, false, meterRegistry);
+
+        // WHEN
+        sut.loadAdBudgetPlan();
+
+        // THEN
+        assertEquals(1L, meterRegistry.get("adselector.plan.load").tag("result", "success").timer().count());
+        assertEquals(0L, meterRegistry.get("adselector.plan.load").tag("result", "failure").timer().count());
+        assertEquals(2d, meterRegistry.get("adselector.plan.entries").tag("type", "ads").gauge().value());
+        assertEquals(1d, meterRegistry.get("adselector.plan.entries").tag("type", "segments").gauge().value());
+        assertEquals(1d, meterRegistry.get("adselector.plan.entries.skipped").tag("type", "ads").counter().count());
+        assertEquals(2d, meterRegistry.get("adselector.plan.entries.skipped").tag("type", "segments").counter().count());
+
+    }
+
+    @Test
+    @SneakyThrows
+    @DisplayName("Given lazy loading, when plan file is loaded, then every entry keeps its own values and segments")
+    void loadPlanContent_givenLazyLoading_whenLoaded_thenEntriesKeepOwnValues_positive() {
+
+        // GIVEN
+        Path testPlanFile = createTestPlanFilePath();
+        Files.writeString(testPlanFile, """
+                {
+                  "Ads": [
+                    {"aid": "test1", "priority": 0.2, "quota": 100},
+                    {"aid": "test2", "priority": 0.78, "quota": 20, "extra": {"nested": [1, 2]}},
+                    {"aid": 12, "priority": 0.78, "quota": 20},
+                    {"aid": "test3", "priority": "coco", "quota": 20}
+                  ],
+                  "Segments": [
+                    {"sid": "segment1", "aids": ["test1", "test2"]},
+                    {"sid": "segment2", "aids": ["test2"]}
+                  ]
+                }
+                """);
+        FileBackedAdBudgetPlanStore sut = new FileBackedAdBudgetPlanStore(testPlanFile, true);
+
+        // WHEN
+        AdBudgetPlan actualPlan = sut.loadAdBudgetPlan().currentPlan();
+
+        // THEN
+        assertEquals(100L, actualPlan.fetch("test1").orElseThrow().quota());
+        assertEquals(0.78d, actualPlan.fetch("test2").orElseThrow().priority());
+        assertEquals(20L, actualPlan.fetch("test2").orElseThrow().quota());
+        assertTrue(actualPlan.fetch("12").isEmpty());
+        assertTrue(actualPlan.fetch("test3").isEmpty());
+        assertEquals(2, actualPlan.fetchSegmentSlots("segment1").length);
+        assertArrayEquals(new int[]{actualPlan.slotOf("test2")}, actualPlan.fetchSegmentSlots("segment2"));
+
+    }
+
     @Test
     @DisplayName("Given path to non existing plan file, when path is loaded, then it should use empty plan")
     void loadPlanContent_givenPlanFileIsMissing_thenUseEmpty_negative() {
@@ -238,6 +361,255 @@ class FileBackedAdBudgetPlanStoreTest {
 
     }
 
+    @Test
+    @DisplayName("Given a gzip compressed plan file, when it is loaded, then it should contain its entries")
+    void loadPlanContent_givenGzipCompressedPlanFile_thenStoreContainsEntries_positive() {
+
+        // GIVEN
+        Path testPlanFile = compressTestPlanFile(createTestPlanFilePath(
+                new StrictAdBudgetMock("test1", 0.2, 100),
+                new StrictAdBudgetMock("test2", 0.78, 20)
+        ), "plan.json.gz", GZIPOutputStream::new);
+
+        FileBackedAdBudgetPlanStore sut = new FileBackedAdBudgetPlanStore(testPlanFile);
+
+        // WHEN
+        sut.loadAdBudgetPlan();
+
+        // THEN
+        AdBudgetPlan adBudgetPlan = sut.fetchPlan().block();
+        assertEquals(2, adBudgetPlan.slotCount());
+        assertEquals(0.78d, adBudgetPlan.fetch("test2").orElseThrow().priority());
+        assertEquals(100, adBudgetPlan.fetch("test1").orElseThrow().quota());
+
+    }
+
+    @Test
+    @DisplayName("Given a zstd compressed plan file named as plain one, when it is loaded, then detect compression by content")
+    void loadPlanContent_givenZstdCompressedPlanFile_thenDetectCompressionByContent_positive() {
+
+        // GIVEN
+        Path testPlanFile = compressTestPlanFile(createTestPlanFilePath(
+                new StrictAdBudgetMock("test1", 0.2, 100)
+        ), "compressed.json", ZstdOutputStream::new);
+
+        FileBackedAdBudgetPlanStore sut = new FileBackedAdBudgetPlanStore(testPlanFile);
+
+        // WHEN
+        sut.loadAdBudgetPlan();
+
+        // THEN
+        AdBudgetPlan adBudgetPlan = sut.fetchPlan().block();
+        assertEquals(1, adBudgetPlan.slotCount());
+        assertEquals(0.2d, adBudgetPlan.fetch("test1").orElseThrow().priority());
+
+    }
+
+    @Test
+    @DisplayName("Given a truncated gzip compressed plan file, when it is loaded, then it should use empty plan")
+    void loadPlanContent_givenTruncatedCompressedPlanFile_thenUseEmpty_negative() {
+
+        // GIVEN
+        Path testPlanFile = compressTestPlanFile(createTestPlanFilePath(
+                new StrictAdBudgetMock("test1", 0.2, 100)
+        ), "plan.json.gz", GZIPOutputStream::new);
+        truncate(testPlanFile, 20);
+
+        FileBackedAdBudgetPlanStore sut = new FileBackedAdBudgetPlanStore(testPlanFile);
+
+        // WHEN
+        Executable loadPlanContent = () -> sut.loadAdBudgetPlan();
+
+        // THEN
+        assertDoesNotThrow(loadPlanContent);
+        assertTrue(sut.currentPlan().isEmpty());
+
+    }
+
+    @Test
+    @DisplayName("Given loaded plan, when ads are amended, then serve amended plan as next generation leaving former one intact")
+    void amend_givenLoadedPlan_whenAdsAmended_thenServeNextGeneration_positive() {
+
+        // GIVEN
+        Path testPlanFile = createTestPlanFilePath(
+                new StrictAdBudgetMock("test1", 0.2, 100),
+                new StrictAdBudgetMock("test2", 0.78, 20)
+        );
+        FileBackedAdBudgetPlanStore sut = new FileBackedAdBudgetPlanStore(testPlanFile).loadAdBudgetPlan();
+        AdBudgetPlan formerPlan = sut.currentPlan();
+
+        // WHEN
+        AdBudgetPlan amendedPlan = sut.amend(List.of(
+                new StrictAdBudgetMock("test1", 0.5, 300),
+                new StrictAdBudgetMock("test3", 0.1, 10)), List.of("test2")).block();
+
+        // THEN
+        assertSame(amendedPlan, sut.currentPlan());
+        assertEquals(formerPlan.generation() + 1, amendedPlan.generation());
+        assertEquals(formerPlan.slotOf("test1"), amendedPlan.slotOf("test1"));
+        assertEquals(300, amendedPlan.fetch("test1").orElseThrow().quota());
+        assertEquals(0.1d, amendedPlan.fetch("test3").orElseThrow().priority());
+        assertTrue(amendedPlan.fetch("test2").isEmpty());
+
+        assertEquals(100, formerPlan.fetch("test1").orElseThrow().quota());
+        assertTrue(formerPlan.fetch("test2").isPresent());
+        assertTrue(formerPlan.fetch("test3").isEmpty());
+
+    }
+
+    @Test
+    @DisplayName("Given loaded plan, when ads are amended in place, then keep slot epoch for slot callers")
+    void amend_givenLoadedPlan_whenAdsAmendedInPlace_thenKeepSlotEpoch_positive() {
+
+        // GIVEN
+        Path testPlanFile = createTestPlanFilePath(
+                new StrictAdBudgetMock("test1", 0.2, 100),
+                new StrictAdBudgetMock("test2", 0.78, 20)
+        );
+        FileBackedAdBudgetPlanStore sut = new FileBackedAdBudgetPlanStore(testPlanFile).loadAdBudgetPlan();
+        AdBudgetPlan formerPlan = sut.currentPlan();
+
+        // WHEN
+        AdBudgetPlan amendedPlan = sut.amend(List.of(new StrictAdBudgetMock("test1", 0.5, 300)), List.of("test2"))
+                .block();
+        AdBudgetPlan reloadedPlan = sut.loadAdBudgetPlan().currentPlan();
+
+        // THEN
+        assertEquals(formerPlan.generation() + 1, amendedPlan.generation());
+        assertEquals(formerPlan.slotEpoch(), amendedPlan.slotEpoch());
+        assertEquals(formerPlan.slotOf("test2"), amendedPlan.slotOf("test2"));
+        assertEquals(reloadedPlan.generation(), reloadedPlan.slotEpoch(), "Expected loads to renew slot epoch");
+        assertNotEquals(formerPlan.slotEpoch(), reloadedPlan.slotEpoch());
+
+    }
+
+    @Test
+    @SneakyThrows
+    @DisplayName("Given plan file with segments, when a segment member is removed, then segment no longer resolves to it")
+    void amend_givenPlanWithSegments_whenMemberRemoved_thenSegmentExcludesIt_positive() {
+
+        // GIVEN
+        Path testPlanFile = createTestPlanFilePath();
+        Files.writeString(testPlanFile, """
+                {
+                  "Ads": [
+                    {"aid": "test1", "priority": 0.2, "quota": 100},
+                    {"aid": "test2", "priority": 0.78, "quota": 20}
+                  ],
+                  "Segments": [
+                    {"sid": "segment1", "aids": ["test1", "test2"]},
+                    {"sid": "segment2", "aids": ["test2"]}
+                  ]
+                }
+                """);
+        FileBackedAdBudgetPlanStore sut = new FileBackedAdBudgetPlanStore(testPlanFile).loadAdBudgetPlan();
+
+        // WHEN
+        AdBudgetPlan amendedPlan = sut.amend(List.of(), List.of("test1")).block();
+
+        // THEN
+        assertEquals(List.of("test2"), amendedPlan.fetchSegment("segment1").stream().map(AdBudget::aid).toList());
+        assertEquals(List.of("test2"), amendedPlan.fetchSegment("segment2").stream().map(AdBudget::aid).toList());
+
+    }
+
+    @Test
+    @DisplayName("Given no plan was loaded, when ads are amended, then fail leaving empty plan")
+    void amend_givenNoLoadedPlan_whenAdsAmended_thenFail_negative() {
+
+        // GIVEN
+        FileBackedAdBudgetPlanStore sut = new FileBackedAdBudgetPlanStore(createTestPlanFilePath());
+
+        // WHEN
+        Executable amend = () -> sut.amend(List.of(new StrictAdBudgetMock("test1", 0.2, 100)), List.of()).block();
+
+        // THEN
+        assertThrows(OperationFailedException.class, amend);
+        assertTrue(sut.currentPlan().isEmpty());
+
+    }
+
+    @Test
+    @SneakyThrows
+    @DisplayName("Given amendment persistence, when store is closed, then write amended plan back in its loaded compression")
+    void amend_givenAmendmentPersistence_whenClosed_thenWriteBackAmendedPlan_positive() {
+
+        // GIVEN
+        Path testPlanFile = compressTestPlanFile(createTestPlanFilePath(
+                new StrictAdBudgetMock("test1", 0.2, 100),
+                new StrictAdBudgetMock("test2", 0.78, 20)
+        ), "plan.json.gz", GZIPOutputStream::new);
+        FileBackedAdBudgetPlanStore sut = FileBackedAdBudgetPlanStore.builder(testPlanFile)
+                .withAmendmentPersistence(Duration.ofHours(1))
+                    .build();
+        sut.amend(List.of(new StrictAdBudgetMock("test3", 0.1, 10)), List.of("test1")).block();
+
+        // WHEN
+        sut.close();
+
+        // THEN
+        assertTrue(sut.isPersistedPlanFile());
+        assertEquals(FileBackedAdBudgetPlanStore.Compression.GZIP,
+                FileBackedAdBudgetPlanStore.Compression.detect(Arrays.copyOf(Files.readAllBytes(testPlanFile), 4)));
+
+        AdBudgetPlan reloadedPlan = new FileBackedAdBudgetPlanStore(testPlanFile).loadAdBudgetPlan().currentPlan();
+        assertEquals(2, reloadedPlan.slotCount());
+        assertTrue(reloadedPlan.fetch("test1").isEmpty());
+        assertEquals(20, reloadedPlan.fetch("test2").orElseThrow().quota());
+        assertEquals(10, reloadedPlan.fetch("test3").orElseThrow().quota());
+
+    }
+
+    @Test
+    @SneakyThrows
+    @DisplayName("Given plan file changed since loaded, when amendments are written back, then leave changed file intact")
+    void amend_givenPlanFileChangedSinceLoaded_whenClosed_thenSkipWriteBack_negative() {
+
+        // GIVEN
+        Path testPlanFile = createTestPlanFilePath(
+                new StrictAdBudgetMock("test1", 0.2, 100),
+                new StrictAdBudgetMock("test2", 0.78, 20)
+        );
+        FileBackedAdBudgetPlanStore sut = FileBackedAdBudgetPlanStore.builder(testPlanFile)
+                .withAmendmentPersistence(Duration.ofHours(1))
+                    .build();
+        sut.amend(List.of(new StrictAdBudgetMock("test3", 0.1, 10)), List.of("test1")).block();
+
+        String changedPlan = """
+                {"Ads": [{"aid": "test4", "priority": 0.5, "quota": 40}]}
+                """;
+        Files.writeString(testPlanFile, changedPlan);
+        Files.setLastModifiedTime(testPlanFile, FileTime.from(Instant.now().plusSeconds(60)));
+
+        // WHEN
+        sut.close();
+
+        // THEN
+        assertFalse(sut.isPersistedPlanFile());
+        assertEquals(changedPlan, Files.readString(testPlanFile));
+        assertFalse(Files.exists(testPlanFile.resolveSibling(testPlanFile.getFileName() + ".tmp")));
+
+    }
+
+    @SneakyThrows
+    Path compressTestPlanFile(Path testPlanFile, String compressedFileName, Compressor compressor) {
+        Path compressedPlanFile = testPlanFile.resolveSibling(compressedFileName);
+        try (OutputStream output = compressor.compress(Files.newOutputStream(compressedPlanFile))) {
+            Files.copy(testPlanFile, output);
+        }
+        return compressedPlanFile;
+    }
+
+    @SneakyThrows
+    void truncate(Path testPlanFile, int length) {
+        Files.write(testPlanFile, Arrays.copyOf(Files.readAllBytes(testPlanFile), length));
+    }
+
+    @FunctionalInterface
+    interface Compressor {
+        OutputStream compress(OutputStream output) throws IOException;
+    }
+
     @SneakyThrows
     Path createTestPlanFilePath(Object... adBudgetMocks) {
 
@@ -0,0 +1,60 @@
+package com.undertone.adselector.infrastructure.out;
+
+import com.undertone.adselector.budget.Budgets;
+import com.undertone.adselector.budget.CostMeter;
+import com.undertone.adselector.budget.CostMeter.Cost;
+import com.undertone.adselector.model.AdDistribution;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.util.stream.IntStream;
+
+/**
+ * Allocation and CPU budgets of observing a single fetched candidate while store is healthy, see
+ * {@code budgets.properties}. Candidates are observed once upfront, so their remaining quota is unchanged, as for
+ * ads not spent since last fetched.
+ */
+class LocalSpendAllowanceBudgetTest {
+
+    private static final int CANDIDATES = 64;
+
+    private static Budgets budgets;
+    private static AdDistribution[] testDistributions;
+
+    @BeforeAll
+    static void beforeAll() {
+        budgets = Budgets.load();
+        testDistributions = IntStream.range(0, CANDIDATES)
+                .mapToObj(i -> new AdDistributionMock("test" + i, 0.5d, 1_000L, 100L + i))
+                    .toArray(AdDistribution[]::new);
+    }
+
+    @Test
+    @DisplayName("Given observed candidates, when observed again unchanged, then allocation and CPU time are within budget")
+    void observe_givenObservedCandidates_whenObservedUnchanged_thenCostWithinBudget_positive() {
+
+        // GIVEN
+        var sut = new LocalSpendAllowance(0.1d, 1, (aid, amount) -> Mono.just(amount));
+        for (AdDistribution testDistribution : testDistributions) {
+            sut.observe(testDistribution);
+        }
+        int[] next = {0};
+
+        // WHEN
+        Cost actualCost = CostMeter.defaults().measure(() -> {
+            AdDistribution testDistribution = testDistributions[next[0]++ & (CANDIDATES - 1)];
+            sut.observe(testDistribution);
+            return testDistribution;
+        });
+
+        // THEN
+        budgets.assertWithin("allowance.observe", actualCost);
+
+    }
+
+    private record AdDistributionMock(String aid, double priority, long quota, long remainingQuota)
+            implements AdDistribution {}
+
+}
@@ -0,0 +1,150 @@
+package com.undertone.adselector.infrastructure.out;
+
+import com.undertone.adselector.infrastructure.out.LocalSpendAllowance.ReplayReport;
+import com.undertone.adselector.model.AdBudget;
+import com.undertone.adselector.model.AdBudgetPlan;
+import com.undertone.adselector.model.AdDistribution;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalSpendAllowanceTest {
+
+    @Test
+    @DisplayName("Given observed remaining quota, when spending locally, then grant up to allowance and replay journaled spending")
+    void trySpend_givenObservedRemainingQuota_whenSpendingLocally_thenGrantUpToAllowanceAndReplay_positive() {
+
+        // GIVEN
+        var testMeterRegistry = new SimpleMeterRegistry();
+        Map<String, Long> testSpent = new HashMap<>(Map.of("test1", 60L, "test2", 99L));
+        var sut = new LocalSpendAllowance(0.1d, 2, (aid, amount) -> Mono.just(testSpent.merge(aid, amount, Long::sum)),
+                testMeterRegistry);
+
+        sut.observe(new AdDistributionMock("test1", 0.5d, 100L, 40L));
+        sut.observe(new AdDistributionMock("test2", 0.5d, 100L, 1L));
+
+        // WHEN
+        int actualGranted = 0;
+        for (int i = 0; i < 5; i++) {
+            actualGranted += sut.trySpend("test1") ? 1 : 0;
+        }
+        boolean actualGrantedBelowAllowance = sut.trySpend("test2");
+        boolean actualGrantedUnobserved = sut.trySpend("test3");
+        AdDistribution actualDistribution = sut.distributionOf(new AdBudgetMock("test1", 0.5d, 100L));
+
+        ReplayReport actualReport = sut.replay().block();
+        ReplayReport actualRepeatedReport = sut.replay().block();
+
+        // THEN
+        assertEquals(2, actualGranted, "Expected allowance of floor(0.1 * 40 / 2)");
+        assertFalse(actualGrantedBelowAllowance);
+        assertFalse(actualGrantedUnobserved);
+        assertNull(sut.distributionOf(new AdBudgetMock("test3", 0.5d, 100L)));
+        assertEquals(0L, actualDistribution.remainingQuota());
+
+        assertEquals(new ReplayReport(1, 2L, 0L), actualReport);
+        assertEquals(new ReplayReport(0, 0L, 0L), actualRepeatedReport);
+        assertEquals(62L, testSpent.get("test1"));
+        assertEquals(0L, sut.pendingSpend());
+        assertEquals(2d, testMeterRegistry.get("adselector.store.degraded.spends")
+                .tag("result", "granted").counter().count());
+        assertEquals(5d, testMeterRegistry.get("adselector.store.degraded.spends")
+                .tag("result", "denied").counter().count());
+
+    }
+
+    @Test
+    @DisplayName("Given replay failing or exceeding quota, when replaying, then restore journal or report overspend")
+    void replay_givenFailingOrOverspendingReplay_whenReplaying_thenRestoreJournalOrReportOverspend_negative() {
+
+        // GIVEN
+        var testMeterRegistry = new SimpleMeterRegistry();
+        boolean[] testUnreachable = {true};
+        var sut = new LocalSpendAllowance(1d, 1, (aid, amount) -> testUnreachable[0]
+                ? Mono.error(new IllegalStateException("Connection refused"))
+                    : Mono.just(98L + amount), testMeterRegistry);
+
+        sut.observe(new AdDistributionMock("test1", 0.5d, 100L, 3L));
+
+        // WHEN
+        for (int i = 0; i < 3; i++) {
+            assertTrue(sut.trySpend("test1"));
+        }
+        assertThrows(IllegalStateException.class, () -> sut.replay().block());
+        long actualPendingOnFailure = sut.pendingSpend();
+
+        testUnreachable[0] = false;
+        ReplayReport actualReport = sut.replay().block();
+
+        // THEN
+        assertEquals(3L, actualPendingOnFailure, "Expected journal to be restored once replay failed");
+        assertEquals(new ReplayReport(1, 3L, 1L), actualReport);
+        assertEquals(0L, sut.pendingSpend());
+        assertEquals(1d, testMeterRegistry.get("adselector.store.degraded.overspend").counter().count());
+
+    }
+
+    @Test
+    @DisplayName("Given allowances of aids which left the plan, when plan generation changes, then prune those not journaled")
+    void replayIfPending_givenAidsLeavingPlan_whenGenerationChanges_thenPruneUnjournaledAllowances_positive() {
+
+        // GIVEN
+        AdBudgetPlan[] testPlan = {planOf(1L, "test1", "test2", "test3")};
+        var sut = new LocalSpendAllowance(1d, 1, (aid, amount) -> Mono.error(new IllegalStateException("Connection refused")),
+                () -> testPlan[0], new SimpleMeterRegistry());
+        sut.observe(new AdDistributionMock("test1", 0.5d, 100L, 10L));
+        sut.observe(new AdDistributionMock("test2", 0.5d, 100L, 10L));
+        sut.observe(new AdDistributionMock("test3", 0.5d, 100L, 10L));
+        assertTrue(sut.trySpend("test3"));
+
+        // WHEN
+        sut.replayIfPending();
+        int actualKeptWithinGeneration = sut.allowanceCount();
+
+        testPlan[0] = planOf(2L, "test1");
+        sut.replayIfPending();
+
+        // THEN
+        assertEquals(3, actualKeptWithinGeneration);
+        assertEquals(2, sut.allowanceCount(), "Expected journaled allowance of test3 to be kept");
+        assertNull(sut.distributionOf(new AdBudgetMock("test2", 0.5d, 100L)));
+        assertNotNull(sut.distributionOf(new AdBudgetMock("test1", 0.5d, 100L)));
+        assertEquals(1L, sut.pendingSpend());
+
+    }
+
+    private static AdBudgetPlan planOf(long generation, String... aids) {
+        final Map<String, AdBudget> aidToAdBudget = new LinkedHashMap<>();
+        for (String aid : aids) {
+            aidToAdBudget.put(aid, new AdBudgetMock(aid, 0.5d, 100L));
+        }
+        return new InMemoryAdBudgetPlan(aidToAdBudget, Map.of(), generation);
+    }
+
+    private record AdBudgetMock(String aid, double priority, long quota) implements AdBudget {
+        @Override
+        public String toString() {
+            return """
+                    {"aid": "%s", "priority": %s, "quota": %d}
+                    """.formatted(aid, priority, quota);
+        }
+    }
+
+    private record AdDistributionMock(String aid, double priority, long quota, long remainingQuota)
+            implements AdDistribution {
+        @Override
+        public String toString() {
+            return """
+                    {"aid": "%s", "priority": %s, "quota": %d, "remainingQuota": %d}
+                    """.formatted(aid, priority, quota, remainingQuota);
+        }
+    }
+
+}
@@ -0,0 +1,175 @@
+package com.undertone.adselector.infrastructure.out;
+
+import com.undertone.adselector.application.ports.out.InfrastructureException.StoreException.OperationFailedException;
+import com.undertone.adselector.infrastructure.out.redis.FaultInjection;
+import com.undertone.adselector.infrastructure.out.redis.InProcessRedisServer;
+import com.undertone.adselector.model.AdBudget;
+import com.undertone.adselector.model.AdBudgetPlan;
+import org.junit.jupiter.api.*;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs against the in-process Redis stand-in, see {@link RedisBackedAdDistributionStoreStandInTest}
+ */
+class RedisBackedAdBudgetPlanStoreStandInTest {
+
+    private static final Duration COMMAND_TIMEOUT = Duration.ofSeconds(1);
+
+    private static InProcessRedisServer redis;
+
+    private LettuceConnectionFactory connectionFactory;
+
+    private ReactiveStringRedisTemplate redisTemplate;
+
+    @BeforeAll
+    public static void beforeAll() {
+        redis = RedisScriptStandIns.start();
+    }
+
+    @AfterAll
+    public static void afterAll() {
+        redis.close();
+    }
+
+    @BeforeEach
+    public void beforeEach() {
+        redis.inKeyspace(keyspace -> {
+            keyspace.clear();
+            return null;
+        });
+
+        connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration(redis.host(), redis.port()),
+                    LettuceClientConfiguration.builder().commandTimeout(COMMAND_TIMEOUT).build());
+        connectionFactory.afterPropertiesSet();
+        redisTemplate = new ReactiveStringRedisTemplate(connectionFactory);
+    }
+
+    @AfterEach
+    public void afterEach() {
+        connectionFactory.destroy();
+    }
+
+    @Test
+    @DisplayName("Given published plan, when store is built, then bootstrap same entries, slots and segments by version")
+    void build_givenPublishedPlan_whenBuilt_thenBootstrapSamePlan_positive() {
+
+        // GIVEN
+        var publisher = new RedisBackedAdBudgetPlanPublisher(redisTemplate, 2, Duration.ofHours(1));
+        var published = plan(5);
+        long version = publisher.publish(published).block(COMMAND_TIMEOUT);
+
+        // WHEN
+        try (var sut = RedisBackedAdBudgetPlanStore.builder(redisTemplate).withPollInterval(Duration.ofHours(1)).build()) {
+            AdBudgetPlan actual = sut.currentPlan();
+
+            // THEN
+            assertEquals(version, sut.version());
+            assertEquals(version, actual.generation());
+            assertEquals(published.slotCount(), actual.slotCount());
+            for (int slot = 0; slot < published.slotCount(); slot++) {
+                AdBudget expected = published.fetch(slot).orElseThrow();
+                AdBudget loaded = actual.fetch(slot).orElseThrow();
+                assertEquals(expected.aid(), loaded.aid());
+                assertEquals(expected.priority(), loaded.priority());
+                assertEquals(expected.quota(), loaded.quota());
+            }
+            assertEquals(published.segmentIds(), actual.segmentIds());
+            assertArrayEquals(published.fetchSegmentSlots("odd"), actual.fetchSegmentSlots("odd"));
+        }
+    }
+
+    @Test
+    @DisplayName("Given following store, when later plan is published, then switch to it and expire replaced version")
+    void follow_givenFollowingStore_whenLaterPlanPublished_thenSwitchToIt_positive() throws InterruptedException {
+
+        // GIVEN
+        var publisher = new RedisBackedAdBudgetPlanPublisher(redisTemplate, 2, Duration.ofHours(1));
+        long replaced = publisher.publish(plan(3)).block(COMMAND_TIMEOUT);
+
+        try (var sut = RedisBackedAdBudgetPlanStore.builder(redisTemplate).withPollInterval(Duration.ofHours(1)).build()) {
+            assertEquals(replaced, sut.version());
+
+            // WHEN
+            long version = publisher.publish(plan(7)).block(COMMAND_TIMEOUT);
+            for (int attempt = 0; attempt < 50 && sut.version() != version; attempt++) {
+                Thread.sleep(100);
+            }
+
+            // THEN
+            assertEquals(version, sut.version());
+            assertEquals(7, sut.currentPlan().slotCount());
+            assertTrue(redis.inKeyspace(keyspace -> keyspace.ttlMillis(RedisPlanLayout.manifestKey(replaced))) > 0);
+            assertTrue(redis.inKeyspace(keyspace -> keyspace.ttlMillis(RedisPlanLayout.adsChunkKey(replaced, 1))) > 0);
+            assertEquals(-1L, (long) redis.inKeyspace(keyspace -> keyspace.ttlMillis(RedisPlanLayout.manifestKey(version))));
+        }
+    }
+
+    @Test
+    @DisplayName("Given load outlasting poll interval, when loaded version is announced again, then keep loading it")
+    void follow_givenLoadOutlastingPollInterval_whenVersionAnnouncedAgain_thenKeepLoading_positive() throws InterruptedException {
+
+        // GIVEN
+        var publisher = new RedisBackedAdBudgetPlanPublisher(redisTemplate, 2, Duration.ofHours(1));
+        long replaced = publisher.publish(plan(3)).block(COMMAND_TIMEOUT);
+
+        try (var sut = RedisBackedAdBudgetPlanStore.builder(redisTemplate).withPollInterval(Duration.ofMillis(50)).build()) {
+            assertEquals(replaced, sut.version());
+            redis.injectFaults(FaultInjection.latency(Duration.ofMillis(200)).onlyFor("GET"));
+
+            // WHEN
+            long version = publisher.publish(plan(7)).block(Duration.ofSeconds(10));
+            for (int attempt = 0; attempt < 100 && sut.version() != version; attempt++) {
+                Thread.sleep(100);
+            }
+
+            // THEN
+            assertEquals(version, sut.version(), "Expected load to complete while polls announce its version");
+            assertEquals(7, sut.currentPlan().slotCount());
+        } finally {
+            redis.injectFaults(FaultInjection.NONE);
+        }
+    }
+
+    @Test
+    @DisplayName("Given missing chunk of current version, when store is built, then start with empty plan")
+    void build_givenMissingChunk_whenBuilt_thenStartEmpty_negative() {
+
+        // GIVEN
+        var publisher = new RedisBackedAdBudgetPlanPublisher(redisTemplate, 2, Duration.ofHours(1));
+        long version = publisher.publish(plan(5)).block(COMMAND_TIMEOUT);
+        redis.inKeyspace(keyspace -> keyspace.delete(RedisPlanLayout.adsChunkKey(version, 1)));
+
+        // WHEN
+        try (var sut = RedisBackedAdBudgetPlanStore.builder(redisTemplate).withPollInterval(Duration.ofHours(1)).build()) {
+
+            // THEN
+            assertEquals(0L, sut.version());
+            assertTrue(sut.currentPlan().isEmpty());
+            assertThrows(OperationFailedException.class, () -> publisher.publish(AdBudgetPlan.EMPTY).block(COMMAND_TIMEOUT));
+        }
+    }
+
+    private static AdBudgetPlan plan(int ads) {
+        final Map<String, AdBudget> aidToAdBudget = new LinkedHashMap<>();
+        for (int i = 0; i < ads; i++) {
+            aidToAdBudget.put("aid" + i, new AdBudgetMock("aid" + i, 0.1 * (i + 1), 10L * (i + 1)));
+        }
+        return new InMemoryAdBudgetPlan(aidToAdBudget,
+                Map.of("odd", aidToAdBudget.keySet().stream().filter(aid -> aid.hashCode() % 2 == 1).toList(),
+                        "all", List.copyOf(aidToAdBudget.keySet())), 1L);
+    }
+
+    private record AdBudgetMock(String aid, double priority, long quota) implements AdBudget {}
+
+}
@@ -0,0 +1,111 @@
+package com.undertone.adselector.infrastructure.out;
+
+import com.undertone.adselector.application.ports.out.InfrastructureException.StoreException.OperationFailedException;
+import com.undertone.adselector.infrastructure.out.redis.FaultInjection;
+import com.undertone.adselector.infrastructure.out.redis.FaultInjection.FailureMode;
+import com.undertone.adselector.infrastructure.out.redis.InProcessRedisServer;
+import com.undertone.adselector.model.AdBudget;
+import com.undertone.adselector.model.AdDistribution;
+import org.junit.jupiter.api.*;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs against the in-process Redis stand-in, see {@link RedisBackedAdDistributionStoreStandInTest}
+ */
+class RedisBackedAdDistributionExporterStandInTest {
+
+    private static final Duration COMMAND_TIMEOUT = Duration.ofMillis(300);
+
+    private static InProcessRedisServer redis;
+
+    private LettuceConnectionFactory connectionFactory;
+
+    private ReactiveStringRedisTemplate redisTemplate;
+
+    @BeforeAll
+    public static void beforeAll() {
+        redis = RedisScriptStandIns.start();
+    }
+
+    @AfterAll
+    public static void afterAll() {
+        redis.close();
+    }
+
+    @BeforeEach
+    public void beforeEach() {
+        redis.heal();
+        redis.inKeyspace(keyspace -> {
+            keyspace.clear();
+            keyspace.set("aid0", String.valueOf(3));
+            keyspace.set("aid3", String.valueOf(45));
+            keyspace.set("aid4", "malformed");
+            return null;
+        });
+
+        connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration(redis.host(), redis.port()),
+                    LettuceClientConfiguration.builder().commandTimeout(COMMAND_TIMEOUT).build());
+        connectionFactory.afterPropertiesSet();
+        redisTemplate = new ReactiveStringRedisTemplate(connectionFactory);
+    }
+
+    @AfterEach
+    public void afterEach() {
+        connectionFactory.destroy();
+    }
+
+    @Test
+    @DisplayName("Given plan spanning several pages with a vacant slot, when exported, then join every ad with its remaining quota in slot order")
+    void exportDistributions_givenPlanSpanningPages_whenExported_thenJoinRemainingQuotasInSlotOrder_positive() {
+
+        // GIVEN
+        var sut = new RedisBackedAdDistributionExporter(redisTemplate, 2, 1_000);
+        var plan = plan(5).amend(List.of(), List.of("aid2"), 2L);
+
+        // WHEN
+        List<AdDistribution> actual = sut.exportDistributions(plan).collectList().block(Duration.ofSeconds(5));
+
+        // THEN
+        assertEquals(List.of("aid0", "aid1", "aid3", "aid4"), actual.stream().map(AdDistribution::aid).toList());
+        assertEquals(List.of(7L, 20L, -5L, 50L), actual.stream().map(AdDistribution::remainingQuota).toList());
+        assertEquals(0.4d, actual.get(2).priority());
+        assertEquals(40L, actual.get(2).quota());
+
+    }
+
+    @Test
+    @DisplayName("Given Redis failing every MGET, when exported, then fail once page retries are exhausted")
+    void exportDistributions_givenFailingRedis_whenExported_thenFail_negative() {
+
+        // GIVEN
+        var sut = new RedisBackedAdDistributionExporter(redisTemplate, 2, 1_000);
+        redis.injectFaults(FaultInjection.failing(FailureMode.ERROR, 1d).onlyFor("MGET"));
+
+        // WHEN / THEN
+        assertThrows(OperationFailedException.class,
+                () -> sut.exportDistributions(plan(5)).collectList().block(Duration.ofSeconds(5)));
+
+    }
+
+    private static InMemoryAdBudgetPlan plan(int ads) {
+        final Map<String, AdBudget> aidToAdBudget = new LinkedHashMap<>();
+        for (int i = 0; i < ads; i++) {
+            aidToAdBudget.put("aid" + i, new AdBudgetMock("aid" + i, 0.1 * (i + 1), 10L * (i + 1)));
+        }
+        return new InMemoryAdBudgetPlan(aidToAdBudget, Map.of(), 1L);
+    }
+
+    private record AdBudgetMock(String aid, double priority, long quota) implements AdBudget {}
+
+}
@@ -0,0 +1,200 @@
+package com.undertone.adselector.infrastructure.out;
+
+import com.undertone.adselector.infrastructure.out.redis.FaultInjection;
+import com.undertone.adselector.infrastructure.out.redis.FaultInjection.FailureMode;
+import com.undertone.adselector.infrastructure.out.redis.InProcessRedisServer;
+import com.undertone.adselector.model.AdBudget;
+import com.undertone.adselector.model.AdDistribution;
+import com.undertone.adselector.model.Status;
+import org.junit.jupiter.api.*;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+
+import static java.lang.String.format;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs against the in-process Redis stand-in, hence requires neither Docker nor network access.
+ * See {@link RedisBackedAdDistributionStoreTest} for the same store running against a real Redis container.
+ */
+class RedisBackedAdDistributionStoreStandInTest {
+
+    private static final Duration COMMAND_TIMEOUT = Duration.ofMillis(300);
+
+    private static InProcessRedisServer redis;
+
+    private LettuceConnectionFactory connectionFactory;
+
+    private ReactiveStringRedisTemplate redisTemplate;
+
+    @BeforeAll
+    public static void beforeAll() {
+        redis = RedisScriptStandIns.start();
+    }
+
+    @AfterAll
+    public static void afterAll() {
+        redis.close();
+    }
+
+    @BeforeEach
+    public void beforeEach() {
+        redis.heal();
+        redis.inKeyspace(keyspace -> {
+            keyspace.clear();
+            keyspace.set("testDist", String.valueOf(9));
+            keyspace.set("testExhaustedDist", String.valueOf(15));
+            return null;
+        });
+
+        connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration(redis.host(), redis.port()),
+                    LettuceClientConfiguration.builder().commandTimeout(COMMAND_TIMEOUT).build());
+        connectionFactory.afterPropertiesSet();
+        redisTemplate = new ReactiveStringRedisTemplate(connectionFactory);
+    }
+
+    @AfterEach
+    public void afterEach() {
+        connectionFactory.destroy();
+    }
+
+    @Test
+    @DisplayName("Given existing and missing distributions, when fetching, then return AdDistributions containing stored values accordingly")
+    void fetchDistributions_givenExistingAndMissingDistributions_whenFetching_thenReturnAdDistributions_positive() {
+
+        // GIVEN
+        var sut = new RedisBackedAdDistributionStore(redisTemplate);
+        var adBudgets = List.<AdBudget>of(
+                new AdBudgetMock("testDist", 0.04, 20),
+                new AdBudgetMock("testMissingDist", 0.14, 30));
+
+        // WHEN
+        List<AdDistribution> actualDistributions = sut.fetchDistributions(adBudgets).block();
+
+        // THEN
+        assertNotNull(actualDistributions, "Expected non empty Mono");
+        assertEquals(List.of(11L, 30L),
+                actualDistributions.stream().map(AdDistribution::remainingQuota).toList(),
+                    "Expected remainingQuota to match");
+
+    }
+
+    @Test
+    @DisplayName("Given incrementing several, when one exceeds quota, then rollback only that one using script stand-in")
+    void incrementDistributions_givenOneExceedingQuota_whenIncrementing_thenRollbackOnlyThatOne_negative() {
+
+        // GIVEN
+        var sut = new RedisBackedAdDistributionStore(redisTemplate);
+        var adDistributions = List.<AdDistribution>of(
+                new AdDistributionMock("testDist", 0.04, 10, 1),
+                new AdDistributionMock("testExhaustedDist", 0.04, 15, 1));
+
+        // WHEN
+        List<Status> actualStatuses = sut.incrementDistributions(adDistributions).block();
+
+        // THEN
+        assertEquals(List.of(Status.SUCCESS, Status.CONFLICT), actualStatuses);
+        assertEquals("10", redis.inKeyspace(keyspace -> keyspace.get("testDist")));
+        assertEquals("15", redis.inKeyspace(keyspace -> keyspace.get("testExhaustedDist")));
+
+    }
+
+    @Test
+    @DisplayName("Given injected latency, when incrementing concurrently, then every increment completes in order")
+    void incrementDistribution_givenInjectedLatency_whenIncrementingConcurrently_thenComplete_positive() {
+
+        // GIVEN
+        var sut = new RedisBackedAdDistributionStore(redisTemplate);
+        redis.injectFaults(FaultInjection.latency(Duration.ofMillis(5), Duration.ofMillis(20)));
+
+        // WHEN
+        List<Status> actualStatuses = Flux.range(0, 20)
+                .flatMap(ignored -> sut.incrementDistribution(new AdDistributionMock("testDist", 0.04, 100, 91)))
+                    .collectList()
+                        .block();
+
+        // THEN
+        assertNotNull(actualStatuses);
+        assertTrue(actualStatuses.stream().allMatch(Status.SUCCESS::equals), "Expected every increment to succeed");
+        assertEquals("29", redis.inKeyspace(keyspace -> keyspace.get("testDist")));
+
+    }
+
+    @Test
+    @DisplayName("Given injected errors, when incrementing, then return status FAILURE")
+    void incrementDistributions_givenInjectedErrors_whenIncrementing_thenReturnFailure_negative() {
+
+        // GIVEN
+        var sut = new RedisBackedAdDistributionStore(redisTemplate);
+        redis.injectFaults(FaultInjection.failing(FailureMode.ERROR, 1d).onlyFor("EVALSHA", "EVAL"));
+
+        // WHEN
+        List<Status> actualStatuses = sut.incrementDistributions(
+                List.of(new AdDistributionMock("testDist", 0.04, 10, 1))).block();
+
+        // THEN
+        assertEquals(List.of(Status.FAILURE), actualStatuses);
+        assertEquals("9", redis.inKeyspace(keyspace -> keyspace.get("testDist")));
+
+    }
+
+    @Test
+    @DisplayName("Given partitioned Redis, when incrementing, then time out with status FAILURE and recover once healed")
+    void incrementDistribution_givenPartition_whenIncrementing_thenFailAndRecoverOnceHealed_negative() {
+
+        // GIVEN
+        var sut = new RedisBackedAdDistributionStore(redisTemplate);
+        var adDistribution = new AdDistributionMock("testDist", 0.04, 10, 1);
+        assertEquals(Status.SUCCESS, sut.incrementDistribution(adDistribution).block());
+        redis.partition();
+
+        // WHEN
+        Status actualPartitionedStatus = sut.incrementDistribution(adDistribution).block(COMMAND_TIMEOUT.multipliedBy(10));
+        redis.heal();
+
+        // THEN
+        assertEquals(Status.FAILURE, actualPartitionedStatus);
+        assertEquals(List.of(0L), sut.fetchDistributions(List.of(new AdBudgetMock("testDist", 0.04, 10)))
+                .map(distributions -> distributions.stream().map(AdDistribution::remainingQuota).toList())
+                    .retry(3)
+                        .block());
+
+    }
+
+    record AdBudgetMock(String aid, double priority, long quota) implements AdBudget {
+        @Override
+        public String toString() {
+            return format(
+                    """
+                    {
+                      "aid": "%s",
+                      "priority": %.2f,
+                      "quota": %d
+                    }
+                    """, aid, priority, quota);
+        }
+    }
+
+    record AdDistributionMock(String aid, double priority, long quota, long remainingQuota) implements AdDistribution {
+        @Override
+        public String toString() {
+            return format(
+                    """
+                    {
+                      "aid": "%s",
+                      "priority": %.2f,
+                      "quota": %d,
+                      "remainingQuota": %d
+                    }
+                    """, aid, priority, quota, remainingQuota);
+        }
+    }
+
+}
@@ -212,6 +212,28 @@ class RedisBackedAdDistributionStoreTest {
 
     }
 
+    @Test
+    @DisplayName("Given incrementing several, when one exceeds quota, then rollback only that one and return statuses accordingly")
+    void incrementDistributions_givenIncrementingSeveral_whenOneExceedsQuota_thenRollbackOnlyThatOne_negative() {
+
+        // GIVEN
+        var sut = new RedisBackedAdDistributionStore(redisTemplate);
+        var withinQuotaMock = new AdDistributionMock("testDist", 0.04, 10, 1);
+        var exceedingQuotaMock = new AdDistributionMock("testExhaustedDist", 0.04, 15, 1);
+        var exhaustedMock = new AdDistributionMock("testExhaustedDist", 0.04, 15, 0);
+
+        // WHEN
+        List<Status> actualStatuses = sut.incrementDistributions(
+                List.of(withinQuotaMock, exceedingQuotaMock, exhaustedMock)).block();
+
+        // THEN
+        assertNotNull(actualStatuses, "Expected non empty Mono");
+        assertEquals(List.of(Status.SUCCESS, Status.CONFLICT, Status.FAILURE), actualStatuses);
+        assertEquals(String.valueOf(10), redisTemplate.opsForValue().get("testDist").block(), "Expected value increment");
+        assertEquals(String.valueOf(15), redisTemplate.opsForValue().get("testExhaustedDist").block(), "Expected value rollback");
+
+    }
+
     record AdBudgetMock(String aid, double priority, long quota) implements AdBudget {
         @Override
         public String toString() {
@@ -0,0 +1,152 @@
+package com.undertone.adselector.infrastructure.out;
+
+import com.undertone.adselector.infrastructure.out.redis.FaultInjection;
+import com.undertone.adselector.infrastructure.out.redis.FaultInjection.FailureMode;
+import com.undertone.adselector.infrastructure.out.redis.InProcessRedisServer;
+import com.undertone.adselector.model.AdBudget;
+import com.undertone.adselector.model.AdDistribution;
+import com.undertone.adselector.model.Status;
+import org.junit.jupiter.api.*;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static java.lang.String.format;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs against the in-process Redis stand-in, see {@link RedisBackedAdDistributionStoreStandInTest}
+ */
+class RedisBackedBlockingAdDistributionStoreStandInTest {
+
+    private static final Duration COMMAND_TIMEOUT = Duration.ofMillis(300);
+
+    private static InProcessRedisServer redis;
+
+    private LettuceConnectionFactory connectionFactory;
+
+    private StringRedisTemplate redisTemplate;
+
+    @BeforeAll
+    public static void beforeAll() {
+        redis = RedisScriptStandIns.start();
+    }
+
+    @AfterAll
+    public static void afterAll() {
+        redis.close();
+    }
+
+    @BeforeEach
+    public void beforeEach() {
+        redis.heal();
+        redis.inKeyspace(keyspace -> {
+            keyspace.clear();
+            keyspace.set("testDist", String.valueOf(9));
+            keyspace.set("testExhaustedDist", String.valueOf(15));
+            return null;
+        });
+
+        connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration(redis.host(), redis.port()),
+                    LettuceClientConfiguration.builder().commandTimeout(COMMAND_TIMEOUT).build());
+        connectionFactory.afterPropertiesSet();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+    }
+
+    @AfterEach
+    public void afterEach() {
+        connectionFactory.destroy();
+    }
+
+    @Test
+    @DisplayName("Given incrementing several, when one exceeds quota, then rollback only that one and return matching statuses")
+    void incrementDistributions_givenOneExceedingQuota_whenIncrementing_thenRollbackOnlyThatOne_negative() {
+
+        // GIVEN
+        var sut = new RedisBackedBlockingAdDistributionStore(redisTemplate);
+        var adDistributions = List.<AdDistribution>of(
+                new AdDistributionMock("testDist", 0.04, 10, 1),
+                new AdDistributionMock("testExhaustedDist", 0.04, 15, 1));
+
+        // WHEN
+        List<AdDistribution> actualDistributions = sut.fetchDistributions(List.of(
+                new AdBudgetMock("testDist", 0.04, 20), new AdBudgetMock("testMissingDist", 0.14, 30)));
+        List<Status> actualStatuses = sut.incrementDistributions(adDistributions);
+
+        // THEN
+        assertEquals(List.of(11L, 30L), actualDistributions.stream().map(AdDistribution::remainingQuota).toList());
+        assertEquals(List.of(Status.SUCCESS, Status.CONFLICT), actualStatuses);
+        assertEquals("10", redis.inKeyspace(keyspace -> keyspace.get("testDist")));
+        assertEquals("15", redis.inKeyspace(keyspace -> keyspace.get("testExhaustedDist")));
+
+    }
+
+    @Test
+    @DisplayName("Given injected latency, when incrementing from many virtual threads, then every increment succeeds, and injected errors fail")
+    void incrementDistribution_givenInjectedLatency_whenIncrementingFromVirtualThreads_thenComplete_positive() throws Exception {
+
+        // GIVEN
+        var sut = new RedisBackedBlockingAdDistributionStore(redisTemplate);
+        var adDistribution = new AdDistributionMock("testDist", 0.04, 100, 91);
+        redis.injectFaults(FaultInjection.latency(Duration.ofMillis(5), Duration.ofMillis(20)));
+
+        // WHEN
+        var actualStatuses = new ArrayList<Status>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var futures = new ArrayList<Future<Status>>();
+            for (int i = 0; i < 20; i++) {
+                futures.add(executor.submit(() -> sut.incrementDistribution(adDistribution)));
+            }
+            for (Future<Status> future : futures) {
+                actualStatuses.add(future.get());
+            }
+        }
+        redis.injectFaults(FaultInjection.failing(FailureMode.ERROR, 1d).onlyFor("EVALSHA", "EVAL"));
+        List<Status> actualFailedStatuses = sut.incrementDistributions(List.of(adDistribution));
+
+        // THEN
+        assertTrue(actualStatuses.stream().allMatch(Status.SUCCESS::equals), "Expected every increment to succeed");
+        assertEquals("29", redis.inKeyspace(keyspace -> keyspace.get("testDist")));
+        assertEquals(List.of(Status.FAILURE), actualFailedStatuses);
+
+    }
+
+    record AdBudgetMock(String aid, double priority, long quota) implements AdBudget {
+        @Override
+        public String toString() {
+            return format(
+                    """
+                    {
+                      "aid": "%s",
+                      "priority": %.2f,
+                      "quota": %d
+                    }
+                    """, aid, priority, quota);
+        }
+    }
+
+    record AdDistributionMock(String aid, double priority, long quota, long remainingQuota) implements AdDistribution {
+        @Override
+        public String toString() {
+            return format(
+                    """
+                    {
+                      "aid": "%s",
+                      "priority": %.2f,
+                      "quota": %d,
+                      "remainingQuota": %d
+                    }
+                    """, aid, priority, quota, remainingQuota);
+        }
+    }
+
+}
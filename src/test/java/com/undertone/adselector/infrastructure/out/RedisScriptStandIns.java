@@ -0,0 +1,120 @@
+package com.undertone.adselector.infrastructure.out;
+
+import com.undertone.adselector.infrastructure.out.redis.InProcessRedisServer;
+import com.undertone.adselector.infrastructure.out.redis.Keyspace;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Java ports of every Lua script executed by the service, for use with {@link InProcessRedisServer}.
+ * Each port mirrors its script line by line, keep both in sync when changing either.
+ */
+public final class RedisScriptStandIns {
+
+    private RedisScriptStandIns() {}
+
+    public static InProcessRedisServer.Builder registerAll(InProcessRedisServer.Builder builder) {
+        return builder
+                .withScript(RedisBackedAdDistributionStore.INCREMENT_DISTRIBUTIONS_SCRIPT.getScriptAsString(),
+                        RedisScriptStandIns::incrementDistributions)
+                .withScript(RedisSpendReconciler.EXPIRE_ORPHANS_SCRIPT.getScriptAsString(),
+                        RedisScriptStandIns::expireOrphans)
+                .withScript(RedisSpendReconciler.PERSIST_COUNTERS_SCRIPT.getScriptAsString(),
+                        RedisScriptStandIns::persistCounters)
+                .withScript(RedisSpendReconciler.LEASE_SCRIPT.getScriptAsString(),
+                        RedisScriptStandIns::lease)
+                .withScript(RedisSpendReconciler.ARCHIVE_ORPHANS_SCRIPT.getScriptAsString(),
+                        RedisScriptStandIns::archiveOrphans)
+                .withScript(RedisSpendReconciler.CLAMP_COUNTERS_SCRIPT.getScriptAsString(),
+                        RedisScriptStandIns::clampCounters)
+                .withScript(RedisBackedAdBudgetPlanPublisher.SWITCH_CURRENT_SCRIPT.getScriptAsString(),
+                        RedisScriptStandIns::switchCurrent);
+    }
+
+    /**
+     * @return a started server having every service script registered, listening on an ephemeral port
+     */
+    public static InProcessRedisServer start() {
+        return registerAll(InProcessRedisServer.builder()).start();
+    }
+
+    static List<Long> incrementDistributions(Keyspace keyspace, List<String> keys, List<String> args) {
+        final List<Long> statuses = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            final long spent = keyspace.incrementBy(keys.get(i), 1L);
+            if (spent > Long.parseLong(args.get(i))) {
+                keyspace.incrementBy(keys.get(i), -1L);
+                statuses.add(0L);
+            } else {
+                statuses.add(1L);
+            }
+        }
+        return statuses;
+    }
+
+    static Long expireOrphans(Keyspace keyspace, List<String> keys, List<String> args) {
+        long expired = 0;
+        for (String key : keys) {
+            if (keyspace.ttlMillis(key) == -1L) {
+                keyspace.expire(key, Long.parseLong(args.get(0)) * 1000L);
+                expired++;
+            }
+        }
+        return expired;
+    }
+
+    static Long persistCounters(Keyspace keyspace, List<String> keys, List<String> args) {
+        long persisted = 0;
+        for (String key : keys) {
+            if (keyspace.persist(key)) {
+                persisted++;
+            }
+        }
+        return persisted;
+    }
+
+    static Long lease(Keyspace keyspace, List<String> keys, List<String> args) {
+        final String owner = keyspace.get(keys.get(0));
+        if (owner != null && !owner.equals(args.get(0))) {
+            return 0L;
+        }
+        keyspace.set(keys.get(0), args.get(0));
+        keyspace.expire(keys.get(0), Long.parseLong(args.get(1)));
+        return 1L;
+    }
+
+    static Long archiveOrphans(Keyspace keyspace, List<String> keys, List<String> args) {
+        long archived = 0;
+        for (String key : keys) {
+            if (keyspace.exists(key)) {
+                keyspace.rename(key, args.get(0) + key);
+                archived++;
+            }
+        }
+        return archived;
+    }
+
+    static Long clampCounters(Keyspace keyspace, List<String> keys, List<String> args) {
+        long clamped = 0;
+        for (int i = 0; i < keys.size(); i++) {
+            final String spent = keyspace.get(keys.get(i));
+            if (spent != null && Long.parseLong(spent) > Long.parseLong(args.get(i))) {
+                keyspace.set(keys.get(i), args.get(i));
+                clamped++;
+            }
+        }
+        return clamped;
+    }
+
+    static Long switchCurrent(Keyspace keyspace, List<String> keys, List<String> args) {
+        final String current = keyspace.get(keys.get(0));
+        final long currentVersion = current == null ? 0L : Long.parseLong(current);
+        if (Long.parseLong(args.get(0)) <= currentVersion) {
+            return -1L;
+        }
+        keyspace.set(keys.get(0), args.get(0));
+        return currentVersion;
+    }
+
+}
@@ -0,0 +1,288 @@
+package com.undertone.adselector.infrastructure.out;
+
+import com.undertone.adselector.application.ports.out.AdBudgetPlanStore;
+import com.undertone.adselector.infrastructure.out.RedisSpendReconciler.OrphanPolicy;
+import com.undertone.adselector.infrastructure.out.RedisSpendReconciler.ReconciliationReport;
+import com.undertone.adselector.model.AdBudget;
+import com.undertone.adselector.model.AdBudgetPlan;
+import org.junit.jupiter.api.*;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.ReactiveValueOperations;
+import org.springframework.data.redis.core.ScanOptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static java.lang.String.format;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.AdditionalMatchers.not;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class RedisSpendReconcilerTest {
+
+    private AutoCloseable closeable;
+
+    @Mock
+    private ReactiveStringRedisTemplate redisTemplateMock;
+
+    @Mock
+    private ReactiveValueOperations<String, String> valueOperationsMock;
+
+    @Mock
+    private AdBudgetPlanStore adBudgetPlanStoreMock;
+
+    @Mock
+    private AdBudgetPlan adBudgetPlanMock;
+
+    @BeforeEach
+    public void before() {
+        closeable = MockitoAnnotations.openMocks(this);
+        when(redisTemplateMock.opsForValue()).thenReturn(valueOperationsMock);
+        when(redisTemplateMock.convertAndSend(anyString(), anyString())).thenReturn(Mono.just(1L));
+        when(adBudgetPlanStoreMock.fetchPlan()).thenReturn(Mono.just(adBudgetPlanMock));
+        when(adBudgetPlanMock.fetch(anyString())).thenReturn(Optional.empty());
+        when(redisTemplateMock.execute(eq(RedisSpendReconciler.LEASE_SCRIPT), anyList(), anyList()))
+                .thenReturn(Flux.just(1L));
+        when(redisTemplateMock.execute(eq(RedisSpendReconciler.PERSIST_COUNTERS_SCRIPT), anyList(), anyList()))
+                .thenReturn(Flux.just(0L));
+    }
+
+    @AfterEach
+    public void after() throws Exception {
+        closeable.close();
+    }
+
+    @Test
+    @DisplayName("Given counters of aids absent from plan, when reconciling, then expire orphans and report")
+    void reconcile_givenOrphanedCounters_whenReconciling_thenExpireOrphans_positive() {
+
+        // GIVEN
+        var sut = buildSut(OrphanPolicy.EXPIRE);
+        when(adBudgetPlanMock.fetch(eq("planned"))).thenReturn(Optional.of(new AdBudgetMock("planned", 0.5, 10)));
+
+        givenKeyspace("planned", "5", "orphan", "3");
+        when(redisTemplateMock.execute(eq(RedisSpendReconciler.EXPIRE_ORPHANS_SCRIPT), anyList(), anyList()))
+                .thenReturn(Flux.just(1L));
+
+        // WHEN
+        ReconciliationReport actualReport = sut.reconcile().block();
+
+        // THEN
+        assertNotNull(actualReport, "Expected non empty Mono");
+        assertEquals(2, actualReport.scannedKeys());
+        assertEquals(2, actualReport.counterKeys());
+        assertEquals(1, actualReport.orphanedKeys());
+        assertEquals(1, actualReport.orphansHandled());
+        assertEquals(0, actualReport.overspentKeys());
+
+        verify(redisTemplateMock, times(1))
+                .execute(eq(RedisSpendReconciler.EXPIRE_ORPHANS_SCRIPT), eq(List.of("orphan")), eq(List.of("60")));
+        verify(redisTemplateMock, times(1)).convertAndSend(eq(RedisSpendReconciler.REPORT_CHANNEL), anyString());
+        assertEquals(Optional.of(actualReport), sut.lastReport());
+
+    }
+
+    @Test
+    @DisplayName("Given counters of aids absent from plan, when reconciling with archive policy, then archive orphans")
+    void reconcile_givenOrphanedCounters_whenReconcilingWithArchivePolicy_thenArchiveOrphans_positive() {
+
+        // GIVEN
+        var sut = buildSut(OrphanPolicy.ARCHIVE);
+
+        givenKeyspace("orphan", "3");
+        when(redisTemplateMock.execute(eq(RedisSpendReconciler.ARCHIVE_ORPHANS_SCRIPT), anyList(), anyList()))
+                .thenReturn(Flux.just(1L));
+
+        // WHEN
+        ReconciliationReport actualReport = sut.reconcile().block();
+
+        // THEN
+        assertNotNull(actualReport, "Expected non empty Mono");
+        assertEquals(1, actualReport.orphansHandled());
+        verify(redisTemplateMock, times(1)).execute(eq(RedisSpendReconciler.ARCHIVE_ORPHANS_SCRIPT),
+                eq(List.of("orphan")), eq(List.of(RedisSpendReconciler.ARCHIVE_KEY_PREFIX)));
+
+    }
+
+    @Test
+    @DisplayName("Given counter exceeding quota, when reconciling, then clamp counter to quota")
+    void reconcile_givenCounterExceedingQuota_whenReconciling_thenClampToQuota_positive() {
+
+        // GIVEN
+        var sut = buildSut(OrphanPolicy.EXPIRE);
+        when(adBudgetPlanMock.fetch(eq("overspent"))).thenReturn(Optional.of(new AdBudgetMock("overspent", 0.5, 10)));
+
+        givenKeyspace("overspent", "12");
+        when(redisTemplateMock.execute(eq(RedisSpendReconciler.CLAMP_COUNTERS_SCRIPT), anyList(), anyList()))
+                .thenReturn(Flux.just(1L));
+
+        // WHEN
+        ReconciliationReport actualReport = sut.reconcile().block();
+
+        // THEN
+        assertNotNull(actualReport, "Expected non empty Mono");
+        assertEquals(1, actualReport.overspentKeys());
+        assertEquals(1, actualReport.clampedKeys());
+        assertEquals(0, actualReport.orphanedKeys());
+        verify(redisTemplateMock, times(1)).execute(eq(RedisSpendReconciler.CLAMP_COUNTERS_SCRIPT),
+                eq(List.of("overspent")), eq(List.of("10")));
+
+    }
+
+    @Test
+    @DisplayName("Given reserved and non counter keys, when reconciling, then leave them untouched")
+    void reconcile_givenReservedAndNonCounterKeys_whenReconciling_thenLeaveUntouched_negative() {
+
+        // GIVEN
+        var sut = buildSut(OrphanPolicy.EXPIRE);
+
+        when(redisTemplateMock.scan(any(ScanOptions.class)))
+                .thenReturn(Flux.just(RedisSpendReconciler.ARCHIVE_KEY_PREFIX + "old", "notACounter"));
+        when(valueOperationsMock.multiGet(eq(List.of("notACounter")))).thenReturn(Mono.just(List.of("text")));
+
+        // WHEN
+        ReconciliationReport actualReport = sut.reconcile().block();
+
+        // THEN
+        assertNotNull(actualReport, "Expected non empty Mono");
+        assertEquals(2, actualReport.scannedKeys());
+        assertEquals(0, actualReport.counterKeys());
+        verify(redisTemplateMock, never()).execute(not(eq(RedisSpendReconciler.LEASE_SCRIPT)), anyList(), anyList());
+
+    }
+
+    @Test
+    @DisplayName("Given empty plan, when reconciling, then skip pass entirely")
+    void reconcile_givenEmptyPlan_whenReconciling_thenSkipPass_negative() {
+
+        // GIVEN
+        var sut = buildSut(OrphanPolicy.EXPIRE);
+        when(adBudgetPlanStoreMock.fetchPlan()).thenReturn(Mono.just(AdBudgetPlan.EMPTY));
+
+        // WHEN
+        ReconciliationReport actualReport = sut.reconcile().block();
+
+        // THEN
+        assertNull(actualReport, "Expected empty Mono");
+        verify(redisTemplateMock, never()).scan(any(ScanOptions.class));
+
+    }
+
+    @Test
+    @DisplayName("Given counters of planned aids, when reconciling, then persist them reverting orphan expiry")
+    void reconcile_givenPlannedCounters_whenReconciling_thenPersistCounters_positive() {
+
+        // GIVEN
+        var sut = buildSut(OrphanPolicy.EXPIRE);
+        when(adBudgetPlanMock.fetch(eq("returned"))).thenReturn(Optional.of(new AdBudgetMock("returned", 0.5, 10)));
+
+        givenKeyspace("returned", "5");
+        when(redisTemplateMock.execute(eq(RedisSpendReconciler.PERSIST_COUNTERS_SCRIPT), anyList(), anyList()))
+                .thenReturn(Flux.just(1L));
+
+        // WHEN
+        ReconciliationReport actualReport = sut.reconcile().block();
+
+        // THEN
+        assertNotNull(actualReport, "Expected non empty Mono");
+        assertEquals(1, actualReport.persistedKeys());
+        assertEquals(0, actualReport.orphanedKeys());
+        verify(redisTemplateMock, times(1))
+                .execute(eq(RedisSpendReconciler.PERSIST_COUNTERS_SCRIPT), eq(List.of("returned")), eq(List.of()));
+        verify(redisTemplateMock, never())
+                .execute(eq(RedisSpendReconciler.EXPIRE_ORPHANS_SCRIPT), anyList(), anyList());
+
+    }
+
+    @Test
+    @DisplayName("Given lease held by another instance, when reconciling, then skip pass entirely")
+    void reconcile_givenLeaseHeldElsewhere_whenReconciling_thenSkipPass_negative() {
+
+        // GIVEN
+        var sut = buildSut(OrphanPolicy.EXPIRE);
+        givenKeyspace("orphan", "3");
+        when(redisTemplateMock.execute(eq(RedisSpendReconciler.LEASE_SCRIPT), anyList(), anyList()))
+                .thenReturn(Flux.just(0L));
+
+        // WHEN
+        ReconciliationReport actualReport = sut.reconcile().block();
+
+        // THEN
+        assertNull(actualReport, "Expected empty Mono");
+        verify(redisTemplateMock, never()).scan(any(ScanOptions.class));
+        verify(redisTemplateMock, times(1)).execute(eq(RedisSpendReconciler.LEASE_SCRIPT),
+                eq(List.of(RedisSpendReconciler.LEASE_KEY)), anyList());
+
+    }
+
+    @Test
+    @DisplayName("Given plan generation changing midway, when reconciling, then abort pass leaving counters untouched")
+    void reconcile_givenPlanGenerationChangingMidway_whenReconciling_thenAbortPass_negative() {
+
+        // GIVEN
+        var sut = buildSut(OrphanPolicy.EXPIRE);
+        AdBudgetPlan amendedPlanMock = mock(AdBudgetPlan.class);
+        when(adBudgetPlanMock.generation()).thenReturn(1L);
+        when(amendedPlanMock.generation()).thenReturn(2L);
+        when(adBudgetPlanStoreMock.fetchPlan()).thenReturn(Mono.just(adBudgetPlanMock), Mono.just(amendedPlanMock));
+
+        givenKeyspace("orphan", "3");
+
+        // WHEN
+        ReconciliationReport actualReport = sut.reconcile().block();
+
+        // THEN
+        assertNull(actualReport, "Expected empty Mono");
+        assertEquals(Optional.empty(), sut.lastReport());
+        verify(valueOperationsMock, never()).multiGet(anyList());
+        verify(redisTemplateMock, never())
+                .execute(eq(RedisSpendReconciler.EXPIRE_ORPHANS_SCRIPT), anyList(), anyList());
+
+    }
+
+    private RedisSpendReconciler buildSut(OrphanPolicy orphanPolicy) {
+        return RedisSpendReconciler.builder(redisTemplateMock, adBudgetPlanStoreMock)
+                .withOrphanPolicy(orphanPolicy).withOrphanTtl(Duration.ofMinutes(1))
+                    .withClampGracePeriod(Duration.ZERO)
+                        .withRateLimit(10, 100_000)
+                            .withScheduler(Schedulers.parallel())
+                                .build();
+    }
+
+    /**
+     * @param keyValues alternating key and value pairs
+     */
+    private void givenKeyspace(String... keyValues) {
+        String[] keys = new String[keyValues.length / 2];
+        String[] values = new String[keyValues.length / 2];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = keyValues[2 * i];
+            values[i] = keyValues[2 * i + 1];
+        }
+        when(redisTemplateMock.scan(any(ScanOptions.class))).thenReturn(Flux.just(keys));
+        when(valueOperationsMock.multiGet(eq(Arrays.asList(keys)))).thenReturn(Mono.just(Arrays.asList(values)));
+    }
+
+    record AdBudgetMock(String aid, double priority, long quota) implements AdBudget {
+        @Override
+        public String toString() {
+            return format(
+                    """
+                    {
+                      "aid": "%s",
+                      "priority": %.2f,
+                      "quota": %d
+                    }
+                    """, aid, priority, quota);
+        }
+    }
+
+}
@@ -0,0 +1,341 @@
+package com.undertone.adselector.infrastructure.out;
+
+import com.undertone.adselector.application.ports.out.AdDistributionStore;
+import com.undertone.adselector.application.ports.out.BlockingAdDistributionStore;
+import com.undertone.adselector.application.ports.out.InfrastructureException.StoreException.OperationFailedException;
+import com.undertone.adselector.application.ports.out.InfrastructureException.StoreException.UnavailableException;
+import com.undertone.adselector.infrastructure.out.ResilientAdDistributionStore.FallbackPolicy;
+import com.undertone.adselector.model.AdBudget;
+import com.undertone.adselector.model.AdDistribution;
+import com.undertone.adselector.model.Deadline;
+import com.undertone.adselector.model.Status;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class ResilientAdDistributionStoreTest {
+
+    private static final CircuitBreakerConfig TEST_CIRCUIT_BREAKER_CONFIG = CircuitBreakerConfig.custom()
+            .slidingWindowSize(4)
+                .minimumNumberOfCalls(4)
+                    .failureRateThreshold(50)
+                        .waitDurationInOpenState(Duration.ofMinutes(1))
+                            .build();
+
+    private AutoCloseable closeable;
+
+    @Mock
+    private AdDistributionStore adDistributionStoreMock;
+
+    @Mock
+    private BlockingAdDistributionStore blockingAdDistributionStoreMock;
+
+    @BeforeEach
+    public void before() {
+        closeable = MockitoAnnotations.openMocks(this);
+    }
+
+    @AfterEach
+    public void after() throws Exception {
+        closeable.close();
+    }
+
+    @Test
+    @DisplayName("Given request deadline shorter than store latency, when fetching, then answer no fill by deadline without opening circuit")
+    void fetchDistributions_givenDeadlineShorterThanStoreLatency_whenFetching_thenNoFillByDeadline_positive() {
+
+        // GIVEN
+        var testMeterRegistry = new SimpleMeterRegistry();
+        var sut = ResilientAdDistributionStore.builder(adDistributionStoreMock)
+                .withOperationTimeout(Duration.ofSeconds(1))
+                    .withCircuitBreakerConfig(TEST_CIRCUIT_BREAKER_CONFIG)
+                        .withMeterRegistry(testMeterRegistry)
+                            .build();
+
+        List<AdBudget> testAdBudgets = List.of(new AdBudgetMock("test1", 0.5d, 10L));
+
+        // WHEN
+        when(adDistributionStoreMock.fetchDistributions(anyList())).thenReturn(
+                Mono.delay(Duration.ofMillis(500)).thenReturn(List.of()));
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 4; i++) {
+            List<AdDistribution> actualDistributions = sut.fetchDistributions(testAdBudgets)
+                    .contextWrite(context -> context.put(Deadline.class, Deadline.after(Duration.ofMillis(20))))
+                        .block();
+            assertEquals(List.of(), actualDistributions);
+        }
+        Duration actualElapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        List<AdDistribution> actualExpired = sut.fetchDistributions(testAdBudgets)
+                .contextWrite(context -> context.put(Deadline.class, Deadline.after(Duration.ZERO)))
+                    .block();
+
+        // THEN
+        assertEquals(List.of(), actualExpired);
+        assertTrue(actualElapsed.compareTo(Duration.ofMillis(400)) < 0,
+                "Expected fetches to be bound by deadline, but took: " + actualElapsed);
+        verify(adDistributionStoreMock, times(4)).fetchDistributions(anyList());
+
+        assertEquals(CircuitBreaker.State.CLOSED, sut.circuitBreakerState(),
+                "Expected expired deadlines not to be accounted for by circuit breaker");
+        assertEquals(5d, testMeterRegistry.get("adselector.store.fallbacks")
+                .tag("reason", "deadline").counter().count());
+
+    }
+
+    @Test
+    @DisplayName("Given failing store, when failure rate exceeds threshold, then open circuit and short-circuit by fallback policy")
+    void fetchDistributions_givenFailingStore_whenFailureRateExceeded_thenShortCircuitByFailPolicy_negative() {
+
+        // GIVEN
+        var sut = ResilientAdDistributionStore.builder(adDistributionStoreMock)
+                .withCircuitBreakerConfig(TEST_CIRCUIT_BREAKER_CONFIG)
+                    .withFallbackPolicy(FallbackPolicy.FAIL)
+                        .build();
+
+        List<AdBudget> testAdBudgets = List.of(new AdBudgetMock("test1", 0.5d, 10L));
+
+        // WHEN
+        when(adDistributionStoreMock.fetchDistributions(anyList()))
+                .thenReturn(Mono.error(new IllegalStateException("Connection refused")));
+
+        for (int i = 0; i < 4; i++) {
+            assertThrows(OperationFailedException.class, () -> sut.fetchDistributions(testAdBudgets).block());
+        }
+        Exception actualShortCircuit = assertThrows(UnavailableException.class,
+                () -> sut.fetchDistributions(testAdBudgets).block());
+
+        // THEN
+        assertEquals(CircuitBreaker.State.OPEN, sut.circuitBreakerState());
+        assertTrue(actualShortCircuit.getMessage().contains("fetchMany"));
+        verify(adDistributionStoreMock, times(4)).fetchDistributions(anyList());
+
+    }
+
+    @Test
+    @DisplayName("Given store answering failed increments, when failure rate exceeds threshold, then open circuit and answer no fill")
+    void incrementDistributions_givenFailedIncrements_whenFailureRateExceeded_thenOpenCircuitAndNoFill_negative() {
+
+        // GIVEN
+        var testMeterRegistry = new SimpleMeterRegistry();
+        var sut = ResilientAdDistributionStore.builder(adDistributionStoreMock)
+                .withCircuitBreakerConfig(TEST_CIRCUIT_BREAKER_CONFIG)
+                    .withMeterRegistry(testMeterRegistry)
+                        .build();
+
+        var testAdDistribution = new AdDistributionMock("test1", 0.5d, 10L, 5L);
+
+        // WHEN
+        when(adDistributionStoreMock.incrementDistributions(anyList()))
+                .thenReturn(Mono.just(List.of(Status.FAILURE, Status.FAILURE)));
+
+        for (int i = 0; i < 4; i++) {
+            assertEquals(List.of(Status.FAILURE, Status.FAILURE),
+                    sut.incrementDistributions(List.of(testAdDistribution, testAdDistribution)).block());
+        }
+        List<Status> actualShortCircuited = sut.incrementDistributions(List.of(testAdDistribution, testAdDistribution))
+                .block();
+
+        // THEN
+        assertEquals(List.of(Status.FAILURE, Status.FAILURE), actualShortCircuited);
+        assertEquals(CircuitBreaker.State.OPEN, sut.circuitBreakerState());
+        verify(adDistributionStoreMock, times(4)).incrementDistributions(anyList());
+        assertEquals(1d, testMeterRegistry.get("adselector.store.fallbacks")
+                .tag("reason", "circuit_open").counter().count());
+        assertEquals(1d, testMeterRegistry.get("resilience4j.circuitbreaker.state")
+                .tag("state", "open").gauge().value());
+
+    }
+
+    @Test
+    @DisplayName("Given exhausted distributions, when incrementing repeatedly, then answer failure without opening circuit nor spending locally")
+    void incrementDistributions_givenExhaustedDistributions_whenIncrementing_thenKeepCircuitClosed_positive() {
+
+        // GIVEN
+        var testAllowance = new LocalSpendAllowance(0.5d, 1, (aid, amount) -> Mono.just(amount));
+        var testMeterRegistry = new SimpleMeterRegistry();
+        var sut = ResilientAdDistributionStore.builder(adDistributionStoreMock)
+                .withCircuitBreakerConfig(TEST_CIRCUIT_BREAKER_CONFIG)
+                    .withFallbackPolicy(FallbackPolicy.LOCAL_ALLOWANCE)
+                        .withLocalAllowance(testAllowance)
+                            .withMeterRegistry(testMeterRegistry)
+                                .build();
+        var blockingSut = sut.blocking(blockingAdDistributionStoreMock);
+
+        var testAdDistribution = new AdDistributionMock("test1", 0.5d, 10L, 0L);
+
+        // WHEN
+        when(adDistributionStoreMock.incrementDistribution(testAdDistribution)).thenReturn(Mono.just(Status.FAILURE));
+        when(adDistributionStoreMock.incrementDistributions(anyList()))
+                .thenReturn(Mono.just(List.of(Status.FAILURE, Status.FAILURE)));
+        when(blockingAdDistributionStoreMock.incrementDistribution(testAdDistribution)).thenReturn(Status.FAILURE);
+
+        for (int i = 0; i < 4; i++) {
+            assertEquals(Status.FAILURE, sut.incrementDistribution(testAdDistribution).block());
+            assertEquals(List.of(Status.FAILURE, Status.FAILURE),
+                    sut.incrementDistributions(List.of(testAdDistribution, testAdDistribution)).block());
+            assertEquals(Status.FAILURE, blockingSut.incrementDistribution(testAdDistribution));
+        }
+
+        // THEN
+        assertEquals(CircuitBreaker.State.CLOSED, sut.circuitBreakerState());
+        assertEquals(0L, testAllowance.pendingSpend());
+        verify(adDistributionStoreMock, times(4)).incrementDistribution(testAdDistribution);
+        verify(adDistributionStoreMock, times(4)).incrementDistributions(anyList());
+        assertEquals(0d, testMeterRegistry.find("adselector.store.fallbacks").counters().stream()
+                .mapToDouble(Counter::count).sum());
+
+    }
+
+    @Test
+    @DisplayName("Given local allowance policy, when store becomes unreachable, then spend locally and replay once it recovered")
+    void incrementDistribution_givenLocalAllowancePolicy_whenStoreUnreachable_thenSpendLocallyAndReplay_positive() {
+
+        // GIVEN
+        List<Long> testReplayed = new ArrayList<>();
+        var testAllowance = new LocalSpendAllowance(0.5d, 1, (aid, amount) -> {
+            testReplayed.add(amount);
+            return Mono.just(amount);
+        });
+        var sut = ResilientAdDistributionStore.builder(adDistributionStoreMock)
+                .withCircuitBreakerConfig(CircuitBreakerConfig.ofDefaults())
+                    .withFallbackPolicy(FallbackPolicy.LOCAL_ALLOWANCE)
+                        .withLocalAllowance(testAllowance)
+                            .build();
+
+        var testAdBudget = new AdBudgetMock("test1", 0.5d, 10L);
+        var testAdDistribution = new AdDistributionMock("test1", 0.5d, 10L, 4L);
+
+        // WHEN
+        when(adDistributionStoreMock.fetchDistribution(testAdBudget)).thenReturn(Mono.just(testAdDistribution));
+        sut.fetchDistribution(testAdBudget).block();
+
+        when(adDistributionStoreMock.fetchDistribution(testAdBudget))
+                .thenReturn(Mono.error(new IllegalStateException("Connection refused")));
+        when(adDistributionStoreMock.incrementDistribution(testAdDistribution)).thenReturn(Mono.just(Status.FAILURE));
+
+        AdDistribution actualLocalDistribution = sut.fetchDistribution(testAdBudget).block();
+        List<Status> actualStatuses = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            actualStatuses.add(sut.incrementDistribution(testAdDistribution).block());
+        }
+
+        when(adDistributionStoreMock.incrementDistribution(testAdDistribution)).thenReturn(Mono.just(Status.SUCCESS));
+        Status actualRecovered = sut.incrementDistribution(testAdDistribution).block();
+
+        // THEN
+        assertEquals(2L, actualLocalDistribution.remainingQuota(), "Expected allowance of floor(0.5 * 4)");
+        assertEquals(List.of(Status.SUCCESS, Status.SUCCESS, Status.CONFLICT), actualStatuses);
+        assertEquals(Status.SUCCESS, actualRecovered);
+        assertEquals(List.of(2L), testReplayed, "Expected local spending to be replayed by a single increment");
+        assertEquals(0L, testAllowance.pendingSpend());
+
+    }
+
+    @Test
+    @DisplayName("Given blocking store slower than thread deadline, when fetching, then answer no fill by deadline without opening circuit")
+    void blockingFetchDistributions_givenDeadlineShorterThanStoreLatency_whenFetching_thenNoFillByDeadline_positive()
+            throws Exception {
+
+        // GIVEN
+        var testMeterRegistry = new SimpleMeterRegistry();
+        var sut = ResilientAdDistributionStore.builder(adDistributionStoreMock)
+                .withOperationTimeout(Duration.ofSeconds(1))
+                    .withCircuitBreakerConfig(TEST_CIRCUIT_BREAKER_CONFIG)
+                        .withMeterRegistry(testMeterRegistry)
+                            .build()
+                                .blocking(blockingAdDistributionStoreMock);
+
+        List<AdBudget> testAdBudgets = List.of(new AdBudgetMock("test1", 0.5d, 10L));
+
+        // WHEN
+        when(blockingAdDistributionStoreMock.fetchDistributions(anyList())).thenAnswer(invocation -> {
+            Thread.sleep(500);
+            return List.of(new AdDistributionMock("test1", 0.5d, 10L, 5L));
+        });
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 4; i++) {
+            List<AdDistribution> actualDistributions = Deadline.callWithin(Deadline.after(Duration.ofMillis(20)),
+                    () -> sut.fetchDistributions(testAdBudgets));
+            assertEquals(List.of(), actualDistributions);
+        }
+        Duration actualElapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        // THEN
+        assertTrue(actualElapsed.compareTo(Duration.ofMillis(400)) < 0,
+                "Expected fetches to be bound by deadline, but took: " + actualElapsed);
+        assertEquals(4d, testMeterRegistry.get("adselector.store.fallbacks")
+                .tag("reason", "deadline").counter().count());
+
+    }
+
+    @Test
+    @DisplayName("Given failing blocking store, when failure rate exceeds threshold, then share open circuit with reactive store")
+    void blockingFetchDistributions_givenFailingStore_whenFailureRateExceeded_thenShortCircuitByFailPolicy_negative() {
+
+        // GIVEN
+        var resilientStore = ResilientAdDistributionStore.builder(adDistributionStoreMock)
+                .withCircuitBreakerConfig(TEST_CIRCUIT_BREAKER_CONFIG)
+                    .withFallbackPolicy(FallbackPolicy.FAIL)
+                        .build();
+        var sut = resilientStore.blocking(blockingAdDistributionStoreMock);
+
+        List<AdBudget> testAdBudgets = List.of(new AdBudgetMock("test1", 0.5d, 10L));
+
+        // WHEN
+        when(blockingAdDistributionStoreMock.fetchDistributions(anyList()))
+                .thenThrow(new IllegalStateException("Connection refused"));
+
+        for (int i = 0; i < 4; i++) {
+            assertThrows(OperationFailedException.class, () -> sut.fetchDistributions(testAdBudgets));
+        }
+        Exception actualShortCircuit = assertThrows(UnavailableException.class,
+                () -> sut.fetchDistributions(testAdBudgets));
+
+        // THEN
+        assertEquals(CircuitBreaker.State.OPEN, resilientStore.circuitBreakerState());
+        assertTrue(actualShortCircuit.getMessage().contains("fetchMany"));
+        assertThrows(UnavailableException.class, () -> resilientStore.fetchDistributions(testAdBudgets).block());
+        verify(blockingAdDistributionStoreMock, times(4)).fetchDistributions(anyList());
+        verify(adDistributionStoreMock, never()).fetchDistributions(anyList());
+
+    }
+
+    private record AdBudgetMock(String aid, double priority, long quota) implements AdBudget {
+        @Override
+        public String toString() {
+            return """
+                    {"aid": "%s", "priority": %s, "quota": %d}
+                    """.formatted(aid, priority, quota);
+        }
+    }
+
+    private record AdDistributionMock(String aid, double priority, long quota, long remainingQuota)
+            implements AdDistribution {
+        @Override
+        public String toString() {
+            return """
+                    {"aid": "%s", "priority": %s, "quota": %d, "remainingQuota": %d}
+                    """.formatted(aid, priority, quota, remainingQuota);
+        }
+    }
+
+}
@@ -0,0 +1,277 @@
+package com.undertone.adselector.infrastructure.out.redis;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static com.undertone.adselector.infrastructure.out.redis.RespCodec.OK;
+import static com.undertone.adselector.infrastructure.out.redis.RespCodec.error;
+
+/**
+ * Per connection command execution, confined to the server event loop.
+ * Delayed commands are scheduled no earlier than previously delayed ones, keeping replies in command order.
+ */
+@Slf4j
+final class CommandDispatcher extends SimpleChannelInboundHandler<List<String>> {
+
+    private static final String WRONG_TYPE = "ERR value is not an integer or out of range";
+
+    private final InProcessRedisServer server;
+    private final Set<String> subscriptions = new LinkedHashSet<>();
+
+    private ChannelHandlerContext context;
+    private long lastDueNanos;
+    private volatile boolean unresponsive;
+
+    CommandDispatcher(InProcessRedisServer server) {
+        this.server = server;
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        this.context = ctx;
+        server.register(this);
+        super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        server.unregister(this, ctx.channel());
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) {
+        ctx.flush();
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        log.warn("Closing Redis stand-in connection: {}", ctx.channel().remoteAddress(), cause);
+        ctx.close();
+    }
+
+    void closeIfUnresponsive() {
+        if (unresponsive && context != null) {
+            context.close();
+        }
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, List<String> command) {
+        if (unresponsive) {
+            return;
+        }
+
+        final String name = command.get(0).toUpperCase(Locale.ROOT);
+        final FaultInjection faults = server.faults();
+
+        long delayNanos = 0L;
+        Object injectedReply = null;
+        if (faults.affects(name)) {
+            switch (faults.nextFailure()) {
+                case ERROR -> injectedReply = error("ERR injected failure");
+                case TIMEOUT -> {
+                    unresponsive = true;
+                    return;
+                }
+                case DISCONNECT -> {
+                    ctx.close();
+                    return;
+                }
+                case NONE -> { }
+            }
+            delayNanos = faults.delayNanos();
+        }
+
+        final Object reply = injectedReply;
+        final long now = System.nanoTime();
+        final long dueNanos = Math.max(now + delayNanos, lastDueNanos);
+        if (dueNanos <= now) {
+            reply(ctx, command, name, reply);
+        } else {
+            lastDueNanos = dueNanos;
+            ctx.executor().schedule(() -> {
+                if (!unresponsive) {
+                    reply(ctx, command, name, reply);
+                    ctx.flush();
+                }
+            }, dueNanos - now, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * @param injectedReply reply replacing command execution, null to execute command
+     */
+    private void reply(ChannelHandlerContext ctx, List<String> command, String name, Object injectedReply) {
+        final Object reply = injectedReply != null ? injectedReply : execute(ctx, name, command);
+
+        if (reply instanceof MultiReply multiReply) {
+            multiReply.replies().forEach(each -> ctx.write(RespCodec.encode(each, ctx.alloc())));
+        } else {
+            ctx.write(RespCodec.encode(reply, ctx.alloc()));
+        }
+        if ("QUIT".equals(name)) {
+            ctx.flush().close();
+        }
+    }
+
+    /**
+     * Several replies to a single command, e.g. a confirmation for every subscribed channel
+     */
+    private record MultiReply(List<Object> replies) {}
+
+    private Object execute(ChannelHandlerContext ctx, String name, List<String> command) {
+        try {
+            return dispatch(ctx, name, command.subList(1, command.size()));
+        } catch (NumberFormatException | ArithmeticException ex) {
+            return error(WRONG_TYPE);
+        } catch (IndexOutOfBoundsException ex) {
+            return error(String.format("ERR wrong number of arguments for '%s' command", name.toLowerCase(Locale.ROOT)));
+        } catch (RuntimeException ex) {
+            return error("ERR " + ex.getMessage());
+        }
+    }
+
+    private Object dispatch(ChannelHandlerContext ctx, String name, List<String> args) {
+        final Keyspace keyspace = server.keyspace();
+
+        return switch (name) {
+            case "PING" -> args.isEmpty() ? new RespCodec.Status("PONG") : args.get(0);
+            case "ECHO" -> args.get(0);
+            case "QUIT", "SELECT", "CLIENT", "READONLY" -> OK;
+            case "INFO" -> "# Server\r\nredis_version:7.0.0\r\nredis_mode:standalone\r\n";
+            case "COMMAND" -> List.of();
+            case "DBSIZE" -> (long) keyspace.size();
+            case "FLUSHALL", "FLUSHDB" -> {
+                keyspace.clear();
+                yield OK;
+            }
+
+            case "GET" -> keyspace.get(args.get(0));
+            case "MGET" -> args.stream().map(keyspace::get).toList();
+            case "SET" -> set(keyspace, args);
+            case "INCR" -> keyspace.incrementBy(args.get(0), 1L);
+            case "DECR" -> keyspace.incrementBy(args.get(0), -1L);
+            case "INCRBY" -> keyspace.incrementBy(args.get(0), Long.parseLong(args.get(1)));
+            case "DECRBY" -> keyspace.incrementBy(args.get(0), -Long.parseLong(args.get(1)));
+            case "DEL", "UNLINK" -> args.stream().filter(keyspace::delete).count();
+            case "EXISTS" -> args.stream().filter(keyspace::exists).count();
+            case "EXPIRE" -> keyspace.expire(args.get(0), TimeUnit.SECONDS.toMillis(Long.parseLong(args.get(1)))) ? 1L : 0L;
+            case "PEXPIRE" -> keyspace.expire(args.get(0), Long.parseLong(args.get(1))) ? 1L : 0L;
+            case "TTL" -> {
+                final long ttlMillis = keyspace.ttlMillis(args.get(0));
+                yield ttlMillis < 0 ? ttlMillis : (ttlMillis + 999) / 1000;
+            }
+            case "PTTL" -> keyspace.ttlMillis(args.get(0));
+            case "RENAME" -> keyspace.rename(args.get(0), args.get(1)) ? OK : error("ERR no such key");
+            case "SCAN" -> scan(keyspace, args);
+
+            case "EVAL" -> eval(keyspace, InProcessRedisServer.sha1(args.get(0)), args);
+            case "EVALSHA" -> eval(keyspace, args.get(0), args);
+            case "SCRIPT" -> script(args);
+
+            case "PUBLISH" -> server.publish(args.get(0), args.get(1));
+            case "SUBSCRIBE" -> subscribe(ctx, args);
+            case "UNSUBSCRIBE" -> unsubscribe(ctx, args.isEmpty() ? List.copyOf(subscriptions) : args);
+
+            default -> error(String.format("ERR unknown command '%s'", name));
+        };
+    }
+
+    private Object set(Keyspace keyspace, List<String> args) {
+        final String key = args.get(0);
+        long ttlMillis = -1L;
+        boolean onlyIfAbsent = false, onlyIfPresent = false;
+
+        for (int i = 2; i < args.size(); i++) {
+            switch (args.get(i).toUpperCase(Locale.ROOT)) {
+                case "EX" -> ttlMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(args.get(++i)));
+                case "PX" -> ttlMillis = Long.parseLong(args.get(++i));
+                case "NX" -> onlyIfAbsent = true;
+                case "XX" -> onlyIfPresent = true;
+                default -> {
+                    return error("ERR syntax error");
+                }
+            }
+        }
+
+        final boolean exists = keyspace.exists(key);
+        if ((onlyIfAbsent && exists) || (onlyIfPresent && !exists)) {
+            return null;
+        }
+        keyspace.set(key, args.get(1));
+        if (ttlMillis > 0) {
+            keyspace.expire(key, ttlMillis);
+        }
+        return OK;
+    }
+
+    private Object scan(Keyspace keyspace, List<String> args) {
+        final long cursor = Long.parseLong(args.get(0));
+        String match = null;
+        int count = 10;
+        for (int i = 1; i < args.size(); i++) {
+            switch (args.get(i).toUpperCase(Locale.ROOT)) {
+                case "MATCH" -> match = args.get(++i);
+                case "COUNT" -> count = Integer.parseInt(args.get(++i));
+                case "TYPE" -> i++; // every key is a string
+                default -> {
+                    return error("ERR syntax error");
+                }
+            }
+        }
+        return keyspace.scan(cursor, Math.max(count, 1), match);
+    }
+
+    private Object eval(Keyspace keyspace, String sha1, List<String> args) {
+        final int numKeys = Integer.parseInt(args.get(1));
+        final List<String> keys = List.copyOf(args.subList(2, 2 + numKeys));
+        final List<String> scriptArgs = List.copyOf(args.subList(2 + numKeys, args.size()));
+
+        return server.script(sha1)
+                .map(handler -> handler.execute(keyspace, keys, scriptArgs))
+                    .orElseGet(() -> error("NOSCRIPT No matching script. Please use EVAL."));
+    }
+
+    private Object script(List<String> args) {
+        return switch (args.get(0).toUpperCase(Locale.ROOT)) {
+            case "LOAD" -> {
+                final String sha1 = InProcessRedisServer.sha1(args.get(1));
+                yield server.hasScript(sha1) ? sha1 : error("ERR no stand-in registered for script: " + sha1);
+            }
+            case "EXISTS" -> args.subList(1, args.size()).stream().map(sha1 -> server.hasScript(sha1) ? 1L : 0L).toList();
+            case "FLUSH" -> OK;
+            default -> error("ERR unknown SCRIPT subcommand");
+        };
+    }
+
+    private Object subscribe(ChannelHandlerContext ctx, List<String> topics) {
+        final List<Object> replies = new ArrayList<>(topics.size());
+        for (String topic : topics) {
+            if (subscriptions.add(topic)) {
+                server.subscribe(topic, ctx.channel());
+            }
+            replies.add(List.of("subscribe", topic, (long) subscriptions.size()));
+        }
+        return new MultiReply(replies);
+    }
+
+    private Object unsubscribe(ChannelHandlerContext ctx, List<String> topics) {
+        if (topics.isEmpty()) {
+            return Arrays.asList("unsubscribe", null, 0L);
+        }
+        final List<Object> replies = new ArrayList<>(topics.size());
+        for (String topic : topics) {
+            if (subscriptions.remove(topic)) {
+                server.unsubscribe(topic, ctx.channel());
+            }
+            replies.add(Arrays.asList("unsubscribe", topic, (long) subscriptions.size()));
+        }
+        return new MultiReply(replies);
+    }
+
+}
@@ -0,0 +1,85 @@
+package com.undertone.adselector.infrastructure.out.redis;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Faults injected by the stand-in into command processing, immutable and swapped as a whole.
+ * <ul>
+ *     <li>Latency delays execution of every affected command, replies still keep per connection order.</li>
+ *     <li>Failures hit affected commands with given probability, see {@link FailureMode}.</li>
+ * </ul>
+ * An empty set of commands affects every command.
+ */
+public record FaultInjection(Duration latency, Duration jitter,
+                             FailureMode failureMode, double failureProbability, Set<String> commands) {
+
+    public enum FailureMode {
+        /**
+         * No failures injected
+         */
+        NONE,
+        /**
+         * Command is not executed and replied with an error
+         */
+        ERROR,
+        /**
+         * Command is not executed and never replied, connection stops replying altogether (until partition heals)
+         * since RESP replies are matched to commands by order
+         */
+        TIMEOUT,
+        /**
+         * Connection is closed without executing the command
+         */
+        DISCONNECT
+    }
+
+    public static final FaultInjection NONE =
+            new FaultInjection(Duration.ZERO, Duration.ZERO, FailureMode.NONE, 0d, Set.of());
+
+    public FaultInjection {
+        requireNonNull(latency, "Argument latency must not be null");
+        requireNonNull(jitter, "Argument jitter must not be null");
+        requireNonNull(failureMode, "Argument failureMode must not be null");
+        commands = Set.copyOf(requireNonNull(commands, "Argument commands must not be null"));
+    }
+
+    public static FaultInjection latency(Duration latency) {
+        return latency(latency, Duration.ZERO);
+    }
+
+    public static FaultInjection latency(Duration latency, Duration jitter) {
+        return new FaultInjection(latency, jitter, FailureMode.NONE, 0d, Set.of());
+    }
+
+    public static FaultInjection failing(FailureMode failureMode, double failureProbability) {
+        return new FaultInjection(Duration.ZERO, Duration.ZERO, failureMode, failureProbability, Set.of());
+    }
+
+    /**
+     * @param commands upper case command names, e.g. EVALSHA
+     */
+    public FaultInjection onlyFor(String... commands) {
+        return new FaultInjection(latency, jitter, failureMode, failureProbability, Set.of(commands));
+    }
+
+    boolean affects(String command) {
+        return commands.isEmpty() || commands.contains(command);
+    }
+
+    long delayNanos() {
+        final long jitterNanos = jitter.toNanos();
+        return latency.toNanos() + (jitterNanos > 0 ? ThreadLocalRandom.current().nextLong(jitterNanos + 1) : 0L);
+    }
+
+    FailureMode nextFailure() {
+        if (failureMode == FailureMode.NONE || ThreadLocalRandom.current().nextDouble() >= failureProbability) {
+            return FailureMode.NONE;
+        }
+        return failureMode;
+    }
+
+}
@@ -0,0 +1,220 @@
+package com.undertone.adselector.infrastructure.out.redis;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Embeddable Redis stand-in speaking the RESP2 subset used by the service:
+ * strings (GET, SET, MGET, INCR, DECR, INCRBY, DECRBY, DEL, EXISTS, RENAME), expiry (EXPIRE, TTL),
+ * SCAN, pub/sub (PUBLISH, SUBSCRIBE, UNSUBSCRIBE) and scripting (EVAL, EVALSHA, SCRIPT).
+ * <p>
+ * Lua is not interpreted, instead every script is backed by a registered {@link ScriptHandler}.
+ * Like Redis, commands are executed by a single event loop thread, making every command and script atomic.
+ * Latency and failures could be injected at runtime, see {@link FaultInjection}.
+ */
+@Slf4j
+public final class InProcessRedisServer implements AutoCloseable {
+
+    private final EventLoopGroup bossGroup;
+    private final EventLoopGroup workerGroup;
+    private final Channel serverChannel;
+
+    private final Keyspace keyspace = new Keyspace(System::currentTimeMillis);
+    private final Map<String, ScriptHandler> scripts = new ConcurrentHashMap<>();
+    private final Map<String, Set<Channel>> subscribers = new HashMap<>();
+    private final Set<CommandDispatcher> connections = ConcurrentHashMap.newKeySet();
+
+    private volatile FaultInjection faults = FaultInjection.NONE;
+
+    private InProcessRedisServer(Builder builder) {
+        this.scripts.putAll(builder.scripts);
+        this.bossGroup = new NioEventLoopGroup(1, new DefaultThreadFactory("redis-stand-in-boss", true));
+        this.workerGroup = new NioEventLoopGroup(1, new DefaultThreadFactory("redis-stand-in", true));
+
+        try {
+            this.serverChannel = new ServerBootstrap()
+                    .group(bossGroup, workerGroup)
+                        .channel(NioServerSocketChannel.class)
+                            .childOption(ChannelOption.TCP_NODELAY, true)
+                                .childHandler(new ChannelInitializer<SocketChannel>() {
+                                    @Override
+                                    protected void initChannel(SocketChannel channel) {
+                                        channel.pipeline().addLast(
+                                                new RespCodec.CommandDecoder(),
+                                                    new CommandDispatcher(InProcessRedisServer.this));
+                                    }
+                                })
+                    .bind(builder.host, builder.port)
+                        .sync()
+                            .channel();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new IllegalStateException("Interrupted while binding Redis stand-in", ie);
+        }
+
+        log.info("Redis stand-in listening on: {}", serverChannel.localAddress());
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private String host = "127.0.0.1";
+        private int port;
+        private final Map<String, ScriptHandler> scripts = new HashMap<>();
+
+        Builder() {}
+
+        public Builder withHost(String host) {
+            this.host = requireNonNull(host, "Argument host must not be null");
+            return this;
+        }
+
+        /**
+         * @param port port to listen on, 0 (default) binds an ephemeral port
+         */
+        public Builder withPort(int port) {
+            this.port = port;
+            return this;
+        }
+
+        public Builder withScript(String scriptSource, ScriptHandler handler) {
+            requireNonNull(scriptSource, "Argument scriptSource must not be null");
+            this.scripts.put(sha1(scriptSource), requireNonNull(handler, "Argument handler must not be null"));
+            return this;
+        }
+
+        public InProcessRedisServer start() {
+            return new InProcessRedisServer(this);
+        }
+    }
+
+    public String host() {
+        return ((InetSocketAddress) serverChannel.localAddress()).getHostString();
+    }
+
+    public int port() {
+        return ((InetSocketAddress) serverChannel.localAddress()).getPort();
+    }
+
+    public FaultInjection faults() {
+        return faults;
+    }
+
+    public void injectFaults(FaultInjection faults) {
+        this.faults = requireNonNull(faults, "Argument faults must not be null");
+    }
+
+    /**
+     * Every command is left unanswered until {@link #heal()} is called
+     */
+    public void partition() {
+        injectFaults(FaultInjection.failing(FaultInjection.FailureMode.TIMEOUT, 1d));
+    }
+
+    /**
+     * Clears injected faults. Connections which stopped replying are closed, as their pending commands
+     * could never be answered in order, clients are expected to reconnect.
+     */
+    public void heal() {
+        injectFaults(FaultInjection.NONE);
+        connections.forEach(CommandDispatcher::closeIfUnresponsive);
+    }
+
+    /**
+     * Runs given function against the keyspace on the server event loop, e.g. for seeding or asserting state
+     */
+    public <T> T inKeyspace(Function<Keyspace, T> function) {
+        try {
+            return workerGroup.next().submit(() -> function.apply(keyspace)).get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ie);
+        } catch (ExecutionException ee) {
+            throw new IllegalStateException(ee.getCause());
+        }
+    }
+
+    @Override
+    public void close() {
+        if (serverChannel != null) {
+            serverChannel.close().syncUninterruptibly();
+        }
+        workerGroup.shutdownGracefully(0, 0, TimeUnit.MILLISECONDS).syncUninterruptibly();
+        bossGroup.shutdownGracefully(0, 0, TimeUnit.MILLISECONDS).syncUninterruptibly();
+    }
+
+    Keyspace keyspace() {
+        return keyspace;
+    }
+
+    Optional<ScriptHandler> script(String sha1) {
+        return Optional.ofNullable(scripts.get(sha1.toLowerCase(Locale.ROOT)));
+    }
+
+    boolean hasScript(String sha1) {
+        return scripts.containsKey(sha1.toLowerCase(Locale.ROOT));
+    }
+
+    void register(CommandDispatcher connection) {
+        connections.add(connection);
+    }
+
+    void unregister(CommandDispatcher connection, Channel channel) {
+        connections.remove(connection);
+        subscribers.values().forEach(channels -> channels.remove(channel));
+    }
+
+    void subscribe(String topic, Channel channel) {
+        subscribers.computeIfAbsent(topic, ignored -> new LinkedHashSet<>()).add(channel);
+    }
+
+    void unsubscribe(String topic, Channel channel) {
+        final Set<Channel> channels = subscribers.get(topic);
+        if (channels != null && channels.remove(channel) && channels.isEmpty()) {
+            subscribers.remove(topic);
+        }
+    }
+
+    long publish(String topic, String message) {
+        final Set<Channel> channels = subscribers.getOrDefault(topic, Set.of());
+        final List<Object> push = List.of("message", topic, message);
+        for (Channel channel : channels) {
+            channel.writeAndFlush(RespCodec.encode(push, channel.alloc()));
+        }
+        return channels.size();
+    }
+
+    static String sha1(String scriptSource) {
+        try {
+            return HexFormat.of().formatHex(
+                    MessageDigest.getInstance("SHA-1").digest(scriptSource.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new IllegalStateException(nsae);
+        }
+    }
+
+}
@@ -0,0 +1,130 @@
+package com.undertone.adselector.infrastructure.out.redis;
+
+import org.junit.jupiter.api.*;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.script.RedisScript;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InProcessRedisServerTest {
+
+    private static final RedisScript<Long> SUM_SCRIPT = RedisScript.of("""
+            local sum = 0
+            for _, key in ipairs(KEYS) do
+              sum = sum + tonumber(redis.call('GET', key) or '0')
+            end
+            return sum
+            """, Long.class);
+
+    private InProcessRedisServer sut;
+
+    private LettuceConnectionFactory connectionFactory;
+
+    private ReactiveStringRedisTemplate redisTemplate;
+
+    @BeforeEach
+    public void beforeEach() {
+        sut = InProcessRedisServer.builder()
+                .withScript(SUM_SCRIPT.getScriptAsString(), (keyspace, keys, args) ->
+                        keys.stream().map(keyspace::get).filter(value -> value != null).mapToLong(Long::parseLong).sum())
+                    .start();
+
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration(sut.host(), sut.port()));
+        connectionFactory.afterPropertiesSet();
+        redisTemplate = new ReactiveStringRedisTemplate(connectionFactory);
+    }
+
+    @AfterEach
+    public void afterEach() {
+        connectionFactory.destroy();
+        sut.close();
+    }
+
+    @Test
+    @DisplayName("Given stored counters, when scanning in small batches, then visit every matching key exactly once")
+    void scan_givenStoredCounters_whenScanningInBatches_thenVisitEveryMatchingKeyOnce_positive() {
+
+        // GIVEN
+        IntStream.range(0, 25).forEach(i -> redisTemplate.opsForValue().set("test" + i, "1").block());
+        redisTemplate.opsForValue().set("ad-selector:internal", "1").block();
+
+        // WHEN
+        List<String> actualKeys = redisTemplate.scan(ScanOptions.scanOptions().match("test*").count(4).build())
+                .collectList()
+                    .block();
+
+        // THEN
+        assertNotNull(actualKeys);
+        assertEquals(25, actualKeys.size());
+        assertEquals(IntStream.range(0, 25).mapToObj(i -> "test" + i).collect(Collectors.toSet()), Set.copyOf(actualKeys));
+
+    }
+
+    @Test
+    @DisplayName("Given registered script stand-in, when executing script, then reply with stand-in result")
+    void eval_givenRegisteredScript_whenExecuting_thenReplyStandInResult_positive() {
+
+        // GIVEN
+        redisTemplate.opsForValue().set("a", "2").block();
+        redisTemplate.opsForValue().increment("b", 40).block();
+
+        // WHEN
+        Long actualSum = redisTemplate.execute(SUM_SCRIPT, List.of("a", "b", "c")).single().block();
+
+        // THEN
+        assertEquals(42L, actualSum);
+
+    }
+
+    @Test
+    @DisplayName("Given subscribed listener, when publishing, then deliver message to listener")
+    void publish_givenSubscribedListener_whenPublishing_thenDeliverMessage_positive() {
+
+        // GIVEN
+        Mono<String> actualMessage = redisTemplate.listenToChannel("reports")
+                .next()
+                    .map(message -> message.getMessage())
+                        .cache();
+        actualMessage.subscribe();
+
+        // WHEN
+        Long receivers = Mono.defer(() -> redisTemplate.convertAndSend("reports", "done"))
+                .repeatWhenEmpty(ignored -> ignored.delayElements(Duration.ofMillis(10)))
+                    .filter(count -> count > 0)
+                        .repeatWhenEmpty(50, ignored -> ignored.delayElements(Duration.ofMillis(10)))
+                            .block(Duration.ofSeconds(5));
+
+        // THEN
+        assertEquals(1L, receivers);
+        assertEquals("done", actualMessage.block(Duration.ofSeconds(5)));
+
+    }
+
+    @Test
+    @DisplayName("Given expiring key, when time to live elapses, then key is gone")
+    void expire_givenExpiringKey_whenTtlElapses_thenKeyIsGone_positive() throws InterruptedException {
+
+        // GIVEN
+        redisTemplate.opsForValue().set("expiring", "1", Duration.ofMillis(50)).block();
+        assertEquals("1", redisTemplate.opsForValue().get("expiring").block());
+
+        // WHEN
+        Thread.sleep(100);
+
+        // THEN
+        assertNull(redisTemplate.opsForValue().get("expiring").block());
+        assertEquals(Long.valueOf(-2L), sut.inKeyspace(keyspace -> keyspace.ttlMillis("expiring")));
+
+    }
+
+}
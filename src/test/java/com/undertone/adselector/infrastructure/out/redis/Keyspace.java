@@ -0,0 +1,217 @@
+package com.undertone.adselector.infrastructure.out.redis;
+
+import java.util.*;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+
+/**
+ * String keyspace of the stand-in, confined to the server event loop thread, hence not synchronized.
+ * Expired keys are evicted lazily upon access. Keys are assigned increasing sequence numbers upon creation,
+ * serving as stable SCAN cursors regardless of concurrent deletions.
+ */
+public final class Keyspace {
+
+    private static final class Entry {
+        private String value;
+        private final long sequence;
+        private long expireAtMillis = -1L;
+
+        private Entry(String value, long sequence) {
+            this.value = value;
+            this.sequence = sequence;
+        }
+    }
+
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final NavigableMap<Long, String> scanOrder = new TreeMap<>();
+    private final LongSupplier clock;
+    private long nextSequence = 1L;
+
+    Keyspace(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    public String get(String key) {
+        final Entry entry = live(key);
+        return entry == null ? null : entry.value;
+    }
+
+    public void set(String key, String value) {
+        final Entry entry = live(key);
+        if (entry == null) {
+            create(key, value);
+        } else {
+            entry.value = value;
+            entry.expireAtMillis = -1L;
+        }
+    }
+
+    public boolean exists(String key) {
+        return live(key) != null;
+    }
+
+    /**
+     * @throws NumberFormatException if current value is not an integer
+     */
+    public long incrementBy(String key, long delta) {
+        final Entry entry = live(key);
+        if (entry == null) {
+            create(key, Long.toString(delta));
+            return delta;
+        }
+        final long updated = Math.addExact(Long.parseLong(entry.value), delta);
+        entry.value = Long.toString(updated);
+        return updated;
+    }
+
+    public boolean delete(String key) {
+        final Entry entry = live(key);
+        if (entry == null) {
+            return false;
+        }
+        remove(key, entry);
+        return true;
+    }
+
+    public boolean expire(String key, long ttlMillis) {
+        final Entry entry = live(key);
+        if (entry == null) {
+            return false;
+        }
+        if (ttlMillis <= 0) {
+            remove(key, entry);
+        } else {
+            entry.expireAtMillis = clock.getAsLong() + ttlMillis;
+        }
+        return true;
+    }
+
+    /**
+     * @return whether expiry was removed, false if key does not exist or has no expiry
+     */
+    public boolean persist(String key) {
+        final Entry entry = live(key);
+        if (entry == null || entry.expireAtMillis < 0) {
+            return false;
+        }
+        entry.expireAtMillis = -1L;
+        return true;
+    }
+
+    /**
+     * @return remaining time to live in millis, -1 if key has no expiry and -2 if key does not exist
+     */
+    public long ttlMillis(String key) {
+        final Entry entry = live(key);
+        if (entry == null) {
+            return -2L;
+        }
+        return entry.expireAtMillis < 0 ? -1L : entry.expireAtMillis - clock.getAsLong();
+    }
+
+    public boolean rename(String key, String newKey) {
+        final Entry entry = live(key);
+        if (entry == null) {
+            return false;
+        }
+        final long expireAtMillis = entry.expireAtMillis;
+        remove(key, entry);
+        delete(newKey);
+        create(newKey, entry.value).expireAtMillis = expireAtMillis;
+        return true;
+    }
+
+    public int size() {
+        entries.entrySet().removeIf(entry -> {
+            if (isExpired(entry.getValue())) {
+                scanOrder.remove(entry.getValue().sequence);
+                return true;
+            }
+            return false;
+        });
+        return entries.size();
+    }
+
+    public void clear() {
+        entries.clear();
+        scanOrder.clear();
+    }
+
+    /**
+     * @return next cursor followed by keys found, cursor 0 marks a complete iteration
+     */
+    List<Object> scan(long cursor, int count, String glob) {
+        final Pattern pattern = glob == null ? null : globToPattern(glob);
+        final List<String> keys = new ArrayList<>();
+
+        long nextCursor = 0L;
+        int visited = 0;
+        for (Map.Entry<Long, String> next : scanOrder.tailMap(cursor, true).entrySet()) {
+            if (visited++ == count) {
+                nextCursor = next.getKey();
+                break;
+            }
+            final String key = next.getValue();
+            if (exists(key) && (pattern == null || pattern.matcher(key).matches())) {
+                keys.add(key);
+            }
+        }
+        return List.of(Long.toString(nextCursor), keys);
+    }
+
+    private Entry create(String key, String value) {
+        final Entry entry = new Entry(value, nextSequence++);
+        entries.put(key, entry);
+        scanOrder.put(entry.sequence, key);
+        return entry;
+    }
+
+    private void remove(String key, Entry entry) {
+        entries.remove(key);
+        scanOrder.remove(entry.sequence);
+    }
+
+    private Entry live(String key) {
+        final Entry entry = entries.get(key);
+        if (entry != null && isExpired(entry)) {
+            remove(key, entry);
+            return null;
+        }
+        return entry;
+    }
+
+    private boolean isExpired(Entry entry) {
+        return entry.expireAtMillis >= 0 && entry.expireAtMillis <= clock.getAsLong();
+    }
+
+    static Pattern globToPattern(String glob) {
+        final StringBuilder regex = new StringBuilder(glob.length() + 8);
+        for (int i = 0; i < glob.length(); i++) {
+            final char c = glob.charAt(i);
+            switch (c) {
+                case '*' -> regex.append(".*");
+                case '?' -> regex.append('.');
+                case '[' -> {
+                    final int end = glob.indexOf(']', i + 1);
+                    if (end < 0) {
+                        regex.append("\\[");
+                    } else {
+                        /**
+                         * Glob character classes, including ranges and ^ negation, share regex syntax
+                         */
+                        regex.append('[').append(glob, i + 1, end).append(']');
+                        i = end;
+                    }
+                }
+                case '\\' -> {
+                    if (i + 1 < glob.length()) {
+                        regex.append(Pattern.quote(String.valueOf(glob.charAt(++i))));
+                    }
+                }
+                default -> regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+
+}
@@ -0,0 +1,154 @@
+package com.undertone.adselector.infrastructure.out.redis;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.DecoderException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * RESP2 framing, commands are decoded into lists of arguments and replies are encoded from plain Java values:
+ * <ul>
+ *     <li>{@link Long} - integer reply</li>
+ *     <li>{@link String} - bulk string reply, null marks a nil bulk reply</li>
+ *     <li>{@link List} - array reply, possibly nested</li>
+ *     <li>{@link Status} / {@link Error} - simple string / error replies</li>
+ * </ul>
+ * Values are treated as UTF-8 strings, which covers every value the service stores.
+ */
+public final class RespCodec {
+
+    public record Status(String value) {}
+
+    public record Error(String message) {}
+
+    public static final Status OK = new Status("OK");
+
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private RespCodec() {}
+
+    public static Error error(String message) {
+        return new Error(message);
+    }
+
+    static ByteBuf encode(Object reply, ByteBufAllocator allocator) {
+        final ByteBuf out = allocator.ioBuffer();
+        encode(reply, out);
+        return out;
+    }
+
+    static void encode(Object reply, ByteBuf out) {
+        if (reply == null) {
+            out.writeBytes("$-1\r\n".getBytes(StandardCharsets.US_ASCII));
+        } else if (reply instanceof Long integer) {
+            out.writeByte(':').writeCharSequence(integer.toString(), StandardCharsets.US_ASCII);
+            out.writeBytes(CRLF);
+        } else if (reply instanceof Integer integer) {
+            encode(integer.longValue(), out);
+        } else if (reply instanceof String bulk) {
+            final byte[] bytes = bulk.getBytes(StandardCharsets.UTF_8);
+            out.writeByte('$').writeCharSequence(Integer.toString(bytes.length), StandardCharsets.US_ASCII);
+            out.writeBytes(CRLF).writeBytes(bytes).writeBytes(CRLF);
+        } else if (reply instanceof List<?> array) {
+            out.writeByte('*').writeCharSequence(Integer.toString(array.size()), StandardCharsets.US_ASCII);
+            out.writeBytes(CRLF);
+            for (Object element : array) {
+                encode(element, out);
+            }
+        } else if (reply instanceof Status status) {
+            out.writeByte('+').writeCharSequence(status.value(), StandardCharsets.UTF_8);
+            out.writeBytes(CRLF);
+        } else if (reply instanceof Error error) {
+            out.writeByte('-').writeCharSequence(error.message(), StandardCharsets.UTF_8);
+            out.writeBytes(CRLF);
+        } else {
+            throw new IllegalArgumentException("Unsupported reply type: " + reply.getClass());
+        }
+    }
+
+    /**
+     * Decodes both multi bulk commands, as sent by clients, and inline commands, as typed into telnet.
+     * Incomplete frames are left in the cumulation buffer until more bytes arrive.
+     */
+    static final class CommandDecoder extends ByteToMessageDecoder {
+
+        @Override
+        protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
+            while (in.isReadable()) {
+                final int start = in.readerIndex();
+                final List<String> command = in.getByte(start) == '*' ? decodeMultiBulk(in) : decodeInline(in);
+                if (command == null) {
+                    in.readerIndex(start);
+                    return;
+                }
+                if (!command.isEmpty()) {
+                    out.add(command);
+                }
+            }
+        }
+
+        private static List<String> decodeMultiBulk(ByteBuf in) {
+            in.skipBytes(1);
+            final Integer count = readInteger(in);
+            if (count == null) {
+                return null;
+            }
+
+            final List<String> arguments = new ArrayList<>(Math.max(count, 0));
+            for (int i = 0; i < count; i++) {
+                if (!in.isReadable()) {
+                    return null;
+                }
+                if (in.readByte() != '$') {
+                    throw new DecoderException("Protocol error: expected '$'");
+                }
+                final Integer length = readInteger(in);
+                if (length == null || in.readableBytes() < length + 2) {
+                    return null;
+                }
+                arguments.add(in.readCharSequence(length, StandardCharsets.UTF_8).toString());
+                in.skipBytes(2);
+            }
+            return arguments;
+        }
+
+        private static List<String> decodeInline(ByteBuf in) {
+            final String line = readLine(in);
+            if (line == null) {
+                return null;
+            }
+            final String trimmed = line.trim();
+            return trimmed.isEmpty() ? List.of() : Arrays.asList(trimmed.split("\\s+"));
+        }
+
+        private static Integer readInteger(ByteBuf in) {
+            final String line = readLine(in);
+            if (line == null) {
+                return null;
+            }
+            try {
+                return Integer.parseInt(line);
+            } catch (NumberFormatException nfe) {
+                throw new DecoderException("Protocol error: invalid length: " + line);
+            }
+        }
+
+        private static String readLine(ByteBuf in) {
+            final int end = in.indexOf(in.readerIndex(), in.writerIndex(), (byte) '\n');
+            if (end < 0) {
+                return null;
+            }
+            final int length = end - in.readerIndex();
+            final String line = in.readCharSequence(length, StandardCharsets.UTF_8).toString();
+            in.skipBytes(1);
+            return line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+        }
+    }
+
+}
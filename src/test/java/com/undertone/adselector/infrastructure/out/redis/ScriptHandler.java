@@ -0,0 +1,17 @@
+package com.undertone.adselector.infrastructure.out.redis;
+
+import java.util.List;
+
+/**
+ * Java stand-in for a Lua script, registered with the server under the SHA1 digest of the script source.
+ * Handlers run on the server event loop, hence atomically with respect to any other command, like scripts do.
+ */
+@FunctionalInterface
+public interface ScriptHandler {
+
+    /**
+     * @return reply value, see {@link RespCodec} for supported types
+     */
+    public Object execute(Keyspace keyspace, List<String> keys, List<String> args);
+
+}